@@ -1,16 +1,21 @@
 package ca.corefacility.bioinformatics.irida.config.analysis;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Profile;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import com.github.jmchilton.blend4j.galaxy.JobsClient;
 import com.github.jmchilton.blend4j.galaxy.ToolsClient;
@@ -105,6 +110,26 @@ public class AnalysisExecutionServiceConfig {
 	@Autowired
 	private List<AnalysisSampleUpdater> defaultAnalysisSampleUpdaters;
 
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	@Qualifier("outputFileBaseDirectory")
+	private Path outputFileBaseDirectory;
+
+	/**
+	 * The number of analysis output files to download from Galaxy at the same
+	 * time.
+	 */
+	@Value("${irida.analysis.transfer.download.threads:4}")
+	private int downloadThreads;
+
+	/**
+	 * The number of provenance requests to make to Galaxy at the same time.
+	 */
+	@Value("${irida.analysis.transfer.provenance.threads:4}")
+	private int provenanceThreads;
+
 	private List<AnalysisSampleUpdater> loadPluginAnalysisSampleUpdaters() {
 		List<AnalysisSampleUpdater> pluginUpdaters = Lists.newLinkedList();
 
@@ -143,7 +168,8 @@ public class AnalysisExecutionServiceConfig {
 	@Bean
 	public AnalysisExecutionServiceGalaxyAsync analysisExecutionServiceGalaxyAsync() {
 		return new AnalysisExecutionServiceGalaxyAsync(analysisSubmissionService, analysisService,
-				galaxyWorkflowService, analysisWorkspaceService(), iridaWorkflowsService, analysisSubmissionSampleProcessor());
+				galaxyWorkflowService, analysisWorkspaceService(), iridaWorkflowsService, analysisSubmissionSampleProcessor(),
+				transactionManager);
 	}
 	
 	@Lazy
@@ -159,13 +185,42 @@ public class AnalysisExecutionServiceConfig {
 		return new AnalysisWorkspaceServiceGalaxy(galaxyHistoriesService, galaxyWorkflowService,
 				galaxyLibrariesService, iridaWorkflowsService, analysisCollectionServiceGalaxy(),
 				analysisProvenanceService(), analysisParameterServiceGalaxy,
-				sequencingObjectService);
+				sequencingObjectService, analysisDownloadExecutor(), outputFileBaseDirectory);
+	}
+
+	/**
+	 * @return An Executor for downloading analysis output files from Galaxy.
+	 *         Its pool size is the number of files downloaded at the same
+	 *         time.
+	 */
+	@Bean(name = "analysisDownloadExecutor")
+	public ThreadPoolTaskExecutor analysisDownloadExecutor() {
+		ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		taskExecutor.setCorePoolSize(Math.max(downloadThreads, 1));
+		taskExecutor.setMaxPoolSize(Math.max(downloadThreads, 1));
+		taskExecutor.setThreadNamePrefix("analysis-download-");
+		return taskExecutor;
 	}
 
 	@Lazy
 	@Bean
 	public AnalysisProvenanceServiceGalaxy analysisProvenanceService() {
-		return new AnalysisProvenanceServiceGalaxy(galaxyHistoriesService, toolsClient, jobsClient);
+		return new AnalysisProvenanceServiceGalaxy(galaxyHistoriesService, toolsClient, jobsClient,
+				analysisProvenanceExecutor());
+	}
+
+	/**
+	 * @return An Executor for looking up the provenance of analysis output
+	 *         files in Galaxy. Its pool size is the number of requests made to
+	 *         Galaxy at the same time.
+	 */
+	@Bean(name = "analysisProvenanceExecutor")
+	public ThreadPoolTaskExecutor analysisProvenanceExecutor() {
+		ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		taskExecutor.setCorePoolSize(Math.max(provenanceThreads, 1));
+		taskExecutor.setMaxPoolSize(Math.max(provenanceThreads, 1));
+		taskExecutor.setThreadNamePrefix("analysis-provenance-");
+		return taskExecutor;
 	}
 	
 	@Lazy
@@ -2,10 +2,12 @@ package ca.corefacility.bioinformatics.irida.config.services;
 
 import javax.validation.Validator;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 
+import ca.corefacility.bioinformatics.irida.events.EntityChangedEventAspect;
 import ca.corefacility.bioinformatics.irida.events.ProjectEventAspect;
 import ca.corefacility.bioinformatics.irida.events.ProjectEventHandler;
 import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission;
@@ -14,6 +16,7 @@ import ca.corefacility.bioinformatics.irida.repositories.ProjectRepository;
 import ca.corefacility.bioinformatics.irida.repositories.analysis.submission.AnalysisSubmissionRepository;
 import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectSampleJoinRepository;
 import ca.corefacility.bioinformatics.irida.repositories.sample.SampleRepository;
+import ca.corefacility.bioinformatics.irida.security.permissions.project.ProjectRoleCache;
 import ca.corefacility.bioinformatics.irida.service.analysis.annotations.RunAsUserAspect;
 import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisExecutionServiceAspect;
 import ca.corefacility.bioinformatics.irida.validators.ValidMethodParametersAspect;
@@ -33,8 +36,14 @@ public class IridaApiAspectsConfig {
 	@Bean
 	public ProjectEventAspect projectEventAspect(final ProjectEventRepository eventRepository,
 			final ProjectSampleJoinRepository psjRepository, final ProjectRepository projectRepository,
-			final SampleRepository sampleRepository) {
-		return new ProjectEventAspect(new ProjectEventHandler(eventRepository, psjRepository, projectRepository, sampleRepository));
+			final SampleRepository sampleRepository, final ProjectRoleCache projectRoleCache) {
+		return new ProjectEventAspect(new ProjectEventHandler(eventRepository, psjRepository, projectRepository,
+				sampleRepository, projectRoleCache));
+	}
+
+	@Bean
+	public EntityChangedEventAspect entityChangedEventAspect(final ApplicationEventPublisher eventPublisher) {
+		return new EntityChangedEventAspect(eventPublisher);
 	}
 
 	@Bean
@@ -1,15 +1,20 @@
 package ca.corefacility.bioinformatics.irida.config.services;
 
 import java.io.IOException;
-import java.net.URISyntaxException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.regex.Matcher;
@@ -17,7 +22,9 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.validation.Validator;
+import javax.xml.stream.XMLStreamException;
 
+import org.apache.lucene.store.FSDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -41,18 +48,17 @@ import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.security.concurrent.DelegatingSecurityContextScheduledExecutorService;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
-import org.thymeleaf.spring4.SpringTemplateEngine;
-import org.thymeleaf.templatemode.TemplateMode;
-import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import ca.corefacility.bioinformatics.irida.config.analysis.AnalysisExecutionServiceConfig;
 import ca.corefacility.bioinformatics.irida.config.analysis.ExecutionManagerConfig;
@@ -62,8 +68,10 @@ import ca.corefacility.bioinformatics.irida.config.security.IridaApiSecurityConf
 import ca.corefacility.bioinformatics.irida.config.services.conditions.NreplServerSpringCondition;
 import ca.corefacility.bioinformatics.irida.config.services.scheduled.IridaScheduledTasksConfig;
 import ca.corefacility.bioinformatics.irida.config.workflow.IridaWorkflowsConfig;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject;
 import ca.corefacility.bioinformatics.irida.model.user.Role;
 import ca.corefacility.bioinformatics.irida.model.user.User;
+import ca.corefacility.bioinformatics.irida.model.workflow.analysis.type.AnalysisType;
 import ca.corefacility.bioinformatics.irida.plugins.IridaPlugin;
 import ca.corefacility.bioinformatics.irida.plugins.IridaPluginException;
 import ca.corefacility.bioinformatics.irida.processing.FileProcessingChain;
@@ -75,14 +83,19 @@ import ca.corefacility.bioinformatics.irida.processing.impl.DefaultFileProcessin
 import ca.corefacility.bioinformatics.irida.processing.impl.FastqcFileProcessor;
 import ca.corefacility.bioinformatics.irida.processing.impl.GzipFileProcessor;
 import ca.corefacility.bioinformatics.irida.processing.impl.SistrTypingFileProcessor;
+import ca.corefacility.bioinformatics.irida.processing.impl.StreamingFileProcessor;
 import ca.corefacility.bioinformatics.irida.repositories.analysis.submission.AnalysisSubmissionRepository;
 import ca.corefacility.bioinformatics.irida.repositories.sample.QCEntryRepository;
 import ca.corefacility.bioinformatics.irida.repositories.sequencefile.SequencingObjectRepository;
 import ca.corefacility.bioinformatics.irida.service.AnalysisSubmissionCleanupService;
+import ca.corefacility.bioinformatics.irida.service.AnalysisTypesService;
 import ca.corefacility.bioinformatics.irida.service.TaxonomyService;
-import ca.corefacility.bioinformatics.irida.service.impl.InMemoryTaxonomyService;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisSubmissionQueue;
+import ca.corefacility.bioinformatics.irida.service.impl.IndexedTaxonomyService;
 import ca.corefacility.bioinformatics.irida.service.impl.analysis.submission.AnalysisSubmissionCleanupServiceImpl;
+import ca.corefacility.bioinformatics.irida.service.search.SearchIndex;
 import ca.corefacility.bioinformatics.irida.service.user.UserService;
+import ca.corefacility.bioinformatics.irida.service.workflow.IridaWorkflowsService;
 import ca.corefacility.bioinformatics.irida.util.IridaPluginMessageSource;
 import net.matlux.NreplServerSpring;
 
@@ -101,6 +114,7 @@ public class IridaApiServicesConfig {
 	private static final Logger logger = LoggerFactory.getLogger(IridaApiServicesConfig.class);
 	
 	private static final String DEFAULT_ENCODING = "UTF-8";
+	private static final String MAX_RUNNING_PREFIX = "irida.workflow.max-running";
 	private static final String[] RESOURCE_LOCATIONS = { "classpath:/i18n/messages", "classpath:/i18n/mobile" };
 	
 	@Autowired
@@ -114,6 +128,9 @@ public class IridaApiServicesConfig {
 
 	@Value("${file.processing.decompress.remove.compressed.file}")
 	private Boolean removeCompressedFiles;
+
+	@Value("${file.processing.streaming:false}")
+	private Boolean streamingFileProcessing;
 	
 	// the key + colon syntax allows default values. we use `false` here so we can conditionally show tags on the page with thymeleaf
 	@Value("${help.page.title:false}")
@@ -137,6 +154,39 @@ public class IridaApiServicesConfig {
 	@Value("${file.processing.queue.capacity}")
 	private int fpQueueCapacity;
 
+	@Value("${file.processing.file.parallelism:2}")
+	private int fpFileParallelism;
+
+	@Value("${project.sync.projects:2}")
+	private int syncProjects;
+
+	@Value("${project.sync.threads:8}")
+	private int syncThreads;
+
+	@Value("${ncbi.upload.submissions.threads:2}")
+	private int ncbiSubmissionThreads;
+
+	@Value("${ncbi.upload.connections:4}")
+	private int ncbiUploadConnections;
+
+	@Value("${irida.analysis.stage.prepare.threads:2}")
+	private int analysisPrepareThreads;
+
+	@Value("${irida.analysis.stage.execute.threads:2}")
+	private int analysisExecuteThreads;
+
+	@Value("${irida.analysis.stage.transfer.threads:2}")
+	private int analysisTransferThreads;
+
+	@Value("${irida.analysis.stage.postprocessing.threads:2}")
+	private int analysisPostProcessingThreads;
+
+	@Value("${irida.analysis.queue.aging.interval:3600000}")
+	private long analysisQueueAgingInterval;
+
+	@Value("${search.index.directory:}")
+	private String searchIndexDirectory;
+
 	@Value("${irida.debug.nrepl.server.port:#{null}}")
 	private Integer nreplPort;
 
@@ -292,21 +342,56 @@ public class IridaApiServicesConfig {
 			QCEntryRepository qcRepository, GzipFileProcessor gzipFileProcessor,
 			FastqcFileProcessor fastQcFileProcessor, AssemblyFileProcessor assemblyFileProcessor,
 			ChecksumFileProcessor checksumProcessor, CoverageFileProcessor coverageProcessor,
-			SistrTypingFileProcessor sistrTypingFileProcessor) {
+			SistrTypingFileProcessor sistrTypingFileProcessor, StreamingFileProcessor streamingFileProcessor) {
 
-		gzipFileProcessor.setRemoveCompressedFiles(removeCompressedFiles);
+		final List<FileProcessor> fileProcessors;
+
+		if (streamingFileProcessing) {
+			logger.info("Streaming file processing is enabled [file.processing.streaming=true]");
+			streamingFileProcessor.setDecompressFiles(decompressFiles);
+			streamingFileProcessor.setRemoveCompressedFiles(removeCompressedFiles);
+
+			fileProcessors = Lists.newArrayList(streamingFileProcessor, assemblyFileProcessor,
+					sistrTypingFileProcessor);
+		} else {
+			gzipFileProcessor.setRemoveCompressedFiles(removeCompressedFiles);
 
-		final List<FileProcessor> fileProcessors = Lists.newArrayList(checksumProcessor, gzipFileProcessor,
-				fastQcFileProcessor, coverageProcessor, assemblyFileProcessor, sistrTypingFileProcessor);
+			fileProcessors = Lists.newArrayList(checksumProcessor, gzipFileProcessor, fastQcFileProcessor,
+					coverageProcessor, assemblyFileProcessor, sistrTypingFileProcessor);
 
-		if (!decompressFiles) {
-			logger.info("File decompression is disabled [file.processing.decompress=false]");
-			fileProcessors.remove(gzipFileProcessor);
+			if (!decompressFiles) {
+				logger.info("File decompression is disabled [file.processing.decompress=false]");
+				fileProcessors.remove(gzipFileProcessor);
+			}
+		}
+
+		if (fpFileParallelism > 1) {
+			logger.info("Processing up to " + fpFileParallelism
+					+ " files of each sequencing object at once [file.processing.file.parallelism]");
+			ExecutorService pool = fileProcessingPool();
+			streamingFileProcessor.setFileProcessingPool(pool);
+			checksumProcessor.setFileProcessingPool(pool);
+			gzipFileProcessor.setFileProcessingPool(pool);
+			fastQcFileProcessor.setFileProcessingPool(pool);
 		}
 
 		return new DefaultFileProcessingChain(sequencingObjectRepository, qcRepository, fileProcessors);
 	}
 
+	/**
+	 * Builds the pool that the file processors read the files of a
+	 * {@link SequencingObject} in concurrently. The processors themselves run
+	 * on the file processing chain threads, so the pool has room for the
+	 * files of an object on each of those threads.
+	 * 
+	 * @return the pool for reading individual files
+	 */
+	@Bean(name = "fileProcessingPool", destroyMethod = "shutdown")
+	public ExecutorService fileProcessingPool() {
+		return Executors.newFixedThreadPool(Math.max(fpMaxSize, 1) * Math.max(fpFileParallelism, 1),
+				new ThreadFactoryBuilder().setNameFormat("file-processing-%d").setDaemon(true).build());
+	}
+
 	@Bean(name = "fileProcessingChainExecutor")
 	public ThreadPoolTaskExecutor fileProcessingChainExecutor() {
 		ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
@@ -317,6 +402,33 @@ public class IridaApiServicesConfig {
 		return taskExecutor;
 	}
 
+	/**
+	 * @return An Executor for synchronizing remote projects. Its pool size is
+	 *         the number of projects synchronized at the same time.
+	 */
+	@Bean(name = "projectSyncExecutor")
+	public ThreadPoolTaskExecutor projectSyncExecutor() {
+		ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		taskExecutor.setCorePoolSize(Math.max(syncProjects, 1));
+		taskExecutor.setMaxPoolSize(Math.max(syncProjects, 1));
+		taskExecutor.setThreadNamePrefix("project-sync-");
+		taskExecutor.setThreadPriority(Thread.MIN_PRIORITY);
+		return taskExecutor;
+	}
+
+	/**
+	 * @return An Executor for the metadata, file listing and file mirroring
+	 *         stages of synchronizing the samples in remote projects.
+	 */
+	@Bean(name = "projectSyncStageExecutor")
+	public ThreadPoolTaskExecutor projectSyncStageExecutor() {
+		ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		taskExecutor.setCorePoolSize(Math.max(syncThreads, 1));
+		taskExecutor.setMaxPoolSize(Math.max(syncThreads, 1));
+		taskExecutor.setThreadNamePrefix("project-sync-stage-");
+		taskExecutor.setThreadPriority(Thread.MIN_PRIORITY);
+		return taskExecutor;
+	}
 
 	@Bean
 	public Validator validator() {
@@ -328,9 +440,27 @@ public class IridaApiServicesConfig {
 	}
 
 	@Bean
-	public TaxonomyService taxonomyService() throws URISyntaxException {
-		Path path = Paths.get(taxonomyFileLocation.getPath());
-		return new InMemoryTaxonomyService(path);
+	public TaxonomyService taxonomyService() throws IOException, XMLStreamException {
+		try (InputStream taxonomy = taxonomyFileLocation.getInputStream()) {
+			return new IndexedTaxonomyService(taxonomy);
+		}
+	}
+
+	/**
+	 * The full-text index of samples and projects. Nothing is indexed unless a
+	 * directory to store the index in is configured.
+	 * 
+	 * @return the {@link SearchIndex}
+	 * @throws IOException
+	 *             if the index can't be opened
+	 */
+	@Bean(destroyMethod = "close")
+	public SearchIndex searchIndex() throws IOException {
+		if (searchIndexDirectory.trim().isEmpty()) {
+			logger.info("No search.index.directory configured, searches will use the database.");
+			return new SearchIndex();
+		}
+		return new SearchIndex(FSDirectory.open(Paths.get(searchIndexDirectory.trim()).toFile()));
 	}
 
 	/**
@@ -348,7 +478,111 @@ public class IridaApiServicesConfig {
 		SecurityContext schedulerContext = createAnalysisTaskSecurityContext(userService);
 		return new DelegatingSecurityContextScheduledExecutorService(delegateExecutor, schedulerContext);
 	}
+
+	/**
+	 * Builds a new {@link Executor} for preparing analysis submissions.
+	 * 
+	 * @param userService
+	 *            a reference to the user service.
+	 * 
+	 * @return A new {@link Executor} for the prepare stage.
+	 */
+	@Bean
+	@DependsOn("springLiquibase")
+	public Executor analysisPrepareExecutor(UserService userService) {
+		return analysisStageExecutor(userService, analysisPrepareThreads);
+	}
+
+	/**
+	 * Builds a new {@link Executor} for submitting analyses to run.
+	 * 
+	 * @param userService
+	 *            a reference to the user service.
+	 * 
+	 * @return A new {@link Executor} for the execute stage.
+	 */
+	@Bean
+	@DependsOn("springLiquibase")
+	public Executor analysisExecuteExecutor(UserService userService) {
+		return analysisStageExecutor(userService, analysisExecuteThreads);
+	}
+
+	/**
+	 * Builds a new {@link Executor} for transferring analysis results.
+	 * 
+	 * @param userService
+	 *            a reference to the user service.
+	 * 
+	 * @return A new {@link Executor} for the transfer stage.
+	 */
+	@Bean
+	@DependsOn("springLiquibase")
+	public Executor analysisTransferExecutor(UserService userService) {
+		return analysisStageExecutor(userService, analysisTransferThreads);
+	}
+
+	/**
+	 * Builds a new {@link Executor} for post-processing analysis results.
+	 * 
+	 * @param userService
+	 *            a reference to the user service.
+	 * 
+	 * @return A new {@link Executor} for the post-processing stage.
+	 */
+	@Bean
+	@DependsOn("springLiquibase")
+	public Executor analysisPostProcessingExecutor(UserService userService) {
+		return analysisStageExecutor(userService, analysisPostProcessingThreads);
+	}
+
+	/**
+	 * Builds an {@link Executor} for one stage of running an analysis.
+	 * 
+	 * @param userService
+	 *            a reference to the user service.
+	 * @param threads
+	 *            the number of submissions that can be in the stage at once.
+	 * 
+	 * @return A new {@link Executor} running as the analysis task user.
+	 */
+	private Executor analysisStageExecutor(UserService userService, int threads) {
+		ExecutorService delegateExecutor = Executors.newFixedThreadPool(Math.max(threads, 1));
+		SecurityContext schedulerContext = createAnalysisTaskSecurityContext(userService);
+		return new DelegatingSecurityContextExecutorService(delegateExecutor, schedulerContext);
+	}
 	
+	/**
+	 * Builds the queue deciding which new analysis submissions run next. The
+	 * number of running submissions of each {@link AnalysisType} can be
+	 * limited with the property
+	 * <code>irida.workflow.max-running.[ANALYSIS_TYPE]</code>.
+	 * 
+	 * @param analysisSubmissionRepository
+	 *            the repository for analysis submissions.
+	 * @param iridaWorkflowsService
+	 *            the service for finding the type of a submission's workflow.
+	 * @param analysisTypesService
+	 *            the service listing all {@link AnalysisType}s.
+	 * 
+	 * @return An {@link AnalysisSubmissionQueue}.
+	 */
+	@Bean
+	public AnalysisSubmissionQueue analysisSubmissionQueue(AnalysisSubmissionRepository analysisSubmissionRepository,
+			IridaWorkflowsService iridaWorkflowsService, AnalysisTypesService analysisTypesService) {
+		Map<AnalysisType, Integer> maxRunningByType = new HashMap<>();
+		for (AnalysisType analysisType : analysisTypesService.values()) {
+			String maxRunningPropertyName = MAX_RUNNING_PREFIX + "." + analysisType.getType();
+			Integer maxRunning = env.getProperty(maxRunningPropertyName, Integer.class);
+			if (maxRunning != null && maxRunning > 0) {
+				logger.debug("Limiting running " + analysisType + " submissions to " + maxRunning);
+				maxRunningByType.put(analysisType, maxRunning);
+			}
+		}
+
+		return new AnalysisSubmissionQueue(analysisSubmissionRepository, iridaWorkflowsService, maxRunningByType,
+				Duration.ofMillis(Math.max(analysisQueueAgingInterval, 0)), Clock.systemUTC());
+	}
+
 	@Bean
 	@DependsOn("springLiquibase")
 	@Profile({ "prod", "analysis" })
@@ -408,22 +642,33 @@ public class IridaApiServicesConfig {
 		return taskExecutor;
 	}
 
-	/*
-	 * Template engine for constructing ncbi export submissions
+	/**
+	 * @return An Executor for uploading NCBI export submissions. Its pool size
+	 *         is the number of submissions uploaded at the same time.
 	 */
-	@Bean(name = "exportUploadTemplateEngine")
-	public SpringTemplateEngine exportUploadTemplateEngine() {
-		SpringTemplateEngine exportUploadTemplateEngine = new SpringTemplateEngine();
-
-		ClassLoaderTemplateResolver classLoaderTemplateResolver = new ClassLoaderTemplateResolver();
-		classLoaderTemplateResolver.setPrefix("/ca/corefacility/bioinformatics/irida/export/");
-		classLoaderTemplateResolver.setSuffix(".xml");
-
-		classLoaderTemplateResolver.setTemplateMode(TemplateMode.XML);
-		classLoaderTemplateResolver.setCharacterEncoding("UTF-8");
+	@Bean(name = "ncbiSubmissionUploadExecutor")
+	public ThreadPoolTaskExecutor ncbiSubmissionUploadExecutor() {
+		ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		taskExecutor.setCorePoolSize(Math.max(ncbiSubmissionThreads, 1));
+		taskExecutor.setMaxPoolSize(Math.max(ncbiSubmissionThreads, 1));
+		taskExecutor.setThreadNamePrefix("ncbi-upload-");
+		taskExecutor.setThreadPriority(Thread.MIN_PRIORITY);
+		return taskExecutor;
+	}
 
-		exportUploadTemplateEngine.addTemplateResolver(classLoaderTemplateResolver);
-		return exportUploadTemplateEngine;
+	/**
+	 * @return An Executor for uploading the files of NCBI export submissions.
+	 *         Its pool size is the number of FTP connections open at the same
+	 *         time across all submissions.
+	 */
+	@Bean(name = "ncbiFileUploadExecutor")
+	public ThreadPoolTaskExecutor ncbiFileUploadExecutor() {
+		ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		taskExecutor.setCorePoolSize(Math.max(ncbiUploadConnections, 1));
+		taskExecutor.setMaxPoolSize(Math.max(ncbiUploadConnections, 1));
+		taskExecutor.setThreadNamePrefix("ncbi-upload-file-");
+		taskExecutor.setThreadPriority(Thread.MIN_PRIORITY);
+		return taskExecutor;
 	}
 
 	@Bean
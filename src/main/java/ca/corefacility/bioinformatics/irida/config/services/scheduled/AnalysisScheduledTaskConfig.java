@@ -6,6 +6,8 @@ import ca.corefacility.bioinformatics.irida.repositories.analysis.submission.Job
 import ca.corefacility.bioinformatics.irida.service.AnalysisExecutionScheduledTask;
 import ca.corefacility.bioinformatics.irida.service.CleanupAnalysisSubmissionCondition;
 import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisExecutionService;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisSubmissionQueue;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisWorkflowMonitor;
 import ca.corefacility.bioinformatics.irida.service.impl.AnalysisExecutionScheduledTaskImpl;
 import ca.corefacility.bioinformatics.irida.service.impl.analysis.submission.CleanupAnalysisSubmissionConditionAge;
 import org.slf4j.Logger;
@@ -17,7 +19,9 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Profile;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
@@ -42,17 +46,53 @@ public class AnalysisScheduledTaskConfig {
 	@Autowired
 	private JobErrorRepository jobErrorRepository;
 
+	@Autowired
+	private AnalysisSubmissionQueue analysisSubmissionQueue;
+
 	/**
 	 * Defines the time to clean up in number of days a submission must exist before it is cleaned up.
 	 */
 	@Value("${irida.analysis.cleanup.days}")
 	private Double daysToCleanup;
 
+	/**
+	 * The number of running workflows to check the status of at the same time.
+	 */
+	@Value("${irida.analysis.monitor.threads:4}")
+	private int monitorThreads;
+
+	/**
+	 * Time in milliseconds between checks of a workflow that is making
+	 * progress.
+	 */
+	@Value("${irida.analysis.monitor.interval.min:15000}")
+	private long monitorMinimumInterval;
+
+	/**
+	 * Longest time in milliseconds between checks of a workflow that isn't
+	 * making progress.
+	 */
+	@Value("${irida.analysis.monitor.interval.max:120000}")
+	private long monitorMaximumInterval;
+
 	/**
 	 * Rate in milliseconds of the analysis execution tasks.
 	 */
 	private static final long ANALYSIS_EXECUTION_TASK_RATE = 15000; // 15 seconds
 
+	/**
+	 * Rate in milliseconds of the monitoring task. Each running submission is
+	 * only checked when its own interval is up.
+	 */
+	private static final long ANALYSIS_MONITOR_TASK_RATE = 5000; // 5 seconds
+
+	/**
+	 * Rate in milliseconds of the execute, transfer and post-processing tasks.
+	 * Stages are started as soon as the previous stage finishes, so these tasks
+	 * only pick up submissions that were missed, for example after a restart.
+	 */
+	private static final long ANALYSIS_RECONCILE_TASK_RATE = 60000; // 1 minute
+
 	/**
 	 * Rate in milliseconds of the cleanup task.
 	 */
@@ -67,9 +107,10 @@ public class AnalysisScheduledTaskConfig {
 	}
 
 	/**
-	 * Cycle through any outstanding submissions and execute them.
+	 * Cycle through any outstanding submissions that weren't executed when they
+	 * were prepared and execute them.
 	 */
-	@Scheduled(initialDelay = 3000, fixedDelay = ANALYSIS_EXECUTION_TASK_RATE)
+	@Scheduled(initialDelay = 3000, fixedDelay = ANALYSIS_RECONCILE_TASK_RATE)
 	public void executeAnalyses() {
 		analysisExecutionScheduledTask().executeAnalyses();
 	}
@@ -77,23 +118,25 @@ public class AnalysisScheduledTaskConfig {
 	/**
 	 * Cycle through any submissions running in Galaxy and monitor the status.
 	 */
-	@Scheduled(initialDelay = 4000, fixedDelay = ANALYSIS_EXECUTION_TASK_RATE)
+	@Scheduled(initialDelay = 4000, fixedDelay = ANALYSIS_MONITOR_TASK_RATE)
 	public void monitorRunningAnalyses() {
 		analysisExecutionScheduledTask().monitorRunningAnalyses();
 	}
 
 	/**
-	 * Cycle through any completed submissions and transfer the results.
+	 * Cycle through any completed submissions whose results weren't transferred
+	 * when they finished running and transfer the results.
 	 */
-	@Scheduled(initialDelay = 5000, fixedDelay = ANALYSIS_EXECUTION_TASK_RATE)
+	@Scheduled(initialDelay = 5000, fixedDelay = ANALYSIS_RECONCILE_TASK_RATE)
 	public void transferAnalysesResults() {
 		analysisExecutionScheduledTask().transferAnalysesResults();
 	}
 
 	/**
-	 * Cycle through any transferred submissions and perform post-processing
+	 * Cycle through any transferred submissions that weren't post-processed
+	 * when they were transferred and perform post-processing
 	 */
-	@Scheduled(initialDelay = 6000, fixedDelay = ANALYSIS_EXECUTION_TASK_RATE)
+	@Scheduled(initialDelay = 6000, fixedDelay = ANALYSIS_RECONCILE_TASK_RATE)
 	public void postProcessResults() {
 		analysisExecutionScheduledTask().postProcessResults();
 	}
@@ -116,7 +159,32 @@ public class AnalysisScheduledTaskConfig {
 	@Bean
 	public AnalysisExecutionScheduledTask analysisExecutionScheduledTask() {
 		return new AnalysisExecutionScheduledTaskImpl(analysisSubmissionRepository, analysisExecutionService,
-				cleanupAnalysisSubmissionCondition(), galaxyJobErrorsService, jobErrorRepository);
+				cleanupAnalysisSubmissionCondition(), galaxyJobErrorsService, jobErrorRepository,
+				analysisWorkflowMonitor(), analysisSubmissionQueue, true);
+	}
+
+	/**
+	 * Builds the monitor that checks the status of running workflows.
+	 *
+	 * @return An {@link AnalysisWorkflowMonitor}.
+	 */
+	@Bean
+	public AnalysisWorkflowMonitor analysisWorkflowMonitor() {
+		return new AnalysisWorkflowMonitor(analysisExecutionService, analysisMonitorExecutor(),
+				monitorMinimumInterval, Math.max(monitorMinimumInterval, monitorMaximumInterval), Clock.systemUTC());
+	}
+
+	/**
+	 * @return An Executor for checking the status of running workflows. Its
+	 *         pool size is the number of workflows checked at the same time.
+	 */
+	@Bean(name = "analysisMonitorExecutor")
+	public ThreadPoolTaskExecutor analysisMonitorExecutor() {
+		ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		taskExecutor.setCorePoolSize(Math.max(monitorThreads, 1));
+		taskExecutor.setMaxPoolSize(Math.max(monitorThreads, 1));
+		taskExecutor.setThreadNamePrefix("analysis-monitor-");
+		return taskExecutor;
 	}
 
 	/**
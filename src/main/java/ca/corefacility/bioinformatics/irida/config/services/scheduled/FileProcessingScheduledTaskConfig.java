@@ -1,5 +1,7 @@
 package ca.corefacility.bioinformatics.irida.config.services.scheduled;
 
+import ca.corefacility.bioinformatics.irida.events.SequencingObjectCreatedEvent;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject;
 import ca.corefacility.bioinformatics.irida.service.SequencingObjectProcessingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,6 +10,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 /**
  * Scheduled task configuration for running file processors
@@ -24,9 +28,12 @@ public class FileProcessingScheduledTaskConfig {
 	private boolean processFiles;
 
 	/**
-	 * Check for newly uploaded files to process
+	 * Check for newly uploaded files to process. New uploads are normally
+	 * handed to the processor when they're created (see
+	 * {@link #handleSequencingObjectCreated(SequencingObjectCreatedEvent)}),
+	 * so this picks up files uploaded to other servers and any that were missed.
 	 */
-	@Scheduled(fixedDelay = 5000)
+	@Scheduled(fixedDelayString = "${file.processing.sweep.delay:5000}")
 	public void processFiles() {
 		if (processFiles) {
 			fileProcessingService.runProcessingJob();
@@ -34,4 +41,18 @@ public class FileProcessingScheduledTaskConfig {
 			logger.trace("Skipping file processing.  It is disabled on this server.");
 		}
 	}
+
+	/**
+	 * Hand a newly created {@link SequencingObject} to the file processor once
+	 * the transaction that created it has committed.
+	 * 
+	 * @param event
+	 *            the {@link SequencingObjectCreatedEvent} for the new object
+	 */
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+	public void handleSequencingObjectCreated(SequencingObjectCreatedEvent event) {
+		if (processFiles) {
+			fileProcessingService.processSequencingObject(event.getSequencingObjectId());
+		}
+	}
 }
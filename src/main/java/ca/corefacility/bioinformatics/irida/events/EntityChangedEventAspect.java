@@ -0,0 +1,124 @@
+package ca.corefacility.bioinformatics.irida.events;
+
+import java.util.function.Function;
+
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+
+import ca.corefacility.bioinformatics.irida.model.joins.impl.ProjectSampleJoin;
+import ca.corefacility.bioinformatics.irida.model.project.Project;
+import ca.corefacility.bioinformatics.irida.model.sample.Sample;
+import ca.corefacility.bioinformatics.irida.repositories.ProjectRepository;
+import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectSampleJoinRepository;
+import ca.corefacility.bioinformatics.irida.repositories.sample.SampleRepository;
+
+/**
+ * Aspect publishing a {@link SampleChangedEvent} or {@link ProjectChangedEvent}
+ * whenever a {@link Sample}, {@link Project} or {@link ProjectSampleJoin} is
+ * saved or deleted through its repository, so that everything changing them
+ * (services, {@link ProjectEventHandler}, project synchronization) is seen by
+ * listeners.
+ */
+@Aspect
+public class EntityChangedEventAspect {
+	private static final Logger logger = LoggerFactory.getLogger(EntityChangedEventAspect.class);
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	public EntityChangedEventAspect(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	/**
+	 * Publish a {@link SampleChangedEvent} for saved {@link Sample}s.
+	 *
+	 * @param saved
+	 *            the saved {@link Sample} or {@link Sample}s
+	 */
+	@AfterReturning(value = "execution(* save(..)) && target(ca.corefacility.bioinformatics.irida.repositories.sample.SampleRepository)", returning = "saved")
+	public void sampleSaved(Object saved) {
+		publish(saved, Sample.class, s -> new SampleChangedEvent(s.getId()));
+	}
+
+	/**
+	 * Publish a {@link SampleChangedEvent} for deleted {@link Sample}s.
+	 *
+	 * @param deleted
+	 *            the id of the deleted {@link Sample}, or the deleted
+	 *            {@link Sample} or {@link Sample}s
+	 */
+	@AfterReturning("execution(* delete(..)) && target(ca.corefacility.bioinformatics.irida.repositories.sample.SampleRepository) && args(deleted)")
+	public void sampleDeleted(Object deleted) {
+		if (deleted instanceof Long) {
+			eventPublisher.publishEvent(new SampleChangedEvent((Long) deleted));
+		} else {
+			publish(deleted, Sample.class, s -> new SampleChangedEvent(s.getId()));
+		}
+	}
+
+	/**
+	 * Publish a {@link ProjectChangedEvent} for saved {@link Project}s.
+	 *
+	 * @param saved
+	 *            the saved {@link Project} or {@link Project}s
+	 */
+	@AfterReturning(value = "execution(* save(..)) && target(ca.corefacility.bioinformatics.irida.repositories.ProjectRepository)", returning = "saved")
+	public void projectSaved(Object saved) {
+		publish(saved, Project.class, p -> new ProjectChangedEvent(p.getId()));
+	}
+
+	/**
+	 * Publish a {@link ProjectChangedEvent} for deleted {@link Project}s.
+	 *
+	 * @param deleted
+	 *            the id of the deleted {@link Project}, or the deleted
+	 *            {@link Project} or {@link Project}s
+	 */
+	@AfterReturning("execution(* delete(..)) && target(ca.corefacility.bioinformatics.irida.repositories.ProjectRepository) && args(deleted)")
+	public void projectDeleted(Object deleted) {
+		if (deleted instanceof Long) {
+			eventPublisher.publishEvent(new ProjectChangedEvent((Long) deleted));
+		} else {
+			publish(deleted, Project.class, p -> new ProjectChangedEvent(p.getId()));
+		}
+	}
+
+	/**
+	 * Publish a {@link SampleChangedEvent} for the {@link Sample}s added to or
+	 * removed from projects. Joins deleted by id can't be traced back to their
+	 * {@link Sample}.
+	 *
+	 * @param changed
+	 *            the saved or deleted {@link ProjectSampleJoin} or
+	 *            {@link ProjectSampleJoin}s
+	 */
+	@AfterReturning(value = "(execution(* save(..)) || execution(* delete(..))) && target(ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectSampleJoinRepository) && args(changed)")
+	public void projectSampleJoinChanged(Object changed) {
+		publish(changed, ProjectSampleJoin.class, j -> new SampleChangedEvent(j.getObject().getId()));
+	}
+
+	/**
+	 * Publish an event for an entity or every entity in an {@link Iterable}.
+	 *
+	 * @param changed
+	 *            the changed entity or entities
+	 * @param type
+	 *            the type of entity to publish events for
+	 * @param event
+	 *            builds the event for an entity
+	 */
+	private <T> void publish(Object changed, Class<T> type, Function<T, Object> event) {
+		if (changed instanceof Iterable) {
+			for (Object o : (Iterable<?>) changed) {
+				publish(o, type, event);
+			}
+		} else if (type.isInstance(changed)) {
+			eventPublisher.publishEvent(event.apply(type.cast(changed)));
+		} else {
+			logger.trace("Not publishing a change event for [" + changed + "]");
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package ca.corefacility.bioinformatics.irida.events;
+
+import ca.corefacility.bioinformatics.irida.model.project.Project;
+
+/**
+ * Application event published when a {@link Project} has been saved or
+ * deleted. Listeners should use the after-commit transaction phase so the
+ * change is visible to them when handled.
+ */
+public class ProjectChangedEvent {
+	private final Long projectId;
+
+	public ProjectChangedEvent(Long projectId) {
+		this.projectId = projectId;
+	}
+
+	/**
+	 * Get the id of the {@link Project} that was changed
+	 * 
+	 * @return the id of the changed {@link Project}
+	 */
+	public Long getProjectId() {
+		return projectId;
+	}
+}
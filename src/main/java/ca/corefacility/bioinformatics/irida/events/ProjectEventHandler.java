@@ -32,6 +32,7 @@ import ca.corefacility.bioinformatics.irida.repositories.ProjectEventRepository;
 import ca.corefacility.bioinformatics.irida.repositories.ProjectRepository;
 import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectSampleJoinRepository;
 import ca.corefacility.bioinformatics.irida.repositories.sample.SampleRepository;
+import ca.corefacility.bioinformatics.irida.security.permissions.project.ProjectRoleCache;
 
 /**
  * Handles the creation of {@link ProjectEvent}s from methods annotated with
@@ -48,14 +49,16 @@ public class ProjectEventHandler {
 	private final ProjectSampleJoinRepository psjRepository;
 	private final ProjectRepository projectRepository;
 	private final SampleRepository sampleRepository;
+	private final ProjectRoleCache projectRoleCache;
 
 	public ProjectEventHandler(final ProjectEventRepository eventRepository,
 			final ProjectSampleJoinRepository psjRepository, final ProjectRepository projectRepository,
-			final SampleRepository sampleRepository) {
+			final SampleRepository sampleRepository, final ProjectRoleCache projectRoleCache) {
 		this.eventRepository = eventRepository;
 		this.psjRepository = psjRepository;
 		this.projectRepository = projectRepository;
 		this.sampleRepository = sampleRepository;
+		this.projectRoleCache = projectRoleCache;
 	}
 
 	/**
@@ -105,8 +108,26 @@ public class ProjectEventHandler {
 			Project project = e.getProject();
 			project.setModifiedDate(eventDate);
 			projectRepository.save(project);
+
+			// users' roles on the project have changed, so cached permission
+			// decisions for the project can't be used anymore
+			if (isMembershipEvent(e)) {
+				projectRoleCache.invalidateProject(project);
+			}
 		}
 	}
+
+	/**
+	 * Check if an event changes which users are on a project or their roles.
+	 * 
+	 * @param event
+	 *            the {@link ProjectEvent} to check
+	 * @return true if the event changes the membership of the project
+	 */
+	private boolean isMembershipEvent(ProjectEvent event) {
+		return event instanceof UserRoleSetProjectEvent || event instanceof UserRemovedProjectEvent
+				|| event instanceof UserGroupRoleSetProjectEvent || event instanceof UserGroupRemovedProjectEvent;
+	}
 	
 	/**
 	 * Create one or more {@link SampleAddedProjectEvent}. Can be run on methods
@@ -0,0 +1,25 @@
+package ca.corefacility.bioinformatics.irida.events;
+
+import ca.corefacility.bioinformatics.irida.model.sample.Sample;
+
+/**
+ * Application event published when a {@link Sample}, or the projects it is in,
+ * has been saved or deleted. Listeners should use the after-commit transaction
+ * phase so the change is visible to them when handled.
+ */
+public class SampleChangedEvent {
+	private final Long sampleId;
+
+	public SampleChangedEvent(Long sampleId) {
+		this.sampleId = sampleId;
+	}
+
+	/**
+	 * Get the id of the {@link Sample} that was changed
+	 * 
+	 * @return the id of the changed {@link Sample}
+	 */
+	public Long getSampleId() {
+		return sampleId;
+	}
+}
@@ -0,0 +1,25 @@
+package ca.corefacility.bioinformatics.irida.events;
+
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject;
+
+/**
+ * Application event published when a new {@link SequencingObject} has been
+ * created. Listeners should use the after-commit transaction phase so the
+ * object and its files are visible to other threads when handled.
+ */
+public class SequencingObjectCreatedEvent {
+	private final Long sequencingObjectId;
+
+	public SequencingObjectCreatedEvent(Long sequencingObjectId) {
+		this.sequencingObjectId = sequencingObjectId;
+	}
+
+	/**
+	 * Get the id of the {@link SequencingObject} that was created
+	 * 
+	 * @return the id of the created {@link SequencingObject}
+	 */
+	public Long getSequencingObjectId() {
+		return sequencingObjectId;
+	}
+}
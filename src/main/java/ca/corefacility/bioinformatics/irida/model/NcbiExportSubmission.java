@@ -1,10 +1,14 @@
 package ca.corefacility.bioinformatics.irida.model;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.CascadeType;
+import javax.persistence.CollectionTable;
 import javax.persistence.Column;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
 import javax.persistence.EntityListeners;
 import javax.persistence.EnumType;
@@ -16,6 +20,7 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToOne;
+import javax.persistence.MapKeyColumn;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
@@ -23,6 +28,7 @@ import javax.persistence.TemporalType;
 import javax.validation.constraints.Size;
 
 import org.hibernate.envers.Audited;
+import org.hibernate.envers.NotAudited;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
@@ -91,9 +97,39 @@ public class NcbiExportSubmission implements MutableIridaThing {
 	@Column(name = "directory_path")
 	private String directoryPath;
 
+	/**
+	 * The size in bytes of each file in the submission directory that has
+	 * finished uploading, by file name.
+	 */
+	@NotAudited
+	@ElementCollection(fetch = FetchType.EAGER)
+	@MapKeyColumn(name = "file_name")
+	@Column(name = "bytes_uploaded", nullable = false)
+	@CollectionTable(name = "ncbi_export_submission_uploaded_file", joinColumns = @JoinColumn(name = "ncbi_export_submission_id"))
+	private Map<String, Long> uploadedFiles;
+
+	/**
+	 * The number of times uploading the submission has failed.
+	 */
+	@NotAudited
+	@Column(name = "upload_failures", nullable = false)
+	private int uploadFailures;
+
+	/**
+	 * The last time the server uploading the submission checked in. The
+	 * server holds the upload as long as it keeps checking in. Only set by
+	 * the claim and heartbeat updates in the repository, so saving a
+	 * submission mid-upload doesn't overwrite it.
+	 */
+	@NotAudited
+	@Column(name = "upload_heartbeat", insertable = false, updatable = false)
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date uploadHeartbeat;
+
 	public NcbiExportSubmission() {
 		uploadState = ExportUploadState.NEW;
 		createdDate = new Date();
+		uploadedFiles = new HashMap<>();
 	}
 
 	public NcbiExportSubmission(Project project, User submitter, String bioProjectId, String organization,
@@ -198,4 +234,27 @@ public class NcbiExportSubmission implements MutableIridaThing {
 	public void setDirectoryPath(String directoryPath) {
 		this.directoryPath = directoryPath;
 	}
+
+	@JsonIgnore
+	public Map<String, Long> getUploadedFiles() {
+		return uploadedFiles;
+	}
+
+	public void setUploadedFiles(Map<String, Long> uploadedFiles) {
+		this.uploadedFiles = uploadedFiles;
+	}
+
+	@JsonIgnore
+	public int getUploadFailures() {
+		return uploadFailures;
+	}
+
+	public void setUploadFailures(int uploadFailures) {
+		this.uploadFailures = uploadFailures;
+	}
+
+	@JsonIgnore
+	public Date getUploadHeartbeat() {
+		return uploadHeartbeat;
+	}
 }
@@ -64,6 +64,13 @@ public class RemoteStatus {
 	@Temporal(TemporalType.TIMESTAMP)
 	private Date lastUpdate;
 
+	/**
+	 * Token from the remote api to ask for the changes since this object was
+	 * last synchronized
+	 */
+	@Column(name = "change_token")
+	private String changeToken;
+
 	@SuppressWarnings("unused")
 	private RemoteStatus() {
 	}
@@ -127,6 +134,14 @@ public class RemoteStatus {
 		this.lastUpdate = lastUpdate;
 	}
 
+	public String getChangeToken() {
+		return changeToken;
+	}
+
+	public void setChangeToken(String changeToken) {
+		this.changeToken = changeToken;
+	}
+
 	/**
 	 * The status of the synchronized object
 	 */
@@ -14,6 +14,8 @@ public class ResourceList<Type extends IridaResourceSupport> extends IridaResour
 
 	private List<Type> resources;
 	private Long totalResources;
+	private String changeToken;
+	private List<String> removed;
 
 	public ResourceList() {
 	}
@@ -50,4 +52,37 @@ public class ResourceList<Type extends IridaResourceSupport> extends IridaResour
 		this.totalResources = totalResources;
 	}
 
+	/**
+	 * Get the token to ask for the changes after this list. This is only set
+	 * when the list was requested as changes since an earlier token.
+	 * @return the change token, or null if the api doesn't support changes
+	 */
+	public String getChangeToken() {
+		return changeToken;
+	}
+
+	/**
+	 * Set the token to ask for the changes after this list
+	 * @param changeToken the change token
+	 */
+	public void setChangeToken(String changeToken) {
+		this.changeToken = changeToken;
+	}
+
+	/**
+	 * Get the self links of resources removed since the earlier change token
+	 * @return the self links of removed resources
+	 */
+	public List<String> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * Set the self links of resources removed since the earlier change token
+	 * @param removed the self links of removed resources
+	 */
+	public void setRemoved(List<String> removed) {
+		this.removed = removed;
+	}
+
 }
@@ -0,0 +1,71 @@
+package ca.corefacility.bioinformatics.irida.model.sequenceFile;
+
+import java.util.Date;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.validation.constraints.NotNull;
+
+/**
+ * The last time a file processor checked in. A file processor holds a lease on
+ * the {@link SequencingObject}s it has marked as long as it keeps checking in.
+ * If it stops (ie. the server dies mid-processing) the objects it marked can be
+ * handed to another file processor.
+ */
+@Entity
+@Table(name = "file_processor_heartbeat")
+public class FileProcessorHeartbeat {
+
+	@Id
+	@NotNull
+	@Column(name = "file_processor")
+	private String fileProcessor;
+
+	@NotNull
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "last_heartbeat")
+	private Date lastHeartbeat;
+
+	protected FileProcessorHeartbeat() {
+	}
+
+	/**
+	 * Create a heartbeat for the given file processor at the current time
+	 *
+	 * @param fileProcessor
+	 *            the file processor id string
+	 */
+	public FileProcessorHeartbeat(String fileProcessor) {
+		this.fileProcessor = fileProcessor;
+		this.lastHeartbeat = new Date();
+	}
+
+	public String getFileProcessor() {
+		return fileProcessor;
+	}
+
+	public Date getLastHeartbeat() {
+		return lastHeartbeat;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(fileProcessor, lastHeartbeat);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof FileProcessorHeartbeat) {
+			FileProcessorHeartbeat other = (FileProcessorHeartbeat) obj;
+			return Objects.equals(fileProcessor, other.fileProcessor)
+					&& Objects.equals(lastHeartbeat, other.lastHeartbeat);
+		}
+
+		return false;
+	}
+}
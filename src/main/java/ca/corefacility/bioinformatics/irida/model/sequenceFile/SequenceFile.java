@@ -1,6 +1,10 @@
 package ca.corefacility.bioinformatics.irida.model.sequenceFile;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
@@ -8,6 +12,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.zip.GZIPInputStream;
 
 import javax.persistence.CascadeType;
 import javax.persistence.CollectionTable;
@@ -64,6 +69,14 @@ public class SequenceFile extends IridaResourceSupport implements MutableIridaTh
 
 	private static final Logger logger = LoggerFactory.getLogger(SequenceFile.class);
 
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Optional property set when the file was decompressed after it was
+	 * uploaded, so the upload checksum is of the compressed file.
+	 */
+	public static final String DECOMPRESSED_AFTER_UPLOAD = "decompressedAfterUpload";
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.AUTO)
 	private Long id;
@@ -257,6 +270,95 @@ public class SequenceFile extends IridaResourceSupport implements MutableIridaTh
 		return getFile().getFileName().toString();
 	}
 
+	/**
+	 * Check whether the stored file is gzip compressed. Compressed files are
+	 * kept as uploaded when file decompression is disabled.
+	 * 
+	 * @return true if the file starts with the gzip magic number
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	@JsonIgnore
+	public boolean isGzipped() throws IOException {
+		return isGzipped(file);
+	}
+
+	/**
+	 * Check whether a file is gzip compressed.
+	 * 
+	 * @param path
+	 *            the file to check
+	 * @return true if the file starts with the gzip magic number
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public static boolean isGzipped(Path path) throws IOException {
+		try (InputStream is = Files.newInputStream(path)) {
+			return isGzipped(is);
+		}
+	}
+
+	/**
+	 * Open the uncompressed contents of the file for reading. If the stored
+	 * file is gzip compressed it is decompressed as it's read, so readers
+	 * don't need an uncompressed copy of the file on disk. The caller must
+	 * close the stream.
+	 * 
+	 * @return an {@link InputStream} of the uncompressed file contents
+	 * @throws IOException
+	 *             if the file can't be opened
+	 */
+	@JsonIgnore
+	public InputStream getFileInputStream() throws IOException {
+		InputStream is = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+		try {
+			if (isGzipped(is)) {
+				return new GZIPInputStream(is, BUFFER_SIZE);
+			}
+			return is;
+		} catch (IOException | RuntimeException e) {
+			// don't leak the file handle if the header can't be read
+			is.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Open the uncompressed contents of the file as a channel. See
+	 * {@link #getFileInputStream()}.
+	 * 
+	 * @return a {@link ReadableByteChannel} of the uncompressed file contents
+	 * @throws IOException
+	 *             if the file can't be opened
+	 */
+	@JsonIgnore
+	public ReadableByteChannel getFileChannel() throws IOException {
+		return Channels.newChannel(getFileInputStream());
+	}
+
+	/**
+	 * Check for the gzip magic number at the head of a stream. If the stream
+	 * supports mark and reset no bytes are consumed.
+	 * 
+	 * @param is
+	 *            the stream to check
+	 * @return true if the stream is gzip compressed
+	 * @throws IOException
+	 *             if the stream can't be read
+	 */
+	public static boolean isGzipped(InputStream is) throws IOException {
+		if (is.markSupported()) {
+			is.mark(2);
+		}
+		int first = is.read();
+		int second = is.read();
+		if (is.markSupported()) {
+			is.reset();
+		}
+
+		return first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == ((GZIPInputStream.GZIP_MAGIC >> 8) & 0xff);
+	}
+
 	@JsonIgnore
 	public AnalysisFastQC getFastQCAnalysis() {
 		return this.fastqcAnalysis;
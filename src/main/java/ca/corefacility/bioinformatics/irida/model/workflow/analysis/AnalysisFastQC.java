@@ -1,6 +1,8 @@
 package ca.corefacility.bioinformatics.irida.model.workflow.analysis;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -19,6 +21,7 @@ import ca.corefacility.bioinformatics.irida.model.sequenceFile.OverrepresentedSe
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.type.BuiltInAnalysisTypes;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 /**
@@ -31,6 +34,17 @@ import com.google.common.collect.ImmutableSet;
 @Table(name = "analysis_fastqc")
 public class AnalysisFastQC extends Analysis {
 
+	/**
+	 * Labels for the duplication level buckets in
+	 * {@link #getDuplicationLevels()}. Counts from 1 to 9 have their own
+	 * bucket.
+	 */
+	public static final List<String> DUPLICATION_LEVEL_LABELS = ImmutableList.of("1", "2", "3", "4", "5", "6", "7",
+			"8", "9", ">10", ">50", ">100", ">500", ">1k", ">5k", ">10k");
+
+	private static final String SERIES_ROW_SEPARATOR = ";";
+	private static final String SERIES_VALUE_SEPARATOR = ",";
+
 	@NotNull
 	private final String fastqcVersion;
 	@NotNull
@@ -49,16 +63,32 @@ public class AnalysisFastQC extends Analysis {
 	private final Integer maxLength;
 	@NotNull
 	private final Short gcContent;
-	@NotNull
+	/*
+	 * Rendered charts are only stored for analyses created before the
+	 * statistics were stored as numeric series.
+	 */
 	@Lob
 	private final byte[] perBaseQualityScoreChart;
-	@NotNull
 	@Lob
 	private final byte[] perSequenceQualityScoreChart;
-	@NotNull
 	@Lob
 	private final byte[] duplicationLevelChart;
 
+	/*
+	 * Numeric series for the charts, stored as rows of comma separated values
+	 * separated by semicolons.
+	 */
+	@Lob
+	private final String perBaseQualityScores;
+	@Lob
+	private final String perSequenceQualityScores;
+	@Lob
+	private final String gcContentDistribution;
+	@Lob
+	private final String sequenceLengthDistribution;
+	@Lob
+	private final String duplicationLevels;
+
 	@OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.ALL, orphanRemoval = true)
 	private final Set<OverrepresentedSequence> overrepresentedSequences;
 
@@ -81,6 +111,11 @@ public class AnalysisFastQC extends Analysis {
 		this.perBaseQualityScoreChart = null;
 		this.perSequenceQualityScoreChart = null;
 		this.duplicationLevelChart = null;
+		this.perBaseQualityScores = null;
+		this.perSequenceQualityScores = null;
+		this.gcContentDistribution = null;
+		this.sequenceLengthDistribution = null;
+		this.duplicationLevels = null;
 		this.overrepresentedSequences = null;
 		this.fastQCReport = null;
 		this.fastqcVersion = null;
@@ -102,6 +137,11 @@ public class AnalysisFastQC extends Analysis {
 		this.perBaseQualityScoreChart = builder.perBaseQualityScoreChart;
 		this.perSequenceQualityScoreChart = builder.perSequenceQualityScoreChart;
 		this.duplicationLevelChart = builder.duplicationLevelChart;
+		this.perBaseQualityScores = builder.perBaseQualityScores;
+		this.perSequenceQualityScores = builder.perSequenceQualityScores;
+		this.gcContentDistribution = builder.gcContentDistribution;
+		this.sequenceLengthDistribution = builder.sequenceLengthDistribution;
+		this.duplicationLevels = builder.duplicationLevels;
 		this.overrepresentedSequences = builder.overrepresentedSequences;
 		this.fastQCReport = builder.fastQCReport;
 		this.fastqcVersion = builder.fastqcVersion;
@@ -142,6 +182,11 @@ public class AnalysisFastQC extends Analysis {
 		private byte[] perBaseQualityScoreChart;
 		private byte[] perSequenceQualityScoreChart;
 		private byte[] duplicationLevelChart;
+		private String perBaseQualityScores;
+		private String perSequenceQualityScores;
+		private String gcContentDistribution;
+		private String sequenceLengthDistribution;
+		private String duplicationLevels;
 		private Set<OverrepresentedSequence> overrepresentedSequences;
 		private AnalysisOutputFile fastQCReport;
 		private String description;
@@ -274,6 +319,56 @@ public class AnalysisFastQC extends Analysis {
 			return this;
 		}
 
+		/**
+		 * Set the per-base quality scores
+		 * @param perBaseQualityScores rows of position, mean, median, lower quartile, upper quartile, 10th and 90th percentile quality
+		 * @return the builder
+		 */
+		public AnalysisFastQCBuilder perBaseQualityScores(final List<double[]> perBaseQualityScores) {
+			this.perBaseQualityScores = encodeSeries(perBaseQualityScores);
+			return this;
+		}
+
+		/**
+		 * Set the per-sequence quality scores
+		 * @param perSequenceQualityScores rows of mean quality and number of sequences
+		 * @return the builder
+		 */
+		public AnalysisFastQCBuilder perSequenceQualityScores(final List<double[]> perSequenceQualityScores) {
+			this.perSequenceQualityScores = encodeSeries(perSequenceQualityScores);
+			return this;
+		}
+
+		/**
+		 * Set the GC content distribution
+		 * @param gcContentDistribution rows of GC percentage and number of sequences
+		 * @return the builder
+		 */
+		public AnalysisFastQCBuilder gcContentDistribution(final List<double[]> gcContentDistribution) {
+			this.gcContentDistribution = encodeSeries(gcContentDistribution);
+			return this;
+		}
+
+		/**
+		 * Set the sequence length distribution
+		 * @param sequenceLengthDistribution rows of sequence length and number of sequences
+		 * @return the builder
+		 */
+		public AnalysisFastQCBuilder sequenceLengthDistribution(final List<double[]> sequenceLengthDistribution) {
+			this.sequenceLengthDistribution = encodeSeries(sequenceLengthDistribution);
+			return this;
+		}
+
+		/**
+		 * Set the duplication levels
+		 * @param duplicationLevels rows of duplication level bucket and percentage of sequences
+		 * @return the builder
+		 */
+		public AnalysisFastQCBuilder duplicationLevels(final List<double[]> duplicationLevels) {
+			this.duplicationLevels = encodeSeries(duplicationLevels);
+			return this;
+		}
+
 		/**
 		 * Set the gcContent
 		 * @param gcContent the gcContent
@@ -395,7 +490,8 @@ public class AnalysisFastQC extends Analysis {
 	 * Box and whisker plot showing per-base quality scores as a PNG-formatted
 	 * image in a byte array.
 	 * 
-	 * @return a PNG-formatted byte array for per-base quality score.
+	 * @return a PNG-formatted byte array for per-base quality score, or null
+	 *         if the analysis has numeric series instead.
 	 */
 	@JsonIgnore
 	public byte[] getPerBaseQualityScoreChart() {
@@ -406,7 +502,8 @@ public class AnalysisFastQC extends Analysis {
 	 * Line chartshowing per-sequence quality scores as a PNG-formatted image in
 	 * a byte array.
 	 * 
-	 * @return a PNG-formatted byte array for per-sequence quality score.
+	 * @return a PNG-formatted byte array for per-sequence quality score, or
+	 *         null if the analysis has numeric series instead.
 	 */
 	@JsonIgnore
 	public byte[] getPerSequenceQualityScoreChart() {
@@ -417,13 +514,122 @@ public class AnalysisFastQC extends Analysis {
 	 * Line chartshowing duplication-level as a PNG-formatted image in a byte
 	 * array.
 	 * 
-	 * @return a PNG-formatted byte array for duplication levels.
+	 * @return a PNG-formatted byte array for duplication levels, or null if
+	 *         the analysis has numeric series instead.
 	 */
 	@JsonIgnore
 	public byte[] getDuplicationLevelChart() {
 		return duplicationLevelChart;
 	}
 
+	/**
+	 * Quality distribution at each position in the sequences.
+	 * 
+	 * @return rows of position (1 based), mean, median, lower quartile, upper
+	 *         quartile, 10th and 90th percentile quality. Empty if the analysis
+	 *         only has rendered charts.
+	 */
+	public List<double[]> getPerBaseQualityScores() {
+		return decodeSeries(perBaseQualityScores);
+	}
+
+	/**
+	 * Number of sequences with each mean quality.
+	 * 
+	 * @return rows of mean quality and number of sequences. Empty if the
+	 *         analysis only has rendered charts.
+	 */
+	public List<double[]> getPerSequenceQualityScores() {
+		return decodeSeries(perSequenceQualityScores);
+	}
+
+	/**
+	 * Number of sequences at each GC percentage.
+	 * 
+	 * @return rows of GC percentage and number of sequences. Empty if the
+	 *         analysis only has rendered charts.
+	 */
+	public List<double[]> getGcContentDistribution() {
+		return decodeSeries(gcContentDistribution);
+	}
+
+	/**
+	 * Number of sequences of each length.
+	 * 
+	 * @return rows of sequence length and number of sequences. Empty if the
+	 *         analysis only has rendered charts.
+	 */
+	public List<double[]> getSequenceLengthDistribution() {
+		return decodeSeries(sequenceLengthDistribution);
+	}
+
+	/**
+	 * Percentage of all sequences at each duplication level.
+	 * 
+	 * @return rows of duplication level bucket (an index into
+	 *         {@link #DUPLICATION_LEVEL_LABELS}) and percentage of sequences.
+	 *         Empty if the analysis only has rendered charts.
+	 */
+	public List<double[]> getDuplicationLevels() {
+		return decodeSeries(duplicationLevels);
+	}
+
+	/**
+	 * Encode rows of numbers as text for storage
+	 * 
+	 * @param rows
+	 *            the rows to encode
+	 * @return the rows as comma separated values separated by semicolons
+	 */
+	private static String encodeSeries(List<double[]> rows) {
+		if (rows == null) {
+			return null;
+		}
+
+		StringBuilder builder = new StringBuilder();
+		for (double[] row : rows) {
+			if (builder.length() > 0) {
+				builder.append(SERIES_ROW_SEPARATOR);
+			}
+			for (int i = 0; i < row.length; i++) {
+				if (i > 0) {
+					builder.append(SERIES_VALUE_SEPARATOR);
+				}
+				double value = row[i];
+				if (value == Math.rint(value) && Math.abs(value) < Long.MAX_VALUE) {
+					builder.append((long) value);
+				} else {
+					builder.append(value);
+				}
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Decode rows of numbers stored by {@link #encodeSeries(List)}
+	 * 
+	 * @param series
+	 *            the stored series
+	 * @return the rows of numbers
+	 */
+	private static List<double[]> decodeSeries(String series) {
+		List<double[]> rows = new ArrayList<>();
+		if (series == null || series.isEmpty()) {
+			return rows;
+		}
+
+		for (String row : series.split(SERIES_ROW_SEPARATOR)) {
+			String[] values = row.split(SERIES_VALUE_SEPARATOR);
+			double[] decoded = new double[values.length];
+			for (int i = 0; i < values.length; i++) {
+				decoded[i] = Double.parseDouble(values[i]);
+			}
+			rows.add(decoded);
+		}
+		return rows;
+	}
+
 	public String getFastqcVersion() {
 		return fastqcVersion;
 	}
@@ -10,6 +10,11 @@ public enum InputFileType {
 	 * The fastqsanger file type (quality scores are Phred+33).
 	 */
 	FASTQ_SANGER("fastqsanger"),
+
+	/**
+	 * A gzip compressed fastqsanger file.
+	 */
+	FASTQ_SANGER_GZ("fastqsanger.gz"),
 	
 	/**
 	 * A FASTA formatted file.
@@ -0,0 +1,106 @@
+package ca.corefacility.bioinformatics.irida.model.workflow.submission;
+
+import java.util.Date;
+import java.util.UUID;
+
+import ca.corefacility.bioinformatics.irida.model.enums.AnalysisState;
+import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission.Priority;
+
+/**
+ * Class to store the {@link AnalysisSubmission} information needed to decide
+ * which submission to run next from a native SQL query, without loading the
+ * whole submission.
+ */
+public class AnalysisSubmissionQueueEntry {
+	private Long submissionId;
+	private Long submitterId;
+	private Long projectId;
+	private UUID workflowId;
+	private Priority priority;
+	private AnalysisState analysisState;
+	private Date createdDate;
+
+	public AnalysisSubmissionQueueEntry() {
+	}
+
+	public AnalysisSubmissionQueueEntry(Long submissionId, Long submitterId, Long projectId, UUID workflowId,
+			Priority priority, AnalysisState analysisState, Date createdDate) {
+		this.submissionId = submissionId;
+		this.submitterId = submitterId;
+		this.projectId = projectId;
+		this.workflowId = workflowId;
+		this.priority = priority;
+		this.analysisState = analysisState;
+		this.createdDate = createdDate;
+	}
+
+	@Override
+	public String toString() {
+		return "AnalysisSubmissionQueueEntry{" + "submissionId=" + submissionId + ", submitterId=" + submitterId
+				+ ", projectId=" + projectId + ", workflowId=" + workflowId + ", priority=" + priority
+				+ ", analysisState=" + analysisState + ", createdDate=" + createdDate + '}';
+	}
+
+	public Long getSubmissionId() {
+		return submissionId;
+	}
+
+	public void setSubmissionId(Long submissionId) {
+		this.submissionId = submissionId;
+	}
+
+	public Long getSubmitterId() {
+		return submitterId;
+	}
+
+	public void setSubmitterId(Long submitterId) {
+		this.submitterId = submitterId;
+	}
+
+	/**
+	 * Get the id of the project the submission is counted against. This is
+	 * the project the submission is shared with, or else the project of its
+	 * input samples.
+	 *
+	 * @return the project id, or null if the submission isn't in any project
+	 */
+	public Long getProjectId() {
+		return projectId;
+	}
+
+	public void setProjectId(Long projectId) {
+		this.projectId = projectId;
+	}
+
+	public UUID getWorkflowId() {
+		return workflowId;
+	}
+
+	public void setWorkflowId(UUID workflowId) {
+		this.workflowId = workflowId;
+	}
+
+	public Priority getPriority() {
+		return priority;
+	}
+
+	public void setPriority(Priority priority) {
+		this.priority = priority;
+	}
+
+	public AnalysisState getAnalysisState() {
+		return analysisState;
+	}
+
+	public void setAnalysisState(AnalysisState analysisState) {
+		this.analysisState = analysisState;
+	}
+
+	public Date getCreatedDate() {
+		return createdDate;
+	}
+
+	public void setCreatedDate(Date createdDate) {
+		this.createdDate = createdDate;
+	}
+}
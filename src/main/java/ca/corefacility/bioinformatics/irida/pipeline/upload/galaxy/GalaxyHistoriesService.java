@@ -9,7 +9,6 @@ import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -262,6 +261,52 @@ public class GalaxyHistoriesService {
 		List<HistoryContents> historyContentsList =
 				historiesClient.showHistoryContents(historyId);
 		
+		return getDatasetForFileInHistoryContents(filename, historyId, historyContentsList);
+	}
+
+	/**
+	 * Gets Dataset objects for the files with the given names in the given
+	 * history. The contents of the history are only listed once.
+	 * 
+	 * @param filenames
+	 *            The names of the files to get Dataset objects for.
+	 * @param historyId
+	 *            The history id to look for the datasets.
+	 * @return A {@link Map} of file name to the corresponding dataset.
+	 * @throws GalaxyDatasetException
+	 *             If there was an issue when searching for a dataset.
+	 */
+	public Map<String, Dataset> getDatasetsForFilesInHistory(Set<String> filenames, String historyId)
+			throws GalaxyDatasetException {
+		checkNotNull(filenames, "filenames is null");
+		checkNotNull(historyId, "historyId is null");
+
+		List<HistoryContents> historyContentsList = historiesClient.showHistoryContents(historyId);
+
+		Map<String, Dataset> datasets = new HashMap<>();
+		for (String filename : filenames) {
+			datasets.put(filename, getDatasetForFileInHistoryContents(filename, historyId, historyContentsList));
+		}
+
+		return datasets;
+	}
+
+	/**
+	 * Gets a Dataset object for a file with the given name from the listed
+	 * contents of a history.
+	 * 
+	 * @param filename
+	 *            The name of the file to get a Dataset object for.
+	 * @param historyId
+	 *            The history id the contents were listed from.
+	 * @param historyContentsList
+	 *            The contents of the history.
+	 * @return The corresponding dataset for the given file name.
+	 * @throws GalaxyDatasetException
+	 *             If there was an issue when searching for a dataset.
+	 */
+	private Dataset getDatasetForFileInHistoryContents(String filename, String historyId,
+			List<HistoryContents> historyContentsList) throws GalaxyDatasetException {
 		List<HistoryContents> matchingHistoryContents = historyContentsList.stream()
 				.filter((historyContents) -> filename.equals(historyContents.getName())
 						&& !COLLECTION.equals(historyContents.getHistoryContentType()))
@@ -300,14 +345,13 @@ public class GalaxyHistoriesService {
 			throws ExecutionManagerObjectNotFoundException {
 		checkNotNull(id, "id is null");
 		
-		List<History> galaxyHistories = historiesClient.getHistories();
-		
-		if (galaxyHistories != null) {
-			Optional<History> h = galaxyHistories.stream().
-					filter((history) -> id.equals(history.getId())).findFirst();
-			if (h.isPresent()) {
-				return h.get();
+		try {
+			History history = historiesClient.showHistory(id);
+			if (history != null && id.equals(history.getId())) {
+				return history;
 			}
+		} catch (RuntimeException e) {
+			throw new NoGalaxyHistoryException("No history for id " + id, e);
 		}
 		
 		throw new NoGalaxyHistoryException("No history for id " + id);
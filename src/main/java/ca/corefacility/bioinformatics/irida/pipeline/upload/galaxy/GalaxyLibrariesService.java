@@ -4,19 +4,24 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
-import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,12 +36,14 @@ import ca.corefacility.bioinformatics.irida.model.workflow.execution.InputFileTy
 import ca.corefacility.bioinformatics.irida.pipeline.upload.DataStorage;
 
 import com.github.jmchilton.blend4j.galaxy.LibrariesClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.jmchilton.blend4j.galaxy.beans.FilesystemPathsLibraryUpload;
-import com.github.jmchilton.blend4j.galaxy.beans.GalaxyObject;
 import com.github.jmchilton.blend4j.galaxy.beans.Library;
-import com.github.jmchilton.blend4j.galaxy.beans.LibraryContent;
 import com.github.jmchilton.blend4j.galaxy.beans.LibraryDataset;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.sun.jersey.api.client.ClientResponse;
 
 /**
@@ -56,6 +63,21 @@ public class GalaxyLibrariesService {
 	private final int libraryPollingTime;
 	private final int libraryUploadTimeout;
 
+	private final Map<String, String> rootFolderIds = new ConcurrentHashMap<>();
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * The most files to upload to a library in a single request.
+	 */
+	private static final int LIBRARY_UPLOAD_BATCH_SIZE = 100;
+
+	/**
+	 * The shortest time (in milliseconds) to wait between checks on datasets
+	 * being uploaded to a library.
+	 */
+	private static final long MINIMUM_POLLING_INTERVAL = 250;
+
 	/**
 	 * State a library dataset should be in on proper upload.
 	 */
@@ -73,7 +95,8 @@ public class GalaxyLibrariesService {
 	 * @param librariesClient
 	 *            The LibrariesClient used to interact with Galaxy libraries.
 	 * @param libraryPollingTime
-	 *            The time (in seconds) for polling a Galaxy library.
+	 *            The longest time (in seconds) to wait between polls of a
+	 *            Galaxy library.
 	 * @param libraryUploadTimeout
 	 *            The timeout (in seconds) for waiting for files to be uploaded
 	 *            to a library.
@@ -146,31 +169,149 @@ public class GalaxyLibrariesService {
 	public String fileToLibrary(Path path, InputFileType fileType,
 			Library library, DataStorage dataStorage) throws UploadException {
 		checkNotNull(path, "path is null");
+
+		return filesToLibrary(ImmutableSet.of(path), fileType, library, dataStorage).get(path);
+	}
+
+	/**
+	 * Uploads the given files to a library with the given information, without
+	 * waiting for the uploads to finish. Files are sent in as few upload
+	 * requests as possible, each request containing up to
+	 * {@link #LIBRARY_UPLOAD_BATCH_SIZE} paths with distinct file names.
+	 * 
+	 * @param paths
+	 *            The paths of the files to upload.
+	 * @param fileType
+	 *            The type of the files to upload.
+	 * @param library
+	 *            The library to upload the files into.
+	 * @param dataStorage
+	 *            The {@link DataStorage} method to apply to these datasets.
+	 * @return A {@link Map} of paths and dataset ids for each dataset in this
+	 *         library.
+	 * @throws UploadException
+	 *             If there was an issue uploading the files to the library.
+	 */
+	public Map<Path, String> filesToLibrary(Set<Path> paths, InputFileType fileType, Library library,
+			DataStorage dataStorage) throws UploadException {
+		checkNotNull(paths, "paths is null");
 		checkNotNull(fileType, "fileType is null");
 		checkNotNull(library, "library is null");
 		checkNotNull(library.getId(), "library id is null");
-		checkState(path.toFile().exists(), "path " + path + " does not exist");
+		for (Path path : paths) {
+			checkState(path.toFile().exists(), "path " + path + " does not exist");
+		}
 
-		File file = path.toFile();
+		Map<Path, String> datasetLibraryIdsMap = new HashMap<>();
 
 		try {
-			LibraryContent rootContent = librariesClient.getRootFolder(library
-					.getId());
-			FilesystemPathsLibraryUpload upload = new FilesystemPathsLibraryUpload();
-			upload.setFolderId(rootContent.getId());
-
-			upload.setContent(file.getAbsolutePath());
-			upload.setName(file.getName());
-			upload.setLinkData(DataStorage.LOCAL.equals(dataStorage));
-			upload.setFileType(fileType.toString());
+			String rootFolderId = getRootFolderId(library.getId());
 
-			GalaxyObject uploadObject = librariesClient.uploadFilesystemPaths(
-					library.getId(), upload);
-
-			return uploadObject.getId();
+			for (Map<String, Path> batch : buildUploadBatches(paths)) {
+				datasetLibraryIdsMap.putAll(uploadBatch(batch, rootFolderId, fileType, library, dataStorage));
+			}
 		} catch (RuntimeException e) {
 			throw new UploadException(e);
 		}
+
+		return datasetLibraryIdsMap;
+	}
+
+	/**
+	 * Gets the id of the root folder of a library, asking Galaxy only the
+	 * first time it's needed for a library.
+	 * 
+	 * @param libraryId
+	 *            The id of the library.
+	 * @return The id of the library's root folder.
+	 */
+	private String getRootFolderId(String libraryId) {
+		return rootFolderIds.computeIfAbsent(libraryId, id -> librariesClient.getRootFolder(id).getId());
+	}
+
+	/**
+	 * Splits paths into batches to upload in a single request. Galaxy names
+	 * each uploaded dataset after its file name, so paths sharing a file name
+	 * are put in different batches to be able to tell the datasets apart.
+	 * 
+	 * @param paths
+	 *            The paths to upload.
+	 * @return A list of batches, each a {@link Map} of file names to paths.
+	 */
+	private List<Map<String, Path>> buildUploadBatches(Set<Path> paths) {
+		List<Map<String, Path>> batches = new ArrayList<>();
+
+		for (Path path : paths) {
+			String name = path.getFileName().toString();
+			Optional<Map<String, Path>> batch = batches.stream()
+					.filter(b -> b.size() < LIBRARY_UPLOAD_BATCH_SIZE && !b.containsKey(name)).findFirst();
+
+			if (batch.isPresent()) {
+				batch.get().put(name, path);
+			} else {
+				Map<String, Path> newBatch = new LinkedHashMap<>();
+				newBatch.put(name, path);
+				batches.add(newBatch);
+			}
+		}
+
+		return batches;
+	}
+
+	/**
+	 * Uploads a batch of files to a library in a single request.
+	 * 
+	 * @param batch
+	 *            A {@link Map} of file names to the paths to upload.
+	 * @param rootFolderId
+	 *            The id of the library folder to upload into.
+	 * @param fileType
+	 *            The type of the files to upload.
+	 * @param library
+	 *            The library to upload the files into.
+	 * @param dataStorage
+	 *            The {@link DataStorage} method to apply to these datasets.
+	 * @return A {@link Map} of paths and dataset ids for the uploaded files.
+	 * @throws UploadException
+	 *             If Galaxy did not accept the upload.
+	 */
+	private Map<Path, String> uploadBatch(Map<String, Path> batch, String rootFolderId, InputFileType fileType,
+			Library library, DataStorage dataStorage) throws UploadException {
+		FilesystemPathsLibraryUpload upload = new FilesystemPathsLibraryUpload();
+		upload.setFolderId(rootFolderId);
+
+		upload.setContent(batch.values().stream().map(p -> p.toFile().getAbsolutePath())
+				.collect(Collectors.joining("\n")));
+		upload.setLinkData(DataStorage.LOCAL.equals(dataStorage));
+		upload.setFileType(fileType.toString());
+
+		ClientResponse response = librariesClient.uploadFilesystemPathsRequest(library.getId(), upload);
+		String content = response.getEntity(String.class);
+		if (!ClientResponse.Status.OK.equals(response.getClientResponseStatus())) {
+			throw new UploadException("Could not upload " + batch.size() + " files to library id=" + library.getId()
+					+ ", status=" + response.getClientResponseStatus() + ", content=" + content);
+		}
+
+		Map<Path, String> datasetLibraryIdsMap = new HashMap<>();
+		try {
+			for (JsonNode uploaded : mapper.readTree(content)) {
+				Path path = batch.get(uploaded.path("name").asText());
+				if (path != null) {
+					datasetLibraryIdsMap.put(path, uploaded.path("id").asText());
+				}
+			}
+		} catch (IOException e) {
+			throw new UploadException("Could not read upload response for library id=" + library.getId(), e);
+		}
+
+		if (datasetLibraryIdsMap.size() != batch.size()) {
+			throw new UploadException("Upload to library id=" + library.getId() + " returned datasets for "
+					+ datasetLibraryIdsMap.size() + " of " + batch.size() + " files, content=" + content);
+		}
+
+		logger.trace("Uploaded " + batch.size() + " files to library id=" + library.getId());
+
+		return datasetLibraryIdsMap;
 	}
 
 	/**
@@ -194,50 +335,11 @@ public class GalaxyLibrariesService {
 			InputFileType fileType, Library library, DataStorage dataStorage)
 			throws UploadException {
 		checkNotNull(paths, "paths is null");
-		final int pollingTimeMillis = libraryPollingTime*1000;
 
-		Map<Path, String> datasetLibraryIdsMap = new HashMap<>();
+		Map<Path, String> datasetLibraryIdsMap = filesToLibrary(paths, fileType, library, dataStorage);
 
 		try {
-			// upload all files to library first
-			for (Path path : paths) {
-				String datasetLibraryId = fileToLibrary(path, fileType,
-						library, dataStorage);
-				datasetLibraryIdsMap.put(path, datasetLibraryId);
-			}
-
-			Future<Void> waitForLibraries = executor.submit(new Callable<Void>(){
-				@Override
-				public Void call() throws Exception {
-					// wait for uploads to finish
-					for (Path path : paths) {
-						String datasetLibraryId = datasetLibraryIdsMap.get(path);
-						LibraryDataset libraryDataset = librariesClient.showDataset(
-								library.getId(), datasetLibraryId);
-						while (!LIBRARY_OK_STATE.equals(libraryDataset.getState())) {
-							logger.trace("Waiting for library dataset "
-									+ libraryDataset.getId()
-									+ " to be finished processing, in state "
-									+ libraryDataset.getState());
-							Thread.sleep(pollingTimeMillis);
-	
-							libraryDataset = librariesClient.showDataset(
-									library.getId(), datasetLibraryId);
-
-							if (LIBRARY_FAIL_STATES.contains(libraryDataset.getState())) {
-								throw new UploadErrorException("Error: upload to Galaxy library id=" + library.getId()
-										+ " name=" + library.getName() + " for dataset id=" + datasetLibraryId
-										+ " name=" + libraryDataset.getName() + " failed with state="
-										+ libraryDataset.getState());
-							}
-						}
-					}
-					
-					return null;
-				}
-			});
-			
-			waitForLibraries.get(libraryUploadTimeout, TimeUnit.SECONDS);
+			waitForDatasets(library, Sets.newHashSet(datasetLibraryIdsMap.values()));
 		} catch (RuntimeException e) {
 			throw new UploadException(e);
 		} catch (TimeoutException e) {
@@ -255,6 +357,70 @@ public class GalaxyLibrariesService {
 		return datasetLibraryIdsMap;
 	}
 
+	/**
+	 * Waits for library datasets to finish uploading. Every pending dataset is
+	 * checked in each round, with the checks made at the same time on the
+	 * executor. The time between rounds starts at
+	 * {@link #MINIMUM_POLLING_INTERVAL} and doubles for every round where no
+	 * dataset finished, up to the library polling time.
+	 * 
+	 * @param library
+	 *            The library containing the datasets.
+	 * @param datasetLibraryIds
+	 *            The ids of the datasets to wait for.
+	 * @throws TimeoutException
+	 *             If the datasets did not finish before the upload timeout.
+	 * @throws ExecutionException
+	 *             If checking a dataset failed, or a dataset ended in a failed
+	 *             state.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 */
+	private void waitForDatasets(Library library, Set<String> datasetLibraryIds)
+			throws TimeoutException, ExecutionException, InterruptedException {
+		final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(libraryUploadTimeout);
+		final long maximumInterval = TimeUnit.SECONDS.toMillis(libraryPollingTime);
+		long interval = Math.min(MINIMUM_POLLING_INTERVAL, maximumInterval);
+
+		Set<String> pending = new HashSet<>(datasetLibraryIds);
+		while (!pending.isEmpty()) {
+			Map<String, CompletableFuture<LibraryDataset>> checks = new HashMap<>();
+			for (String datasetLibraryId : pending) {
+				checks.put(datasetLibraryId, CompletableFuture
+						.supplyAsync(() -> librariesClient.showDataset(library.getId(), datasetLibraryId), executor));
+			}
+
+			int finished = 0;
+			for (Map.Entry<String, CompletableFuture<LibraryDataset>> check : checks.entrySet()) {
+				LibraryDataset libraryDataset = check.getValue().get(
+						Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+
+				if (LIBRARY_OK_STATE.equals(libraryDataset.getState())) {
+					pending.remove(check.getKey());
+					finished++;
+				} else if (LIBRARY_FAIL_STATES.contains(libraryDataset.getState())) {
+					throw new ExecutionException(new UploadErrorException("Error: upload to Galaxy library id="
+							+ library.getId() + " name=" + library.getName() + " for dataset id=" + check.getKey()
+							+ " name=" + libraryDataset.getName() + " failed with state=" + libraryDataset.getState()));
+				}
+			}
+
+			if (!pending.isEmpty()) {
+				interval = finished > 0 ? Math.min(MINIMUM_POLLING_INTERVAL, maximumInterval)
+						: Math.min(interval * 2, maximumInterval);
+
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					throw new TimeoutException(pending.size() + " library datasets still uploading");
+				}
+
+				logger.trace("Waiting " + interval + "ms for " + pending.size() + " of " + datasetLibraryIds.size()
+						+ " library datasets in library id=" + library.getId() + " to be finished processing");
+				Thread.sleep(Math.min(interval, remaining));
+			}
+		}
+	}
+
 	/**
 	 * Deletes the Galaxy library with the given id.
 	 * 
@@ -264,6 +430,8 @@ public class GalaxyLibrariesService {
 	 *             If there was a failure to delete the library.
 	 */
 	public void deleteLibrary(String libraryId) throws DeleteGalaxyObjectFailedException {
+		rootFolderIds.remove(libraryId);
+
 		try {
 			ClientResponse response = librariesClient.deleteLibraryRequest(libraryId);
 			if (!ClientResponse.Status.OK.equals(response.getClientResponseStatus())) {
@@ -1,5 +1,13 @@
 package ca.corefacility.bioinformatics.irida.processing;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject;
 
@@ -48,4 +56,64 @@ public interface FileProcessor {
 	public default boolean shouldProcessFile(Long sequencingObjectId) {
 		return true;
 	}
+
+	/**
+	 * Run the per-file work of a processor (reading, decompressing, computing
+	 * statistics) for each {@link SequenceFile} of a {@link SequencingObject}.
+	 * If a pool is given and there is more than one file, the files (e.g. the
+	 * forward and reverse reads of a pair) are worked on concurrently in the
+	 * pool, otherwise they're worked on one after another on the calling
+	 * thread. Either way this method returns once every file is done, so the
+	 * processor can save the results on the calling thread, in its own
+	 * transaction. The work must not use any repositories.
+	 * 
+	 * @param files
+	 *            the {@link SequenceFile}s to work on
+	 * @param pool
+	 *            the pool to work on the files in, or null to use the calling
+	 *            thread
+	 * @param work
+	 *            the work to do for a single file
+	 * @return the result of the work for each file, in the same order as the
+	 *         files
+	 * @throws FileProcessorException
+	 *             if the work failed for any of the files
+	 */
+	public static <T> List<T> processFiles(List<SequenceFile> files, ExecutorService pool,
+			Function<SequenceFile, T> work) {
+		if (pool == null || files.size() < 2) {
+			return files.stream().map(work).collect(Collectors.toList());
+		}
+
+		List<Future<T>> futures = files.stream().map(f -> pool.submit(() -> work.apply(f)))
+				.collect(Collectors.toList());
+
+		// wait for every file before failing so nothing is still running when
+		// the chain moves on
+		List<T> results = new ArrayList<>();
+		Throwable failure = null;
+		for (Future<T> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+				}
+			} catch (InterruptedException e) {
+				futures.forEach(f -> f.cancel(true));
+				Thread.currentThread().interrupt();
+				throw new FileProcessorException("Interrupted while processing files", e);
+			}
+		}
+
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure != null) {
+			throw new FileProcessorException("Failed to process files", failure);
+		}
+
+		return results;
+	}
 }
@@ -3,7 +3,9 @@ package ca.corefacility.bioinformatics.irida.processing.impl;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
@@ -27,12 +29,25 @@ public class ChecksumFileProcessor implements FileProcessor {
 
 	private SequenceFileRepository fileRepository;
 
+	private ExecutorService fileProcessingPool = null;
 
 	@Autowired
 	public ChecksumFileProcessor(SequenceFileRepository fileRepository) {
 		this.fileRepository = fileRepository;
 	}
 
+	/**
+	 * Set the pool used to checksum the files of a {@link SequencingObject}
+	 * concurrently. If no pool is set the files are checksummed one after
+	 * another.
+	 * 
+	 * @param fileProcessingPool
+	 *            the pool to checksum files in
+	 */
+	public void setFileProcessingPool(ExecutorService fileProcessingPool) {
+		this.fileProcessingPool = fileProcessingPool;
+	}
+
 	/**
 	 * Create an sha256sum for the files in a {@link SequencingObject} and save
 	 * it with the file.
@@ -45,20 +60,34 @@ public class ChecksumFileProcessor implements FileProcessor {
 	 */
 	@Override
 	public void process(SequencingObject sequencingObject) {
-		Set<SequenceFile> files = sequencingObject.getFiles();
-
-		for (SequenceFile file : files) {
+		List<SequenceFile> files = new ArrayList<>(sequencingObject.getFiles());
+		List<String> checksums = FileProcessor.processFiles(files, fileProcessingPool, this::checksum);
 
-			try (InputStream is = Files.newInputStream(file.getFile())) {
-				String shaDigest = DigestUtils.sha256Hex(is);
-				logger.trace("Checksum generated for file " + file.getId() + ": " + shaDigest);
-				file.setUploadSha256(shaDigest);
+		for (int i = 0; i < files.size(); i++) {
+			SequenceFile file = files.get(i);
+			file.setUploadSha256(checksums.get(i));
 
-				fileRepository.saveMetadata(file);
-			} catch (IOException e) {
-				throw new FileProcessorException("could not calculate checksum", e);
-			}
+			fileRepository.saveMetadata(file);
+		}
+	}
 
+	/**
+	 * Create an sha256sum for a single {@link SequenceFile}.
+	 * 
+	 * @param file
+	 *            the {@link SequenceFile} to checksum
+	 * @return the checksum of the file
+	 * @throws FileProcessorException
+	 *             a {@link FileProcessorException} if the file could not be
+	 *             read
+	 */
+	private String checksum(SequenceFile file) {
+		try (InputStream is = Files.newInputStream(file.getFile())) {
+			String shaDigest = DigestUtils.sha256Hex(is);
+			logger.trace("Checksum generated for file " + file.getId() + ": " + shaDigest);
+			return shaDigest;
+		} catch (IOException e) {
+			throw new FileProcessorException("could not calculate checksum", e);
 		}
 	}
 
@@ -43,22 +43,34 @@ public class CoverageFileProcessor implements FileProcessor {
 	public void process(SequencingObject sequencingObject) {
 		logger.trace("Counting coverage for file " + sequencingObject);
 
-		if (sequencingObject.getQcEntries() != null) {
-			// remove any existing coverage entries
-			sequencingObject.getQcEntries().stream().filter(q -> q instanceof CoverageQCEntry)
-					.forEach(q -> qcEntryRepository.delete(q));
-		}
-
 		// count the total bases
 		long totalBases = sequencingObject.getFiles().stream().mapToLong(f -> {
 			AnalysisFastQC fastqc = analysisRepository.findFastqcAnalysisForSequenceFile(f);
 			return fastqc.getTotalBases();
 		}).sum();
 
+		saveCoverage(sequencingObject, totalBases);
+	}
+
+	/**
+	 * Replace any existing {@link CoverageQCEntry} for the given
+	 * {@link SequencingObject} with a new entry for the given number of bases.
+	 * 
+	 * @param sequencingObject
+	 *            the {@link SequencingObject} to save coverage for
+	 * @param totalBases
+	 *            the total number of bases in the {@link SequencingObject}
+	 */
+	public void saveCoverage(SequencingObject sequencingObject, long totalBases) {
+		if (sequencingObject.getQcEntries() != null) {
+			// remove any existing coverage entries
+			sequencingObject.getQcEntries().stream().filter(q -> q instanceof CoverageQCEntry)
+					.forEach(q -> qcEntryRepository.delete(q));
+		}
+
 		// save the entry
 		CoverageQCEntry coverageQCEntry = new CoverageQCEntry(sequencingObject, totalBases);
 		qcEntryRepository.save(coverageQCEntry);
-
 	}
 
 }
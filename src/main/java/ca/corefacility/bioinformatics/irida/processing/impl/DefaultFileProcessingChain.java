@@ -146,7 +146,8 @@ public class DefaultFileProcessingChain implements FileProcessingChain {
 	 * Checks the {@link SequenceFile}s for the given {@link SequencingObject}
 	 * to see if it's files are in the place they should be. Since there's lots
 	 * of saves going on during the {@link FileProcessingChain} the transaction
-	 * might not be complete in the time the file is first read.
+	 * might not be complete in the time the file is first read. The files are
+	 * checked right away and the chain only sleeps if they're not in place yet.
 	 * 
 	 * @param sequencingObjectId
 	 *            the id of the {@link SequencingObject} to check
@@ -155,13 +156,11 @@ public class DefaultFileProcessingChain implements FileProcessingChain {
 	 *             if the files don't settle in the configured timeout
 	 */
 	private SequencingObject getSettledSequencingObject(Long sequencingObjectId) throws FileProcessorTimeoutException {
-		boolean filesNotSettled = true;
-
 		Integer waiting = 0;
 
-		SequencingObject sequencingObject;
+		SequencingObject sequencingObject = sequencingObjectRepository.findOne(sequencingObjectId);
 
-		do {
+		while (!filesSettled(sequencingObject)) {
 			if (waiting > timeout) {
 				throw new FileProcessorTimeoutException("Waiting for longer than " + sleepDuration * timeout
 						+ "ms, bailing out.  File id " + sequencingObjectId);
@@ -175,15 +174,25 @@ public class DefaultFileProcessingChain implements FileProcessingChain {
 			}
 
 			sequencingObject = sequencingObjectRepository.findOne(sequencingObjectId);
-
-			if(sequencingObject != null) {
-				Set<SequenceFile> files = sequencingObject.getFiles();
-				filesNotSettled = files.stream().anyMatch(f -> {
-					return !Files.exists(f.getFile());
-				});
-			}
-		} while (filesNotSettled);
+		}
 
 		return sequencingObject;
 	}
+
+	/**
+	 * Check whether all the {@link SequenceFile}s of a {@link SequencingObject}
+	 * exist on disk.
+	 * 
+	 * @param sequencingObject
+	 *            the {@link SequencingObject} to check
+	 * @return true if the object was found and all of its files exist
+	 */
+	private boolean filesSettled(SequencingObject sequencingObject) {
+		if (sequencingObject == null) {
+			return false;
+		}
+
+		Set<SequenceFile> files = sequencingObject.getFiles();
+		return files.stream().allMatch(f -> Files.exists(f.getFile()));
+	}
 }
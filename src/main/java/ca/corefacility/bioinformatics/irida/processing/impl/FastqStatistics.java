@@ -0,0 +1,721 @@
+package ca.corefacility.bioinformatics.irida.processing.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.OverrepresentedSequence;
+import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisFastQC;
+import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisFastQC.AnalysisFastQCBuilder;
+import uk.ac.babraham.FastQC.Sequence.Contaminant.ContaminantHit;
+import uk.ac.babraham.FastQC.Sequence.Contaminant.ContaminentFinder;
+import uk.ac.babraham.FastQC.Sequence.QualityEncoding.PhredEncoding;
+import uk.ac.babraham.FastQC.Sequence.SequenceFormatException;
+
+/**
+ * Computes the statistics IRIDA stores for a FASTQ file in a single pass over
+ * the raw bytes of the file. Records are parsed straight out of a byte buffer
+ * into primitive histograms, so no objects are created per read. The metrics
+ * follow the definitions used by FastQC (basic statistics, per-base and
+ * per-sequence quality, duplication levels and overrepresented sequences) so
+ * results are comparable with FastQC reports.
+ *
+ * Reads marked as failing the Illumina chastity filter in a CASAVA 1.8 header
+ * (for example {@code @EAS139:136:FC706VJ:2:2104:15343:197393 1:Y:18:ATCACG})
+ * are counted as filtered and, like FastQC, left out of every other statistic.
+ *
+ * Instances are not thread safe; create one {@link FastqStatistics} per file.
+ */
+public class FastqStatistics {
+	/**
+	 * Identifies results computed by this implementation, recorded as the
+	 * version of the analysis so they aren't mistaken for FastQC output.
+	 * Change this when a change to the statistics makes results incomparable
+	 * with earlier ones.
+	 */
+	public static final String VERSION = "IRIDA-FastqStatistics-1.0";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Quality characters are the printable ASCII characters from '!' to '~'
+	 */
+	private static final int LOWEST_QUALITY_CHAR = '!';
+	private static final int HIGHEST_QUALITY_CHAR = '~';
+	private static final int QUALITY_RANGE = HIGHEST_QUALITY_CHAR - LOWEST_QUALITY_CHAR + 1;
+
+	/**
+	 * Qualities for positions past this are counted together in the last
+	 * position so very long reads don't need a histogram per base.
+	 */
+	static final int MAX_TRACKED_POSITIONS = 1000;
+
+	/**
+	 * The same limits FastQC uses for tracking duplicate sequences: the first
+	 * 100,000 distinct sequences are counted, and sequences longer than 75bp
+	 * are truncated to 50bp.
+	 */
+	private static final int DUPLICATION_TRACKING_LIMIT = 100000;
+	private static final int DUPLICATION_TRUNCATE_OVER = 75;
+	private static final int DUPLICATION_TRUNCATE_TO = 50;
+
+	/**
+	 * Percentage of all sequences a sequence must make up to be reported as
+	 * overrepresented.
+	 */
+	private static final double OVERREPRESENTED_PERCENTAGE = 0.1;
+
+	private static final String FILE_TYPE = "Conventional base calls";
+	private static final String NO_CONTAMINANT_HIT = "No Hit";
+
+	/**
+	 * Lower bounds of the duplication level buckets after the buckets for
+	 * counts from 1 to 9. See {@link AnalysisFastQC#DUPLICATION_LEVEL_LABELS}.
+	 */
+	private static final int[] DUPLICATION_LEVEL_BOUNDS = { 10, 50, 100, 500, 1000, 5000, 10000 };
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	// basic statistics
+	private long totalSequences = 0;
+	private long filteredSequences = 0;
+	private long aCount = 0;
+	private long cCount = 0;
+	private long gCount = 0;
+	private long tCount = 0;
+	private long nCount = 0;
+	private int minLength = 0;
+	private int maxLength = 0;
+	private int lowestChar = HIGHEST_QUALITY_CHAR;
+
+	// histograms
+	private long[][] perBaseQualityCounts = new long[0][];
+	private final long[] perSequenceQualityCounts = new long[QUALITY_RANGE];
+	private final long[] gcCounts = new long[101];
+	private long[] lengthCounts = new long[0];
+
+	// duplicate sequence sketch, an open addressing table of sequence hashes.
+	// the bases of every tracked sequence are kept as well and compared when
+	// hashes match, so sequences with colliding hashes are counted separately
+	private final long[] sketchKeys;
+	private final int[] sketchCounts;
+	private final int[] sketchOffsets;
+	private final int[] sketchLengths;
+	private byte[] sketchSequences = new byte[DUPLICATION_TRACKING_LIMIT * DUPLICATION_TRUNCATE_TO / 4];
+	private int sketchSequencesLength = 0;
+	private int sketchSize = 0;
+	private boolean sketchFrozen = false;
+	private long countAtSketchLimit = 0;
+
+	// parser state
+	private InputStream input;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int bufferPosition = 0;
+	private int bufferLimit = 0;
+	private final Line idLine = new Line();
+	private final Line sequenceLine = new Line();
+	private final Line midLine = new Line();
+	private final Line qualityLine = new Line();
+
+	public FastqStatistics() {
+		// table is kept at most half full
+		int capacity = Integer.highestOneBit(DUPLICATION_TRACKING_LIMIT) << 2;
+		this.sketchKeys = new long[capacity];
+		this.sketchCounts = new int[capacity];
+		this.sketchOffsets = new int[capacity];
+		this.sketchLengths = new int[capacity];
+	}
+
+	/**
+	 * Read all of the FASTQ records from the stream and add them to the
+	 * statistics. The stream is not closed.
+	 *
+	 * @param inputStream
+	 *            the uncompressed FASTQ stream
+	 * @throws IOException
+	 *             if the stream can't be read
+	 * @throws SequenceFormatException
+	 *             if the stream isn't valid FASTQ
+	 */
+	public void parse(InputStream inputStream) throws IOException, SequenceFormatException {
+		this.input = inputStream;
+
+		while (true) {
+			// skip blank lines between records
+			do {
+				if (!readLine(idLine)) {
+					return;
+				}
+			} while (idLine.length == 0);
+
+			if (idLine.bytes[0] != '@') {
+				throw new SequenceFormatException("ID line didn't start with '@'");
+			}
+
+			if (!readLine(sequenceLine) || !readLine(midLine) || !readLine(qualityLine)) {
+				throw new SequenceFormatException(
+						"Ran out of data in the middle of a fastq entry.  Your file is probably truncated");
+			}
+
+			if (midLine.length == 0 || midLine.bytes[0] != '+') {
+				throw new SequenceFormatException("Midline '" + midLine + "' didn't start with '+'");
+			}
+
+			if (sequenceLine.length != qualityLine.length) {
+				throw new SequenceFormatException("Quality string length (" + qualityLine.length
+						+ ") didn't match sequence length (" + sequenceLine.length + ") for '" + idLine + "'");
+			}
+
+			if (isFiltered(idLine)) {
+				filteredSequences++;
+				continue;
+			}
+
+			addRecord(sequenceLine.bytes, sequenceLine.length, qualityLine.bytes, qualityLine.length);
+		}
+	}
+
+	/**
+	 * Check if the ID line of a record has a CASAVA 1.8 description marking the
+	 * read as filtered, that is the description starts with
+	 * {@code <read number>:Y:}.
+	 *
+	 * @param id
+	 *            the ID line of the record
+	 * @return true if the read was filtered
+	 */
+	private static boolean isFiltered(Line id) {
+		int i = 1;
+		while (i < id.length && id.bytes[i] != ' ' && id.bytes[i] != '\t') {
+			i++;
+		}
+
+		int readNumberStart = ++i;
+		while (i < id.length && id.bytes[i] >= '0' && id.bytes[i] <= '9') {
+			i++;
+		}
+
+		return i > readNumberStart && i + 2 < id.length && id.bytes[i] == ':' && id.bytes[i + 1] == 'Y'
+				&& id.bytes[i + 2] == ':';
+	}
+
+	/**
+	 * Add a single record to the statistics.
+	 *
+	 * @param sequence
+	 *            the bases of the read
+	 * @param sequenceLength
+	 *            the number of bases in the read
+	 * @param quality
+	 *            the quality characters of the read
+	 * @param qualityLength
+	 *            the number of quality characters
+	 * @throws SequenceFormatException
+	 *             if a quality character is out of range
+	 */
+	private void addRecord(byte[] sequence, int sequenceLength, byte[] quality, int qualityLength)
+			throws SequenceFormatException {
+		totalSequences++;
+
+		if (totalSequences == 1 || sequenceLength < minLength) {
+			minLength = sequenceLength;
+		}
+		if (sequenceLength > maxLength) {
+			maxLength = sequenceLength;
+		}
+		if (sequenceLength >= lengthCounts.length) {
+			lengthCounts = Arrays.copyOf(lengthCounts, sequenceLength + 1);
+		}
+		lengthCounts[sequenceLength]++;
+
+		int gc = 0;
+		int at = 0;
+		for (int i = 0; i < sequenceLength; i++) {
+			byte base = sequence[i];
+			if (base >= 'a' && base <= 'z') {
+				base -= 'a' - 'A';
+				sequence[i] = base;
+			}
+
+			switch (base) {
+			case 'A':
+				aCount++;
+				at++;
+				break;
+			case 'T':
+				tCount++;
+				at++;
+				break;
+			case 'G':
+				gCount++;
+				gc++;
+				break;
+			case 'C':
+				cCount++;
+				gc++;
+				break;
+			case 'N':
+				nCount++;
+				break;
+			default:
+				break;
+			}
+		}
+
+		if (gc + at > 0) {
+			gcCounts[Math.round(gc * 100f / (gc + at))]++;
+		}
+
+		int trackedPositions = Math.min(qualityLength, MAX_TRACKED_POSITIONS);
+		if (trackedPositions > perBaseQualityCounts.length) {
+			int previous = perBaseQualityCounts.length;
+			perBaseQualityCounts = Arrays.copyOf(perBaseQualityCounts, trackedPositions);
+			for (int i = previous; i < trackedPositions; i++) {
+				perBaseQualityCounts[i] = new long[QUALITY_RANGE];
+			}
+		}
+
+		long qualitySum = 0;
+		for (int i = 0; i < qualityLength; i++) {
+			int c = quality[i];
+			if (c < LOWEST_QUALITY_CHAR || c > HIGHEST_QUALITY_CHAR) {
+				throw new SequenceFormatException("Quality character '" + (char) c + "' is out of range");
+			}
+			if (c < lowestChar) {
+				lowestChar = c;
+			}
+			qualitySum += c;
+			perBaseQualityCounts[Math.min(i, MAX_TRACKED_POSITIONS - 1)][c - LOWEST_QUALITY_CHAR]++;
+		}
+
+		if (qualityLength > 0) {
+			perSequenceQualityCounts[(int) (qualitySum / qualityLength) - LOWEST_QUALITY_CHAR]++;
+		}
+
+		addToSketch(sequence, sequenceLength > DUPLICATION_TRUNCATE_OVER ? DUPLICATION_TRUNCATE_TO : sequenceLength);
+	}
+
+	/**
+	 * Count a sequence in the duplicate sequence sketch. New sequences are
+	 * only added until {@link #DUPLICATION_TRACKING_LIMIT} distinct sequences
+	 * have been seen, after that only sequences already in the sketch are
+	 * counted.
+	 *
+	 * @param sequence
+	 *            the (uppercase) sequence
+	 * @param length
+	 *            the number of bases to use
+	 */
+	private void addToSketch(byte[] sequence, int length) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < length; i++) {
+			hash ^= sequence[i];
+			hash *= FNV_PRIME;
+		}
+		// 0 marks an empty slot
+		if (hash == 0) {
+			hash = 1;
+		}
+
+		int mask = sketchKeys.length - 1;
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+		while (sketchKeys[slot] != 0 && !(sketchKeys[slot] == hash && isSketchSequence(slot, sequence, length))) {
+			slot = (slot + 1) & mask;
+		}
+
+		if (sketchKeys[slot] != 0) {
+			sketchCounts[slot]++;
+			if (!sketchFrozen) {
+				countAtSketchLimit = totalSequences;
+			}
+		} else if (!sketchFrozen) {
+			if (sketchSequencesLength + length > sketchSequences.length) {
+				sketchSequences = Arrays.copyOf(sketchSequences,
+						Math.max(sketchSequences.length * 2, sketchSequencesLength + length));
+			}
+			System.arraycopy(sequence, 0, sketchSequences, sketchSequencesLength, length);
+
+			sketchKeys[slot] = hash;
+			sketchCounts[slot] = 1;
+			sketchOffsets[slot] = sketchSequencesLength;
+			sketchLengths[slot] = length;
+			sketchSequencesLength += length;
+
+			sketchSize++;
+			countAtSketchLimit = totalSequences;
+			if (sketchSize == DUPLICATION_TRACKING_LIMIT) {
+				sketchFrozen = true;
+			}
+		}
+	}
+
+	/**
+	 * Check if a slot in the duplicate sequence sketch holds the given
+	 * sequence.
+	 *
+	 * @param slot
+	 *            the slot in the sketch
+	 * @param sequence
+	 *            the (uppercase) sequence
+	 * @param length
+	 *            the number of bases to compare
+	 * @return true if the slot holds exactly the same bases
+	 */
+	private boolean isSketchSequence(int slot, byte[] sequence, int length) {
+		if (sketchLengths[slot] != length) {
+			return false;
+		}
+
+		int offset = sketchOffsets[slot];
+		for (int i = 0; i < length; i++) {
+			if (sketchSequences[offset + i] != sequence[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Set the statistics on an {@link AnalysisFastQCBuilder}.
+	 *
+	 * @param analysis
+	 *            the builder to update
+	 */
+	public void populate(AnalysisFastQCBuilder analysis) {
+		int offset = PhredEncoding.getFastQEncodingOffset((char) lowestChar).offset();
+
+		analysis.fileType(FILE_TYPE);
+		analysis.encoding(PhredEncoding.getFastQEncodingOffset((char) lowestChar).name());
+		analysis.minLength(minLength);
+		analysis.maxLength(maxLength);
+		analysis.totalSequences((int) totalSequences);
+		analysis.filteredSequences((int) filteredSequences);
+		analysis.totalBases(aCount + cCount + gCount + tCount + nCount);
+
+		long atgc = aCount + tCount + gCount + cCount;
+		analysis.gcContent((short) (atgc > 0 ? (gCount + cCount) * 100 / atgc : 0));
+
+		analysis.perBaseQualityScores(getPerBaseQualityScores(offset));
+		analysis.perSequenceQualityScores(getPerSequenceQualityScores(offset));
+		analysis.gcContentDistribution(getGcContentDistribution());
+		analysis.sequenceLengthDistribution(getSequenceLengthDistribution());
+		analysis.duplicationLevels(getDuplicationLevels());
+		analysis.overrepresentedSequences(getOverrepresentedSequences());
+	}
+
+	/**
+	 * Get the quality distribution at each position of the reads.
+	 *
+	 * @param offset
+	 *            the quality encoding offset
+	 * @return rows of position (1 based), mean, median, lower quartile, upper
+	 *         quartile, 10th and 90th percentile quality
+	 */
+	private List<double[]> getPerBaseQualityScores(int offset) {
+		List<double[]> rows = new ArrayList<>(perBaseQualityCounts.length);
+		int shift = LOWEST_QUALITY_CHAR - offset;
+
+		for (int position = 0; position < perBaseQualityCounts.length; position++) {
+			long[] counts = perBaseQualityCounts[position];
+
+			long total = 0;
+			double sum = 0;
+			for (int q = 0; q < counts.length; q++) {
+				total += counts[q];
+				sum += (double) counts[q] * (q + shift);
+			}
+
+			if (total == 0) {
+				continue;
+			}
+
+			rows.add(new double[] { position + 1, sum / total, percentile(counts, total, 50) + shift,
+					percentile(counts, total, 25) + shift, percentile(counts, total, 75) + shift,
+					percentile(counts, total, 10) + shift, percentile(counts, total, 90) + shift });
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Find the index in a histogram at which the given percentage of the
+	 * counts have been seen.
+	 *
+	 * @param counts
+	 *            the histogram
+	 * @param total
+	 *            the sum of the histogram
+	 * @param percentile
+	 *            the percentile to find
+	 * @return the histogram index of the percentile
+	 */
+	private static int percentile(long[] counts, long total, int percentile) {
+		double target = total * percentile / 100d;
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= target) {
+				return i;
+			}
+		}
+		return counts.length - 1;
+	}
+
+	/**
+	 * Get the number of reads with each mean quality.
+	 *
+	 * @param offset
+	 *            the quality encoding offset
+	 * @return rows of mean quality and number of reads
+	 */
+	private List<double[]> getPerSequenceQualityScores(int offset) {
+		List<double[]> rows = new ArrayList<>();
+		int first = 0;
+		int last = perSequenceQualityCounts.length - 1;
+		while (first < last && perSequenceQualityCounts[first] == 0) {
+			first++;
+		}
+		while (last > first && perSequenceQualityCounts[last] == 0) {
+			last--;
+		}
+
+		for (int q = first; q <= last; q++) {
+			rows.add(new double[] { q + LOWEST_QUALITY_CHAR - offset, perSequenceQualityCounts[q] });
+		}
+		return rows;
+	}
+
+	/**
+	 * Get the number of reads at each GC percentage.
+	 *
+	 * @return rows of GC percentage and number of reads
+	 */
+	private List<double[]> getGcContentDistribution() {
+		List<double[]> rows = new ArrayList<>(gcCounts.length);
+		for (int gc = 0; gc < gcCounts.length; gc++) {
+			rows.add(new double[] { gc, gcCounts[gc] });
+		}
+		return rows;
+	}
+
+	/**
+	 * Get the number of reads of each length.
+	 *
+	 * @return rows of read length and number of reads, only for lengths that
+	 *         were seen
+	 */
+	private List<double[]> getSequenceLengthDistribution() {
+		List<double[]> rows = new ArrayList<>();
+		for (int length = 0; length < lengthCounts.length; length++) {
+			if (lengthCounts[length] > 0) {
+				rows.add(new double[] { length, lengthCounts[length] });
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Get the percentage of all reads at each duplication level. Counts are
+	 * corrected for the sequences that weren't tracked once the sketch filled
+	 * up the same way FastQC does.
+	 *
+	 * @return rows of duplication level bucket (an index into
+	 *         {@link AnalysisFastQC#DUPLICATION_LEVEL_LABELS}) and percentage
+	 *         of reads
+	 */
+	private List<double[]> getDuplicationLevels() {
+		double[] levels = new double[AnalysisFastQC.DUPLICATION_LEVEL_LABELS.size()];
+
+		int[] counts = new int[sketchSize];
+		int n = 0;
+		for (int slot = 0; slot < sketchKeys.length; slot++) {
+			if (sketchKeys[slot] != 0) {
+				counts[n++] = sketchCounts[slot];
+			}
+		}
+		Arrays.sort(counts);
+
+		double total = 0;
+		int i = 0;
+		while (i < counts.length) {
+			int duplicationLevel = counts[i];
+			int observations = 0;
+			while (i < counts.length && counts[i] == duplicationLevel) {
+				observations++;
+				i++;
+			}
+
+			double corrected = correctedCount(countAtSketchLimit, totalSequences, duplicationLevel, observations)
+					* duplicationLevel;
+			levels[duplicationLevelBucket(duplicationLevel)] += corrected;
+			total += corrected;
+		}
+
+		List<double[]> rows = new ArrayList<>(levels.length);
+		for (int bucket = 0; bucket < levels.length; bucket++) {
+			rows.add(new double[] { bucket, total > 0 ? levels[bucket] / total * 100 : 0 });
+		}
+		return rows;
+	}
+
+	/**
+	 * Get the bucket in {@link AnalysisFastQC#DUPLICATION_LEVEL_LABELS} for a
+	 * duplication level
+	 *
+	 * @param duplicationLevel
+	 *            the number of times a sequence was seen
+	 * @return the bucket index
+	 */
+	private static int duplicationLevelBucket(int duplicationLevel) {
+		if (duplicationLevel < DUPLICATION_LEVEL_BOUNDS[0]) {
+			return duplicationLevel - 1;
+		}
+
+		int bucket = DUPLICATION_LEVEL_BOUNDS[0] - 1;
+		for (int i = 1; i < DUPLICATION_LEVEL_BOUNDS.length && duplicationLevel >= DUPLICATION_LEVEL_BOUNDS[i]; i++) {
+			bucket++;
+		}
+		return bucket;
+	}
+
+	/**
+	 * Estimate how many distinct sequences there really were at a duplication
+	 * level, accounting for sequences that were first seen after the sketch
+	 * stopped accepting new sequences. This is the correction FastQC applies.
+	 *
+	 * @param countAtLimit
+	 *            the number of reads seen when the sketch filled up
+	 * @param totalCount
+	 *            the total number of reads
+	 * @param duplicationLevel
+	 *            the duplication level
+	 * @param observations
+	 *            the number of distinct sequences seen at this level
+	 * @return the corrected number of distinct sequences
+	 */
+	private static double correctedCount(long countAtLimit, long totalCount, int duplicationLevel,
+			int observations) {
+		if (countAtLimit == totalCount || totalCount - observations < countAtLimit) {
+			return observations;
+		}
+
+		double pNotSeeingAtLimit = 1;
+		double limitOfCaring = 1d - (observations / (observations + 0.01d));
+		for (long i = 0; i < countAtLimit; i++) {
+			pNotSeeingAtLimit *= ((totalCount - i) - duplicationLevel) / (double) (totalCount - i);
+			if (pNotSeeingAtLimit < limitOfCaring) {
+				pNotSeeingAtLimit = 0;
+				break;
+			}
+		}
+
+		return observations / (1 - pNotSeeingAtLimit);
+	}
+
+	/**
+	 * Get the sequences that make up more than
+	 * {@link #OVERREPRESENTED_PERCENTAGE} percent of all reads.
+	 *
+	 * @return the overrepresented sequences
+	 */
+	private Set<OverrepresentedSequence> getOverrepresentedSequences() {
+		Set<OverrepresentedSequence> sequences = new HashSet<>();
+		if (totalSequences == 0) {
+			return sequences;
+		}
+
+		for (int slot = 0; slot < sketchKeys.length; slot++) {
+			if (sketchKeys[slot] == 0) {
+				continue;
+			}
+
+			double percentage = sketchCounts[slot] * 100d / totalSequences;
+			if (percentage > OVERREPRESENTED_PERCENTAGE) {
+				String sequence = new String(sketchSequences, sketchOffsets[slot], sketchLengths[slot],
+						StandardCharsets.US_ASCII);
+				ContaminantHit hit = ContaminentFinder.findContaminantHit(sequence);
+
+				sequences.add(new OverrepresentedSequence(sequence, sketchCounts[slot],
+						BigDecimal.valueOf(percentage), hit == null ? NO_CONTAMINANT_HIT : hit.toString()));
+			}
+		}
+
+		return sequences;
+	}
+
+	/**
+	 * Read the next line from the input into a reusable {@link Line}. Line
+	 * endings (\n or \r\n) are not included.
+	 *
+	 * @param line
+	 *            the line to read into
+	 * @return false if the end of the input was reached before any bytes were
+	 *         read
+	 * @throws IOException
+	 *             if the input can't be read
+	 */
+	private boolean readLine(Line line) throws IOException {
+		line.length = 0;
+		boolean read = false;
+
+		while (true) {
+			if (bufferPosition == bufferLimit) {
+				bufferLimit = input.read(buffer, 0, buffer.length);
+				bufferPosition = 0;
+				if (bufferLimit <= 0) {
+					bufferLimit = 0;
+					line.trimCarriageReturn();
+					return read;
+				}
+			}
+			read = true;
+
+			int start = bufferPosition;
+			while (bufferPosition < bufferLimit && buffer[bufferPosition] != '\n') {
+				bufferPosition++;
+			}
+			line.append(buffer, start, bufferPosition - start);
+
+			if (bufferPosition < bufferLimit) {
+				// consume the newline
+				bufferPosition++;
+				line.trimCarriageReturn();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * A reusable, growable line buffer
+	 */
+	private static class Line {
+		private byte[] bytes = new byte[512];
+		private int length = 0;
+
+		private void append(byte[] source, int offset, int count) {
+			if (length + count > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+			}
+			System.arraycopy(source, offset, bytes, length, count);
+			length += count;
+		}
+
+		private void trimCarriageReturn() {
+			if (length > 0 && bytes[length - 1] == '\r') {
+				length--;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+		}
+	}
+}
@@ -1,10 +1,9 @@
 package ca.corefacility.bioinformatics.irida.processing.impl;
 
-import ca.corefacility.bioinformatics.irida.model.sequenceFile.OverrepresentedSequence;
+import ca.corefacility.bioinformatics.irida.exceptions.AnalysisAlreadySetException;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisFastQC;
-import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisFastQC.AnalysisFastQCBuilder;
 import ca.corefacility.bioinformatics.irida.processing.FileProcessor;
 import ca.corefacility.bioinformatics.irida.processing.FileProcessorException;
 import ca.corefacility.bioinformatics.irida.repositories.sequencefile.SequenceFileRepository;
@@ -15,33 +14,19 @@ import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
-import uk.ac.babraham.FastQC.FastQCApplication;
-import uk.ac.babraham.FastQC.Graphs.LineGraph;
-import uk.ac.babraham.FastQC.Graphs.QualityBoxPlot;
-import uk.ac.babraham.FastQC.Modules.*;
-import uk.ac.babraham.FastQC.Modules.OverRepresentedSeqs.OverrepresentedSeq;
-import uk.ac.babraham.FastQC.Sequence.QualityEncoding.PhredEncoding;
-import uk.ac.babraham.FastQC.Sequence.Sequence;
-import uk.ac.babraham.FastQC.Sequence.SequenceFactory;
-
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import uk.ac.babraham.FastQC.Sequence.SequenceFormatException;
+
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.nio.file.Path;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
- * Executes FastQC on a {@link SequenceFile} and stores the report in the
- * database. This is a terrible, ugly, hacky class because most of the internal
- * statistics computed by FastQC are <code>private</code> fields, so we reflect
- * on those fields and make them <code>public</code> to get the values.
- * 
- * 
+ * Computes FastQC statistics on a {@link SequenceFile} and stores the report in
+ * the database. The statistics are computed by {@link FastqStatistics} and
+ * stored as numeric series that the charts are drawn from, rather than as
+ * rendered images.
  */
 @Component
 public class FastqcFileProcessor implements FileProcessor {
@@ -52,6 +37,8 @@ public class FastqcFileProcessor implements FileProcessor {
 	private final SequenceFileRepository sequenceFileRepository;
 	private final MessageSource messageSource;
 
+	private ExecutorService fileProcessingPool = null;
+
 	/**
 	 * Create a new {@link FastqcFileProcessor}
 	 * 
@@ -67,58 +54,49 @@ public class FastqcFileProcessor implements FileProcessor {
 		this.sequenceFileRepository = sequenceFileRepository;
 	}
 
+	/**
+	 * Set the pool that the statistics for the files of a
+	 * {@link SequencingObject} are computed in. The statistics are computed on
+	 * the calling thread if no pool is set.
+	 * 
+	 * @param fileProcessingPool
+	 *            the pool to compute statistics in
+	 */
+	public void setFileProcessingPool(ExecutorService fileProcessingPool) {
+		this.fileProcessingPool = fileProcessingPool;
+	}
+
 	@Override
 	@Transactional
 	public void process(SequencingObject sequencingObject) {
-		for (SequenceFile file : sequencingObject.getFiles()) {
-			processSingleFile(file);
+		List<SequenceFile> files = new ArrayList<>(sequencingObject.getFiles());
+		List<AnalysisFastQC> analyses = FileProcessor.processFiles(files, fileProcessingPool,
+				this::computeStatistics);
+
+		for (int i = 0; i < files.size(); i++) {
+			SequenceFile sequenceFile = files.get(i);
+			try {
+				sequenceFile.setFastQCAnalysis(analyses.get(i));
+			} catch (AnalysisAlreadySetException e) {
+				throw new FileProcessorException("FastQC analysis already set for the sequence file.", e);
+			}
+
+			sequenceFileRepository.saveMetadata(sequenceFile);
 		}
 	}
 
 	/**
-	 * Process a single {@link SequenceFile}
+	 * Compute the statistics for a single {@link SequenceFile}
 	 * 
 	 * @param sequenceFile
-	 *            file to process
+	 *            file to compute statistics for
+	 * @return the {@link AnalysisFastQC} for the file
 	 * @throws FileProcessorException
 	 *             if an error occurs while processing
 	 */
-	private void processSingleFile(SequenceFile sequenceFile) throws FileProcessorException {
-		Path fileToProcess = sequenceFile.getFile();
-		AnalysisFastQC.AnalysisFastQCBuilder analysis = AnalysisFastQC.builder()
-				.fastqcVersion(FastQCApplication.VERSION).executionManagerAnalysisId(EXECUTION_MANAGER_ANALYSIS_ID)
-				.description(messageSource.getMessage("fastqc.file.processor.analysis.description",
-						new Object[] { FastQCApplication.VERSION }, LocaleContextHolder.getLocale()));
-		try {
-			uk.ac.babraham.FastQC.Sequence.SequenceFile fastQCSequenceFile = SequenceFactory
-					.getSequenceFile(fileToProcess.toFile());
-			BasicStats basicStats = new BasicStats();
-			PerBaseQualityScores pbqs = new PerBaseQualityScores();
-			PerSequenceQualityScores psqs = new PerSequenceQualityScores();
-			OverRepresentedSeqs overRep = new OverRepresentedSeqs();
-			QCModule[] moduleList = new QCModule[] { basicStats, pbqs, psqs, overRep };
-
-			logger.debug("Launching FastQC analysis modules on all sequences.");
-			while (fastQCSequenceFile.hasNext()) {
-				Sequence sequence = fastQCSequenceFile.next();
-				for (QCModule module : moduleList) {
-					module.processSequence(sequence);
-				}
-			}
-
-			logger.debug("Finished FastQC analysis modules.");
-			handleBasicStats(basicStats, analysis);
-			handlePerBaseQualityScores(pbqs, analysis);
-			handlePerSequenceQualityScores(psqs, analysis);
-			handleDuplicationLevel(overRep.duplicationLevelModule(), analysis);
-			Set<OverrepresentedSequence> overrepresentedSequences = handleOverRepresentedSequences(overRep);
-
-			logger.trace("Saving FastQC analysis.");
-			analysis.overrepresentedSequences(overrepresentedSequences);
-
-			sequenceFile.setFastQCAnalysis(analysis.build());
-
-			sequenceFileRepository.saveMetadata(sequenceFile);
+	private AnalysisFastQC computeStatistics(SequenceFile sequenceFile) throws FileProcessorException {
+		try (InputStream stream = sequenceFile.getFileInputStream()) {
+			return computeStatistics(stream);
 		} catch (Exception e) {
 			logger.error("FastQC failed to process the sequence file. Stack trace follows.", e);
 			throw new FileProcessorException("FastQC failed to parse the sequence file.", e);
@@ -126,114 +104,34 @@ public class FastqcFileProcessor implements FileProcessor {
 	}
 
 	/**
-	 * Handle writing the {@link BasicStats} to the database.
+	 * Compute the statistics for every sequence in a FASTQ stream and build an
+	 * {@link AnalysisFastQC} from the results. This method does not persist
+	 * anything, so it can be used by processors that read the sequences from a
+	 * source other than a file on disk.
 	 * 
-	 * @param stats
-	 *            the {@link BasicStats} computed by fastqc.
-	 * @param analysis
-	 *            the {@link AnalysisFastQCBuilder} to update.
+	 * @param fastqStream
+	 *            the uncompressed FASTQ stream to read sequences from. The
+	 *            stream is not closed.
+	 * @return the {@link AnalysisFastQC} built from the statistics
+	 * @throws SequenceFormatException
+	 *             if the sequences could not be parsed
+	 * @throws IOException
+	 *             if the stream could not be read
 	 */
-	private void handleBasicStats(BasicStats stats, AnalysisFastQCBuilder analysis) {
-		analysis.fileType(stats.getFileType());
-		analysis.encoding(PhredEncoding.getFastQEncodingOffset(stats.getLowestChar()).name());
-		analysis.minLength(stats.getMinLength());
-		analysis.maxLength(stats.getMaxLength());
-		analysis.totalSequences((int) stats.getActualCount());
-		analysis.filteredSequences((int) stats.getFilteredCount());
-		analysis.gcContent(stats.getGCContent());
-		analysis.totalBases(
-				stats.getACount() + stats.getGCount() + stats.getCCount() + stats.getTCount() + stats.getNCount());
-	}
-
-	/**
-	 * Handle writing the {@link PerBaseQualityScores} to the database.
-	 * 
-	 * @param scores
-	 *            the {@link PerBaseQualityScores} computed by fastqc.
-	 * @param analysis
-	 *            the {@link AnalysisFastQCBuilder} to update.
-	 */
-	private void handlePerBaseQualityScores(PerBaseQualityScores scores, AnalysisFastQCBuilder analysis)
-			throws IOException {
-		ByteArrayOutputStream os = new ByteArrayOutputStream();
-		QualityBoxPlot bp = (QualityBoxPlot) scores.getResultsPanel();
-		BufferedImage b = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
-		Graphics g = b.getGraphics();
-		bp.paint(g, b.getWidth(), b.getHeight());
-
-		ImageIO.write(b, "PNG", os);
-		byte[] image = os.toByteArray();
-		analysis.perBaseQualityScoreChart(image);
-	}
-
-	/**
-	 * Handle writing the {@link PerSequenceQualityScores} to the database.
-	 * 
-	 * @param scores
-	 *            the {@link PerSequenceQualityScores} computed by fastqc.
-	 * @param analysis
-	 *            the {@link AnalysisFastQCBuilder} to update.
-	 */
-	private void handlePerSequenceQualityScores(PerSequenceQualityScores scores, AnalysisFastQCBuilder analysis)
-			throws IOException {
-		ByteArrayOutputStream os = new ByteArrayOutputStream();
-		LineGraph lg = (LineGraph) scores.getResultsPanel();
-		BufferedImage b = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
-		Graphics g = b.getGraphics();
-		lg.paint(g, b.getWidth(), b.getHeight());
-
-		ImageIO.write(b, "PNG", os);
-		byte[] image = os.toByteArray();
-		analysis.perSequenceQualityScoreChart(image);
-	}
-
-	/**
-	 * Handle writing the {@link DuplicationLevel} to the database.
-	 * 
-	 * @param duplicationLevel
-	 *            the {@link DuplicationLevel} calculated by fastqc.
-	 * @param analysis
-	 *            the {@link AnalysisFastQCBuilder} to update.
-	 */
-	private void handleDuplicationLevel(DuplicationLevel duplicationLevel, AnalysisFastQCBuilder analysis)
-			throws IOException {
-		ByteArrayOutputStream os = new ByteArrayOutputStream();
-		LineGraph lg = (LineGraph) duplicationLevel.getResultsPanel();
-		BufferedImage b = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
-		Graphics g = b.getGraphics();
-		lg.paint(g, b.getWidth(), b.getHeight());
-
-		ImageIO.write(b, "PNG", os);
-		byte[] image = os.toByteArray();
-		analysis.duplicationLevelChart(image);
-	}
-
-	/**
-	 * Handle getting over represented sequences from fastqc.
-	 * 
-	 * @param seqs
-	 *            overrepresented sequences.
-	 * @return a collection of {@link OverrepresentedSequence} corresponding to
-	 *         the FastQC {@link OverRepresentedSeqs}.
-	 */
-	private Set<OverrepresentedSequence> handleOverRepresentedSequences(OverRepresentedSeqs seqs) {
-
-		OverrepresentedSeq[] sequences = seqs.getOverrepresentedSequences();
-		if (sequences == null) {
-			return Collections.emptySet();
-		}
+	public AnalysisFastQC computeStatistics(InputStream fastqStream) throws SequenceFormatException, IOException {
+		AnalysisFastQC.AnalysisFastQCBuilder analysis = AnalysisFastQC.builder()
+				.fastqcVersion(FastqStatistics.VERSION).executionManagerAnalysisId(EXECUTION_MANAGER_ANALYSIS_ID)
+				.description(messageSource.getMessage("fastqc.file.processor.statistics.description",
+						new Object[] { FastqStatistics.VERSION }, LocaleContextHolder.getLocale()));
 
-		Set<OverrepresentedSequence> overrepresentedSequences = new HashSet<>(sequences.length);
+		logger.debug("Computing statistics on all sequences.");
+		FastqStatistics statistics = new FastqStatistics();
+		statistics.parse(fastqStream);
 
-		for (OverrepresentedSeq s : sequences) {
-			String sequenceString = s.seq();
-			int count = s.count();
-			BigDecimal percent = BigDecimal.valueOf(s.percentage());
-			String possibleSource = s.contaminantHit();
+		logger.debug("Finished computing statistics.");
+		statistics.populate(analysis);
 
-			overrepresentedSequences.add(new OverrepresentedSequence(sequenceString, count, percent, possibleSource));
-		}
-		return overrepresentedSequences;
+		return analysis.build();
 	}
 
 	/**
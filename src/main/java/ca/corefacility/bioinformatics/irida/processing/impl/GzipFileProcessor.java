@@ -1,11 +1,12 @@
 package ca.corefacility.bioinformatics.irida.processing.impl;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.GZIPInputStream;
 
 import org.slf4j.Logger;
@@ -37,6 +38,7 @@ public class GzipFileProcessor implements FileProcessor {
 
 	private final SequenceFileRepository sequenceFileRepository;
 	private boolean removeCompressedFile;
+	private ExecutorService fileProcessingPool = null;
 
 	@Autowired
 	public GzipFileProcessor(final SequenceFileRepository sequenceFileRepository) {
@@ -61,14 +63,29 @@ public class GzipFileProcessor implements FileProcessor {
 		this.removeCompressedFile = removeCompressedFile;
 	}
 
+	/**
+	 * Set the pool that the files of a {@link SequencingObject} are
+	 * decompressed in, so that the files of a pair are decompressed at the
+	 * same time. Without a pool the files are decompressed one at a time.
+	 * 
+	 * @param fileProcessingPool
+	 *            the pool to decompress files in
+	 */
+	public void setFileProcessingPool(ExecutorService fileProcessingPool) {
+		this.fileProcessingPool = fileProcessingPool;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Transactional
 	@Override
 	public void process(SequencingObject sequencingObject) {
-		for (SequenceFile file : sequencingObject.getFiles()) {
-			processSingleFile(file);
+		List<SequenceFile> files = new ArrayList<>(sequencingObject.getFiles());
+		List<Decompressed> decompressed = FileProcessor.processFiles(files, fileProcessingPool, this::decompress);
+
+		for (int i = 0; i < files.size(); i++) {
+			store(files.get(i), decompressed.get(i));
 		}
 	}
 
@@ -81,6 +98,21 @@ public class GzipFileProcessor implements FileProcessor {
 	 *             if an error occurs while processing
 	 */
 	public void processSingleFile(SequenceFile sequenceFile) throws FileProcessorException {
+		store(sequenceFile, decompress(sequenceFile));
+	}
+
+	/**
+	 * Decompress a single {@link SequenceFile} to a new temporary directory,
+	 * if it's compressed. The {@link SequenceFile} isn't changed.
+	 * 
+	 * @param sequenceFile
+	 *            file to decompress
+	 * @return the compressed and decompressed files, or null if the file isn't
+	 *         compressed
+	 * @throws FileProcessorException
+	 *             if an error occurs while decompressing
+	 */
+	private Decompressed decompress(SequenceFile sequenceFile) throws FileProcessorException {
 		Path file = sequenceFile.getFile();
 		String nameWithoutExtension = file.getFileName().toString();
 
@@ -91,34 +123,63 @@ public class GzipFileProcessor implements FileProcessor {
 
 		try {
 			logger.trace("About to try handling a gzip file.");
-			if (isCompressed(file)) {
-				file = addExtensionToFilename(file, GZIP_EXTENSION);
-
-				try (GZIPInputStream zippedInputStream = new GZIPInputStream(Files.newInputStream(file))) {
-					logger.trace("Handling gzip compressed file.");
-
-					Path targetDirectory = Files.createTempDirectory(null);
-					Path target = targetDirectory.resolve(nameWithoutExtension);
-					logger.debug("Target directory is [" + targetDirectory + "]");
-					logger.debug("Writing uncompressed file to [" + target + "]");
-
-					Files.copy(zippedInputStream, target);
-
-					sequenceFile.setFile(target);
-					sequenceFile = sequenceFileRepository.save(sequenceFile);
-
-					if (removeCompressedFile) {
-						logger.debug(
-								"Removing original compressed files [file.processing.decompress.remove.compressed.file=true]");
-						try {
-							Files.delete(file);
-						} catch (final Exception e) {
-							logger.error("Failed to remove the original compressed file.", e);
-							// throw the exception again to be caught by the
-							// outer try/catch block:
-							throw e;
-						}
-					}
+			if (!SequenceFile.isGzipped(file)) {
+				return null;
+			}
+
+			file = addExtensionToFilename(file, GZIP_EXTENSION);
+
+			try (GZIPInputStream zippedInputStream = new GZIPInputStream(Files.newInputStream(file))) {
+				logger.trace("Handling gzip compressed file.");
+
+				Path targetDirectory = Files.createTempDirectory(null);
+				Path target = targetDirectory.resolve(nameWithoutExtension);
+				logger.debug("Target directory is [" + targetDirectory + "]");
+				logger.debug("Writing uncompressed file to [" + target + "]");
+
+				Files.copy(zippedInputStream, target);
+
+				return new Decompressed(file, target);
+			}
+		} catch (Exception e) {
+			logger.error("Failed to process the input file [" + sequenceFile + "]; stack trace follows.", e);
+			throw new FileProcessorException("Failed to process input file [" + sequenceFile + "].");
+		}
+	}
+
+	/**
+	 * Point a {@link SequenceFile} at its decompressed file and save it,
+	 * removing the compressed file if configured to.
+	 * 
+	 * @param sequenceFile
+	 *            the file that was decompressed
+	 * @param decompressed
+	 *            the compressed and decompressed files, or null if the file
+	 *            wasn't compressed
+	 * @throws FileProcessorException
+	 *             if the file couldn't be saved or the compressed file
+	 *             couldn't be removed
+	 */
+	private void store(SequenceFile sequenceFile, Decompressed decompressed) throws FileProcessorException {
+		if (decompressed == null) {
+			return;
+		}
+
+		try {
+			sequenceFile.setFile(decompressed.target);
+			sequenceFile.addOptionalProperty(SequenceFile.DECOMPRESSED_AFTER_UPLOAD, Boolean.TRUE.toString());
+			sequenceFileRepository.save(sequenceFile);
+
+			if (removeCompressedFile) {
+				logger.debug(
+						"Removing original compressed files [file.processing.decompress.remove.compressed.file=true]");
+				try {
+					Files.delete(decompressed.compressed);
+				} catch (final Exception e) {
+					logger.error("Failed to remove the original compressed file.", e);
+					// throw the exception again to be caught by the
+					// outer try/catch block:
+					throw e;
 				}
 			}
 		} catch (Exception e) {
@@ -153,26 +214,16 @@ public class GzipFileProcessor implements FileProcessor {
 		return true;
 	}
 
-	/*
-	 * Determines if a byte array is compressed. Adapted from stackoverflow
-	 * answer:
-	 * 
-	 * @see
-	 * http://stackoverflow.com/questions/4818468/how-to-check-if-inputstream
-	 * -is-gzipped#answer-8620778
-	 * 
-	 * @param bytes an array of bytes
-	 * 
-	 * @return true if the array is compressed or false otherwise
-	 * 
-	 * @throws java.io.IOException if the byte array couldn't be read
+	/**
+	 * A compressed file and the file it was decompressed to.
 	 */
-	private boolean isCompressed(Path file) throws IOException {
-		try (InputStream is = Files.newInputStream(file, StandardOpenOption.READ)) {
-			byte[] bytes = new byte[2];
-			is.read(bytes);
-			return ((bytes[0] == (byte) (GZIPInputStream.GZIP_MAGIC))
-					&& (bytes[1] == (byte) (GZIPInputStream.GZIP_MAGIC >> 8)));
+	private static class Decompressed {
+		private final Path compressed;
+		private final Path target;
+
+		Decompressed(Path compressed, Path target) {
+			this.compressed = compressed;
+			this.target = target;
 		}
 	}
 }
@@ -0,0 +1,288 @@
+package ca.corefacility.bioinformatics.irida.processing.impl;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import ca.corefacility.bioinformatics.irida.model.sample.FileProcessorErrorQCEntry;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject;
+import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisFastQC;
+import ca.corefacility.bioinformatics.irida.processing.FileProcessor;
+import ca.corefacility.bioinformatics.irida.processing.FileProcessorException;
+import ca.corefacility.bioinformatics.irida.repositories.sample.QCEntryRepository;
+import ca.corefacility.bioinformatics.irida.repositories.sequencefile.SequenceFileRepository;
+
+/**
+ * {@link FileProcessor} that fuses the {@link ChecksumFileProcessor},
+ * {@link GzipFileProcessor}, {@link FastqcFileProcessor} and
+ * {@link CoverageFileProcessor} into a single pass over each
+ * {@link SequenceFile}. Each file is read from disk exactly once: the bytes are
+ * run through a sha256 digest, (optionally) decompressed and teed to the
+ * decompressed copy, and parsed for the FastQC statistics all at the same time.
+ *
+ * The results stored are the same as running the individual processors in
+ * sequence. The individual processors remain available and are used when
+ * <code>file.processing.streaming=false</code>.
+ */
+@Component
+public class StreamingFileProcessor implements FileProcessor {
+	private static final Logger logger = LoggerFactory.getLogger(StreamingFileProcessor.class);
+
+	private static final String GZIP_EXTENSION = ".gz";
+	private static final String CHECKSUM_ALGORITHM = "SHA-256";
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private final SequenceFileRepository sequenceFileRepository;
+	private final QCEntryRepository qcEntryRepository;
+	private final FastqcFileProcessor fastqcFileProcessor;
+	private final CoverageFileProcessor coverageFileProcessor;
+
+	private boolean decompressFiles = true;
+	private boolean removeCompressedFile = false;
+	private ExecutorService fileProcessingPool = null;
+
+	@Autowired
+	public StreamingFileProcessor(SequenceFileRepository sequenceFileRepository, QCEntryRepository qcEntryRepository,
+			FastqcFileProcessor fastqcFileProcessor, CoverageFileProcessor coverageFileProcessor) {
+		this.sequenceFileRepository = sequenceFileRepository;
+		this.qcEntryRepository = qcEntryRepository;
+		this.fastqcFileProcessor = fastqcFileProcessor;
+		this.coverageFileProcessor = coverageFileProcessor;
+	}
+
+	/**
+	 * Decide whether or not gzip compressed files should be decompressed and
+	 * the decompressed copy stored as the {@link SequenceFile}.
+	 *
+	 * @param decompressFiles
+	 *            Whether or not to decompress compressed files.
+	 */
+	public void setDecompressFiles(boolean decompressFiles) {
+		this.decompressFiles = decompressFiles;
+	}
+
+	/**
+	 * Decide whether or not to delete the original compressed files that are
+	 * uploaded once they're unzipped. If <code>false</code> they will be kept
+	 * in their revision directories.
+	 *
+	 * @param removeCompressedFile
+	 *            Whether or not to delete original compressed files.
+	 */
+	public void setRemoveCompressedFiles(boolean removeCompressedFile) {
+		this.removeCompressedFile = removeCompressedFile;
+	}
+
+	/**
+	 * Set the pool that the files of a {@link SequencingObject} are read in,
+	 * so the forward and reverse files of a pair are read at the same time. If
+	 * no pool is set the files are read one after another.
+	 *
+	 * @param fileProcessingPool
+	 *            the pool to read files in
+	 */
+	public void setFileProcessingPool(ExecutorService fileProcessingPool) {
+		this.fileProcessingPool = fileProcessingPool;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional
+	public void process(SequencingObject sequencingObject) {
+		List<SequenceFile> files = new ArrayList<>(sequencingObject.getFiles());
+		List<StreamedFile> streamed = FileProcessor.processFiles(files, fileProcessingPool, this::readFile);
+
+		long totalBases = 0;
+		boolean qcFailed = false;
+		for (int i = 0; i < files.size(); i++) {
+			StreamedFile result = streamed.get(i);
+			store(files.get(i), result);
+
+			if (result.fastqc == null) {
+				qcFailed = true;
+			} else {
+				totalBases += result.fastqc.getTotalBases();
+			}
+		}
+
+		if (qcFailed) {
+			// the checksum and decompressed file were still stored, so the
+			// rest of the chain is safe to run. Record the failure the same
+			// way the chain does for a processor that doesn't modify the file.
+			qcEntryRepository.save(new FileProcessorErrorQCEntry(sequencingObject));
+		} else {
+			coverageFileProcessor.saveCoverage(sequencingObject, totalBases);
+		}
+	}
+
+	/**
+	 * Read a single {@link SequenceFile} once, computing the checksum,
+	 * decompressing and running FastQC on the way through. The
+	 * {@link SequenceFile} isn't changed.
+	 *
+	 * @param sequenceFile
+	 *            the file to read
+	 * @return the results of reading the file
+	 * @throws FileProcessorException
+	 *             if the file could not be read or decompressed
+	 */
+	private StreamedFile readFile(SequenceFile sequenceFile) throws FileProcessorException {
+		Path file = sequenceFile.getFile();
+		Path decompressed = null;
+		AnalysisFastQC fastqc = null;
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+
+			try (InputStream digestStream = new DigestInputStream(Files.newInputStream(file), digest);
+					BufferedInputStream buffered = new BufferedInputStream(digestStream, BUFFER_SIZE)) {
+				boolean compressed = SequenceFile.isGzipped(buffered);
+
+				InputStream content = buffered;
+				OutputStream decompressedOutput = null;
+
+				if (compressed) {
+					content = new GZIPInputStream(buffered, BUFFER_SIZE);
+
+					if (decompressFiles) {
+						decompressed = Files.createTempDirectory(null).resolve(nameWithoutExtension(file));
+						logger.debug("Writing uncompressed file to [" + decompressed + "]");
+
+						decompressedOutput = Files.newOutputStream(decompressed);
+						content = new TeeInputStream(content, decompressedOutput);
+					}
+				}
+
+				try {
+					try {
+						fastqc = fastqcFileProcessor.computeStatistics(content);
+					} catch (Exception e) {
+						logger.error("FastQC failed to process the sequence file [" + sequenceFile
+								+ "], continuing with checksum and decompression. Stack trace follows.", e);
+					}
+
+					// whatever FastQC didn't consume still has to go through
+					// the digest and into the decompressed file.
+					IOUtils.skip(content, Long.MAX_VALUE);
+					IOUtils.skip(buffered, Long.MAX_VALUE);
+
+					if (decompressedOutput != null) {
+						decompressedOutput.close();
+					}
+				} finally {
+					IOUtils.closeQuietly(decompressedOutput);
+				}
+			}
+
+			String shaDigest = Hex.encodeHexString(digest.digest());
+			logger.trace("Checksum generated for file " + sequenceFile.getId() + ": " + shaDigest);
+
+			return new StreamedFile(shaDigest, fastqc, decompressed);
+		} catch (Exception e) {
+			logger.error("Failed to process the input file [" + sequenceFile + "]; stack trace follows.", e);
+			throw new FileProcessorException("Failed to process input file [" + sequenceFile + "].", e);
+		}
+	}
+
+	/**
+	 * Save the results of reading a {@link SequenceFile}, pointing it at the
+	 * decompressed file if there is one.
+	 *
+	 * @param sequenceFile
+	 *            the file that was read
+	 * @param result
+	 *            the results of reading the file
+	 * @throws FileProcessorException
+	 *             if the file could not be saved or the compressed file
+	 *             could not be removed
+	 */
+	private void store(SequenceFile sequenceFile, StreamedFile result) throws FileProcessorException {
+		Path file = sequenceFile.getFile();
+
+		try {
+			sequenceFile.setUploadSha256(result.sha256);
+
+			if (result.fastqc != null) {
+				sequenceFile.setFastQCAnalysis(result.fastqc);
+			}
+
+			if (result.decompressed != null) {
+				sequenceFile.setFile(result.decompressed);
+				sequenceFile.addOptionalProperty(SequenceFile.DECOMPRESSED_AFTER_UPLOAD, Boolean.TRUE.toString());
+				sequenceFileRepository.save(sequenceFile);
+
+				if (removeCompressedFile) {
+					logger.debug(
+							"Removing original compressed files [file.processing.decompress.remove.compressed.file=true]");
+					Files.delete(file);
+				}
+			} else {
+				sequenceFileRepository.saveMetadata(sequenceFile);
+			}
+		} catch (Exception e) {
+			logger.error("Failed to store the processed file [" + sequenceFile + "]; stack trace follows.", e);
+			throw new FileProcessorException("Failed to process input file [" + sequenceFile + "].", e);
+		}
+	}
+
+	/**
+	 * Get the name of the file with any ".gz" extension removed.
+	 *
+	 * @param file
+	 *            the file to get the name of
+	 * @return the file name without a gzip extension
+	 */
+	private String nameWithoutExtension(Path file) {
+		String name = file.getFileName().toString();
+		if (name.endsWith(GZIP_EXTENSION)) {
+			name = name.substring(0, name.lastIndexOf(GZIP_EXTENSION));
+		}
+		return name;
+	}
+
+	/**
+	 * Whether or not the processor modifies the file depends on whether it's
+	 * configured to decompress files, the same as {@link GzipFileProcessor}.
+	 *
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Boolean modifiesFile() {
+		return decompressFiles;
+	}
+
+	/**
+	 * The results of reading a single {@link SequenceFile}.
+	 */
+	private static class StreamedFile {
+		private final String sha256;
+		private final AnalysisFastQC fastqc;
+		private final Path decompressed;
+
+		StreamedFile(String sha256, AnalysisFastQC fastqc, Path decompressed) {
+			this.sha256 = sha256;
+			this.fastqc = fastqc;
+			this.decompressed = decompressed;
+		}
+	}
+}
@@ -1,9 +1,13 @@
 package ca.corefacility.bioinformatics.irida.repositories;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import ca.corefacility.bioinformatics.irida.model.NcbiExportSubmission;
 import ca.corefacility.bioinformatics.irida.model.enums.ExportUploadState;
@@ -34,4 +38,60 @@ public interface NcbiExportSubmissionRepository extends IridaJpaRepository<NcbiE
 	 */
 	@Query("FROM NcbiExportSubmission s WHERE s.project=?1")
 	public List<NcbiExportSubmission> getSubmissionsForProject(Project project);
+
+	/**
+	 * Claim the upload of a {@link NcbiExportSubmission} that's still in the
+	 * state it was read in, marking it as {@link ExportUploadState#UPLOADING}.
+	 *
+	 * @param id
+	 *            ID of the submission
+	 * @param currentState
+	 *            the state the submission was read in
+	 * @param uploading
+	 *            {@link ExportUploadState#UPLOADING}
+	 * @param heartbeat
+	 *            the time to record as the uploading server's heartbeat
+	 * @return the number of submissions claimed (0 if another server already
+	 *         claimed it)
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE NcbiExportSubmission s SET s.uploadState = ?3, s.uploadHeartbeat = ?4 WHERE s.id = ?1 AND s.uploadState = ?2")
+	public int claimUpload(Long id, ExportUploadState currentState, ExportUploadState uploading, Date heartbeat);
+
+	/**
+	 * Claim an upload in {@link ExportUploadState#UPLOADING} from a server
+	 * that has stopped checking in.
+	 *
+	 * @param id
+	 *            ID of the submission
+	 * @param uploading
+	 *            {@link ExportUploadState#UPLOADING}
+	 * @param heartbeat
+	 *            the time to record as the uploading server's heartbeat
+	 * @param expiry
+	 *            heartbeats older than this time are expired
+	 * @return the number of submissions claimed (0 if the uploading server is
+	 *         still checking in or another server already claimed it)
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE NcbiExportSubmission s SET s.uploadHeartbeat = ?3 WHERE s.id = ?1 AND s.uploadState = ?2 AND (s.uploadHeartbeat IS NULL OR s.uploadHeartbeat < ?4)")
+	public int claimExpiredUpload(Long id, ExportUploadState uploading, Date heartbeat, Date expiry);
+
+	/**
+	 * Record a heartbeat for the uploads a server is running.
+	 *
+	 * @param ids
+	 *            IDs of the submissions being uploaded
+	 * @param uploading
+	 *            {@link ExportUploadState#UPLOADING}
+	 * @param heartbeat
+	 *            the time to record
+	 * @return the number of submissions updated
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE NcbiExportSubmission s SET s.uploadHeartbeat = ?3 WHERE s.id IN ?1 AND s.uploadState = ?2")
+	public int updateUploadHeartbeat(Collection<Long> ids, ExportUploadState uploading, Date heartbeat);
 }
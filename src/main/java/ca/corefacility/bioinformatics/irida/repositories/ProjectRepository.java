@@ -67,6 +67,17 @@ public interface ProjectRepository extends IridaJpaRepository<Project, Long> {
 	public Page<Project> findProjectsByNameExcludingProjectForUser(final @Param("projectName") String name,
 			final @Param("exclude") Project exclude, final @Param("forUser") User user, final Pageable page);
 
+	/**
+	 * Get the ids of the {@link Project}s a {@link User} is a member of, either
+	 * directly or through a user group.
+	 * 
+	 * @param user
+	 *            the user account to load project ids for
+	 * @return the ids of the user's {@link Project}s
+	 */
+	@Query("select p.id from Project p where " + PROJECT_PERMISSIONS)
+	public List<Long> getProjectIdsForUser(final @Param("forUser") User user);
+
 	/**
 	 * Get a list of {@link Project}s from remote sites that have a given
 	 * {@link SyncStatus}
@@ -16,6 +16,7 @@ import ca.corefacility.bioinformatics.irida.model.user.User;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.Analysis;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.ProjectSampleAnalysisOutputInfo;
 import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission;
+import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmissionQueueEntry;
 import ca.corefacility.bioinformatics.irida.repositories.IridaJpaRepository;
 
 /**
@@ -144,4 +145,12 @@ public interface AnalysisSubmissionRepository extends IridaJpaRepository<Analysi
 	 */
 	List<ProjectSampleAnalysisOutputInfo> getAllAutomatedAnalysisOutputInfoForAProject(Long projectId,
 			Set<UUID> workflowIds);
+
+	/**
+	 * Get an {@link AnalysisSubmissionQueueEntry} for every {@link AnalysisSubmission} in the given states.
+	 *
+	 * @param states the {@link AnalysisState}s of the submissions to get
+	 * @return a list of {@link AnalysisSubmissionQueueEntry}
+	 */
+	List<AnalysisSubmissionQueueEntry> getQueueEntries(Collection<AnalysisState> states);
 }
@@ -1,11 +1,14 @@
 package ca.corefacility.bioinformatics.irida.repositories.analysis.submission;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
+import ca.corefacility.bioinformatics.irida.model.enums.AnalysisState;
 import ca.corefacility.bioinformatics.irida.model.project.Project;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.ProjectSampleAnalysisOutputInfo;
+import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmissionQueueEntry;
 
 /**
  * Interface for methods using native SQL queries to get {@link ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisOutputFile} info for {@link ca.corefacility.bioinformatics.irida.model.project.Project} and {@link ca.corefacility.bioinformatics.irida.model.user.User}
@@ -38,4 +41,13 @@ public interface AnalysisSubmissionRepositoryCustom {
 	 * @return a list of {@link ProjectSampleAnalysisOutputInfo}
 	 */
 	List<ProjectSampleAnalysisOutputInfo> getAllUserAnalysisOutputInfo(Long userId);
+
+	/**
+	 * Get an {@link AnalysisSubmissionQueueEntry} for every
+	 * {@link ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission} in the given states.
+	 *
+	 * @param states the {@link AnalysisState}s of the submissions to get
+	 * @return a list of {@link AnalysisSubmissionQueueEntry}
+	 */
+	List<AnalysisSubmissionQueueEntry> getQueueEntries(Collection<AnalysisState> states);
 }
@@ -1,5 +1,6 @@
 package ca.corefacility.bioinformatics.irida.repositories.analysis.submission;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -15,7 +16,9 @@ import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import ca.corefacility.bioinformatics.irida.model.enums.AnalysisState;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.ProjectSampleAnalysisOutputInfo;
+import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmissionQueueEntry;
 
 /**
  * Implementation of {@link AnalysisSubmissionRepositoryCustom} with methods using native SQL queries to get {@link ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisOutputFile} info for {@link ca.corefacility.bioinformatics.irida.model.project.Project} and {@link ca.corefacility.bioinformatics.irida.model.user.User}
@@ -172,4 +175,41 @@ public class AnalysisSubmissionRepositoryImpl implements AnalysisSubmissionRepos
 		NamedParameterJdbcTemplate tmpl = new NamedParameterJdbcTemplate(dataSource);
 		return tmpl.query(query, parameters, new BeanPropertyRowMapper(ProjectSampleAnalysisOutputInfo.class));
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<AnalysisSubmissionQueueEntry> getQueueEntries(Collection<AnalysisState> states) {
+		// @formatter:off
+		final String query =
+			"SELECT\n"
+			+ "  asub.id AS submissionId,\n"
+			+ "  asub.submitter AS submitterId,\n"
+			+ "  COALESCE(MIN(pasub.project_id), MIN(psample.project_id)) AS projectId,\n"
+			+ "  asub.workflow_id AS workflowId,\n"
+			+ "  asub.priority AS priority,\n"
+			+ "  asub.analysis_state AS analysisState,\n"
+			+ "  asub.created_date AS createdDate\n"
+			+ "FROM analysis_submission asub\n"
+			+ "  LEFT JOIN project_analysis_submission pasub ON asub.id = pasub.analysis_submission_id\n"
+			+ "  LEFT JOIN analysis_submission_sequencing_object o ON asub.id = o.analysis_submission_id\n"
+			+ "  LEFT JOIN sample_sequencingobject sso ON sso.sequencingobject_id = o.sequencing_object_id\n"
+			+ "  LEFT JOIN project_sample psample ON sso.sample_id = psample.sample_id\n"
+			+ "WHERE\n"
+			+ "  asub.analysis_state IN (:states)\n"
+			+ "GROUP BY\n"
+			+ "  asub.id, asub.submitter, asub.workflow_id, asub.priority, asub.analysis_state, asub.created_date";
+		// @formatter:on
+		MapSqlParameterSource parameters = new MapSqlParameterSource();
+		// need to explicitly convert states to String
+		final List<String> stateNames = states.stream()
+				.map(AnalysisState::name)
+				.collect(Collectors.toList());
+		parameters.addValue("states", stateNames);
+		logger.trace("Getting analysis submission queue entries for states " + stateNames);
+		NamedParameterJdbcTemplate tmpl = new NamedParameterJdbcTemplate(dataSource);
+		return tmpl.query(query, parameters, new BeanPropertyRowMapper(AnalysisSubmissionQueueEntry.class));
+	}
 }
@@ -1,5 +1,6 @@
 package ca.corefacility.bioinformatics.irida.repositories.joins.project;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
@@ -29,6 +30,16 @@ public interface ProjectSampleJoinRepository extends PagingAndSortingRepository<
 	@Query("select j from ProjectSampleJoin j where j.sample = ?1")
 	public List<Join<Project, Sample>> getProjectForSample(Sample sample);
 
+	/**
+	 * Get the {@link ProjectSampleJoin}s for a set of {@link Sample}s
+	 * 
+	 * @param sampleIds
+	 *            the ids of the {@link Sample}s to get the projects for
+	 * @return the {@link ProjectSampleJoin}s for all of the samples
+	 */
+	@Query("select j from ProjectSampleJoin j join fetch j.project join fetch j.sample where j.sample.id in ?1")
+	public List<ProjectSampleJoin> getProjectsForSampleIds(Collection<Long> sampleIds);
+
 	/**
 	 * Get a specific {@link ProjectSampleJoin} for a {@link Project} and
 	 * {@link Sample}
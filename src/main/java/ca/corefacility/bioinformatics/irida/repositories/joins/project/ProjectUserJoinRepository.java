@@ -1,5 +1,6 @@
 package ca.corefacility.bioinformatics.irida.repositories.joins.project;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
@@ -92,6 +93,18 @@ public interface ProjectUserJoinRepository extends CrudRepository<ProjectUserJoi
 	 */
 	@Query("from ProjectUserJoin j where j.project = ?1 and j.user = ?2")
 	public ProjectUserJoin getProjectJoinForUser(Project project, User user);
+
+	/**
+	 * Get the joins for a {@link User} on any of a set of {@link Project}s.
+	 * 
+	 * @param user
+	 *            the user
+	 * @param projectIds
+	 *            the ids of the projects
+	 * @return the {@link ProjectUserJoin}s for the user on those projects
+	 */
+	@Query("from ProjectUserJoin j where j.user = ?1 and j.project.id in ?2")
+	public List<ProjectUserJoin> getProjectJoinsForUser(User user, Collection<Long> projectIds);
 	
 	/**
 	 * Get a list of all {@link User}s who are subscribed to any {@link Project}
@@ -47,6 +47,32 @@ public interface UserGroupProjectJoinRepository extends IridaJpaRepository<UserG
 	@Query("from UserGroupProjectJoin ugpj where ugpj.userGroup in (select group from UserGroupJoin where user = ?1)")
 	public Collection<UserGroupProjectJoin> findProjectsByUser(final User u);
 
+	/**
+	 * Find the groups on a project that the specified user is a member of.
+	 *
+	 * @param p
+	 *            the project
+	 * @param u
+	 *            the user
+	 * @return the joins for groups on the project that the user is in.
+	 */
+	@Query("from UserGroupProjectJoin ugpj where ugpj.project = ?1 and ugpj.userGroup in (select group from UserGroupJoin where user = ?2)")
+	public Collection<UserGroupProjectJoin> findGroupsByProjectAndUser(final Project p, final User u);
+
+	/**
+	 * Find the groups on any of a set of projects that the specified user is a
+	 * member of.
+	 *
+	 * @param projectIds
+	 *            the ids of the projects
+	 * @param u
+	 *            the user
+	 * @return the joins for groups on the projects that the user is in.
+	 */
+	@Query("from UserGroupProjectJoin ugpj where ugpj.project.id in ?1 and ugpj.userGroup in (select group from UserGroupJoin where user = ?2)")
+	public Collection<UserGroupProjectJoin> findGroupsByProjectIdsAndUser(final Collection<Long> projectIds,
+			final User u);
+
 	/**
 	 * Find the join for a user group and project.
 	 * 
@@ -1,5 +1,6 @@
 package ca.corefacility.bioinformatics.irida.repositories.joins.sample;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.Query;
@@ -7,7 +8,9 @@ import org.springframework.data.jpa.repository.Query;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
 import ca.corefacility.bioinformatics.irida.model.sample.SampleSequencingObjectJoin;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFilePair;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SingleEndSequenceFile;
 import ca.corefacility.bioinformatics.irida.repositories.IridaJpaRepository;
 
 /**
@@ -47,4 +50,30 @@ public interface SampleSequencingObjectJoinRepository extends IridaJpaRepository
 	 */
 	@Query("from SampleSequencingObjectJoin j where j.sequencingObject = ?1")
 	public SampleSequencingObjectJoin getSampleForSequencingObject(SequencingObject seqObject);
+
+	/**
+	 * Count the bases in the {@link SingleEndSequenceFile}s of a set of
+	 * samples. Each row of the result is for one sample and holds the sample
+	 * id, the number of files, the number of files with a FastQC total bases
+	 * count, and the sum of the total bases.
+	 * 
+	 * @param sampleIds
+	 *            the ids of the samples to count bases for
+	 * @return a row for each sample with single end files
+	 */
+	@Query("select j.sample.id, count(f), count(a.totalBases), sum(a.totalBases) from SampleSequencingObjectJoin j, SingleEndSequenceFile o join o.file f left join f.fastqcAnalysis a where j.sequencingObject = o and j.sample.id in ?1 group by j.sample.id")
+	public List<Object[]> countSingleEndBasesForSamples(Collection<Long> sampleIds);
+
+	/**
+	 * Count the bases in the {@link SequenceFilePair}s of a set of samples.
+	 * Each row of the result is for one sample and holds the sample id, the
+	 * number of files, the number of files with a FastQC total bases count,
+	 * and the sum of the total bases.
+	 * 
+	 * @param sampleIds
+	 *            the ids of the samples to count bases for
+	 * @return a row for each sample with paired files
+	 */
+	@Query("select j.sample.id, count(f), count(a.totalBases), sum(a.totalBases) from SampleSequencingObjectJoin j, SequenceFilePair o join o.files f left join f.fastqcAnalysis a where j.sequencingObject = o and j.sample.id in ?1 group by j.sample.id")
+	public List<Object[]> countPairedBasesForSamples(Collection<Long> sampleIds);
 }
@@ -3,6 +3,7 @@ package ca.corefacility.bioinformatics.irida.repositories.remote;
 import java.util.Map;
 
 import ca.corefacility.bioinformatics.irida.model.RemoteAPI;
+import ca.corefacility.bioinformatics.irida.model.remote.resource.ResourceList;
 import ca.corefacility.bioinformatics.irida.model.sample.MetadataTemplateField;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
 import ca.corefacility.bioinformatics.irida.model.sample.metadata.MetadataEntry;
@@ -24,4 +25,18 @@ public interface SampleRemoteRepository extends RemoteRepository<Sample> {
 	 *         {@link MetadataTemplateField}
 	 */
 	public Map<String, MetadataEntry> getSampleMetadata(Sample sample);
+
+	/**
+	 * List the {@link Sample}s that have changed at a remote api. If the api
+	 * doesn't support listing changes the returned list will have no change
+	 * token and will hold every sample.
+	 * 
+	 * @param uri
+	 *            the URI to list the changes from, including the change token
+	 *            to start from
+	 * @param remoteAPI
+	 *            the {@link RemoteAPI} to read from
+	 * @return the changed {@link Sample}s with the token for the next changes
+	 */
+	public ResourceList<Sample> listChanges(String uri, RemoteAPI remoteAPI);
 }
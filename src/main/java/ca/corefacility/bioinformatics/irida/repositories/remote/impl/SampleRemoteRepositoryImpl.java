@@ -18,6 +18,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import ca.corefacility.bioinformatics.irida.model.IridaResourceSupport;
 import ca.corefacility.bioinformatics.irida.model.RemoteAPI;
 import ca.corefacility.bioinformatics.irida.model.remote.resource.ListResourceWrapper;
+import ca.corefacility.bioinformatics.irida.model.remote.resource.ResourceList;
 import ca.corefacility.bioinformatics.irida.model.remote.resource.ResourceWrapper;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
 import ca.corefacility.bioinformatics.irida.model.sample.metadata.MetadataEntry;
@@ -63,6 +64,23 @@ public class SampleRemoteRepositoryImpl extends RemoteRepositoryImpl<Sample> imp
 		return super.list(uri, remoteAPI);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ResourceList<Sample> listChanges(String uri, RemoteAPI remoteAPI) {
+		logger.trace("Listing remote sample changes from " + uri);
+		OAuthTokenRestTemplate restTemplate = new OAuthTokenRestTemplate(tokenService, remoteAPI);
+		ResponseEntity<ListResourceWrapper<Sample>> exchange = restTemplate.exchange(uri, HttpMethod.GET,
+				HttpEntity.EMPTY, listTypeReference);
+
+		ResourceList<Sample> changes = exchange.getBody().getResource();
+		for (Sample s : changes.getResources()) {
+			setRemoteStatus(s, remoteAPI);
+		}
+		return changes;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
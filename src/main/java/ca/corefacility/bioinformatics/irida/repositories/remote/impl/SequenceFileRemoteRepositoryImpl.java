@@ -1,13 +1,17 @@
 package ca.corefacility.bioinformatics.irida.repositories.remote.impl;
 
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
-import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.security.core.token.TokenService;
 import org.springframework.stereotype.Repository;
 
@@ -17,9 +21,11 @@ import ca.corefacility.bioinformatics.irida.model.remote.resource.ResourceWrappe
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
 import ca.corefacility.bioinformatics.irida.repositories.remote.SequenceFileRemoteRepository;
 import ca.corefacility.bioinformatics.irida.repositories.remote.resttemplate.OAuthTokenRestTemplate;
-import ca.corefacility.bioinformatics.irida.repositories.remote.resttemplate.SequenceFileMessageConverter;
+import ca.corefacility.bioinformatics.irida.repositories.remote.resttemplate.ChunkedFileDownloader;
 import ca.corefacility.bioinformatics.irida.service.RemoteAPITokenService;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Implementation of {@link SequenceFileRemoteRepository} using
  * {@link OAuthTokenRestTemplate} for making requests
@@ -40,16 +46,56 @@ public class SequenceFileRemoteRepositoryImpl extends RemoteRepositoryImpl<Seque
 
 	public static final MediaType DEFAULT_DOWNLOAD_MEDIA_TYPE = new MediaType("application", "fastq");
 
+	private final Path downloadDirectory;
+	private final long chunkSize;
+	private final int maxAttempts;
+	private final long retryDelay;
+
+	// shared by all downloads so the number of connections to remote servers
+	// stays bounded
+	private final ExecutorService downloadExecutor;
+
 	/**
 	 * Create a new SequenceFileRemoteRepositoryImpl
 	 * 
 	 * @param tokenService
 	 *            The {@link TokenService} storing OAuth2 tokens
+	 * @param downloadDirectory
+	 *            The directory to keep partial downloads in so they can be
+	 *            resumed
+	 * @param chunkSize
+	 *            The number of bytes to request at a time
+	 * @param connections
+	 *            The number of chunks to download at the same time
+	 * @param maxAttempts
+	 *            The number of times to try downloading each chunk
+	 * @param retryDelay
+	 *            The delay in milliseconds before retrying a failed chunk.
+	 *            The delay doubles for each following retry.
 	 */
 	@Autowired
-	public SequenceFileRemoteRepositoryImpl(RemoteAPITokenService tokenService) {
+	public SequenceFileRemoteRepositoryImpl(RemoteAPITokenService tokenService,
+			@Value("${remote.download.directory:${java.io.tmpdir}/irida-remote-downloads}") String downloadDirectory,
+			@Value("${remote.download.chunk.size:33554432}") long chunkSize,
+			@Value("${remote.download.connections:4}") int connections,
+			@Value("${remote.download.attempts:5}") int maxAttempts,
+			@Value("${remote.download.retry.delay:1000}") long retryDelay) {
 		super(tokenService, listTypeReference, objectTypeReference);
 		this.tokenService = tokenService;
+		this.downloadDirectory = Paths.get(downloadDirectory);
+		this.chunkSize = chunkSize;
+		this.maxAttempts = maxAttempts;
+		this.retryDelay = retryDelay;
+		this.downloadExecutor = Executors.newFixedThreadPool(connections,
+				new ThreadFactoryBuilder().setNameFormat("remote-download-%d").setDaemon(true).build());
+	}
+
+	/**
+	 * Stop the download threads when the repository is destroyed.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		downloadExecutor.shutdownNow();
 	}
 
 	/**
@@ -61,19 +107,15 @@ public class SequenceFileRemoteRepositoryImpl extends RemoteRepositoryImpl<Seque
 
 		OAuthTokenRestTemplate restTemplate = new OAuthTokenRestTemplate(tokenService, remoteAPI);
 
-		// add the sequence file message converter
-		List<HttpMessageConverter<?>> converters = restTemplate.getMessageConverters();
-		converters.add(new SequenceFileMessageConverter(file.getFileName()));
-		restTemplate.setMessageConverters(converters);
-
 		// add the application/fastq accept header
 		HttpHeaders requestHeaders = new HttpHeaders();
 		requestHeaders.setAccept(Arrays.asList(mediaTypes));
-		HttpEntity<Path> requestEntity = new HttpEntity<Path>(requestHeaders);
 
-		// get the file
-		ResponseEntity<Path> exchange = restTemplate.exchange(uri, HttpMethod.GET, requestEntity, Path.class);
-		return exchange.getBody();
+		// get the file, resuming any earlier partial download of it
+		ChunkedFileDownloader downloader = new ChunkedFileDownloader(restTemplate, downloadExecutor,
+				downloadDirectory, chunkSize, maxAttempts, retryDelay);
+		return downloader.download(uri, requestHeaders, file.getFileName(), file.getUploadSha256(),
+				Boolean.parseBoolean(file.getOptionalProperty(SequenceFile.DECOMPRESSED_AFTER_UPLOAD)));
 	}
 
 	/**
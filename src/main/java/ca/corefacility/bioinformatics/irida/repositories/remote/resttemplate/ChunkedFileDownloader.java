@@ -0,0 +1,689 @@
+package ca.corefacility.bioinformatics.irida.repositories.remote.resttemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
+import ca.corefacility.bioinformatics.irida.util.RecursiveDeleteVisitor;
+
+/**
+ * Downloads a file from a remote IRIDA installation in chunks using HTTP byte
+ * range requests. Chunks are fetched in parallel, failed chunks are retried
+ * with an increasing delay, and the chunks that have been written are recorded
+ * in a journal next to the partial file so an interrupted download can be
+ * resumed by a later synchronization instead of starting over.
+ * <p>
+ * If the remote server doesn't support range requests the file is downloaded
+ * in a single request.
+ * </p>
+ */
+public class ChunkedFileDownloader {
+	private static final Logger logger = LoggerFactory.getLogger(ChunkedFileDownloader.class);
+
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final String DATA_FILE = "data";
+	private static final String JOURNAL_FILE = "journal";
+
+	private final RestTemplate restTemplate;
+	private final ExecutorService executor;
+	private final Path journalDirectory;
+	private final long chunkSize;
+	private final int maxAttempts;
+	private final long retryDelay;
+
+	/**
+	 * Create a new {@link ChunkedFileDownloader}
+	 *
+	 * @param restTemplate
+	 *            the {@link RestTemplate} to make requests with
+	 * @param executor
+	 *            the executor to fetch chunks on
+	 * @param journalDirectory
+	 *            the directory to keep partial downloads in
+	 * @param chunkSize
+	 *            the number of bytes to request at a time
+	 * @param maxAttempts
+	 *            the number of times to try each request before failing
+	 * @param retryDelay
+	 *            the delay in milliseconds before the first retry. The delay
+	 *            doubles for each following retry.
+	 */
+	public ChunkedFileDownloader(RestTemplate restTemplate, ExecutorService executor, Path journalDirectory,
+			long chunkSize, int maxAttempts, long retryDelay) {
+		this.restTemplate = restTemplate;
+		this.executor = executor;
+		this.journalDirectory = journalDirectory;
+		this.chunkSize = chunkSize;
+		this.maxAttempts = maxAttempts;
+		this.retryDelay = retryDelay;
+	}
+
+	/**
+	 * Download a file, resuming a previous partial download of the same URI if
+	 * there is one.
+	 *
+	 * @param uri
+	 *            the URI of the file
+	 * @param requestHeaders
+	 *            headers to send with each request (ie. Accept)
+	 * @param fileName
+	 *            the name to give the downloaded file
+	 * @param sha256
+	 *            the expected SHA-256 checksum of the file, or null if not
+	 *            known
+	 * @param decompressedAfterUpload
+	 *            whether the remote server decompressed the file after it was
+	 *            uploaded, so the checksum is of the compressed upload
+	 * @return the downloaded file in a new temporary directory
+	 * @throws ResourceAccessException
+	 *             if the file couldn't be downloaded or doesn't match the
+	 *             checksum
+	 */
+	public Path download(String uri, HttpHeaders requestHeaders, String fileName, String sha256,
+			boolean decompressedAfterUpload) {
+		Path downloadDirectory = journalDirectory.resolve(DigestUtils.sha256Hex(uri));
+
+		try {
+			Files.createDirectories(downloadDirectory);
+			Path data = downloadDirectory.resolve(DATA_FILE);
+
+			try {
+				fetch(uri, requestHeaders, downloadDirectory);
+			} catch (RemoteFileChangedException e) {
+				logger.debug("Remote file [" + uri + "] changed since the download started, starting over");
+				clear(downloadDirectory);
+				fetch(uri, requestHeaders, downloadDirectory);
+			}
+
+			verify(uri, downloadDirectory, sha256, decompressedAfterUpload);
+
+			Path target = Files.createTempDirectory(null).resolve(fileName);
+			Files.move(data, target, StandardCopyOption.REPLACE_EXISTING);
+			Files.walkFileTree(downloadDirectory, new RecursiveDeleteVisitor());
+
+			return target;
+		} catch (IOException e) {
+			throw new ResourceAccessException("Could not download remote file [" + uri + "]: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Fetch every chunk of the file that hasn't been written to the partial
+	 * file yet.
+	 *
+	 * @param uri
+	 *            the URI of the file
+	 * @param requestHeaders
+	 *            headers to send with each request
+	 * @param downloadDirectory
+	 *            the directory holding the partial file and journal
+	 * @throws IOException
+	 *             if a chunk couldn't be fetched
+	 */
+	private void fetch(String uri, HttpHeaders requestHeaders, Path downloadDirectory) throws IOException {
+		Path data = downloadDirectory.resolve(DATA_FILE);
+		DownloadJournal journal = DownloadJournal.read(downloadDirectory.resolve(JOURNAL_FILE), chunkSize);
+
+		if (journal == null) {
+			clear(downloadDirectory);
+			journal = withRetries(uri, () -> fetchFirstChunk(uri, requestHeaders, downloadDirectory));
+			if (journal == null) {
+				// the server sent the whole file
+				return;
+			}
+		} else {
+			logger.debug("Resuming download of [" + uri + "] with " + journal.remainingChunks().size()
+					+ " chunks remaining");
+		}
+
+		final DownloadJournal currentJournal = journal;
+		// requests are authorized as the user running the download, so the
+		// chunk threads need their security context
+		SecurityContext securityContext = SecurityContextHolder.getContext();
+		// once a chunk has failed the chunks that haven't started are skipped
+		AtomicBoolean failed = new AtomicBoolean(false);
+		List<Future<Void>> chunks = new ArrayList<>();
+		for (int chunk : journal.remainingChunks()) {
+			chunks.add(executor.submit(new DelegatingSecurityContextCallable<Void>(() -> {
+				if (failed.get()) {
+					return null;
+				}
+				try {
+					withRetries(uri, () -> {
+						fetchChunk(uri, requestHeaders, data, currentJournal, chunk);
+						return null;
+					});
+				} catch (IOException | RuntimeException e) {
+					failed.set(true);
+					throw e;
+				}
+				currentJournal.complete(chunk);
+				return null;
+			}, securityContext)));
+		}
+
+		try {
+			for (Future<Void> chunk : chunks) {
+				chunk.get();
+			}
+		} catch (InterruptedException e) {
+			chunks.forEach(c -> c.cancel(true));
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while downloading [" + uri + "]");
+		} catch (ExecutionException e) {
+			chunks.forEach(c -> c.cancel(true));
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Failed to download [" + uri + "]", e.getCause());
+		} finally {
+			journal.close();
+		}
+	}
+
+	/**
+	 * Request the first chunk of the file to learn its length and validators.
+	 *
+	 * @param uri
+	 *            the URI of the file
+	 * @param requestHeaders
+	 *            headers to send with the request
+	 * @param downloadDirectory
+	 *            the directory holding the partial file and journal
+	 * @return the journal for the rest of the download, or null if the server
+	 *         sent the whole file
+	 * @throws IOException
+	 *             if the chunk couldn't be fetched
+	 */
+	private DownloadJournal fetchFirstChunk(String uri, HttpHeaders requestHeaders, Path downloadDirectory)
+			throws IOException {
+		Path data = downloadDirectory.resolve(DATA_FILE);
+		HttpHeaders headers = new HttpHeaders();
+		headers.putAll(requestHeaders);
+		headers.set(HttpHeaders.RANGE, "bytes=0-" + (chunkSize - 1));
+
+		try {
+			return restTemplate.execute(uri, HttpMethod.GET, r -> r.getHeaders().putAll(headers), response -> {
+				if (response.getStatusCode() != HttpStatus.PARTIAL_CONTENT) {
+					writeWholeFile(uri, response, data);
+					return null;
+				}
+
+				long[] range = parseContentRange(response);
+				DownloadJournal journal = DownloadJournal.create(downloadDirectory.resolve(JOURNAL_FILE), range[2],
+						chunkSize, response.getHeaders().getETag(), response.getHeaders().getFirst(
+								HttpHeaders.LAST_MODIFIED));
+				try (FileChannel channel = FileChannel.open(data, StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE)) {
+					writeChunk(uri, response, channel, range, 0, journal.chunkEnd(0));
+				}
+				journal.complete(0);
+				return journal;
+			});
+		} catch (HttpClientErrorException e) {
+			if (e.getStatusCode() != HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE) {
+				throw e;
+			}
+
+			// an empty file has no satisfiable ranges
+			return restTemplate.execute(uri, HttpMethod.GET, r -> r.getHeaders().putAll(requestHeaders),
+					response -> {
+						writeWholeFile(uri, response, data);
+						return null;
+					});
+		}
+	}
+
+	/**
+	 * Fetch one chunk of the file and write it into the partial file.
+	 *
+	 * @param uri
+	 *            the URI of the file
+	 * @param requestHeaders
+	 *            headers to send with the request
+	 * @param data
+	 *            the partial file
+	 * @param journal
+	 *            the journal for the download
+	 * @param chunk
+	 *            the index of the chunk to fetch
+	 * @throws IOException
+	 *             if the chunk couldn't be fetched
+	 */
+	private void fetchChunk(String uri, HttpHeaders requestHeaders, Path data, DownloadJournal journal, int chunk)
+			throws IOException {
+		long start = journal.chunkStart(chunk);
+		long end = journal.chunkEnd(chunk);
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.putAll(requestHeaders);
+		headers.set(HttpHeaders.RANGE, "bytes=" + start + "-" + end);
+		if (journal.getValidator() != null) {
+			headers.set(HttpHeaders.IF_RANGE, journal.getValidator());
+		}
+
+		restTemplate.execute(uri, HttpMethod.GET, r -> r.getHeaders().putAll(headers), response -> {
+			if (response.getStatusCode() != HttpStatus.PARTIAL_CONTENT) {
+				throw new RemoteFileChangedException();
+			}
+
+			long[] range = parseContentRange(response);
+			if (range[2] != journal.getLength()) {
+				throw new RemoteFileChangedException();
+			}
+
+			try (FileChannel channel = FileChannel.open(data, StandardOpenOption.WRITE)) {
+				writeChunk(uri, response, channel, range, start, end);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Write a response containing the whole file into the partial file.
+	 *
+	 * @param uri
+	 *            the URI of the file
+	 * @param response
+	 *            the response
+	 * @param data
+	 *            the partial file
+	 * @throws IOException
+	 *             if the response is shorter than its Content-Length
+	 */
+	private void writeWholeFile(String uri, ClientHttpResponse response, Path data) throws IOException {
+		logger.debug("Remote server sent the whole of [" + uri + "]");
+		long written;
+		try (InputStream body = response.getBody();
+				FileChannel channel = FileChannel.open(data, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			written = channel.transferFrom(Channels.newChannel(body), 0, Long.MAX_VALUE);
+		}
+
+		long expected = response.getHeaders().getContentLength();
+		if (expected >= 0 && written != expected) {
+			throw new IOException("Remote file [" + uri + "] expected size [" + expected + "] != actual size ["
+					+ written + "]");
+		}
+	}
+
+	/**
+	 * Write the body of a partial content response into the partial file.
+	 *
+	 * @param uri
+	 *            the URI of the file
+	 * @param response
+	 *            the response
+	 * @param channel
+	 *            the partial file
+	 * @param range
+	 *            the range the response contains
+	 * @param start
+	 *            the first byte requested
+	 * @param end
+	 *            the last byte requested
+	 * @throws IOException
+	 *             if the response doesn't contain the requested range
+	 */
+	private void writeChunk(String uri, ClientHttpResponse response, FileChannel channel, long[] range, long start,
+			long end) throws IOException {
+		if (range[0] != start || range[1] != end) {
+			throw new IOException("Remote server sent bytes " + range[0] + "-" + range[1] + " of [" + uri
+					+ "] when bytes " + start + "-" + end + " were requested");
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long position = start;
+		try (ReadableByteChannel body = Channels.newChannel(response.getBody())) {
+			while (position <= end && body.read(buffer) != -1) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					position += channel.write(buffer, position);
+				}
+				buffer.clear();
+			}
+		}
+
+		if (position != end + 1) {
+			throw new IOException("Remote server sent " + (position - start) + " bytes of [" + uri + "] when "
+					+ (end - start + 1) + " were requested");
+		}
+
+		// make sure the chunk is on disk before it's recorded in the journal
+		channel.force(false);
+	}
+
+	/**
+	 * Check the downloaded file against the checksum of the remote file. If
+	 * it doesn't match, the partial download is thrown away so the next
+	 * attempt starts over.
+	 * <p>
+	 * The remote checksum is of the file as it was uploaded. A remote server
+	 * that decompressed a gzip upload serves the decompressed file, which
+	 * can't match the checksum. Files decompressed before the remote started
+	 * marking them, or by older remote servers, aren't marked at all, so an
+	 * uncompressed file can't be known to be the bytes that were checksummed.
+	 * A mismatch is only fatal when the downloaded file is still gzipped, as
+	 * a gzipped file is always served as it was uploaded.
+	 * </p>
+	 *
+	 * @param uri
+	 *            the URI of the file
+	 * @param downloadDirectory
+	 *            the directory holding the downloaded file and journal
+	 * @param sha256
+	 *            the expected checksum, or null if not known
+	 * @param decompressedAfterUpload
+	 *            whether the remote file was decompressed after upload
+	 * @throws IOException
+	 *             if the file can't be read or doesn't match the checksum
+	 */
+	private void verify(String uri, Path downloadDirectory, String sha256, boolean decompressedAfterUpload)
+			throws IOException {
+		if (sha256 == null) {
+			return;
+		}
+
+		Path data = downloadDirectory.resolve(DATA_FILE);
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("SHA-256 is not available", e);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+			while (channel.read(buffer) != -1) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+
+		String actual = Hex.encodeHexString(digest.digest());
+		if (sha256.equals(actual)) {
+			logger.trace("Downloaded file [" + uri + "] matches remote checksum");
+		} else if (!SequenceFile.isGzipped(data)) {
+			if (decompressedAfterUpload) {
+				logger.debug("Downloaded file [" + uri + "] was decompressed after upload, so checksum [" + actual
+						+ "] can't match remote upload checksum [" + sha256 + "]");
+			} else {
+				logger.warn("Downloaded file [" + uri + "] checksum [" + actual + "] does not match remote checksum ["
+						+ sha256 + "]. The remote file may have been decompressed after upload, so it is kept.");
+			}
+		} else {
+			Files.walkFileTree(downloadDirectory, new RecursiveDeleteVisitor());
+			throw new IOException("Downloaded file checksum [" + actual + "] does not match remote checksum ["
+					+ sha256 + "]");
+		}
+	}
+
+	/**
+	 * Run a request, retrying with an increasing delay if it fails because of
+	 * a network or server error.
+	 *
+	 * @param uri
+	 *            the URI being requested
+	 * @param request
+	 *            the request to run
+	 * @return the result of the request
+	 * @throws IOException
+	 *             if the request failed on every attempt
+	 */
+	private <T> T withRetries(String uri, Request<T> request) throws IOException {
+		for (int attempt = 1;; attempt++) {
+			try {
+				return request.run();
+			} catch (RemoteFileChangedException e) {
+				throw e;
+			} catch (IOException | ResourceAccessException | HttpServerErrorException e) {
+				// the rest template wraps exceptions thrown while reading the
+				// response
+				if (e.getCause() instanceof RemoteFileChangedException) {
+					throw (RemoteFileChangedException) e.getCause();
+				}
+
+				if (attempt >= maxAttempts) {
+					throw e instanceof IOException ? (IOException) e
+							: new IOException("Request for [" + uri + "] failed", e);
+				}
+
+				long delay = retryDelay << (attempt - 1);
+				logger.debug("Request for [" + uri + "] failed (attempt " + attempt + " of " + maxAttempts
+						+ "), retrying in " + delay + "ms", e);
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting to retry [" + uri + "]");
+				}
+			}
+		}
+	}
+
+	private static long[] parseContentRange(ClientHttpResponse response) throws IOException {
+		String contentRange = response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE);
+		Matcher matcher = contentRange == null ? null : CONTENT_RANGE.matcher(contentRange.trim());
+		if (matcher == null || !matcher.matches()) {
+			throw new IOException("Invalid Content-Range [" + contentRange + "] in partial content response");
+		}
+
+		return new long[] { Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)),
+				Long.parseLong(matcher.group(3)) };
+	}
+
+	private static void clear(Path downloadDirectory) throws IOException {
+		Files.deleteIfExists(downloadDirectory.resolve(JOURNAL_FILE));
+		Files.deleteIfExists(downloadDirectory.resolve(DATA_FILE));
+	}
+
+	/**
+	 * A request that may fail with an {@link IOException}
+	 */
+	@FunctionalInterface
+	private interface Request<T> {
+		T run() throws IOException;
+	}
+
+	/**
+	 * Thrown when the remote file no longer matches the partial download.
+	 */
+	private static class RemoteFileChangedException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		RemoteFileChangedException() {
+			super("Remote file changed since the download started");
+		}
+	}
+
+	/**
+	 * Records which chunks of a partial download have been written. The
+	 * journal starts with the length of the file, the chunk size and the
+	 * validator to send with range requests, followed by the index of each
+	 * chunk as it's completed.
+	 */
+	private static class DownloadJournal {
+		private final Path path;
+		private final long length;
+		private final long chunkSize;
+		private final String validator;
+		private final BitSet completed;
+		private BufferedWriter writer;
+		private boolean closed = false;
+
+		private DownloadJournal(Path path, long length, long chunkSize, String validator, BitSet completed) {
+			this.path = path;
+			this.length = length;
+			this.chunkSize = chunkSize;
+			this.validator = validator;
+			this.completed = completed;
+		}
+
+		/**
+		 * Start a new journal.
+		 *
+		 * @param path
+		 *            the journal file
+		 * @param length
+		 *            the length of the remote file
+		 * @param chunkSize
+		 *            the size of each chunk
+		 * @param eTag
+		 *            the remote file's entity tag, if any
+		 * @param lastModified
+		 *            the remote file's modification date, if any
+		 * @return the journal
+		 * @throws IOException
+		 *             if the journal can't be written
+		 */
+		static DownloadJournal create(Path path, long length, long chunkSize, String eTag, String lastModified)
+				throws IOException {
+			// weak entity tags can't be used to validate ranges
+			String validator = eTag != null && !eTag.startsWith("W/") ? eTag : lastModified;
+
+			List<String> header = new ArrayList<>();
+			header.add(Long.toString(length));
+			header.add(Long.toString(chunkSize));
+			header.add(validator == null ? "" : validator);
+			Files.write(path, header, StandardCharsets.UTF_8);
+
+			return new DownloadJournal(path, length, chunkSize, validator, new BitSet());
+		}
+
+		/**
+		 * Read an existing journal.
+		 *
+		 * @param path
+		 *            the journal file
+		 * @param chunkSize
+		 *            the chunk size the download will use
+		 * @return the journal, or null if there isn't a journal that can be
+		 *         resumed
+		 */
+		static DownloadJournal read(Path path, long chunkSize) {
+			if (!Files.exists(path)) {
+				return null;
+			}
+
+			try {
+				List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+				long length = Long.parseLong(lines.get(0));
+				String validator = lines.get(2);
+				if (Long.parseLong(lines.get(1)) != chunkSize || validator.isEmpty()) {
+					// without a validator a resumed range could be from a
+					// different version of the file
+					return null;
+				}
+
+				BitSet completed = new BitSet();
+				for (String line : lines.subList(3, lines.size())) {
+					if (!line.isEmpty()) {
+						completed.set(Integer.parseInt(line));
+					}
+				}
+
+				return new DownloadJournal(path, length, chunkSize, validator, completed);
+			} catch (IOException | RuntimeException e) {
+				logger.debug("Ignoring unreadable download journal [" + path + "]", e);
+				return null;
+			}
+		}
+
+		long getLength() {
+			return length;
+		}
+
+		String getValidator() {
+			return validator;
+		}
+
+		long chunkStart(int chunk) {
+			return chunk * chunkSize;
+		}
+
+		long chunkEnd(int chunk) {
+			return Math.min(length, (chunk + 1) * chunkSize) - 1;
+		}
+
+		List<Integer> remainingChunks() {
+			int chunks = (int) ((length + chunkSize - 1) / chunkSize);
+			List<Integer> remaining = new ArrayList<>();
+			for (int i = completed.nextClearBit(0); i < chunks; i = completed.nextClearBit(i + 1)) {
+				remaining.add(i);
+			}
+			return remaining;
+		}
+
+		/**
+		 * Record that a chunk has been written to disk.
+		 *
+		 * @param chunk
+		 *            the index of the chunk
+		 * @throws IOException
+		 *             if the journal can't be written
+		 */
+		synchronized void complete(int chunk) throws IOException {
+			if (closed) {
+				// a chunk that finished after the download was abandoned
+				return;
+			}
+			if (writer == null) {
+				writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+			}
+			completed.set(chunk);
+			writer.write(Integer.toString(chunk));
+			writer.newLine();
+			writer.flush();
+		}
+
+		synchronized void close() throws IOException {
+			closed = true;
+			if (writer != null) {
+				writer.close();
+				writer = null;
+			}
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package ca.corefacility.bioinformatics.irida.repositories.sample;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.Query;
@@ -23,4 +24,16 @@ public interface QCEntryRepository extends IridaJpaRepository<QCEntry, Long> {
 	 */
 	@Query("FROM QCEntry e WHERE e.sequencingObject.sample.sample = ?1")
 	public List<QCEntry> getQCEntriesForSample(Sample sample);
-}
\ No newline at end of file
+
+	/**
+	 * Find all the {@link QCEntry} associated with {@link SequencingObject}s
+	 * in a set of {@link Sample}s. Each row of the result holds the id of the
+	 * {@link Sample} and one of its {@link QCEntry}.
+	 * 
+	 * @param sampleIds
+	 *            the ids of the {@link Sample}s to get {@link QCEntry} for
+	 * @return a list of sample id and {@link QCEntry} pairs
+	 */
+	@Query("select j.sample.id, e from QCEntry e, SampleSequencingObjectJoin j where e.sequencingObject = j.sequencingObject and j.sample.id in ?1")
+	public List<Object[]> getQCEntriesForSamples(Collection<Long> sampleIds);
+}
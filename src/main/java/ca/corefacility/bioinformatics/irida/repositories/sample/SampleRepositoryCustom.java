@@ -3,6 +3,7 @@ package ca.corefacility.bioinformatics.irida.repositories.sample;
 import ca.corefacility.bioinformatics.irida.model.project.Project;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -18,4 +19,24 @@ public interface SampleRepositoryCustom {
 	 * @return a list of {@link Sample}
 	 */
 	public List<Sample> getSamplesForProjectShallow(Project project);
+
+	/**
+	 * Get a shallow listing of the {@link Sample}s in a {@link Project} that have changed since the given time.  A
+	 * sample has changed if it was modified, added to the project, or had sequencing objects added to it.
+	 *
+	 * @param project the {@link Project} to get samples for
+	 * @param since   the time to get changes since
+	 * @return a list of {@link Sample}
+	 */
+	public List<Sample> getSamplesForProjectShallowChangedSince(Project project, Date since);
+
+	/**
+	 * Get the ids of the {@link Sample}s that have been removed from a {@link Project} since the given time and are
+	 * no longer in the project.
+	 *
+	 * @param project the {@link Project} the samples were removed from
+	 * @param since   the time to get removals since
+	 * @return a list of sample ids
+	 */
+	public List<Long> getSampleIdsRemovedFromProjectSince(Project project, Date since);
 }
@@ -10,6 +10,7 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -17,6 +18,9 @@ import java.util.List;
  * listing methods.
  */
 public class SampleRepositoryImpl implements SampleRepositoryCustom {
+	// columns read for a shallow listing of samples
+	private static final String SHALLOW_SAMPLE_COLUMNS = "s.id, s.createdDate, s.modifiedDate, s.description, s.sampleName, s.collectedBy, s.geographicLocationName, s.isolate, s.isolationSource, s.latitude, s.longitude, s.organism, s.strain, s.collectionDate, null as remote_status";
+
 	private final DataSource dataSource;
 
 	@Autowired
@@ -32,35 +36,76 @@ public class SampleRepositoryImpl implements SampleRepositoryCustom {
 		MapSqlParameterSource parameters = new MapSqlParameterSource();
 
 		//query to read samples for a project
-		String queryString = "select s.id, s.createdDate, s.modifiedDate, s.description, s.sampleName, s.collectedBy, s.geographicLocationName, s.isolate, s.isolationSource, s.latitude, s.longitude, s.organism, s.strain, s.collectionDate, null as remote_status FROM sample s INNER JOIN project_sample p ON p.sample_id=s.id WHERE p.project_id=:project";
+		String queryString = "select " + SHALLOW_SAMPLE_COLUMNS
+				+ " FROM sample s INNER JOIN project_sample p ON p.sample_id=s.id WHERE p.project_id=:project";
 
 		parameters.addValue("project", project.getId());
 
-		List<Sample> results = tmpl.query(queryString, parameters, new RowMapper<Sample>() {
-
-			@Override
-			public Sample mapRow(ResultSet rs, int rowNum) throws SQLException {
-				Sample s = new Sample();
-
-				s.setId(rs.getLong("s.id"));
-				s.setCreatedDate(rs.getTimestamp("s.createdDate"));
-				s.setModifiedDate(rs.getTimestamp("s.modifiedDate"));
-				s.setDescription(rs.getString("s.description"));
-				s.setSampleName(rs.getString("s.sampleName"));
-				s.setCollectedBy(rs.getString("s.collectedBy"));
-				s.setGeographicLocationName(rs.getString("s.geographicLocationName"));
-				s.setIsolate(rs.getString("s.isolate"));
-				s.setIsolationSource(rs.getString("s.isolationSource"));
-				s.setLatitude(rs.getString("s.latitude"));
-				s.setLongitude(rs.getString("s.longitude"));
-				s.setOrganism(rs.getString("s.organism"));
-				s.setStrain(rs.getString("s.strain"));
-				s.setCollectionDate(rs.getDate("s.collectionDate"));
-
-				return s;
-			}
-		});
-
-		return results;
+		return tmpl.query(queryString, parameters, new ShallowSampleRowMapper());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Sample> getSamplesForProjectShallowChangedSince(Project project, Date since) {
+		NamedParameterJdbcTemplate tmpl = new NamedParameterJdbcTemplate(dataSource);
+		MapSqlParameterSource parameters = new MapSqlParameterSource();
+
+		// a sample has changed if it was updated, added to the project, or had
+		// sequencing objects added to it
+		String queryString = "select " + SHALLOW_SAMPLE_COLUMNS
+				+ " FROM sample s INNER JOIN project_sample p ON p.sample_id=s.id WHERE p.project_id=:project"
+				+ " AND (s.modifiedDate > :since OR p.createdDate > :since OR EXISTS (SELECT j.id FROM sample_sequencingobject j WHERE j.sample_id=s.id AND j.created_date > :since))";
+
+		parameters.addValue("project", project.getId());
+		parameters.addValue("since", since);
+
+		return tmpl.query(queryString, parameters, new ShallowSampleRowMapper());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Long> getSampleIdsRemovedFromProjectSince(Project project, Date since) {
+		NamedParameterJdbcTemplate tmpl = new NamedParameterJdbcTemplate(dataSource);
+		MapSqlParameterSource parameters = new MapSqlParameterSource();
+
+		// deleted project/sample joins are kept in the audit tables. Samples
+		// that were removed and added back are still in the project.
+		String queryString = "SELECT DISTINCT a.sample_id FROM project_sample_AUD a INNER JOIN Revisions r ON a.REV=r.id"
+				+ " WHERE a.REVTYPE=2 AND a.project_id=:project AND r.timestamp > :since"
+				+ " AND a.sample_id NOT IN (SELECT p.sample_id FROM project_sample p WHERE p.project_id=:project)";
+
+		parameters.addValue("project", project.getId());
+		parameters.addValue("since", since.getTime());
+
+		return tmpl.queryForList(queryString, parameters, Long.class);
+	}
+
+	/**
+	 * Maps the columns of a shallow sample query to a {@link Sample}
+	 */
+	private static class ShallowSampleRowMapper implements RowMapper<Sample> {
+		@Override
+		public Sample mapRow(ResultSet rs, int rowNum) throws SQLException {
+			Sample s = new Sample();
+
+			s.setId(rs.getLong("s.id"));
+			s.setCreatedDate(rs.getTimestamp("s.createdDate"));
+			s.setModifiedDate(rs.getTimestamp("s.modifiedDate"));
+			s.setDescription(rs.getString("s.description"));
+			s.setSampleName(rs.getString("s.sampleName"));
+			s.setCollectedBy(rs.getString("s.collectedBy"));
+			s.setGeographicLocationName(rs.getString("s.geographicLocationName"));
+			s.setIsolate(rs.getString("s.isolate"));
+			s.setIsolationSource(rs.getString("s.isolationSource"));
+			s.setLatitude(rs.getString("s.latitude"));
+			s.setLongitude(rs.getString("s.longitude"));
+			s.setOrganism(rs.getString("s.organism"));
+			s.setStrain(rs.getString("s.strain"));
+			s.setCollectionDate(rs.getDate("s.collectionDate"));
+
+			return s;
+		}
 	}
 }
@@ -0,0 +1,26 @@
+package ca.corefacility.bioinformatics.irida.repositories.sequencefile;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.FileProcessorHeartbeat;
+
+/**
+ * Repository for storing and retrieving {@link FileProcessorHeartbeat}s
+ */
+public interface FileProcessorHeartbeatRepository extends CrudRepository<FileProcessorHeartbeat, String> {
+
+	/**
+	 * Get the {@link FileProcessorHeartbeat}s that haven't checked in since the
+	 * given time
+	 *
+	 * @param expiry
+	 *            heartbeats older than this time are expired
+	 * @return a list of expired {@link FileProcessorHeartbeat}
+	 */
+	@Query("FROM FileProcessorHeartbeat h WHERE h.lastHeartbeat < ?1")
+	public List<FileProcessorHeartbeat> getExpiredHeartbeats(Date expiry);
+}
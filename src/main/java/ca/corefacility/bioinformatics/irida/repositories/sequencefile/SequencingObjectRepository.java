@@ -1,8 +1,10 @@
 package ca.corefacility.bioinformatics.irida.repositories.sequencefile;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
@@ -46,6 +48,20 @@ public interface SequencingObjectRepository extends IridaJpaRepository<Sequencin
 	public List<SequencingObject> getSequencingObjectsWithProcessingState(
 			SequencingObject.ProcessingState processingState);
 
+	/**
+	 * Get the IDs of {@link SequencingObject}s with the given
+	 * {@link ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject.ProcessingState},
+	 * oldest first. Only the IDs are loaded so a large backlog of files doesn't
+	 * have to be read to claim a few of them.
+	 *
+	 * @param processingState the state to get files for
+	 * @param page            the number of IDs to get
+	 * @return a list of {@link SequencingObject} IDs
+	 */
+	@Query("SELECT f.id FROM SequencingObject f where f.processingState = ?1 ORDER BY f.id")
+	public List<Long> getSequencingObjectIdsWithProcessingState(SequencingObject.ProcessingState processingState,
+			Pageable page);
+
 	/**
 	 * Get {@link SequencingObject}s with a given processing state and the given processor string
 	 *
@@ -63,9 +79,43 @@ public interface SequencingObjectRepository extends IridaJpaRepository<Sequencin
 	 * @param objectId        ID of the sequencing object
 	 * @param processor       File processor id string to set
 	 * @param processingState processing state to set
+	 * @return the number of objects marked (0 if another processor already
+	 *         marked the object)
 	 */
 	@Transactional
 	@Modifying(clearAutomatically = true)
 	@Query("UPDATE SequencingObject f SET f.processingState = ?3, f.fileProcessor = ?2 WHERE f.id = ?1 AND f.fileProcessor is NULL")
-	public void markFileProcessor(Long objectId, String processor, SequencingObject.ProcessingState processingState);
+	public int markFileProcessor(Long objectId, String processor, SequencingObject.ProcessingState processingState);
+
+	/**
+	 * Update the file processing state of a batch of sequencing objects in a
+	 * single statement.  Objects that have already been marked by another
+	 * processor are skipped.
+	 *
+	 * @param objectIds       IDs of the sequencing objects
+	 * @param processor       File processor id string to set
+	 * @param processingState processing state to set
+	 * @return the number of objects marked by this processor
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE SequencingObject f SET f.processingState = ?3, f.fileProcessor = ?2 WHERE f.id IN ?1 AND f.fileProcessor is NULL")
+	public int markFileProcessor(Collection<Long> objectIds, String processor,
+			SequencingObject.ProcessingState processingState);
+
+	/**
+	 * Release the {@link SequencingObject}s in the given states that were marked
+	 * by a file processor that no longer has a
+	 * {@link ca.corefacility.bioinformatics.irida.model.sequenceFile.FileProcessorHeartbeat}
+	 * so they can be picked up by another processor.
+	 *
+	 * @param processingStates the states of objects to release
+	 * @param processingState  the processing state to set on released objects
+	 * @return the number of objects released
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE SequencingObject f SET f.processingState = ?2, f.fileProcessor = NULL WHERE f.processingState IN ?1 AND f.fileProcessor NOT IN (SELECT h.fileProcessor FROM FileProcessorHeartbeat h)")
+	public int releaseOrphanedSequencingObjects(Collection<SequencingObject.ProcessingState> processingStates,
+			SequencingObject.ProcessingState processingState);
 }
@@ -0,0 +1,267 @@
+package ca.corefacility.bioinformatics.irida.ria.utilities;
+
+import java.util.List;
+import java.util.Locale;
+
+import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisFastQC;
+
+/**
+ * Draws the FastQC charts for an {@link AnalysisFastQC} as SVG from the numeric
+ * series stored with the analysis. The SVG is rendered by the browser, so no
+ * images need to be rendered or stored on the server.
+ */
+public class FastQCCharts {
+	private static final int WIDTH = 800;
+	private static final int HEIGHT = 600;
+
+	private static final int LEFT = 60;
+	private static final int RIGHT = 20;
+	private static final int TOP = 40;
+	private static final int BOTTOM = 50;
+
+	private static final int PLOT_WIDTH = WIDTH - LEFT - RIGHT;
+	private static final int PLOT_HEIGHT = HEIGHT - TOP - BOTTOM;
+
+	private static final int Y_TICKS = 10;
+
+	private static final String FONT = "font-family=\"sans-serif\" font-size=\"12\"";
+
+	/**
+	 * Quality thresholds for the per-base quality background, the same as
+	 * FastQC's.
+	 */
+	private static final double GOOD_QUALITY = 28;
+	private static final double POOR_QUALITY = 20;
+
+	private FastQCCharts() {
+	}
+
+	/**
+	 * Draw a box plot of the quality scores at each position in the reads.
+	 *
+	 * @param fastQC
+	 *            the analysis to draw
+	 * @param width
+	 *            the display width of the chart
+	 * @param height
+	 *            the display height of the chart
+	 * @return the chart as an SVG document
+	 */
+	public static String perBaseQualityChart(AnalysisFastQC fastQC, int width, int height) {
+		List<double[]> rows = fastQC.getPerBaseQualityScores();
+		StringBuilder svg = start(width, height, "Quality scores across all bases");
+
+		double maxY = 40;
+		for (double[] row : rows) {
+			maxY = Math.max(maxY, row[6]);
+		}
+		maxY = Math.ceil(maxY);
+
+		// quality bands
+		rect(svg, LEFT, y(maxY, maxY), PLOT_WIDTH, y(Math.min(GOOD_QUALITY, maxY), maxY) - y(maxY, maxY), "#e6ffe6");
+		rect(svg, LEFT, y(GOOD_QUALITY, maxY), PLOT_WIDTH, y(POOR_QUALITY, maxY) - y(GOOD_QUALITY, maxY), "#fff5e0");
+		rect(svg, LEFT, y(POOR_QUALITY, maxY), PLOT_WIDTH, y(0, maxY) - y(POOR_QUALITY, maxY), "#ffe6e6");
+
+		yAxis(svg, maxY);
+
+		int positions = rows.size();
+		double slot = positions > 0 ? (double) PLOT_WIDTH / positions : PLOT_WIDTH;
+		double boxWidth = Math.max(1, slot * 0.6);
+		int labelEvery = Math.max(1, (int) Math.ceil(positions / 20d));
+
+		StringBuilder mean = new StringBuilder();
+		for (int i = 0; i < positions; i++) {
+			double[] row = rows.get(i);
+			double centre = LEFT + slot * i + slot / 2;
+
+			// whiskers from the 10th to 90th percentile
+			line(svg, centre, y(row[5], maxY), centre, y(row[6], maxY), "#000000");
+			// box from the lower to upper quartile
+			rect(svg, centre - boxWidth / 2, y(row[4], maxY), boxWidth, y(row[3], maxY) - y(row[4], maxY),
+					"#ffff00");
+			// median
+			line(svg, centre - boxWidth / 2, y(row[2], maxY), centre + boxWidth / 2, y(row[2], maxY), "#ff0000");
+
+			mean.append(format(centre)).append(',').append(format(y(row[1], maxY))).append(' ');
+
+			if (i % labelEvery == 0) {
+				text(svg, centre, TOP + PLOT_HEIGHT + 15, "middle", format(row[0]));
+			}
+		}
+		polyline(svg, mean.toString(), "#0000ff");
+
+		axes(svg, "Position in read (bp)");
+		return end(svg);
+	}
+
+	/**
+	 * Draw a line chart of the number of reads with each mean quality.
+	 *
+	 * @param fastQC
+	 *            the analysis to draw
+	 * @param width
+	 *            the display width of the chart
+	 * @param height
+	 *            the display height of the chart
+	 * @return the chart as an SVG document
+	 */
+	public static String perSequenceQualityChart(AnalysisFastQC fastQC, int width, int height) {
+		List<double[]> rows = fastQC.getPerSequenceQualityScores();
+		String[] labels = new String[rows.size()];
+		double[] values = new double[rows.size()];
+		for (int i = 0; i < rows.size(); i++) {
+			labels[i] = format(rows.get(i)[0]);
+			values[i] = rows.get(i)[1];
+		}
+
+		return lineChart("Quality score distribution over all sequences", "Mean sequence quality (Phred score)",
+				labels, values, width, height);
+	}
+
+	/**
+	 * Draw a line chart of the percentage of reads at each duplication level.
+	 *
+	 * @param fastQC
+	 *            the analysis to draw
+	 * @param width
+	 *            the display width of the chart
+	 * @param height
+	 *            the display height of the chart
+	 * @return the chart as an SVG document
+	 */
+	public static String duplicationLevelChart(AnalysisFastQC fastQC, int width, int height) {
+		List<double[]> rows = fastQC.getDuplicationLevels();
+		String[] labels = new String[rows.size()];
+		double[] values = new double[rows.size()];
+		for (int i = 0; i < rows.size(); i++) {
+			labels[i] = AnalysisFastQC.DUPLICATION_LEVEL_LABELS.get((int) rows.get(i)[0]);
+			values[i] = rows.get(i)[1];
+		}
+
+		return lineChart("Percent of all sequences at each duplication level", "Sequence duplication level", labels,
+				values, width, height);
+	}
+
+	/**
+	 * Draw a line chart with one point per label.
+	 *
+	 * @param title
+	 *            the chart title
+	 * @param xLabel
+	 *            the x axis label
+	 * @param labels
+	 *            the labels of the points
+	 * @param values
+	 *            the values of the points
+	 * @param width
+	 *            the display width of the chart
+	 * @param height
+	 *            the display height of the chart
+	 * @return the chart as an SVG document
+	 */
+	private static String lineChart(String title, String xLabel, String[] labels, double[] values, int width,
+			int height) {
+		StringBuilder svg = start(width, height, title);
+
+		double maxY = 0;
+		for (double value : values) {
+			maxY = Math.max(maxY, value);
+		}
+		maxY = niceMax(maxY);
+
+		yAxis(svg, maxY);
+
+		double slot = labels.length > 0 ? (double) PLOT_WIDTH / labels.length : PLOT_WIDTH;
+		int labelEvery = Math.max(1, (int) Math.ceil(labels.length / 20d));
+
+		StringBuilder points = new StringBuilder();
+		for (int i = 0; i < labels.length; i++) {
+			double x = LEFT + slot * i + slot / 2;
+			points.append(format(x)).append(',').append(format(y(values[i], maxY))).append(' ');
+
+			if (i % labelEvery == 0) {
+				text(svg, x, TOP + PLOT_HEIGHT + 15, "middle", labels[i]);
+			}
+		}
+		polyline(svg, points.toString(), "#ff0000");
+
+		axes(svg, xLabel);
+		return end(svg);
+	}
+
+	private static StringBuilder start(int width, int height, String title) {
+		StringBuilder svg = new StringBuilder();
+		svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width).append("\" height=\"")
+				.append(height).append("\" viewBox=\"0 0 ").append(WIDTH).append(' ').append(HEIGHT)
+				.append("\" preserveAspectRatio=\"xMidYMid meet\">");
+		rect(svg, 0, 0, WIDTH, HEIGHT, "#ffffff");
+		svg.append("<text x=\"").append(WIDTH / 2).append("\" y=\"").append(TOP - 15)
+				.append("\" text-anchor=\"middle\" font-family=\"sans-serif\" font-size=\"16\">").append(escape(title))
+				.append("</text>");
+		return svg;
+	}
+
+	private static String end(StringBuilder svg) {
+		return svg.append("</svg>").toString();
+	}
+
+	private static void yAxis(StringBuilder svg, double maxY) {
+		for (int i = 0; i <= Y_TICKS; i++) {
+			double value = maxY * i / Y_TICKS;
+			double y = y(value, maxY);
+			line(svg, LEFT, y, LEFT + PLOT_WIDTH, y, "#dddddd");
+			text(svg, LEFT - 5, y + 4, "end", format(value));
+		}
+	}
+
+	private static void axes(StringBuilder svg, String xLabel) {
+		line(svg, LEFT, TOP, LEFT, TOP + PLOT_HEIGHT, "#000000");
+		line(svg, LEFT, TOP + PLOT_HEIGHT, LEFT + PLOT_WIDTH, TOP + PLOT_HEIGHT, "#000000");
+		text(svg, LEFT + PLOT_WIDTH / 2, HEIGHT - 10, "middle", xLabel);
+	}
+
+	private static double y(double value, double maxY) {
+		return TOP + PLOT_HEIGHT - (maxY > 0 ? value / maxY * PLOT_HEIGHT : 0);
+	}
+
+	private static double niceMax(double max) {
+		if (max <= 0) {
+			return 1;
+		}
+		double magnitude = Math.pow(10, Math.floor(Math.log10(max)));
+		return Math.ceil(max / magnitude) * magnitude;
+	}
+
+	private static void rect(StringBuilder svg, double x, double y, double width, double height, String fill) {
+		svg.append("<rect x=\"").append(format(x)).append("\" y=\"").append(format(y)).append("\" width=\"")
+				.append(format(width)).append("\" height=\"").append(format(Math.max(0, height)))
+				.append("\" fill=\"").append(fill).append("\" stroke=\"none\"/>");
+	}
+
+	private static void line(StringBuilder svg, double x1, double y1, double x2, double y2, String stroke) {
+		svg.append("<line x1=\"").append(format(x1)).append("\" y1=\"").append(format(y1)).append("\" x2=\"")
+				.append(format(x2)).append("\" y2=\"").append(format(y2)).append("\" stroke=\"").append(stroke)
+				.append("\"/>");
+	}
+
+	private static void polyline(StringBuilder svg, String points, String stroke) {
+		svg.append("<polyline points=\"").append(points.trim()).append("\" fill=\"none\" stroke=\"").append(stroke)
+				.append("\" stroke-width=\"2\"/>");
+	}
+
+	private static void text(StringBuilder svg, double x, double y, String anchor, String text) {
+		svg.append("<text x=\"").append(format(x)).append("\" y=\"").append(format(y)).append("\" text-anchor=\"")
+				.append(anchor).append("\" ").append(FONT).append('>').append(escape(text)).append("</text>");
+	}
+
+	private static String format(double value) {
+		if (value == Math.rint(value)) {
+			return Long.toString((long) value);
+		}
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+
+	private static String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+}
@@ -17,6 +17,7 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.codehaus.jackson.map.ObjectMapper;
@@ -26,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisOutputFile;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.ProjectSampleAnalysisOutputInfo;
 import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission;
+import ca.corefacility.bioinformatics.irida.web.spring.view.RangedFileSender;
 
 /**
  * Download a zip archive of all output files within an
@@ -180,22 +182,24 @@ public class FileUtilities {
 	/**
 	 * Utility method for download single file from an analysis.
 	 *
+	 * @param request
+	 *            {@link HttpServletRequest}, checked for a requested byte range
 	 * @param response
 	 *            {@link HttpServletResponse}
 	 * @param file
 	 *            Set of {@link AnalysisOutputFile}
 	 * @param fileName Filename
 	 */
-	public static void createSingleFileResponse(HttpServletResponse response, AnalysisOutputFile file, String fileName) {
+	public static void createSingleFileResponse(HttpServletRequest request, HttpServletResponse response,
+			AnalysisOutputFile file, String fileName) {
 		fileName = formatName(fileName);
 
 		// set the response headers before we do *ANYTHING* so that the filename
 		// actually appears in the download dialog
 		response.setHeader(CONTENT_DISPOSITION, ATTACHMENT_FILENAME + fileName);
-		response.setContentType(CONTENT_TYPE_TEXT);
 
-		try (ServletOutputStream outputStream = response.getOutputStream()) {
-			Files.copy(file.getFile(), response.getOutputStream());
+		try {
+			new RangedFileSender(file.getFile(), CONTENT_TYPE_TEXT).send(request, response);
 		} catch (IOException e) {
 			// this generally means that the user has cancelled the download
 			// from their web browser; we can safely ignore this
@@ -210,14 +214,17 @@ public class FileUtilities {
 	/**
 	 * Utility method for download single file from an analysis.
 	 *
+	 * @param request
+	 *            {@link HttpServletRequest}, checked for a requested byte range
 	 * @param response
 	 *            {@link HttpServletResponse}
 	 * @param file
 	 *            Set of {@link AnalysisOutputFile}
 	 */
-	public static void createSingleFileResponse(HttpServletResponse response, AnalysisOutputFile file) {
+	public static void createSingleFileResponse(HttpServletRequest request, HttpServletResponse response,
+			AnalysisOutputFile file) {
 		String fileName = file.getLabel();
-		FileUtilities.createSingleFileResponse(response, file, fileName);
+		FileUtilities.createSingleFileResponse(request, response, file, fileName);
 	}
 
 
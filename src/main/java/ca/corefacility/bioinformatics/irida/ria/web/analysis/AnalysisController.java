@@ -7,6 +7,7 @@ import java.security.Principal;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
@@ -923,11 +924,13 @@ public class AnalysisController {
 	 * @param analysisSubmissionId Id for a {@link AnalysisSubmission}
 	 * @param fileId               the id of the file to download
 	 * @param filename             Optional filename for file download.
+	 * @param request              {@link HttpServletRequest}
 	 * @param response             {@link HttpServletResponse}
 	 */
 	@RequestMapping(value = "/ajax/download/{analysisSubmissionId}/file/{fileId}")
 	public void getAjaxDownloadAnalysisSubmissionIndividualFile(@PathVariable Long analysisSubmissionId,
-			@PathVariable Long fileId, @RequestParam(defaultValue = "", required = false) String filename, HttpServletResponse response) {
+			@PathVariable Long fileId, @RequestParam(defaultValue = "", required = false) String filename,
+			HttpServletRequest request, HttpServletResponse response) {
 		AnalysisSubmission analysisSubmission = analysisSubmissionService.read(analysisSubmissionId);
 
 		Analysis analysis = analysisSubmission.getAnalysis();
@@ -942,9 +945,9 @@ public class AnalysisController {
 		}
 
 		if (!Strings.isNullOrEmpty(filename)) {
-			FileUtilities.createSingleFileResponse(response, optFile.get(), filename);
+			FileUtilities.createSingleFileResponse(request, response, optFile.get(), filename);
 		} else {
-			FileUtilities.createSingleFileResponse(response, optFile.get());
+			FileUtilities.createSingleFileResponse(request, response, optFile.get());
 		}
 	}
 
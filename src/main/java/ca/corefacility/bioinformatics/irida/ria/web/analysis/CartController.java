@@ -26,7 +26,10 @@ import ca.corefacility.bioinformatics.irida.service.user.UserService;
 import ca.corefacility.bioinformatics.irida.web.controller.api.projects.RESTProjectSamplesController;
 import ca.corefacility.bioinformatics.irida.web.controller.api.samples.RESTSampleSequenceFilesController;
 
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
@@ -34,14 +37,23 @@ import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
 /**
  * Controller managing interactions with the selected sequences
  * 
- *
+ * The cart only keeps the ids of the selected {@link Sample}s in each
+ * {@link Project}, and the name of each selected {@link Sample} so names stay
+ * unique. The {@link Sample}s are loaded when they're needed.
  */
 @Controller
 @Scope("session")
 @RequestMapping("/cart")
 public class CartController {
 	private static final Logger logger = LoggerFactory.getLogger(CartController.class);
-	private Map<Project, Set<Sample>> selected;
+
+	// number of samples or projects to load from the database at once
+	private static final int LOAD_BATCH_SIZE = 500;
+
+	// ids of the selected samples in each project
+	private final Map<Long, Set<Long>> selected;
+	// name of each selected sample by its id
+	private final BiMap<Long, String> sampleNames;
 	
 	private final SampleService sampleService;
 	private final UserService userService;
@@ -58,6 +70,7 @@ public class CartController {
 		this.sequencingObjectService = sequencingObjectService;
 		this.messageSource = messageSource;
 		selected = new HashMap<>();
+		sampleNames = HashBiMap.create();
 	}
 
 	/**
@@ -123,29 +136,69 @@ public class CartController {
 	 */
 	@RequestMapping(method = RequestMethod.DELETE, produces = MediaType.APPLICATION_JSON_VALUE)
 	@ResponseBody
-	public Map<String, Object> clearCart() {
+	public synchronized Map<String, Object> clearCart() {
 		selected.clear();
+		sampleNames.clear();
 		return ImmutableMap.of("success", true);
 	}
 
 	/**
 	 * Get the cart object. This method should only be accessed
-	 * programmatically.
+	 * programmatically. The {@link Project}s and {@link Sample}s in the cart
+	 * are loaded in batches. Any that have since been deleted, or that the
+	 * current user can no longer read, are removed from the cart.
 	 * 
 	 * @return The cart map
 	 */
 	public Map<Project, Set<Sample>> getSelected() {
-		return selected;
+		Map<Long, Set<Long>> selectedIds = getSelectedIds();
+
+		Map<Long, Project> projects = new HashMap<>();
+		for (List<Long> ids : Iterables.partition(selectedIds.keySet(), LOAD_BATCH_SIZE)) {
+			projectService.getReadableProjects(ids).forEach(p -> projects.put(p.getId(), p));
+		}
+		Map<Long, Sample> samples = new HashMap<>();
+		for (List<Long> ids : Iterables.partition(Iterables.concat(selectedIds.values()), LOAD_BATCH_SIZE)) {
+			sampleService.getReadableSamples(ids).forEach(s -> samples.put(s.getId(), s));
+		}
+
+		Map<Project, Set<Sample>> cart = new LinkedHashMap<>();
+		selectedIds.forEach((projectId, sampleIds) -> {
+			Project project = projects.get(projectId);
+			Set<Sample> projectSamples = new LinkedHashSet<>();
+			Set<Long> missing = new HashSet<>();
+			for (Long sampleId : sampleIds) {
+				Sample sample = samples.get(sampleId);
+				if (project != null && sample != null) {
+					projectSamples.add(sample);
+				} else {
+					missing.add(sampleId);
+				}
+			}
+
+			if (!missing.isEmpty()) {
+				logger.debug("Removing [" + missing.size() + "] deleted or unreadable samples in project [" + projectId
+						+ "] from the cart");
+				removeSamples(projectId, missing);
+			}
+			if (!projectSamples.isEmpty()) {
+				cart.put(project, projectSamples);
+			}
+		});
+
+		return cart;
 	}
 
 	/**
-	 * Set the cart object programatically. Used mostly for testing.
+	 * Get the ids of the {@link Sample}s in the cart for each {@link Project}
+	 * id without loading them.
 	 * 
-	 * @param selected
-	 *            A {@code Map<Project,Set<Sample>>} of selected samples
+	 * @return a copy of the ids in the cart
 	 */
-	public void setSelected(Map<Project, Set<Sample>> selected) {
-		this.selected = selected;
+	public synchronized Map<Long, Set<Long>> getSelectedIds() {
+		Map<Long, Set<Long>> selectedIds = new LinkedHashMap<>();
+		selected.forEach((projectId, sampleIds) -> selectedIds.put(projectId, new LinkedHashSet<>(sampleIds)));
+		return selectedIds;
 	}
 
 	/**
@@ -161,33 +214,9 @@ public class CartController {
 	public Map<String, Object> addProjectSample(@RequestParam Long projectId,
 			@RequestParam(value = "sampleIds[]") Set<Long> sampleIds, Locale locale) {
 		Project project = projectService.read(projectId);
-		final Map<String, Sample> selectedNameToSample = selected.entrySet()
-				.stream()
-				.flatMap(entry -> entry.getValue()
-						.stream())
-				.collect(Collectors.toMap(Sample::getSampleName, sample -> sample));
-		Set<Sample> samples = loadSamplesForProject(project, sampleIds);
-		final Set<Sample> selectedSamples = new HashSet<>(selectedNameToSample.values());
-		final boolean removedSamples = samples.removeAll(selectedSamples);
-		if (removedSamples)
-			logger.trace("Removed Samples already in cart.");
-		final Map<String, Sample> nameToSample = samples.stream()
-				.collect(Collectors.toMap(Sample::getSampleName, sample -> sample));
 		Set<Sample> dupSamples = new HashSet<>();
-		nameToSample.forEach((name, sample) -> {
-			if (selectedNameToSample.containsKey(name)) {
-				dupSamples.add(sample);
-			}
-		});
-		if (!dupSamples.isEmpty()) {
-			samples.removeAll(dupSamples);
-			logger.trace(
-					"Samples with existing sample names (n=" + dupSamples.size() + " not added to cart: " + dupSamples);
-		}
+		int samplesSize = addSamples(project, loadSamplesForProject(project, sampleIds), dupSamples);
 
-		getSelectedSamplesForProject(project).addAll(samples);
-
-		final int samplesSize = samples.size();
 		String message;
 		if (samplesSize == 0) {
 			message = messageSource.getMessage("cart.no-samples-added", new Object[] { project.getLabel() }, locale);
@@ -222,14 +251,7 @@ public class CartController {
 	@RequestMapping(value = "/project/{projectId}/samples", method = RequestMethod.DELETE, consumes = MediaType.APPLICATION_JSON_VALUE)
 	@ResponseBody
 	public Map<String, Object> removeProjectSamples(@PathVariable Long projectId, @RequestBody Set<Long> sampleIds) {
-		Project project = projectService.read(projectId);
-		Set<Sample> samples = loadSamplesForProject(project, sampleIds);
-		Set<Sample> selectedSamplesForProject = getSelectedSamplesForProject(project);
-		selectedSamplesForProject.removeAll(samples);
-
-		if (selectedSamplesForProject.isEmpty()) {
-			selected.remove(project);
-		}
+		removeSamples(projectId, sampleIds);
 
 		return ImmutableMap.of("success", true);
 	}
@@ -246,15 +268,7 @@ public class CartController {
 	@RequestMapping(value = "/project/{projectId}/samples/{sampleId}", method = RequestMethod.DELETE)
 	@ResponseBody
 	public Map<String, Object> removeProjectSample(@PathVariable Long projectId, @PathVariable Long sampleId) {
-		Project project = projectService.read(projectId);
-		Sample sampleForProject = sampleService.getSampleForProject(project, sampleId).getObject();
-		Set<Sample> selectedSamplesForProject = getSelectedSamplesForProject(project);
-
-		selectedSamplesForProject.remove(sampleForProject);
-
-		if (selectedSamplesForProject.isEmpty()) {
-			selected.remove(project);
-		}
+		removeSamples(projectId, Collections.singleton(sampleId));
 
 		return ImmutableMap.of("success", true);
 	}
@@ -271,11 +285,9 @@ public class CartController {
 	public Map<String, Object> addProject(@PathVariable Long projectId) {
 		Project project = projectService.read(projectId);
 		List<Join<Project, Sample>> samplesForProject = sampleService.getSamplesForProject(project);
-		Set<Sample> samples = samplesForProject.stream().map((j) -> {
-			return j.getObject();
-		}).collect(Collectors.toSet());
-
-		getSelectedSamplesForProject(project).addAll(samples);
+		Set<Sample> dupSamples = new HashSet<>();
+		addSamples(project, samplesForProject.stream().map(Join::getObject).collect(Collectors.toList()),
+				dupSamples);
 
 		return ImmutableMap.of("success", true);
 	}
@@ -290,8 +302,12 @@ public class CartController {
 	@RequestMapping(value = "/project/{projectId}", method = RequestMethod.DELETE)
 	@ResponseBody
 	public Map<String, Object> removeProject(@PathVariable Long projectId) {
-		Project project = projectService.read(projectId);
-		selected.remove(project);
+		synchronized (this) {
+			Set<Long> sampleIds = selected.remove(projectId);
+			if (sampleIds != null) {
+				sampleIds.forEach(sampleNames::remove);
+			}
+		}
 
 		return ImmutableMap.of("success", true);
 	}
@@ -305,9 +321,83 @@ public class CartController {
 	 *            the {@link Sample} ids
 	 * @return A Set of {@link Sample}s
 	 */
-	private Set<Sample> loadSamplesForProject(Project project, Set<Long> sampleIds) {
-		return new HashSet<>(sampleService.getSamplesInProject(project, new ArrayList<>(sampleIds)));
+	private List<Sample> loadSamplesForProject(Project project, Set<Long> sampleIds) {
+		List<Long> ids = new ArrayList<>(sampleIds);
+		synchronized (this) {
+			ids.removeIf(sampleNames::containsKey);
+		}
+		if (ids.isEmpty()) {
+			logger.trace("Samples are already in cart.");
+			return new ArrayList<>();
+		}
+
+		return sampleService.getSamplesInProject(project, ids);
+	}
+
+	/**
+	 * Add {@link Sample}s from a {@link Project} to the cart. {@link Sample}s
+	 * already in the cart are skipped, and {@link Sample}s with the same name
+	 * as one in the cart are excluded.
+	 * 
+	 * @param project
+	 *            the {@link Project} the {@link Sample}s are in
+	 * @param samples
+	 *            the {@link Sample}s to add
+	 * @param dupSamples
+	 *            the excluded {@link Sample}s are added to this set
+	 * @return the number of {@link Sample}s added
+	 */
+	private synchronized int addSamples(Project project, Collection<Sample> samples, Set<Sample> dupSamples) {
+		Set<Long> selectedSamplesForProject = selected.computeIfAbsent(project.getId(), id -> new HashSet<>());
+		BiMap<String, Long> sampleIdsByName = sampleNames.inverse();
+
+		int added = 0;
+		for (Sample sample : samples) {
+			if (sampleNames.containsKey(sample.getId())) {
+				logger.trace("Sample [" + sample.getId() + "] already in cart.");
+			} else if (sampleIdsByName.containsKey(sample.getSampleName())) {
+				dupSamples.add(sample);
+			} else {
+				sampleNames.put(sample.getId(), sample.getSampleName());
+				selectedSamplesForProject.add(sample.getId());
+				added++;
+			}
+		}
 
+		if (selectedSamplesForProject.isEmpty()) {
+			selected.remove(project.getId());
+		}
+		if (!dupSamples.isEmpty()) {
+			logger.trace(
+					"Samples with existing sample names (n=" + dupSamples.size() + " not added to cart: " + dupSamples);
+		}
+
+		return added;
+	}
+
+	/**
+	 * Remove {@link Sample}s of a {@link Project} from the cart.
+	 * 
+	 * @param projectId
+	 *            the id of the {@link Project}
+	 * @param sampleIds
+	 *            the ids of the {@link Sample}s to remove
+	 */
+	private synchronized void removeSamples(Long projectId, Set<Long> sampleIds) {
+		Set<Long> selectedSamplesForProject = selected.get(projectId);
+		if (selectedSamplesForProject == null) {
+			return;
+		}
+
+		for (Long sampleId : sampleIds) {
+			if (selectedSamplesForProject.remove(sampleId)) {
+				sampleNames.remove(sampleId);
+			}
+		}
+
+		if (selectedSamplesForProject.isEmpty()) {
+			selected.remove(projectId);
+		}
 	}
 
 	/**
@@ -317,10 +407,10 @@ public class CartController {
 	 *         Sample information
 	 */
 	private List<Map<String, Object>> getProjectsAsList() {
-		Set<Project> projects = selected.keySet();
+		Map<Project, Set<Sample>> cart = getSelected();
 		List<Map<String, Object>> projectList = new ArrayList<>();
-		for (Project p : projects) {
-			Set<Sample> selectedSamplesForProject = selected.get(p);
+		for (Project p : cart.keySet()) {
+			Set<Sample> selectedSamplesForProject = cart.get(p);
 			List<Map<String, Object>> samples = getSamplesAsList(selectedSamplesForProject);
 
 			Map<String, Object> projectMap = ImmutableMap.of("id", p.getId(), "label", p.getLabel(), "samples",
@@ -355,10 +445,10 @@ public class CartController {
 	 * Sample information
 	 */
 	private List<Map<String, Object>> getProjectsAsListForGalaxy() {
-		Set<Project> projects = selected.keySet();
+		Map<Project, Set<Sample>> cart = getSelected();
 		List<Map<String, Object>> projectList = new ArrayList<>();
-		for (Project p : projects) {
-			Set<Sample> selectedSamplesForProject = selected.get(p);
+		for (Project p : cart.keySet()) {
+			Set<Sample> selectedSamplesForProject = cart.get(p);
 			List<Map<String, Object>> samples = getSamplesAsListForGalaxy(selectedSamplesForProject, p.getId());
 
 			Map<String, Object> projectMap = ImmutableMap.of("id", p.getId(), "label", p.getLabel(), "samples",
@@ -418,21 +508,13 @@ public class CartController {
 		return sequenceFiles;
 	}
 
-	private synchronized Set<Sample> getSelectedSamplesForProject(Project project) {
-		if (!selected.containsKey(project)) {
-			selected.put(project, new HashSet<>());
-		}
-
-		return selected.get(project);
-	}
-
 	/**
 	 * Get the number of projects contained in the cart.
 	 *
 	 * @return {@link Integer} number of projects in the cart.
 	 */
-	public int getNumberOfProjects() {
-		return this.selected.keySet().size();
+	public synchronized int getNumberOfProjects() {
+		return this.selected.size();
 	}
 
 	/**
@@ -440,13 +522,8 @@ public class CartController {
 	 *
 	 * @return {@link Integer} number of samples in the cart.
 	 */
-	public int getNumberOfSamples() {
-		int count = 0;
-		for (Project project : selected.keySet()) {
-			count += selected.get(project).size();
-		}
-
-		return count;
+	public synchronized int getNumberOfSamples() {
+		return sampleNames.size();
 	}
 
 }
@@ -0,0 +1,68 @@
+package ca.corefacility.bioinformatics.irida.ria.web.components.datatables;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.springframework.data.domain.Page;
+
+/**
+ * {@link Iterator} over the rows of a table export that loads and converts the rows one {@link Page} at a time, so
+ * only a single page of rows is held in memory while the export is written.
+ *
+ * @param <T> the type of object loaded for each row
+ * @param <M> the type of {@link DataTablesExportable} each row is converted to
+ */
+public class DataTablesExportBatches<T, M extends DataTablesExportable> implements Iterator<M> {
+	private final IntFunction<Page<T>> pageLoader;
+	private final Function<List<T>, List<M>> converter;
+
+	private Page<T> page;
+	private Iterator<M> batch = Collections.emptyIterator();
+
+	/**
+	 * Create a new {@link DataTablesExportBatches}
+	 *
+	 * @param pageLoader loads the {@link Page} with the given page number
+	 * @param converter  converts the content of a {@link Page} to the rows for the export
+	 */
+	public DataTablesExportBatches(IntFunction<Page<T>> pageLoader, Function<List<T>, List<M>> converter) {
+		this.pageLoader = pageLoader;
+		this.converter = converter;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasNext() {
+		while (!batch.hasNext()) {
+			if (page != null && !page.hasNext()) {
+				return false;
+			}
+
+			page = pageLoader.apply(page == null ? 0 : page.getNumber() + 1);
+			if (!page.hasContent()) {
+				return false;
+			}
+			batch = converter.apply(page.getContent())
+					.iterator();
+		}
+
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public M next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return batch.next();
+	}
+}
@@ -3,11 +3,12 @@ package ca.corefacility.bioinformatics.irida.ria.web.files;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Date;
 
 import javax.imageio.ImageIO;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.imgscalr.Scalr;
@@ -28,9 +29,11 @@ import ca.corefacility.bioinformatics.irida.exceptions.EntityNotFoundException;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisFastQC;
+import ca.corefacility.bioinformatics.irida.ria.utilities.FastQCCharts;
 import ca.corefacility.bioinformatics.irida.service.AnalysisService;
 import ca.corefacility.bioinformatics.irida.service.SequencingObjectService;
 import ca.corefacility.bioinformatics.irida.service.SequencingRunService;
+import ca.corefacility.bioinformatics.irida.web.spring.view.RangedFileSender;
 
 /**
  * Controller for all {@link SequenceFile} related views
@@ -54,6 +57,9 @@ public class SequenceFileController {
 	public static final String IMG_PERBASE = "perbase";
 	public static final String IMG_PERSEQUENCE = "persequence";
 	public static final String IMG_DUPLICATION_LEVEL = "duplicationlevel";
+	private static final String SVG_CONTENT_TYPE = "image/svg+xml";
+	private static final int CHART_WIDTH = 800;
+	private static final int THUMBNAIL_WIDTH = 160;
 	/*
 	 * CONVERSIONS
 	 */
@@ -120,18 +126,18 @@ public class SequenceFileController {
 	 *
 	 * @param sequencingObjectId ID for the {@link SequencingObject}
 	 * @param sequenceFileId     Id for the {@link SequenceFile}
+	 * @param request            {@link HttpServletRequest}
 	 * @param response           {@link HttpServletResponse}
 	 * @throws IOException if we can't write the file to the response.
 	 */
 	@RequestMapping("/sequenceFiles/download/{sequencingObjectId}/file/{sequenceFileId}")
 	public void downloadSequenceFile(@PathVariable Long sequencingObjectId, @PathVariable Long sequenceFileId,
-			HttpServletResponse response) throws IOException {
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
 		SequencingObject sequencingObject = sequencingObjectService.read(sequencingObjectId);
 		SequenceFile sequenceFile = sequencingObject.getFileWithId(sequenceFileId);
 		Path path = sequenceFile.getFile();
 		response.setHeader("Content-Disposition", "attachment; filename=\"" + sequenceFile.getLabel() + "\"");
-		Files.copy(path, response.getOutputStream());
-		response.flushBuffer();
+		new RangedFileSender(path, MediaType.APPLICATION_OCTET_STREAM_VALUE).send(request, response);
 	}
 
 	/**
@@ -152,16 +158,25 @@ public class SequenceFileController {
 		SequenceFile file = sequencingObject.getFileWithId(sequenceFileId);
 		AnalysisFastQC fastQC = analysisService.getFastQCAnalysisForSequenceFile(sequencingObject, file.getId());
 		if (fastQC != null) {
-			byte[] chart = new byte[0];
+			if (!type.equals(IMG_PERBASE) && !type.equals(IMG_PERSEQUENCE) && !type.equals(IMG_DUPLICATION_LEVEL)) {
+				throw new EntityNotFoundException("Image not found");
+			}
+
+			byte[] chart;
 			if (type.equals(IMG_PERBASE)) {
 				chart = fastQC.getPerBaseQualityScoreChart();
 			} else if (type.equals(IMG_PERSEQUENCE)) {
 				chart = fastQC.getPerSequenceQualityScoreChart();
-			} else if (type.equals(IMG_DUPLICATION_LEVEL)) {
-				chart = fastQC.getDuplicationLevelChart();
 			} else {
-				throw new EntityNotFoundException("Image not found");
+				chart = fastQC.getDuplicationLevelChart();
 			}
+
+			if (chart == null) {
+				// newer analyses store the chart data rather than an image, draw it as SVG
+				writeSvgChart(fastQC, type, response, thumb);
+				return;
+			}
+
 			if (thumb) {
 				BufferedImage image = ImageIO.read(new ByteArrayInputStream(chart));
 				BufferedImage thumbnail = Scalr.resize(image, Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, 160,
@@ -175,6 +190,36 @@ public class SequenceFileController {
 		response.flushBuffer();
 	}
 
+	/**
+	 * Draw a FastQC chart from the numeric series stored with the analysis
+	 * and write it to the response as SVG.
+	 *
+	 * @param fastQC   the {@link AnalysisFastQC} to draw the chart for
+	 * @param type     the type of chart to draw
+	 * @param response {@link HttpServletResponse}
+	 * @param thumb    Whether to size the chart as a thumbnail
+	 * @throws IOException if we can't write the chart out to the response.
+	 */
+	private void writeSvgChart(AnalysisFastQC fastQC, String type, HttpServletResponse response, boolean thumb)
+			throws IOException {
+		int width = thumb ? THUMBNAIL_WIDTH : CHART_WIDTH;
+		int height = width * 3 / 4;
+
+		String svg;
+		if (type.equals(IMG_PERBASE)) {
+			svg = FastQCCharts.perBaseQualityChart(fastQC, width, height);
+		} else if (type.equals(IMG_PERSEQUENCE)) {
+			svg = FastQCCharts.perSequenceQualityChart(fastQC, width, height);
+		} else {
+			svg = FastQCCharts.duplicationLevelChart(fastQC, width, height);
+		}
+
+		response.setContentType(SVG_CONTENT_TYPE);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		response.getOutputStream().write(svg.getBytes(StandardCharsets.UTF_8));
+		response.flushBuffer();
+	}
+
 	/**
 	 * Populates the model with the default information for a file.
 	 *
@@ -32,11 +32,12 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
 
 import ca.corefacility.bioinformatics.irida.exceptions.EntityExistsException;
 import ca.corefacility.bioinformatics.irida.exceptions.EntityNotFoundException;
-import ca.corefacility.bioinformatics.irida.exceptions.SequenceFileAnalysisException;
 import ca.corefacility.bioinformatics.irida.model.joins.Join;
 import ca.corefacility.bioinformatics.irida.model.joins.impl.ProjectSampleJoin;
 import ca.corefacility.bioinformatics.irida.model.joins.impl.RelatedProjectJoin;
@@ -45,6 +46,7 @@ import ca.corefacility.bioinformatics.irida.model.sample.QCEntry;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
 import ca.corefacility.bioinformatics.irida.model.sample.SampleSequencingObjectJoin;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
+import ca.corefacility.bioinformatics.irida.ria.web.components.datatables.DataTablesExportBatches;
 import ca.corefacility.bioinformatics.irida.ria.web.components.datatables.DataTablesExportToFile;
 import ca.corefacility.bioinformatics.irida.ria.web.components.datatables.DataTablesExportTypes;
 import ca.corefacility.bioinformatics.irida.ria.web.components.datatables.DataTablesParams;
@@ -79,6 +81,9 @@ public class ProjectSamplesController {
 	private static final String PROJECT_SAMPLES_PAGE = PROJECTS_DIR + "project_samples";
 	private static final Logger logger = LoggerFactory.getLogger(ProjectsController.class);
 
+	// Number of samples to load at a time when exporting the samples table
+	private static final int EXPORT_BATCH_SIZE = 500;
+
 	// Services
 	private final ProjectService projectService;
 	private final SampleService sampleService;
@@ -452,39 +457,61 @@ public class ProjectSamplesController {
 				filter.getEndDate(), params.getCurrentPage(), params.getLength(), params.getSort());
 
 		// Create DataTables representation of the page.
-		List<DataTablesResponseModel> models = new ArrayList<>();
-		for (ProjectSampleJoin psj : page.getContent()) {
-			models.add(buildProjectSampleDataTablesModel(psj, locale));
-		}
+		List<DataTablesResponseModel> models = new ArrayList<>(
+				buildProjectSampleDataTablesModels(page.getContent(), locale));
 		return new DataTablesResponse(params, page, models);
 	}
 
 	/**
-	 * Build a {@link ProjectSampleModel} object for a given {@link Sample}
+	 * Build the {@link DTProjectSamples} for a list of {@link ProjectSampleJoin}. The coverage and QC entries for
+	 * all of the {@link Sample}s are loaded together rather than once per row.
 	 *
-	 * @param sso    a {@link ProjectSampleJoin} to build the {@link ProjectSampleModel} from
+	 * @param joins  the {@link ProjectSampleJoin}s to build the {@link DTProjectSamples} from
 	 * @param locale of the current user.
+	 * @return a {@link DTProjectSamples} for each {@link ProjectSampleJoin}, in the same order
+	 */
+	private List<DTProjectSamples> buildProjectSampleDataTablesModels(List<ProjectSampleJoin> joins, Locale locale) {
+		Set<Sample> samples = joins.stream()
+				.map(ProjectSampleJoin::getObject)
+				.collect(Collectors.toSet());
+		Map<Long, Long> totalBases = new HashMap<>();
+		Map<Long, List<QCEntry>> qcEntries = new HashMap<>();
+		if (!samples.isEmpty()) {
+			totalBases = sampleService.getTotalBasesForSamples(samples);
+			qcEntries = sampleService.getQCEntriesForSamples(samples);
+		}
+
+		List<DTProjectSamples> models = new ArrayList<>();
+		for (ProjectSampleJoin psj : joins) {
+			Long sampleId = psj.getObject()
+					.getId();
+			models.add(buildProjectSampleDataTablesModel(psj, totalBases.get(sampleId),
+					qcEntries.getOrDefault(sampleId, Collections.emptyList()), locale));
+		}
+		return models;
+	}
+
+	/**
+	 * Build a {@link ProjectSampleModel} object for a given {@link Sample}
+	 *
+	 * @param sso        a {@link ProjectSampleJoin} to build the {@link ProjectSampleModel} from
+	 * @param totalBases the total bases in the {@link Sample}, or null if it cannot be counted.
+	 * @param qcEntries  the {@link QCEntry}s for the {@link Sample}.
+	 * @param locale     of the current user.
 	 * @return a newly constructed {@link ProjectSampleModel}
 	 */
-	private DTProjectSamples buildProjectSampleDataTablesModel(ProjectSampleJoin sso, Locale locale) {
+	private DTProjectSamples buildProjectSampleDataTablesModel(ProjectSampleJoin sso, Long totalBases,
+			List<QCEntry> qcEntries, Locale locale) {
 		Project project = sso.getSubject();
 		Long genomeSize = project.getGenomeSize();
-		Sample sample = sso.getObject();
 		Double coverage = null;
 
-		if (genomeSize != null) {
-			try {
-				coverage = sampleService.estimateCoverageForSample(sample, genomeSize);
-			} catch (SequenceFileAnalysisException e) {
-				// Don't need to do anything here.
-			}
+		if (genomeSize != null && genomeSize > 0 && totalBases != null) {
+			coverage = totalBases / (double) genomeSize;
 		}
-		List<QCEntry> qcEntriesForSample = sampleService.getQCEntriesForSample(sample);
 		List<String> list = new ArrayList<>();
-		for (QCEntry q : qcEntriesForSample) {
+		for (QCEntry q : qcEntries) {
 			q.addProjectSettings(project);
-			String status = q.getStatus()
-					.toString();
 			if (q.getStatus() == QCEntry.QCEntryStatus.NEGATIVE) {
 				list.add(
 						messageSource.getMessage("sample.files.qc." + q.getType(), new Object[] { q.getMessage() }, locale));
@@ -907,17 +934,22 @@ public class ProjectSamplesController {
 		}
 		projects.add(project);
 
-		final Page<ProjectSampleJoin> page = sampleService
-				.getFilteredSamplesForProjects(projects, sampleNames, filter.getName(), params.getSearchValue(), filter.getOrganism(), filter.getStartDate(),
-						filter.getEndDate(), 0, Integer.MAX_VALUE, params.getSort());
-
-		// Create DataTables representation of the page.
-		List<DTProjectSamples> models = new ArrayList<>();
-		for (ProjectSampleJoin psj : page.getContent()) {
-			models.add(buildProjectSampleDataTablesModel(psj, locale));
-		}
-		List<String> headers = models.get(0)
-				.getExportableTableHeaders(messageSource, locale);
+		final List<Project> exportProjects = projects;
+		// Pages are loaded in separate queries, so rows tied on the table's
+		// sort need a unique order to land on exactly one page.
+		final Sort exportSort = params.getSort() == null ?
+				new Sort(Direction.ASC, "id") :
+				params.getSort().and(new Sort(Direction.ASC, "id"));
+		// Load and convert the samples a page at a time as they are written.
+		PeekingIterator<DTProjectSamples> models = Iterators.peekingIterator(new DataTablesExportBatches<>(
+				pageNumber -> sampleService.getFilteredSamplesForProjects(exportProjects, sampleNames, filter.getName(),
+						params.getSearchValue(), filter.getOrganism(), filter.getStartDate(), filter.getEndDate(),
+						pageNumber, EXPORT_BATCH_SIZE, exportSort),
+				joins -> buildProjectSampleDataTablesModels(joins, locale)));
+		List<String> headers = models.hasNext() ?
+				models.peek()
+						.getExportableTableHeaders(messageSource, locale) :
+				new ArrayList<>();
 		DataTablesExportToFile.writeFile(type, response, project.getLabel()
 				.replace(" ", "_"), models, headers);
 	}
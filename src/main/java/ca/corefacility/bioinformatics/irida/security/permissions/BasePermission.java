@@ -1,7 +1,13 @@
 package ca.corefacility.bioinformatics.irida.security.permissions;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +18,8 @@ import org.springframework.security.core.Authentication;
 import ca.corefacility.bioinformatics.irida.exceptions.EntityNotFoundException;
 import ca.corefacility.bioinformatics.irida.model.user.Role;
 
+import com.google.common.collect.Iterables;
+
 /**
  * Generic super-class for permission types to extend from.
  *
@@ -24,6 +32,12 @@ public abstract class BasePermission<DomainObjectType, IdentifierType extends Se
 
 	private static final String ADMIN_AUTHORITY = Role.ROLE_ADMIN.getAuthority();
 
+	/**
+	 * The most ids to put in the IN clause of a single query when checking
+	 * permissions on many objects.
+	 */
+	protected static final int BULK_QUERY_BATCH_SIZE = 1000;
+
 	/**
 	 * Get the implementation-specific permission provided.
 	 * 
@@ -44,6 +58,25 @@ public abstract class BasePermission<DomainObjectType, IdentifierType extends Se
 	protected abstract boolean customPermissionAllowed(Authentication authentication,
 			DomainObjectType targetDomainObject);
 
+	/**
+	 * This method is called by {@link BasePermission} to evaluate the custom
+	 * permissions for many objects at once. The default implementation checks
+	 * each object with
+	 * {@link #customPermissionAllowed(Authentication, Object)}. Implementing
+	 * classes should override this to look up what they need for all of the
+	 * objects with a constant number of queries.
+	 * 
+	 * @param authentication
+	 *            the authenticated user.
+	 * @param targetDomainObjects
+	 *            the objects that the user is attempting to access.
+	 * @return a test of whether each of the objects is permitted.
+	 */
+	protected Predicate<DomainObjectType> customPermissionAllowedMultiple(Authentication authentication,
+			Collection<DomainObjectType> targetDomainObjects) {
+		return o -> customPermissionAllowed(authentication, o);
+	}
+
 	/**
 	 * The type of object to be loaded from the database.
 	 */
@@ -119,7 +152,9 @@ public abstract class BasePermission<DomainObjectType, IdentifierType extends Se
 	}
 
 	/**
-	 * Tests permission for a collection of objects.
+	 * Tests permission for a collection of objects. Objects given by id are
+	 * loaded together, and permission for all of the objects is evaluated
+	 * with {@link #customPermissionAllowedMultiple(Authentication, Collection)}.
 	 * 
 	 * @param authentication
 	 *            The Authentication object.
@@ -130,13 +165,93 @@ public abstract class BasePermission<DomainObjectType, IdentifierType extends Se
 	 * @throws EntityNotFoundException
 	 *             If one of the objects in the collection does not exist.
 	 */
+	@SuppressWarnings("unchecked")
 	private boolean customPermissionAllowedCollection(Authentication authentication, Collection<?> targetDomainObjects) {
-		boolean permitted = true;
+		List<DomainObjectType> domainObjects = new ArrayList<>(targetDomainObjects.size());
+		Set<IdentifierType> ids = new LinkedHashSet<>();
+
 		for (Object domainObjectInCollection : targetDomainObjects) {
-			permitted &= customPermissionAllowedSingleObject(authentication, domainObjectInCollection);
+			if (identifierType.isAssignableFrom(domainObjectInCollection.getClass())) {
+				ids.add((IdentifierType) domainObjectInCollection);
+			} else if (domainObjectType.isAssignableFrom(domainObjectInCollection.getClass())) {
+				domainObjects.add((DomainObjectType) domainObjectInCollection);
+			} else {
+				throw new IllegalArgumentException("Parameter to " + getClass().getName()
+						+ " must be of type Long or " + domainObjectType.getName() + ".");
+			}
+		}
+
+		if (!ids.isEmpty()) {
+			logger.trace("Trying to find [" + ids.size() + "] domain objects by id");
+			int found = 0;
+			for (List<IdentifierType> batch : Iterables.partition(ids, BULK_QUERY_BATCH_SIZE)) {
+				for (DomainObjectType domainObject : repository.findAll(batch)) {
+					domainObjects.add(domainObject);
+					found++;
+				}
+			}
+
+			if (found != ids.size()) {
+				throw new EntityNotFoundException("Could not find all entities with ids [" + ids + "]");
+			}
+		}
+
+		return filterAllowed(authentication, domainObjects).size() == domainObjects.size();
+	}
+
+	/**
+	 * Find which of a collection of domain objects the authenticated user is
+	 * allowed to perform some action on. Permission for all of the objects is
+	 * evaluated together, so subclasses can check many objects with a constant
+	 * number of queries.
+	 * 
+	 * @param authentication
+	 *            the authenticated user.
+	 * @param targetDomainObjects
+	 *            the objects the user is requesting to perform an action on.
+	 * @param <T>
+	 *            the type of the objects
+	 * @return the objects that the action is allowed on, in their original
+	 *         order.
+	 */
+	public <T extends DomainObjectType> List<T> filterAllowed(Authentication authentication,
+			Collection<T> targetDomainObjects) {
+		// fast fail on anonymous users:
+		if (authentication instanceof AnonymousAuthenticationToken) {
+			return new ArrayList<>();
 		}
 
-		return permitted;
+		final boolean admin = authentication.getAuthorities().stream()
+				.anyMatch(g -> g.getAuthority().equals(ADMIN_AUTHORITY));
+		final Predicate<DomainObjectType> adminAllowed = o -> admin && adminAccessAllowed(authentication, o);
+
+		final List<DomainObjectType> toCheck = targetDomainObjects.stream().filter(adminAllowed.negate())
+				.collect(Collectors.toList());
+		if (toCheck.isEmpty()) {
+			return new ArrayList<>(targetDomainObjects);
+		}
+
+		final Predicate<DomainObjectType> allowed = adminAllowed
+				.or(customPermissionAllowedMultiple(authentication, toCheck));
+		return targetDomainObjects.stream().filter(allowed).collect(Collectors.toList());
+	}
+
+	/**
+	 * Check that every object in a collection is the type of domain object
+	 * managed by this permission.
+	 * 
+	 * @param targetDomainObjects
+	 *            the objects to check.
+	 * @throws IllegalArgumentException
+	 *             if any of the objects is not of the domain object type.
+	 */
+	public void checkDomainObjectTypes(Collection<?> targetDomainObjects) {
+		for (Object domainObject : targetDomainObjects) {
+			if (!domainObjectType.isInstance(domainObject)) {
+				throw new IllegalArgumentException(
+						"Parameter to " + getClass().getName() + " must be of type " + domainObjectType.getName() + ".");
+			}
+		}
 	}
 
 	/**
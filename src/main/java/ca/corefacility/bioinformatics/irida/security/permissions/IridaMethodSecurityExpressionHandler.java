@@ -0,0 +1,99 @@
+package ca.corefacility.bioinformatics.irida.security.permissions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.core.Authentication;
+
+/**
+ * {@link DefaultMethodSecurityExpressionHandler} that evaluates
+ * <code>@PostFilter("hasPermission(filterObject, 'permission')")</code> style
+ * filters for a whole collection at once with
+ * {@link IridaPermissionEvaluator#filterAllowed(Authentication, Collection, Object)}
+ * instead of evaluating the permission once for every element. A property of
+ * the filter object can be used as the domain object, as in
+ * <code>hasPermission(filterObject.object, 'canReadProject')</code>.
+ *
+ * Any other filter expression is evaluated for each element as usual.
+ */
+public class IridaMethodSecurityExpressionHandler extends DefaultMethodSecurityExpressionHandler {
+
+	private static final Pattern BULK_FILTER_EXPRESSION = Pattern
+			.compile("^\\s*hasPermission\\(\\s*filterObject((?:\\.\\w+)*)\\s*,\\s*'(\\w+)'\\s*\\)\\s*$");
+
+	private final ExpressionParser parser = new SpelExpressionParser();
+
+	private final IridaPermissionEvaluator permissionEvaluator;
+
+	public IridaMethodSecurityExpressionHandler(IridaPermissionEvaluator permissionEvaluator) {
+		this.permissionEvaluator = permissionEvaluator;
+		setPermissionEvaluator(permissionEvaluator);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object filter(Object filterTarget, Expression filterExpression, EvaluationContext ctx) {
+		Matcher matcher = BULK_FILTER_EXPRESSION.matcher(filterExpression.getExpressionString());
+		if (!(filterTarget instanceof Collection) || !matcher.matches()) {
+			return super.filter(filterTarget, filterExpression, ctx);
+		}
+
+		Collection<Object> collection = (Collection<Object>) filterTarget;
+		Expression property = matcher.group(1).isEmpty() ? null : parser.parseExpression(matcher.group(1)
+				.substring(1));
+		String permission = matcher.group(2);
+
+		List<Object> elements = new ArrayList<>(collection);
+		List<Object> domainObjects = new ArrayList<>(elements.size());
+		for (Object element : elements) {
+			Object domainObject = property == null ? element : property.getValue(element);
+			if (domainObject == null) {
+				return super.filter(filterTarget, filterExpression, ctx);
+			}
+			domainObjects.add(domainObject);
+		}
+
+		Authentication authentication = ((MethodSecurityExpressionOperations) ctx.getRootObject().getValue())
+				.getAuthentication();
+		Set<Object> allowed = Collections.newSetFromMap(new IdentityHashMap<>());
+		try {
+			allowed.addAll(permissionEvaluator.filterAllowed(authentication, domainObjects, permission));
+		} catch (IllegalArgumentException e) {
+			logger.debug("Cannot filter [" + filterExpression.getExpressionString()
+					+ "] in bulk, evaluating each element.", e);
+			return super.filter(filterTarget, filterExpression, ctx);
+		}
+
+		List<Object> retain = new ArrayList<>(allowed.size());
+		for (int i = 0; i < elements.size(); i++) {
+			if (allowed.contains(domainObjects.get(i))) {
+				retain.add(elements.get(i));
+			}
+		}
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("Retaining " + retain.size() + " of " + elements.size() + " elements for ["
+					+ filterExpression.getExpressionString() + "]");
+		}
+
+		collection.clear();
+		collection.addAll(retain);
+
+		return filterTarget;
+	}
+}
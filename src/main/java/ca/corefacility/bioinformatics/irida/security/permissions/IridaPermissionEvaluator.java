@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.PostConstruct;
@@ -55,12 +56,7 @@ public class IridaPermissionEvaluator implements PermissionEvaluator {
 	 */
 	@Override
 	public boolean hasPermission(Authentication authentication, Object targetDomainObject, Object permission) {
-		if (!namedPermissionMap.containsKey(permission.toString())) {
-			throw new UndefinedPermissionException("The permission [" + permission.toString()
-					+ "] is not registered with " + getClass().getName() + ".");
-		}
-
-		BasePermission<?,?> permissionEvaluator = namedPermissionMap.get(permission.toString());
+		BasePermission<?,?> permissionEvaluator = getPermission(permission);
 		boolean allowed = permissionEvaluator.isAllowed(authentication, targetDomainObject);
 
 		logger.trace("Permission request for access to [" + targetDomainObject + "] with permission [" + permission
@@ -69,6 +65,54 @@ public class IridaPermissionEvaluator implements PermissionEvaluator {
 		return allowed;
 	}
 
+	/**
+	 * Find which of a collection of domain objects the authenticated user has
+	 * a permission on. Permission for all of the objects is evaluated together
+	 * with {@link BasePermission#filterAllowed(Authentication, Collection)}.
+	 * 
+	 * @param authentication
+	 *            the authenticated user.
+	 * @param targetDomainObjects
+	 *            the objects to evaluate permission for.
+	 * @param permission
+	 *            the name of the permission.
+	 * @return the objects that the permission is granted on, in their original
+	 *         order.
+	 * @throws IllegalArgumentException
+	 *             if any of the objects isn't the type of domain object the
+	 *             permission is for.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public List<Object> filterAllowed(Authentication authentication, Collection<?> targetDomainObjects,
+			Object permission) {
+		BasePermission permissionEvaluator = getPermission(permission);
+		permissionEvaluator.checkDomainObjectTypes(targetDomainObjects);
+		List<Object> allowed = permissionEvaluator.filterAllowed(authentication, targetDomainObjects);
+
+		logger.trace("Permission request for access to [" + targetDomainObjects.size() + "] objects with permission ["
+				+ permission + "] by [" + authentication + "]. Granted for [" + allowed.size() + "]");
+
+		return allowed;
+	}
+
+	/**
+	 * Get the {@link BasePermission} registered for a permission name.
+	 * 
+	 * @param permission
+	 *            the name of the permission.
+	 * @return the {@link BasePermission} providing the permission.
+	 * @throws UndefinedPermissionException
+	 *             if no permission is registered with that name.
+	 */
+	private BasePermission<?, ?> getPermission(Object permission) {
+		if (!namedPermissionMap.containsKey(permission.toString())) {
+			throw new UndefinedPermissionException("The permission [" + permission.toString()
+					+ "] is not registered with " + getClass().getName() + ".");
+		}
+
+		return namedPermissionMap.get(permission.toString());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -4,10 +4,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import ca.corefacility.bioinformatics.irida.repositories.ProjectRepository;
-import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectUserJoinRepository;
-import ca.corefacility.bioinformatics.irida.repositories.joins.project.UserGroupProjectJoinRepository;
-import ca.corefacility.bioinformatics.irida.repositories.user.UserGroupJoinRepository;
-import ca.corefacility.bioinformatics.irida.repositories.user.UserRepository;
 
 /**
  * Permission checking if a user can update local project settings
@@ -21,16 +17,12 @@ public class ManageLocalProjectSettingsPermission extends ModifyProjectPermissio
 	 * Construct an instance of {@link ManageLocalProjectSettingsPermission}.
 	 *
 	 * @param projectRepository the project repository.
-	 * @param userRepository    the user repository.
-	 * @param pujRepository     the project user join repository.
-	 * @param ugpjRepository    the user group project join repository
-	 * @param ugRepository      the user group join repository
+	 * @param projectRoleCache  the cache of users' roles on projects.
 	 */
 	@Autowired
 	public ManageLocalProjectSettingsPermission(final ProjectRepository projectRepository,
-			final UserRepository userRepository, final ProjectUserJoinRepository pujRepository,
-			final UserGroupProjectJoinRepository ugpjRepository, final UserGroupJoinRepository ugRepository) {
-		super(projectRepository, userRepository, pujRepository, ugpjRepository, ugRepository);
+			final ProjectRoleCache projectRoleCache) {
+		super(projectRepository, projectRoleCache);
 	}
 
 	@Override
@@ -1,5 +1,8 @@
 package ca.corefacility.bioinformatics.irida.security.permissions.project;
 
+import java.util.Collection;
+import java.util.function.Predicate;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,10 +12,6 @@ import org.springframework.stereotype.Component;
 import ca.corefacility.bioinformatics.irida.model.project.Project;
 import ca.corefacility.bioinformatics.irida.model.remote.RemoteSynchronizable;
 import ca.corefacility.bioinformatics.irida.repositories.ProjectRepository;
-import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectUserJoinRepository;
-import ca.corefacility.bioinformatics.irida.repositories.joins.project.UserGroupProjectJoinRepository;
-import ca.corefacility.bioinformatics.irida.repositories.user.UserGroupJoinRepository;
-import ca.corefacility.bioinformatics.irida.repositories.user.UserRepository;
 import ca.corefacility.bioinformatics.irida.security.ProjectSynchronizationAuthenticationToken;
 
 /**
@@ -29,16 +28,11 @@ public class ProjectOwnerPermission extends ModifyProjectPermission {
 	 * Construct an instance of {@link ProjectOwnerPermission}.
 	 *
 	 * @param projectRepository the project repository.
-	 * @param userRepository    the user repository.
-	 * @param pujRepository     the project user join repository.
-	 * @param ugpjRepository    The user group project join repository.
-	 * @param ugRepository      The user group join repository.
+	 * @param projectRoleCache  the cache of users' roles on projects.
 	 */
 	@Autowired
-	public ProjectOwnerPermission(final ProjectRepository projectRepository, final UserRepository userRepository,
-			final ProjectUserJoinRepository pujRepository, final UserGroupProjectJoinRepository ugpjRepository,
-			final UserGroupJoinRepository ugRepository) {
-		super(projectRepository, userRepository, pujRepository, ugpjRepository, ugRepository);
+	public ProjectOwnerPermission(final ProjectRepository projectRepository, final ProjectRoleCache projectRoleCache) {
+		super(projectRepository, projectRoleCache);
 	}
 
 	/**
@@ -59,6 +53,16 @@ public class ProjectOwnerPermission extends ModifyProjectPermission {
 		return super.customPermissionAllowed(authentication, p);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Predicate<Project> customPermissionAllowedMultiple(Authentication authentication,
+			Collection<Project> projects) {
+		final Predicate<Project> owner = super.customPermissionAllowedMultiple(authentication, projects);
+		return p -> canUpdateRemoteObject(p, authentication) && owner.test(p);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
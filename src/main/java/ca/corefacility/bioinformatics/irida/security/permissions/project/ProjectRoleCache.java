@@ -0,0 +1,390 @@
+package ca.corefacility.bioinformatics.irida.security.permissions.project;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import ca.corefacility.bioinformatics.irida.model.enums.ProjectRole;
+import ca.corefacility.bioinformatics.irida.model.event.UserGroupRoleSetProjectEvent;
+import ca.corefacility.bioinformatics.irida.model.event.UserRemovedProjectEvent;
+import ca.corefacility.bioinformatics.irida.model.event.UserRoleSetProjectEvent;
+import ca.corefacility.bioinformatics.irida.model.joins.impl.ProjectUserJoin;
+import ca.corefacility.bioinformatics.irida.model.project.Project;
+import ca.corefacility.bioinformatics.irida.model.user.User;
+import ca.corefacility.bioinformatics.irida.model.user.group.UserGroupProjectJoin;
+import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectUserJoinRepository;
+import ca.corefacility.bioinformatics.irida.repositories.joins.project.UserGroupProjectJoinRepository;
+import ca.corefacility.bioinformatics.irida.repositories.user.UserRepository;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Caches the effective {@link ProjectRole} of a user on a {@link Project}, so
+ * that project and sample permission checks don't reload the user and every
+ * member of the project each time they're evaluated.
+ *
+ * The effective role is the highest of the user's own role on the project and
+ * the roles of any groups on the project the user is a member of. Roles are
+ * kept for the rest of the current web request, and in a cache shared between
+ * requests for a short time. The shared cache is cleared for a project when a
+ * {@link UserRoleSetProjectEvent}, {@link UserGroupRoleSetProjectEvent} or
+ * {@link UserRemovedProjectEvent} is launched on it, and for a user when their
+ * group membership changes. When the change is made in a transaction, the
+ * cache is cleared again once the transaction commits so that roles read by
+ * other requests before the commit aren't kept.
+ */
+@Component
+public class ProjectRoleCache {
+	private static final Logger logger = LoggerFactory.getLogger(ProjectRoleCache.class);
+
+	private static final String REQUEST_ATTRIBUTE = ProjectRoleCache.class.getName() + ".roles";
+
+	private static final int BATCH_SIZE = 1000;
+
+	private final UserRepository userRepository;
+	private final ProjectUserJoinRepository pujRepository;
+	private final UserGroupProjectJoinRepository ugpjRepository;
+	private final long timeToLive;
+	private final Clock clock;
+
+	private final Map<RoleKey, CachedRole> roles = new ConcurrentHashMap<>();
+
+	// bumped on every invalidation so that a role loaded before the change
+	// isn't put back into the cache after it
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * Construct an instance of {@link ProjectRoleCache}.
+	 *
+	 * @param userRepository    the user repository.
+	 * @param pujRepository     the project user join repository.
+	 * @param ugpjRepository    the user group/project join repository.
+	 * @param timeToLiveSeconds how long a role is shared between requests.
+	 */
+	@Autowired
+	public ProjectRoleCache(final UserRepository userRepository, final ProjectUserJoinRepository pujRepository,
+			final UserGroupProjectJoinRepository ugpjRepository,
+			@Value("${security.permission.cache.ttl:30}") final long timeToLiveSeconds) {
+		this(userRepository, pujRepository, ugpjRepository, TimeUnit.SECONDS.toMillis(timeToLiveSeconds),
+				Clock.systemUTC());
+	}
+
+	/**
+	 * Construct an instance of {@link ProjectRoleCache}.
+	 *
+	 * @param userRepository the user repository.
+	 * @param pujRepository  the project user join repository.
+	 * @param ugpjRepository the user group/project join repository.
+	 * @param timeToLive     how long in milliseconds a role is shared between
+	 *                       requests. 0 turns off the shared cache.
+	 * @param clock          the {@link Clock} to expire roles with.
+	 */
+	public ProjectRoleCache(final UserRepository userRepository, final ProjectUserJoinRepository pujRepository,
+			final UserGroupProjectJoinRepository ugpjRepository, final long timeToLive, final Clock clock) {
+		this.userRepository = userRepository;
+		this.pujRepository = pujRepository;
+		this.ugpjRepository = ugpjRepository;
+		this.timeToLive = timeToLive;
+		this.clock = clock;
+	}
+
+	/**
+	 * Get the effective role of the authenticated user on a project.
+	 *
+	 * @param authentication the authenticated user.
+	 * @param project        the project.
+	 * @return the user's {@link ProjectRole}, or empty if the user isn't on the
+	 * project directly or through a group.
+	 */
+	public Optional<ProjectRole> getProjectRole(final Authentication authentication, final Project project) {
+		if (project.getId() == null) {
+			return loadProjectRole(authentication.getName(), project);
+		}
+
+		final RoleKey key = new RoleKey(authentication.getName(), project.getId());
+		final Map<RoleKey, Optional<ProjectRole>> requestRoles = getRequestRoles();
+		if (requestRoles != null && requestRoles.containsKey(key)) {
+			return requestRoles.get(key);
+		}
+
+		final long now = clock.millis();
+		final CachedRole cached = roles.get(key);
+		final Optional<ProjectRole> role;
+		if (cached != null && cached.expires > now) {
+			role = cached.role;
+		} else {
+			final long loadedGeneration = generation.get();
+			role = loadProjectRole(authentication.getName(), project);
+			if (timeToLive > 0 && loadedGeneration == generation.get()) {
+				roles.put(key, new CachedRole(role, now + timeToLive));
+			}
+		}
+
+		if (requestRoles != null) {
+			requestRoles.put(key, role);
+		}
+
+		return role;
+	}
+
+	/**
+	 * Get the effective roles of the authenticated user on many projects. Roles
+	 * that aren't already cached are loaded together.
+	 *
+	 * @param authentication the authenticated user.
+	 * @param projects       the projects.
+	 * @return the user's {@link ProjectRole} by project id, for the projects
+	 * the user is on directly or through a group. Projects without an id are
+	 * left out.
+	 */
+	public Map<Long, ProjectRole> getProjectRoles(final Authentication authentication,
+			final Collection<Project> projects) {
+		final String username = authentication.getName();
+		final Map<RoleKey, Optional<ProjectRole>> requestRoles = getRequestRoles();
+		final long now = clock.millis();
+
+		final Map<Long, ProjectRole> found = new HashMap<>();
+		final Set<Long> toLoad = new LinkedHashSet<>();
+		for (final Project project : projects) {
+			if (project.getId() == null) {
+				continue;
+			}
+
+			final RoleKey key = new RoleKey(username, project.getId());
+			Optional<ProjectRole> role = requestRoles != null ? requestRoles.get(key) : null;
+			if (role == null) {
+				final CachedRole cached = roles.get(key);
+				role = cached != null && cached.expires > now ? cached.role : null;
+			}
+
+			if (role != null) {
+				role.ifPresent(r -> found.put(key.projectId, r));
+			} else {
+				toLoad.add(project.getId());
+			}
+		}
+
+		if (!toLoad.isEmpty()) {
+			final long loadedGeneration = generation.get();
+			final Map<Long, ProjectRole> loaded = loadProjectRoles(username, toLoad);
+			for (final Long projectId : toLoad) {
+				final RoleKey key = new RoleKey(username, projectId);
+				final Optional<ProjectRole> role = Optional.ofNullable(loaded.get(projectId));
+				if (timeToLive > 0 && loadedGeneration == generation.get()) {
+					roles.put(key, new CachedRole(role, now + timeToLive));
+				}
+				if (requestRoles != null) {
+					requestRoles.put(key, role);
+				}
+			}
+			found.putAll(loaded);
+		}
+
+		return found;
+	}
+
+	/**
+	 * Forget the roles of all users on a project.
+	 *
+	 * @param project the project whose membership has changed.
+	 */
+	public void invalidateProject(final Project project) {
+		logger.trace("Clearing cached roles for project [" + project + "]");
+		invalidate(() -> roles.keySet().removeIf(k -> Objects.equals(k.projectId, project.getId())));
+	}
+
+	/**
+	 * Forget the roles of a user on all projects.
+	 *
+	 * @param user the user whose membership has changed.
+	 */
+	public void invalidateUser(final User user) {
+		logger.trace("Clearing cached roles for user [" + user + "]");
+		final String username = user.getUsername();
+		invalidate(() -> roles.keySet().removeIf(k -> k.username.equals(username)));
+	}
+
+	/**
+	 * Forget all cached roles.
+	 */
+	public void invalidateAll() {
+		logger.trace("Clearing all cached project roles");
+		invalidate(roles::clear);
+	}
+
+	/**
+	 * Clear cached roles now and, if there's a transaction running, again
+	 * after it commits. Other requests can't see the change until then, so
+	 * roles they load in the meantime are out of date as soon as it commits.
+	 *
+	 * @param clear removes the changed roles from the shared cache.
+	 */
+	private void invalidate(final Runnable clear) {
+		generation.incrementAndGet();
+		clear.run();
+		clearRequestRoles();
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					generation.incrementAndGet();
+					clear.run();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Load the effective role of a user on a project from the database.
+	 *
+	 * @param username the name of the user.
+	 * @param project  the project.
+	 * @return the highest role of the user on the project.
+	 */
+	private Optional<ProjectRole> loadProjectRole(final String username, final Project project) {
+		final User user = userRepository.loadUserByUsername(username);
+
+		final ProjectUserJoin projectUser = pujRepository.getProjectJoinForUser(project, user);
+		if (projectUser != null && ProjectRole.PROJECT_OWNER.equals(projectUser.getProjectRole())) {
+			return Optional.of(ProjectRole.PROJECT_OWNER);
+		}
+
+		ProjectRole role = projectUser != null ? projectUser.getProjectRole() : null;
+		final Collection<UserGroupProjectJoin> groups = ugpjRepository.findGroupsByProjectAndUser(project, user);
+		for (final UserGroupProjectJoin group : groups) {
+			if (role == null || ProjectRole.PROJECT_OWNER.equals(group.getProjectRole())) {
+				role = group.getProjectRole();
+			}
+		}
+
+		logger.trace("User [" + username + "] has role [" + role + "] on project [" + project + "]");
+		return Optional.ofNullable(role);
+	}
+
+	/**
+	 * Load the effective roles of a user on many projects from the database.
+	 *
+	 * @param username   the name of the user.
+	 * @param projectIds the ids of the projects.
+	 * @return the highest role of the user by project id, for the projects the
+	 * user has a role on.
+	 */
+	private Map<Long, ProjectRole> loadProjectRoles(final String username, final Set<Long> projectIds) {
+		final User user = userRepository.loadUserByUsername(username);
+		final Map<Long, ProjectRole> loaded = new HashMap<>();
+
+		for (final List<Long> batch : Iterables.partition(projectIds, BATCH_SIZE)) {
+			for (final ProjectUserJoin projectUser : pujRepository.getProjectJoinsForUser(user, batch)) {
+				loaded.merge(projectUser.getSubject().getId(), projectUser.getProjectRole(), ProjectRoleCache::highest);
+			}
+			for (final UserGroupProjectJoin group : ugpjRepository.findGroupsByProjectIdsAndUser(batch, user)) {
+				loaded.merge(group.getSubject().getId(), group.getProjectRole(), ProjectRoleCache::highest);
+			}
+		}
+
+		logger.trace("Loaded roles for user [" + username + "] on [" + projectIds.size() + "] projects");
+		return loaded;
+	}
+
+	/**
+	 * Get the higher of two project roles.
+	 */
+	private static ProjectRole highest(final ProjectRole a, final ProjectRole b) {
+		return ProjectRole.PROJECT_OWNER.equals(a) ? a : b;
+	}
+
+	/**
+	 * Get the roles already looked up during the current web request.
+	 *
+	 * @return the roles for the current request, or null if this isn't
+	 * running in a request.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<RoleKey, Optional<ProjectRole>> getRequestRoles() {
+		final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes == null) {
+			return null;
+		}
+
+		Map<RoleKey, Optional<ProjectRole>> requestRoles = (Map<RoleKey, Optional<ProjectRole>>) attributes
+				.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+		if (requestRoles == null) {
+			requestRoles = new HashMap<>();
+			attributes.setAttribute(REQUEST_ATTRIBUTE, requestRoles, RequestAttributes.SCOPE_REQUEST);
+		}
+
+		return requestRoles;
+	}
+
+	/**
+	 * Forget the roles looked up during the current web request.
+	 */
+	private void clearRequestRoles() {
+		final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes != null) {
+			attributes.removeAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+		}
+	}
+
+	/**
+	 * A user and project pair.
+	 */
+	private static final class RoleKey {
+		private final String username;
+		private final Long projectId;
+
+		private RoleKey(final String username, final Long projectId) {
+			this.username = username;
+			this.projectId = projectId;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(username, projectId);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (o instanceof RoleKey) {
+				final RoleKey k = (RoleKey) o;
+				return Objects.equals(username, k.username) && Objects.equals(projectId, k.projectId);
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * A role and the time it should no longer be used.
+	 */
+	private static final class CachedRole {
+		private final Optional<ProjectRole> role;
+		private final long expires;
+
+		private CachedRole(final Optional<ProjectRole> role, final long expires) {
+			this.role = role;
+			this.expires = expires;
+		}
+	}
+}
@@ -1,12 +1,21 @@
 package ca.corefacility.bioinformatics.irida.security.permissions.sample;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import ca.corefacility.bioinformatics.irida.model.joins.Join;
+import ca.corefacility.bioinformatics.irida.model.joins.impl.ProjectSampleJoin;
 import ca.corefacility.bioinformatics.irida.model.project.Project;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
 import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectSampleJoinRepository;
@@ -14,6 +23,8 @@ import ca.corefacility.bioinformatics.irida.repositories.sample.SampleRepository
 import ca.corefacility.bioinformatics.irida.security.permissions.BasePermission;
 import ca.corefacility.bioinformatics.irida.security.permissions.project.ReadProjectPermission;
 
+import com.google.common.collect.Iterables;
+
 /**
  * Confirms that the authenticated user is allowed to read a sample.
  * 
@@ -60,6 +71,37 @@ public class ReadSamplePermission extends BasePermission<Sample, Long> {
 		return projectForSample.stream().anyMatch(j -> readProjectPermission.isAllowed(authentication, j.getSubject()));
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Predicate<Sample> customPermissionAllowedMultiple(Authentication authentication,
+			Collection<Sample> samples) {
+		// load the projects for all of the samples, then check which of those
+		// projects can be read all together.
+		final Map<Long, List<Project>> projectsBySample = new HashMap<>();
+		final Map<Long, Project> projects = new LinkedHashMap<>();
+		final List<Long> sampleIds = samples.stream().map(Sample::getId).filter(id -> id != null)
+				.collect(Collectors.toList());
+		for (List<Long> batch : Iterables.partition(sampleIds, BULK_QUERY_BATCH_SIZE)) {
+			for (ProjectSampleJoin j : psjRepository.getProjectsForSampleIds(batch)) {
+				projectsBySample.computeIfAbsent(j.getObject().getId(), k -> new ArrayList<>()).add(j.getSubject());
+				projects.putIfAbsent(j.getSubject().getId(), j.getSubject());
+			}
+		}
+
+		final Set<Long> readable = readProjectPermission.filterAllowed(authentication, projects.values()).stream()
+				.map(Project::getId).collect(Collectors.toSet());
+
+		return s -> {
+			if (s.getId() == null) {
+				return customPermissionAllowed(authentication, s);
+			}
+			return projectsBySample.getOrDefault(s.getId(), new ArrayList<>()).stream()
+					.anyMatch(p -> readable.contains(p.getId()));
+		};
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -1,6 +1,14 @@
 package ca.corefacility.bioinformatics.irida.security.permissions.sample;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
@@ -16,6 +24,8 @@ import ca.corefacility.bioinformatics.irida.repositories.sample.SampleRepository
 import ca.corefacility.bioinformatics.irida.security.permissions.BasePermission;
 import ca.corefacility.bioinformatics.irida.security.permissions.project.ProjectOwnerPermission;
 
+import com.google.common.collect.Iterables;
+
 /**
  * Custom permission implementation for updating {@link Sample}.
  *
@@ -81,4 +91,43 @@ public class UpdateSamplePermission extends BasePermission<Sample, Long> {
 			return projectOwnerPermission.isAllowed(authentication, j.getSubject()) && j.isOwner();
 		});
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Predicate<Sample> customPermissionAllowedMultiple(final Authentication authentication,
+			final Collection<Sample> samples) {
+		final boolean sequencer = authentication.getAuthorities().stream()
+				.anyMatch(g -> g.getAuthority().equals(Role.ROLE_SEQUENCER.getAuthority()));
+
+		// load the projects owning all of the samples, then check which of
+		// those projects the user can manage all together.
+		final Map<Long, List<ProjectSampleJoin>> joinsBySample = new HashMap<>();
+		final Map<Long, Project> owningProjects = new LinkedHashMap<>();
+		final List<Long> sampleIds = samples.stream().map(Sample::getId).filter(id -> id != null)
+				.collect(Collectors.toList());
+		for (List<Long> batch : Iterables.partition(sampleIds, BULK_QUERY_BATCH_SIZE)) {
+			for (ProjectSampleJoin j : projectSampleJoinRepository.getProjectsForSampleIds(batch)) {
+				joinsBySample.computeIfAbsent(j.getObject().getId(), k -> new ArrayList<>()).add(j);
+				if (j.isOwner()) {
+					owningProjects.putIfAbsent(j.getSubject().getId(), j.getSubject());
+				}
+			}
+		}
+
+		final Set<Long> managed = projectOwnerPermission.filterAllowed(authentication, owningProjects.values())
+				.stream().map(Project::getId).collect(Collectors.toSet());
+
+		return s -> {
+			if (s.getId() == null) {
+				return customPermissionAllowed(authentication, s);
+			}
+			if (!s.isRemote() && sequencer) {
+				return true;
+			}
+			return joinsBySample.getOrDefault(s.getId(), new ArrayList<>()).stream()
+					.anyMatch(j -> j.isOwner() && managed.contains(j.getSubject().getId()));
+		};
+	}
 }
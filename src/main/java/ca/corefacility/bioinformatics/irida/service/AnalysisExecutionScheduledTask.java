@@ -34,7 +34,8 @@ public interface AnalysisExecutionScheduledTask {
 
 	/**
 	 * Cycle through any {@link AnalysisSubmission}s currently running and mark
-	 * as complete any completed analyses.
+	 * as complete any completed analyses. Submissions whose workflows are not
+	 * making progress may be checked less often than this is called.
 	 * 
 	 * @return A {@link Set} of {@link Future} {@link AnalysisSubmission}s
 	 *         reflecting the changes in this submission along each of the
@@ -31,6 +31,17 @@ import ca.corefacility.bioinformatics.irida.model.workflow.submission.ProjectAna
  */
 public interface ProjectService extends CRUDService<Long, Project> {
 
+	/**
+	 * Get the {@link Project}s with the given ids that exist and that the current user can read. Unlike {@link
+	 * #readMultiple(Iterable)}, ids of deleted or unreadable {@link Project}s are left out instead of failing.
+	 *
+	 * @param projectIds
+	 * 		the {@link Project} ids
+	 *
+	 * @return the readable {@link Project}s
+	 */
+	public List<Project> getReadableProjects(Iterable<Long> projectIds);
+
 	/**
 	 * Add the specified {@link User} to the {@link Project} with a {@link Role} . If the {@link User} is a manager for
 	 * the {@link Project}, then the {@link User} should be added to the {@link Project} with the 'ROLE_MANAGER' {@link
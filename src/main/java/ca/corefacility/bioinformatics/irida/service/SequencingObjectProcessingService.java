@@ -1,22 +1,33 @@
 package ca.corefacility.bioinformatics.irida.service;
 
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.FileProcessorHeartbeat;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject;
 import ca.corefacility.bioinformatics.irida.processing.FileProcessingChain;
+import ca.corefacility.bioinformatics.irida.repositories.sequencefile.FileProcessorHeartbeatRepository;
 import ca.corefacility.bioinformatics.irida.repositories.sequencefile.SequencingObjectRepository;
 import ca.corefacility.bioinformatics.irida.service.impl.processor.SequenceFileProcessorLauncher;
+import com.google.common.collect.ImmutableSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.lang.management.ManagementFactory;
-import java.util.Iterator;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service used to run a {@link FileProcessingChain} on incoming {@link SequencingObject}s.
@@ -26,18 +37,31 @@ import java.util.List;
 public class SequencingObjectProcessingService {
 	private static final Logger logger = LoggerFactory.getLogger(SequencingObjectProcessingService.class);
 
+	/**
+	 * Objects in these states are owned by the file processor that marked them
+	 */
+	private static final Set<SequencingObject.ProcessingState> RELEASE_STATES = ImmutableSet
+			.of(SequencingObject.ProcessingState.QUEUED, SequencingObject.ProcessingState.PROCESSING);
+
 	private SequencingObjectRepository sequencingObjectRepository;
+	private FileProcessorHeartbeatRepository heartbeatRepository;
 
 	private FileProcessingChain fileProcessingChain;
 	private ThreadPoolTaskExecutor fileProcessingChainExecutor;
 
 	private final String machineString;
 
+	private final int leaseTimeout;
+
 	@Autowired
 	public SequencingObjectProcessingService(SequencingObjectRepository sequencingObjectRepository,
+			FileProcessorHeartbeatRepository heartbeatRepository,
 			@Qualifier("fileProcessingChainExecutor") ThreadPoolTaskExecutor executor,
-			@Qualifier("uploadFileProcessingChain") FileProcessingChain fileProcessingChain) {
+			@Qualifier("uploadFileProcessingChain") FileProcessingChain fileProcessingChain,
+			@Value("${file.processing.lease.timeout:300}") int leaseTimeout) {
 		this.sequencingObjectRepository = sequencingObjectRepository;
+		this.heartbeatRepository = heartbeatRepository;
+		this.leaseTimeout = leaseTimeout;
 		this.fileProcessingChain = fileProcessingChain;
 		this.fileProcessingChainExecutor = executor;
 
@@ -48,13 +72,19 @@ public class SequencingObjectProcessingService {
 	 * Process new {@link SequencingObject}s uploaded and find new sequences to process next time around
 	 */
 	public synchronized void runProcessingJob() {
+		checkIn();
+
+		releaseExpiredProcessors();
+
 		processFiles();
 
 		findFilesToProcess();
 	}
 
 	/**
-	 * Find new {@link SequencingObject}s to process and mark that this process is going to handle them
+	 * Find new {@link SequencingObject}s to process and mark that this process is going to handle them.  Only as many
+	 * objects as there is space for in the processing queue are read and they're marked in a single update, so a
+	 * large backlog of files doesn't have to be loaded on every run.
 	 */
 	public synchronized void findFilesToProcess() {
 		//check our queue space
@@ -62,28 +92,113 @@ public class SequencingObjectProcessingService {
 
 		logger.trace("Processor " + machineString + " + has queuespace: " + queueSpace);
 
-		//check for any unprocessed files
-		List<SequencingObject> toProcess = sequencingObjectRepository
-				.getSequencingObjectsWithProcessingState(SequencingObject.ProcessingState.UNPROCESSED);
+		if (queueSpace <= 0) {
+			return;
+		}
 
-		// individually loop through and mark the ones we're going to process.  Looping individually so 2 processes are less likely to write at the same time.
-		Iterator<SequencingObject> iterator = toProcess.iterator();
+		//check for unprocessed files, only reading as many as we have room for
+		List<Long> toProcess = sequencingObjectRepository
+				.getSequencingObjectIdsWithProcessingState(SequencingObject.ProcessingState.UNPROCESSED,
+						new PageRequest(0, queueSpace));
 
-		while (queueSpace > 0 && iterator.hasNext()) {
-			SequencingObject sequencingObject = iterator.next();
+		if (toProcess.isEmpty()) {
+			return;
+		}
 
-			logger.trace("File processor " + machineString + " is processing file " + sequencingObject.getId());
+		// mark them all at once.  Any that another processor marked first are skipped by the update.
+		try {
+			int marked = sequencingObjectRepository.markFileProcessor(toProcess, machineString,
+					SequencingObject.ProcessingState.QUEUED);
 
-			try {
-				sequencingObjectRepository.markFileProcessor(sequencingObject.getId(), machineString,
-						SequencingObject.ProcessingState.QUEUED);
+			logger.trace("File processor " + machineString + " marked " + marked + " of " + toProcess.size()
+					+ " files to process");
+		} catch (CannotAcquireLockException ex) {
+			//If we can't get the lock, another processor is trying to pick up these files.  Let them have them.
+			logger.debug("Couldn't get transaction lock to mark files " + toProcess);
+		}
+	}
+
+	/**
+	 * Record that this file processor is still alive so it keeps its lease on the {@link SequencingObject}s it has
+	 * marked.
+	 */
+	public synchronized void checkIn() {
+		try {
+			heartbeatRepository.save(new FileProcessorHeartbeat(machineString));
+		} catch (DataAccessException ex) {
+			logger.warn("Couldn't record heartbeat for file processor " + machineString, ex);
+		}
+	}
 
-				queueSpace--;
-			} catch (CannotAcquireLockException ex) {
-				//If we can't get the lock, another processor is trying to pick up this file.  Let them have it.
-				logger.debug("Couldn't get transaction lock to mark file " + sequencingObject.getId());
+	/**
+	 * Find file processors that haven't checked in within the lease timeout and release the
+	 * {@link SequencingObject}s they had queued or were processing so another processor can pick them up.  This
+	 * happens when a server dies or is restarted in the middle of processing files.
+	 */
+	public synchronized void releaseExpiredProcessors() {
+		Date expiry = new Date(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(leaseTimeout));
+
+		for (FileProcessorHeartbeat heartbeat : heartbeatRepository.getExpiredHeartbeats(expiry)) {
+			String processor = heartbeat.getFileProcessor();
+
+			if (processor.equals(machineString)) {
+				// we're obviously still alive, we'll check in again next time around
+				continue;
+			}
+
+			logger.warn("File processor " + processor + " hasn't checked in since " + heartbeat.getLastHeartbeat()
+					+ ".  Releasing its sequencing objects.");
+
+			try {
+				heartbeatRepository.delete(processor);
+			} catch (EmptyResultDataAccessException ex) {
+				// another processor already cleaned this one up
+				logger.trace("Heartbeat for file processor " + processor + " was already removed");
 			}
 		}
+
+		// anything marked by a processor without a heartbeat belongs to a dead processor
+		int released = sequencingObjectRepository.releaseOrphanedSequencingObjects(RELEASE_STATES,
+				SequencingObject.ProcessingState.UNPROCESSED);
+
+		if (released > 0) {
+			logger.debug("Released " + released + " sequencing objects from expired file processors");
+		}
+	}
+
+	/**
+	 * Claim a single newly created {@link SequencingObject} for this processor
+	 * and launch the {@link FileProcessingChain} on it right away rather than
+	 * waiting for the next scheduled run. The claim is made on the processing
+	 * executor so the caller isn't blocked. If the executor is full or another
+	 * processor claims the object first, it's left for
+	 * {@link #runProcessingJob()} to pick up.
+	 * 
+	 * @param sequencingObjectId
+	 *            the id of the {@link SequencingObject} to process
+	 */
+	public void processSequencingObject(Long sequencingObjectId) {
+		SecurityContext securityContext = SecurityContextHolder.getContext();
+
+		try {
+			fileProcessingChainExecutor.execute(() -> {
+				// make sure we hold a lease before marking the object
+				checkIn();
+
+				int marked = sequencingObjectRepository.markFileProcessor(sequencingObjectId, machineString,
+						SequencingObject.ProcessingState.PROCESSING);
+
+				if (marked > 0) {
+					logger.trace("File processor " + machineString + " is processing new file " + sequencingObjectId);
+					new SequenceFileProcessorLauncher(fileProcessingChain, sequencingObjectId, securityContext).run();
+				} else {
+					logger.trace("Sequencing object " + sequencingObjectId + " was already claimed by another processor");
+				}
+			});
+		} catch (TaskRejectedException e) {
+			logger.debug("File processing queue is full, leaving sequencing object " + sequencingObjectId
+					+ " for the next scheduled run");
+		}
 	}
 
 	/**
@@ -1,6 +1,7 @@
 package ca.corefacility.bioinformatics.irida.service.analysis.execution;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 import ca.corefacility.bioinformatics.irida.exceptions.ExecutionManagerException;
@@ -25,7 +26,7 @@ public interface AnalysisExecutionService {
 	 * @param analysisSubmission
 	 *            The {@link AnalysisSubmission} to prepare.
 	 * 
-	 * @return A {@link Future} of type {@link AnalysisSubmission} which can be
+	 * @return A {@link CompletableFuture} of type {@link AnalysisSubmission} which can be
 	 *         used to access the prepared submission.
 	 * @throws IridaWorkflowNotFoundException
 	 *             If there was an issue getting a workflow.
@@ -34,7 +35,7 @@ public interface AnalysisExecutionService {
 	 * @throws ExecutionManagerException
 	 *             If there was an issue preparing a workspace for the workflow.
 	 */
-	public Future<AnalysisSubmission> prepareSubmission(AnalysisSubmission analysisSubmission)
+	public CompletableFuture<AnalysisSubmission> prepareSubmission(AnalysisSubmission analysisSubmission)
 			throws IridaWorkflowNotFoundException, IOException, ExecutionManagerException;
 
 	/**
@@ -43,7 +44,7 @@ public interface AnalysisExecutionService {
 	 * 
 	 * @param analysisSubmission
 	 *            The {@link AnalysisSubmission} to execute.
-	 * @return A {@link Future} with an {@link AnalysisSubmission} for the
+	 * @return A {@link CompletableFuture} with an {@link AnalysisSubmission} for the
 	 *         analysis submitted.
 	 * @throws ExecutionManagerException
 	 *             If there was an exception submitting the analysis to the
@@ -51,7 +52,7 @@ public interface AnalysisExecutionService {
 	 * @throws IridaWorkflowException
 	 *             If there was an issue with the IRIDA workflow.
 	 */
-	public Future<AnalysisSubmission> executeAnalysis(AnalysisSubmission analysisSubmission)
+	public CompletableFuture<AnalysisSubmission> executeAnalysis(AnalysisSubmission analysisSubmission)
 			throws IridaWorkflowException, ExecutionManagerException;
 
 	/**
@@ -72,7 +73,7 @@ public interface AnalysisExecutionService {
 	 * 
 	 * @param submittedAnalysis
 	 *            An {@link AnalysisSubmission} that was previously submitted.
-	 * @return A {@link Future} with an {@link AnalysisSubmission} object
+	 * @return A {@link CompletableFuture} with an {@link AnalysisSubmission} object
 	 *         containing information about the particular analysis.
 	 * @throws ExecutionManagerException
 	 *             If there was an issue with the execution manager.
@@ -85,7 +86,7 @@ public interface AnalysisExecutionService {
 	 * @throws IridaWorkflowAnalysisTypeException
 	 *             If there was an issue building an {@link Analysis} object.
 	 */
-	public Future<AnalysisSubmission> transferAnalysisResults(AnalysisSubmission submittedAnalysis)
+	public CompletableFuture<AnalysisSubmission> transferAnalysisResults(AnalysisSubmission submittedAnalysis)
 			throws ExecutionManagerException, IridaWorkflowNotFoundException, IOException,
 			IridaWorkflowAnalysisTypeException;
 
@@ -93,9 +94,9 @@ public interface AnalysisExecutionService {
 	 * Performs any post processing required for an {@link AnalysisSubmission}.  Usually this will be a sample updater implementation.
 	 *
 	 * @param analysisSubmission the {@link AnalysisSubmission} to process
-	 * @return a Future {@link AnalysisSubmission}
+	 * @return a {@link CompletableFuture} {@link AnalysisSubmission}
 	 */
-	public Future<AnalysisSubmission> postProcessResults(AnalysisSubmission analysisSubmission);
+	public CompletableFuture<AnalysisSubmission> postProcessResults(AnalysisSubmission analysisSubmission);
 
 	/**
 	 * Cleans up any intermediate files in the execution manager for this
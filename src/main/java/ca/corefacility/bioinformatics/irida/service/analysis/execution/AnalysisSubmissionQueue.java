@@ -0,0 +1,267 @@
+package ca.corefacility.bioinformatics.irida.service.analysis.execution;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import ca.corefacility.bioinformatics.irida.model.enums.AnalysisState;
+import ca.corefacility.bioinformatics.irida.model.workflow.analysis.type.AnalysisType;
+import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission;
+import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission.Priority;
+import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmissionQueueEntry;
+import ca.corefacility.bioinformatics.irida.repositories.analysis.submission.AnalysisSubmissionRepository;
+import ca.corefacility.bioinformatics.irida.service.workflow.IridaWorkflowsService;
+
+/**
+ * Decides the order that {@link AnalysisSubmission}s waiting in
+ * {@link AnalysisState#NEW} are run in.
+ *
+ * Submissions are taken by {@link Priority}, but a submission is raised one
+ * priority level for every aging interval it has been waiting so that
+ * {@link Priority#LOW} submissions are eventually run. Between submissions of
+ * the same priority, the submission whose submitter and project have the
+ * fewest submissions running (or already taken ahead of it) goes first, so one
+ * user or project submitting many analyses doesn't hold up everyone else.
+ * Submissions of an {@link AnalysisType} that has reached its limit of running
+ * submissions are passed over until one of them finishes.
+ *
+ * The queue is built from {@link AnalysisSubmissionQueueEntry}s each time it
+ * is asked for, so no submissions are loaded until they are taken.
+ */
+public class AnalysisSubmissionQueue {
+	private static final Logger logger = LoggerFactory.getLogger(AnalysisSubmissionQueue.class);
+
+	private final AnalysisSubmissionRepository analysisSubmissionRepository;
+	private final IridaWorkflowsService iridaWorkflowsService;
+	private final Map<AnalysisType, Integer> maxRunningByType;
+	private final long agingInterval;
+	private final Clock clock;
+
+	/**
+	 * Builds a new {@link AnalysisSubmissionQueue}.
+	 *
+	 * @param analysisSubmissionRepository
+	 *            the repository to read submissions from
+	 * @param iridaWorkflowsService
+	 *            the service to find the {@link AnalysisType} of a
+	 *            submission's workflow with
+	 * @param maxRunningByType
+	 *            the number of submissions of each {@link AnalysisType} that
+	 *            may run at once. Types that aren't in the map aren't limited.
+	 * @param agingInterval
+	 *            how long a submission waits before it is raised one priority
+	 *            level. {@link Duration#ZERO} turns off aging.
+	 * @param clock
+	 *            the {@link Clock} to measure waiting time with
+	 */
+	public AnalysisSubmissionQueue(AnalysisSubmissionRepository analysisSubmissionRepository,
+			IridaWorkflowsService iridaWorkflowsService, Map<AnalysisType, Integer> maxRunningByType,
+			Duration agingInterval, Clock clock) {
+		checkNotNull(analysisSubmissionRepository, "analysisSubmissionRepository is null");
+		checkNotNull(iridaWorkflowsService, "iridaWorkflowsService is null");
+		checkNotNull(maxRunningByType, "maxRunningByType is null");
+		checkArgument(!agingInterval.isNegative(), "agingInterval must not be negative");
+
+		this.analysisSubmissionRepository = analysisSubmissionRepository;
+		this.iridaWorkflowsService = iridaWorkflowsService;
+		this.maxRunningByType = ImmutableMap.copyOf(maxRunningByType);
+		this.agingInterval = agingInterval.toMillis();
+		this.clock = clock;
+	}
+
+	/**
+	 * Take the next submissions to run from the queue. Submissions of an
+	 * {@link AnalysisType} at its running limit are passed over.
+	 *
+	 * @param capacity
+	 *            the most submissions to take
+	 * @return the {@link AnalysisSubmission}s to run, in the order they should
+	 *         be started
+	 */
+	public List<AnalysisSubmission> nextSubmissions(int capacity) {
+		if (capacity <= 0) {
+			return Lists.newArrayList();
+		}
+
+		List<AnalysisSubmissionQueueEntry> queue = buildQueue(capacity, true);
+
+		List<AnalysisSubmission> submissions = new ArrayList<>(queue.size());
+		for (AnalysisSubmissionQueueEntry entry : queue) {
+			AnalysisSubmission submission = analysisSubmissionRepository.findOne(entry.getSubmissionId());
+
+			// the submission may have been deleted or started since the queue
+			// was read
+			if (submission != null && AnalysisState.NEW.equals(submission.getAnalysisState())) {
+				submissions.add(submission);
+			}
+		}
+
+		return submissions;
+	}
+
+	/**
+	 * Get the ids of all of the waiting submissions in the order they will be
+	 * taken, ignoring the running limits of each {@link AnalysisType}.
+	 *
+	 * @return the ids of the waiting {@link AnalysisSubmission}s
+	 */
+	public List<Long> getQueuedSubmissionIds() {
+		return buildQueue(Integer.MAX_VALUE, false).stream().map(AnalysisSubmissionQueueEntry::getSubmissionId)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Get the position of a submission in the queue.
+	 *
+	 * @param submission
+	 *            the {@link AnalysisSubmission}
+	 * @return the position of the submission, starting at 1, or 0 if it isn't
+	 *         waiting to run
+	 */
+	public int getQueuePosition(AnalysisSubmission submission) {
+		return getQueuedSubmissionIds().indexOf(submission.getId()) + 1;
+	}
+
+	/**
+	 * Order the waiting submissions.
+	 *
+	 * @param limit
+	 *            the most submissions to order
+	 * @param applyTypeLimits
+	 *            whether to pass over submissions of an {@link AnalysisType}
+	 *            at its running limit
+	 * @return the ordered {@link AnalysisSubmissionQueueEntry}s
+	 */
+	private List<AnalysisSubmissionQueueEntry> buildQueue(int limit, boolean applyTypeLimits) {
+		List<AnalysisState> states = AnalysisState.getRunningStates();
+		states.add(AnalysisState.NEW);
+		List<AnalysisSubmissionQueueEntry> entries = analysisSubmissionRepository.getQueueEntries(states);
+
+		long now = clock.millis();
+		Map<UUID, AnalysisType> workflowTypes = new HashMap<>();
+		Map<Long, Integer> submitterLoad = new HashMap<>();
+		Map<Long, Integer> projectLoad = new HashMap<>();
+		Map<AnalysisType, Integer> typeLoad = new HashMap<>();
+
+		List<AnalysisSubmissionQueueEntry> waiting = new ArrayList<>();
+		for (AnalysisSubmissionQueueEntry entry : entries) {
+			if (AnalysisState.NEW.equals(entry.getAnalysisState())) {
+				waiting.add(entry);
+			} else {
+				addLoad(entry, getAnalysisType(entry, workflowTypes), submitterLoad, projectLoad, typeLoad);
+			}
+		}
+
+		// each submitter's submissions in the order they should run
+		Comparator<AnalysisSubmissionQueueEntry> byPriority = Comparator
+				.comparingInt((AnalysisSubmissionQueueEntry e) -> -effectivePriority(e, now))
+				.thenComparing(AnalysisSubmissionQueueEntry::getCreatedDate,
+						Comparator.nullsLast(Comparator.naturalOrder()))
+				.thenComparing(AnalysisSubmissionQueueEntry::getSubmissionId);
+		waiting.sort(byPriority);
+
+		Map<Long, Deque<AnalysisSubmissionQueueEntry>> bySubmitter = new LinkedHashMap<>();
+		for (AnalysisSubmissionQueueEntry entry : waiting) {
+			bySubmitter.computeIfAbsent(entry.getSubmitterId(), k -> new ArrayDeque<>()).add(entry);
+		}
+
+		// between submitters, take the submission with the least running
+		// alongside it from its submitter and project
+		Comparator<AnalysisSubmissionQueueEntry> fairShare = Comparator
+				.comparingInt((AnalysisSubmissionQueueEntry e) -> -effectivePriority(e, now))
+				.thenComparingInt(e -> submitterLoad.getOrDefault(e.getSubmitterId(), 0)
+						+ projectLoad.getOrDefault(e.getProjectId(), 0))
+				.thenComparing(byPriority);
+
+		List<AnalysisSubmissionQueueEntry> queue = new ArrayList<>();
+		while (queue.size() < limit && !bySubmitter.isEmpty()) {
+			AnalysisSubmissionQueueEntry next = bySubmitter.values().stream().map(Deque::peekFirst).min(fairShare)
+					.get();
+
+			Deque<AnalysisSubmissionQueueEntry> submitterQueue = bySubmitter.get(next.getSubmitterId());
+			submitterQueue.removeFirst();
+			if (submitterQueue.isEmpty()) {
+				bySubmitter.remove(next.getSubmitterId());
+			}
+
+			AnalysisType type = getAnalysisType(next, workflowTypes);
+			if (applyTypeLimits && maxRunningByType.containsKey(type)
+					&& typeLoad.getOrDefault(type, 0) >= maxRunningByType.get(type)) {
+				logger.trace("Passing over " + next + ", " + type + " is at its limit of running submissions");
+				continue;
+			}
+
+			queue.add(next);
+			addLoad(next, type, submitterLoad, projectLoad, typeLoad);
+		}
+
+		return queue;
+	}
+
+	/**
+	 * Get the priority level of a waiting submission, raised one level for
+	 * every aging interval it has been waiting.
+	 *
+	 * @param entry
+	 *            the waiting submission
+	 * @param now
+	 *            the current time in milliseconds
+	 * @return the ordinal of the {@link Priority} to treat the submission as
+	 */
+	private int effectivePriority(AnalysisSubmissionQueueEntry entry, long now) {
+		Priority priority = entry.getPriority() != null ? entry.getPriority() : Priority.MEDIUM;
+		long level = priority.ordinal();
+
+		if (agingInterval > 0 && entry.getCreatedDate() != null) {
+			long waited = Math.max(now - entry.getCreatedDate().getTime(), 0);
+			level += waited / agingInterval;
+		}
+
+		return (int) Math.min(level, Priority.HIGH.ordinal());
+	}
+
+	/**
+	 * Get the {@link AnalysisType} of a submission's workflow.
+	 *
+	 * @param entry
+	 *            the submission
+	 * @param workflowTypes
+	 *            the types of the workflows already looked up
+	 * @return the {@link AnalysisType} of the workflow
+	 */
+	private AnalysisType getAnalysisType(AnalysisSubmissionQueueEntry entry, Map<UUID, AnalysisType> workflowTypes) {
+		return workflowTypes.computeIfAbsent(entry.getWorkflowId(),
+				id -> iridaWorkflowsService.getIridaWorkflowOrUnknown(id).getWorkflowDescription().getAnalysisType());
+	}
+
+	/**
+	 * Count a submission as running against its submitter, project and
+	 * {@link AnalysisType}.
+	 */
+	private void addLoad(AnalysisSubmissionQueueEntry entry, AnalysisType type, Map<Long, Integer> submitterLoad,
+			Map<Long, Integer> projectLoad, Map<AnalysisType, Integer> typeLoad) {
+		submitterLoad.merge(entry.getSubmitterId(), 1, Integer::sum);
+		if (entry.getProjectId() != null) {
+			projectLoad.merge(entry.getProjectId(), 1, Integer::sum);
+		}
+		typeLoad.merge(type, 1, Integer::sum);
+	}
+}
@@ -0,0 +1,247 @@
+package ca.corefacility.bioinformatics.irida.service.analysis.execution;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+
+import ca.corefacility.bioinformatics.irida.model.workflow.execution.galaxy.GalaxyWorkflowStatus;
+import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission;
+
+/**
+ * Watches the workflows of running {@link AnalysisSubmission}s in the
+ * execution manager. Each call to
+ * {@link #checkRunningSubmissions(Collection, WorkflowStatusListener)} checks
+ * the status of every submission that is due in one pass, with the status
+ * requests made at the same time on the given {@link Executor}, and then tells
+ * a {@link WorkflowStatusListener} what was found.
+ *
+ * A submission whose workflow is not making progress (its
+ * {@link GalaxyWorkflowStatus#getProportionComplete()} hasn't changed since it
+ * was last checked) is checked less and less often, up to a maximum interval.
+ * As soon as it makes progress it is checked at the minimum interval again.
+ */
+public class AnalysisWorkflowMonitor {
+	private static final Logger logger = LoggerFactory.getLogger(AnalysisWorkflowMonitor.class);
+
+	private final AnalysisExecutionService analysisExecutionService;
+	private final Executor executor;
+	private final long minimumInterval;
+	private final long maximumInterval;
+	private final Clock clock;
+
+	private final Map<Long, WatchedWorkflow> watched = new ConcurrentHashMap<>();
+
+	/**
+	 * Builds a new {@link AnalysisWorkflowMonitor}.
+	 *
+	 * @param analysisExecutionService
+	 *            the service to get workflow status from
+	 * @param executor
+	 *            the {@link Executor} to check workflow status on. Its pool
+	 *            size bounds the number of status requests made at once.
+	 * @param minimumInterval
+	 *            the time in milliseconds to wait before checking a workflow
+	 *            that is making progress again
+	 * @param maximumInterval
+	 *            the longest time in milliseconds to wait before checking a
+	 *            workflow that isn't making progress again
+	 * @param clock
+	 *            the {@link Clock} to schedule checks with
+	 */
+	public AnalysisWorkflowMonitor(AnalysisExecutionService analysisExecutionService, Executor executor,
+			long minimumInterval, long maximumInterval, Clock clock) {
+		checkNotNull(analysisExecutionService, "analysisExecutionService is null");
+		checkNotNull(executor, "executor is null");
+		checkArgument(minimumInterval >= 0, "minimumInterval must not be negative");
+		checkArgument(maximumInterval >= minimumInterval, "maximumInterval must be at least minimumInterval");
+
+		this.analysisExecutionService = analysisExecutionService;
+		this.executor = executor;
+		this.minimumInterval = minimumInterval;
+		this.maximumInterval = maximumInterval;
+		this.clock = clock;
+	}
+
+	/**
+	 * Check the workflow status of the given running submissions that are due
+	 * to be checked. Submissions that haven't been seen before are always
+	 * checked. Returns once all of the due submissions have been checked and
+	 * the listener has been told about each of them.
+	 *
+	 * @param runningSubmissions
+	 *            all of the currently running {@link AnalysisSubmission}s
+	 * @param listener
+	 *            the {@link WorkflowStatusListener} to tell about each status
+	 * @return the number of submissions that were checked
+	 */
+	public int checkRunningSubmissions(Collection<AnalysisSubmission> runningSubmissions,
+			WorkflowStatusListener listener) {
+		// stop watching anything that is no longer running
+		Set<Long> runningIds = runningSubmissions.stream().map(AnalysisSubmission::getId).collect(Collectors.toSet());
+		watched.keySet().retainAll(runningIds);
+
+		long now = clock.millis();
+		List<AnalysisSubmission> due = runningSubmissions.stream().filter(s -> isDue(s, now))
+				.collect(Collectors.toList());
+
+		if (due.isEmpty()) {
+			return 0;
+		}
+
+		logger.trace("Checking workflow status for " + due.size() + " of " + runningSubmissions.size()
+				+ " running submissions");
+
+		Executor statusExecutor = new DelegatingSecurityContextExecutor(executor);
+		List<CompletableFuture<GalaxyWorkflowStatus>> statuses = due.stream()
+				.map(s -> CompletableFuture.supplyAsync(() -> getWorkflowStatus(s), statusExecutor))
+				.collect(Collectors.toList());
+
+		// report on the calling thread so the listener can safely update the
+		// submissions
+		for (int i = 0; i < due.size(); i++) {
+			AnalysisSubmission submission = due.get(i);
+
+			try {
+				GalaxyWorkflowStatus status = statuses.get(i).join();
+				updateSchedule(submission, status);
+				listener.workflowStatus(submission, status);
+			} catch (CompletionException e) {
+				watched.remove(submission.getId());
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				listener.workflowStatusError(submission, cause instanceof Exception ? (Exception) cause : e);
+			}
+		}
+
+		return due.size();
+	}
+
+	/**
+	 * Whether a submission should be checked now.
+	 *
+	 * @param submission
+	 *            the {@link AnalysisSubmission} to check
+	 * @param now
+	 *            the current time in milliseconds
+	 * @return true if the submission hasn't been seen or its next check time
+	 *         has passed
+	 */
+	private boolean isDue(AnalysisSubmission submission, long now) {
+		WatchedWorkflow workflow = watched.get(submission.getId());
+		return workflow == null || workflow.nextCheck <= now;
+	}
+
+	/**
+	 * Get the status of a submission's workflow, wrapping checked exceptions
+	 * so it can be run asynchronously.
+	 *
+	 * @param submission
+	 *            the {@link AnalysisSubmission} to get the status for
+	 * @return the {@link GalaxyWorkflowStatus}
+	 */
+	private GalaxyWorkflowStatus getWorkflowStatus(AnalysisSubmission submission) {
+		try {
+			return analysisExecutionService.getWorkflowStatus(submission);
+		} catch (Exception e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	/**
+	 * Schedule the next check for a submission. Workflows that are finished
+	 * are no longer watched. Workflows that haven't made progress since the
+	 * last check have their interval doubled.
+	 *
+	 * @param submission
+	 *            the {@link AnalysisSubmission} that was checked
+	 * @param status
+	 *            the {@link GalaxyWorkflowStatus} that was found
+	 */
+	private void updateSchedule(AnalysisSubmission submission, GalaxyWorkflowStatus status) {
+		if (!status.isRunning() || status.errorOccurred()) {
+			watched.remove(submission.getId());
+			return;
+		}
+
+		float proportionComplete = status.getProportionComplete();
+		WatchedWorkflow previous = watched.get(submission.getId());
+
+		long interval;
+		if (previous == null || Float.compare(previous.proportionComplete, proportionComplete) != 0) {
+			interval = minimumInterval;
+		} else {
+			interval = Math.min(Math.max(previous.interval * 2, 1), maximumInterval);
+		}
+
+		logger.trace("Next workflow status check for " + submission + " in " + interval + "ms");
+		watched.put(submission.getId(), new WatchedWorkflow(proportionComplete, interval, clock.millis() + interval));
+	}
+
+	/**
+	 * Get the time in milliseconds until a submission's workflow will be
+	 * checked again.
+	 *
+	 * @param submission
+	 *            the {@link AnalysisSubmission}
+	 * @return the current check interval, or 0 if the submission isn't being
+	 *         watched
+	 */
+	public long getCheckInterval(AnalysisSubmission submission) {
+		WatchedWorkflow workflow = watched.get(submission.getId());
+		return workflow == null ? 0 : workflow.interval;
+	}
+
+	/**
+	 * Receives the workflow status found for each checked
+	 * {@link AnalysisSubmission}.
+	 */
+	public interface WorkflowStatusListener {
+		/**
+		 * Called with the status of a submission's workflow.
+		 *
+		 * @param submission
+		 *            the {@link AnalysisSubmission}
+		 * @param status
+		 *            the {@link GalaxyWorkflowStatus} of its workflow
+		 */
+		public void workflowStatus(AnalysisSubmission submission, GalaxyWorkflowStatus status);
+
+		/**
+		 * Called when the status of a submission's workflow couldn't be found.
+		 *
+		 * @param submission
+		 *            the {@link AnalysisSubmission}
+		 * @param e
+		 *            the exception thrown getting the status
+		 */
+		public void workflowStatusError(AnalysisSubmission submission, Exception e);
+	}
+
+	/**
+	 * When a workflow was last checked and what was found.
+	 */
+	private static class WatchedWorkflow {
+		private final float proportionComplete;
+		private final long interval;
+		private final long nextCheck;
+
+		private WatchedWorkflow(float proportionComplete, long interval, long nextCheck) {
+			this.proportionComplete = proportionComplete;
+			this.interval = interval;
+			this.nextCheck = nextCheck;
+		}
+	}
+}
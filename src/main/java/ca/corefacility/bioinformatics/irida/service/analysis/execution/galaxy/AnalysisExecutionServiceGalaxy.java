@@ -18,6 +18,7 @@ import org.springframework.beans.factory.annotation.Value;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -68,7 +69,7 @@ public class AnalysisExecutionServiceGalaxy implements AnalysisExecutionService
 	 * {@inheritDoc}
 	 */
 	@Override
-	public Future<AnalysisSubmission> prepareSubmission(final AnalysisSubmission analysisSubmission)
+	public CompletableFuture<AnalysisSubmission> prepareSubmission(final AnalysisSubmission analysisSubmission)
 			throws IridaWorkflowNotFoundException, IOException, ExecutionManagerException {
 		checkArgument(AnalysisState.NEW.equals(analysisSubmission.getAnalysisState()), "analysis state should be "
 				+ AnalysisState.NEW);
@@ -83,7 +84,7 @@ public class AnalysisExecutionServiceGalaxy implements AnalysisExecutionService
 	 * {@inheritDoc}
 	 */
 	@Override
-	public Future<AnalysisSubmission> executeAnalysis(AnalysisSubmission analysisSubmission)
+	public CompletableFuture<AnalysisSubmission> executeAnalysis(AnalysisSubmission analysisSubmission)
 			throws ExecutionManagerException, IridaWorkflowException {
 		checkArgument(AnalysisState.PREPARED.equals(analysisSubmission.getAnalysisState()), " analysis should be "
 				+ AnalysisState.PREPARED);
@@ -98,7 +99,7 @@ public class AnalysisExecutionServiceGalaxy implements AnalysisExecutionService
 	 * {@inheritDoc} 
 	 */
 	@Override
-	public Future<AnalysisSubmission> transferAnalysisResults(AnalysisSubmission submittedAnalysis)
+	public CompletableFuture<AnalysisSubmission> transferAnalysisResults(AnalysisSubmission submittedAnalysis)
 			throws ExecutionManagerException, IOException, IridaWorkflowNotFoundException, IridaWorkflowAnalysisTypeException {
 		checkArgument(AnalysisState.FINISHED_RUNNING.equals(submittedAnalysis.getAnalysisState()),
 				" analysis should be " + AnalysisState.FINISHED_RUNNING);
@@ -113,7 +114,7 @@ public class AnalysisExecutionServiceGalaxy implements AnalysisExecutionService
 	 * {@inheritDoc}
 	 */
 	@Override
-	public Future<AnalysisSubmission> postProcessResults(AnalysisSubmission analysisSubmission) {
+	public CompletableFuture<AnalysisSubmission> postProcessResults(AnalysisSubmission analysisSubmission) {
 		checkArgument(AnalysisState.TRANSFERRED.equals(analysisSubmission.getAnalysisState()),
 				" analysis should be " + AnalysisState.TRANSFERRED);
 
@@ -4,6 +4,7 @@ import ca.corefacility.bioinformatics.irida.exceptions.*;
 import ca.corefacility.bioinformatics.irida.model.enums.AnalysisState;
 import ca.corefacility.bioinformatics.irida.model.workflow.IridaWorkflow;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.Analysis;
+import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisOutputFile;
 import ca.corefacility.bioinformatics.irida.model.workflow.execution.galaxy.PreparedWorkflowGalaxy;
 import ca.corefacility.bioinformatics.irida.model.workflow.execution.galaxy.WorkflowInputsGalaxy;
 import ca.corefacility.bioinformatics.irida.model.workflow.structure.IridaWorkflowStructure;
@@ -15,22 +16,30 @@ import ca.corefacility.bioinformatics.irida.service.AnalysisSubmissionService;
 import ca.corefacility.bioinformatics.irida.service.analysis.annotations.RunAsUser;
 import ca.corefacility.bioinformatics.irida.service.analysis.workspace.galaxy.AnalysisWorkspaceServiceGalaxy;
 import ca.corefacility.bioinformatics.irida.service.workflow.IridaWorkflowsService;
+import ca.corefacility.bioinformatics.irida.util.RecursiveDeleteVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.AsyncResult;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
-import java.util.concurrent.Future;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Service for executing {@link AnalysisSubmission} stages within a Galaxy
- * execution manager asynchronously.
+ * execution manager asynchronously. Each stage runs on its own executor so the
+ * number of submissions in each stage at once can be tuned separately.
  * 
  */
 @Async("analysisTaskExecutor")
@@ -44,6 +53,7 @@ public class AnalysisExecutionServiceGalaxyAsync {
 	private final GalaxyWorkflowService galaxyWorkflowService;
 	private final IridaWorkflowsService iridaWorkflowsService;
 	private final AnalysisSubmissionSampleProcessor analysisSubmissionSampleProcessor;
+	private final TransactionTemplate transactionTemplate;
 
 	/**
 	 * Builds a new {@link AnalysisExecutionServiceGalaxyAsync} with the given
@@ -62,18 +72,22 @@ public class AnalysisExecutionServiceGalaxyAsync {
 	 * @param analysisSubmissionSampleService
 	 *            A service to updating samples associated with a submission
 	 *            with the analysis results.
+	 * @param transactionManager
+	 *            The transaction manager used to save analysis results.
 	 */
 	@Autowired
 	public AnalysisExecutionServiceGalaxyAsync(AnalysisSubmissionService analysisSubmissionService,
 			AnalysisService analysisService, GalaxyWorkflowService galaxyWorkflowService,
 			AnalysisWorkspaceServiceGalaxy workspaceService, IridaWorkflowsService iridaWorkflowsService,
-			AnalysisSubmissionSampleProcessor analysisSubmissionSampleService) {
+			AnalysisSubmissionSampleProcessor analysisSubmissionSampleService,
+			PlatformTransactionManager transactionManager) {
 		this.analysisSubmissionService = analysisSubmissionService;
 		this.analysisService = analysisService;
 		this.galaxyWorkflowService = galaxyWorkflowService;
 		this.workspaceService = workspaceService;
 		this.iridaWorkflowsService = iridaWorkflowsService;
 		this.analysisSubmissionSampleProcessor = analysisSubmissionSampleService;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
 	}
 
 	/**
@@ -82,7 +96,7 @@ public class AnalysisExecutionServiceGalaxyAsync {
 	 * 
 	 * @param analysisSubmission
 	 *            The {@link AnalysisSubmission} to prepare.
-	 * @return A {@link Future} with an {@link AnalysisSubmission} for the
+	 * @return A {@link CompletableFuture} with an {@link AnalysisSubmission} for the
 	 *         analysis submitted.
 	 * @throws IridaWorkflowNotFoundException
 	 *             If there was an issue getting a workflow.
@@ -91,8 +105,9 @@ public class AnalysisExecutionServiceGalaxyAsync {
 	 * @throws ExecutionManagerException
 	 *             If there was an issue preparing a workspace for the workflow.
 	 */
+	@Async("analysisPrepareExecutor")
 	@Transactional
-	public Future<AnalysisSubmission> prepareSubmission(final AnalysisSubmission analysisSubmission)
+	public CompletableFuture<AnalysisSubmission> prepareSubmission(final AnalysisSubmission analysisSubmission)
 			throws IridaWorkflowNotFoundException, IOException, ExecutionManagerException {
 		checkNotNull(analysisSubmission, "analysisSubmission is null");
 		checkNotNull(analysisSubmission.getId(), "analysisSubmission id is null");
@@ -117,7 +132,7 @@ public class AnalysisExecutionServiceGalaxyAsync {
 		analysisSubmission.setRemoteAnalysisId(analysisId);
 		AnalysisSubmission analysisPrepared = analysisSubmissionService.update(analysisSubmission);
 
-		return new AsyncResult<>(analysisPrepared);
+		return CompletableFuture.completedFuture(analysisPrepared);
 	}
 
 	/**
@@ -126,15 +141,16 @@ public class AnalysisExecutionServiceGalaxyAsync {
 	 * 
 	 * @param analysisSubmission
 	 *            The {@link AnalysisSubmission} to execute.
-	 * @return A {@link Future} with an {@link AnalysisSubmission} for the
+	 * @return A {@link CompletableFuture} with an {@link AnalysisSubmission} for the
 	 *         analysis submitted.
 	 * @throws ExecutionManagerException
 	 *             If there was an exception submitting the analysis to the
 	 *             execution manager.
 	 * @throws IridaWorkflowException If there was an issue with the IRIDA workflow.
 	 */
+	@Async("analysisExecuteExecutor")
 	@RunAsUser("#analysisSubmission.getSubmitter()")
-	public Future<AnalysisSubmission> executeAnalysis(AnalysisSubmission analysisSubmission)
+	public CompletableFuture<AnalysisSubmission> executeAnalysis(AnalysisSubmission analysisSubmission)
 			throws ExecutionManagerException, IridaWorkflowException {
 		checkNotNull(analysisSubmission, "analysisSubmission is null");
 		checkNotNull(analysisSubmission.getRemoteAnalysisId(), "remote analyis id is null");
@@ -154,7 +170,7 @@ public class AnalysisExecutionServiceGalaxyAsync {
 		analysisSubmission.setRemoteInputDataId(libraryId);
 		analysisSubmission = analysisSubmissionService.update(analysisSubmission);
 
-		return new AsyncResult<>(analysisSubmission);
+		return CompletableFuture.completedFuture(analysisSubmission);
 	}
 
 	/**
@@ -163,7 +179,7 @@ public class AnalysisExecutionServiceGalaxyAsync {
 	 * 
 	 * @param submittedAnalysis
 	 *            An {@link AnalysisSubmission} that was previously submitted.
-	 * @return A {@link Future} with an {@link AnalysisSubmission} object
+	 * @return A {@link CompletableFuture} with an {@link AnalysisSubmission} object
 	 *         containing information about the particular analysis.
 	 * @throws ExecutionManagerException
 	 *             If there was an issue with the execution manager.
@@ -176,8 +192,8 @@ public class AnalysisExecutionServiceGalaxyAsync {
 	 * @throws IridaWorkflowAnalysisTypeException
 	 *             If there was an issue building an {@link Analysis} object.
 	 */
-	@Transactional
-	public Future<AnalysisSubmission> transferAnalysisResults(AnalysisSubmission submittedAnalysis)
+	@Async("analysisTransferExecutor")
+	public CompletableFuture<AnalysisSubmission> transferAnalysisResults(AnalysisSubmission submittedAnalysis)
 			throws ExecutionManagerException, IOException, IridaWorkflowNotFoundException,
 			IridaWorkflowAnalysisTypeException {
 		checkNotNull(submittedAnalysis, "submittedAnalysis is null");
@@ -186,11 +202,13 @@ public class AnalysisExecutionServiceGalaxyAsync {
 			throw new EntityNotFoundException("Could not find analysis submission for " + submittedAnalysis);
 		}
 
+		// downloading the results can take a long time, so don't hold a
+		// transaction open while it happens
 		logger.debug("Getting results for " + submittedAnalysis);
 		Analysis analysisResults = workspaceService.getAnalysisResults(submittedAnalysis);
 
-		logger.trace("Saving results for " + submittedAnalysis);
-		Analysis savedAnalysis = analysisService.create(analysisResults);
+		Set<Path> stagingDirectories = analysisResults.getAnalysisOutputFiles().stream()
+				.map(f -> f.getFile().getParent()).collect(Collectors.toSet());
 
 		// if samples should be updated, set to TRANSFERRED.  Otherwise just complete.
 		if (submittedAnalysis.getUpdateSamples()) {
@@ -199,26 +217,90 @@ public class AnalysisExecutionServiceGalaxyAsync {
 			submittedAnalysis.setAnalysisState(AnalysisState.COMPLETED);
 		}
 
+		logger.trace("Saving results for " + submittedAnalysis);
+		AnalysisSubmission completedSubmission = null;
 		try {
-			submittedAnalysis.setAnalysis(savedAnalysis);
-		} catch (AnalysisAlreadySetException e) {
-			throw new ExecutionManagerException("Analysis already set", e);
+			completedSubmission = transactionTemplate.execute(status -> {
+				Analysis savedAnalysis = analysisService.create(analysisResults);
+
+				try {
+					submittedAnalysis.setAnalysis(savedAnalysis);
+				} catch (AnalysisAlreadySetException e) {
+					throw new AnalysisTransferException(e);
+				}
+
+				return analysisSubmissionService.update(submittedAnalysis);
+			});
+		} catch (AnalysisTransferException e) {
+			throw new ExecutionManagerException("Analysis already set", e.getCause());
+		} finally {
+			if (completedSubmission == null) {
+				removeOutputFiles(analysisResults, stagingDirectories);
+			}
 		}
 
-		AnalysisSubmission completedSubmission = analysisSubmissionService.update(submittedAnalysis);
+		// the output files have been moved out of their staging directories
+		for (Path stagingDirectory : stagingDirectories) {
+			try {
+				Files.deleteIfExists(stagingDirectory);
+			} catch (IOException e) {
+				logger.warn("Could not remove staging directory " + stagingDirectory, e);
+			}
+		}
 
-		return new AsyncResult<>(completedSubmission);
+		return CompletableFuture.completedFuture(completedSubmission);
+	}
+
+	/**
+	 * Remove the downloaded output files of an {@link Analysis} that couldn't
+	 * be saved, wherever they are: still in their staging directories, or
+	 * already moved into the output file directory before the save failed.
+	 * 
+	 * @param analysis
+	 *            the {@link Analysis} that wasn't saved
+	 * @param stagingDirectories
+	 *            the directories the output files were downloaded to
+	 */
+	private void removeOutputFiles(Analysis analysis, Set<Path> stagingDirectories) {
+		for (AnalysisOutputFile outputFile : analysis.getAnalysisOutputFiles()) {
+			Path file = outputFile.getFile();
+			try {
+				Files.deleteIfExists(file);
+
+				// the directories a moved file was put in belong to the output
+				// file that was rolled back, so remove them if they're empty
+				if (!stagingDirectories.contains(file.getParent())) {
+					Files.deleteIfExists(file.getParent());
+					Files.deleteIfExists(file.getParent().getParent());
+				}
+			} catch (DirectoryNotEmptyException e) {
+				logger.trace("Leaving directory " + e.getFile() + " with other files in it");
+			} catch (IOException e) {
+				logger.warn("Could not remove output file " + file + " of unsaved analysis", e);
+			}
+		}
+
+		for (Path stagingDirectory : stagingDirectories) {
+			try {
+				if (Files.exists(stagingDirectory)) {
+					Files.walkFileTree(stagingDirectory, new RecursiveDeleteVisitor());
+				}
+			} catch (IOException e) {
+				logger.warn("Could not remove staging directory " + stagingDirectory, e);
+			}
+		}
 	}
 
 	/**
 	 * Calls the {@link AnalysisSubmissionSampleProcessor} to perform any post processing required on a given {@link AnalysisSubmission}
 	 *
 	 * @param analysisSubmission the {@link AnalysisSubmission} to process
-	 * @return a Future {@link AnalysisSubmission}
+	 * @return a {@link CompletableFuture} {@link AnalysisSubmission}
 	 */
+	@Async("analysisPostProcessingExecutor")
 	@Transactional
 	@RunAsUser("#analysisSubmission.getSubmitter()")
-	public Future<AnalysisSubmission> postProcessResults(AnalysisSubmission analysisSubmission) {
+	public CompletableFuture<AnalysisSubmission> postProcessResults(AnalysisSubmission analysisSubmission) {
 		checkNotNull(analysisSubmission, "submittedAnalysis is null");
 
 		if (analysisSubmission.getUpdateSamples()) {
@@ -234,6 +316,18 @@ public class AnalysisExecutionServiceGalaxyAsync {
 
 		analysisSubmission = analysisSubmissionService.update(analysisSubmission);
 
-		return new AsyncResult<>(analysisSubmission);
+		return CompletableFuture.completedFuture(analysisSubmission);
+	}
+
+	/**
+	 * Carries an {@link AnalysisAlreadySetException} out of the transaction
+	 * saving an analysis so the transaction is rolled back.
+	 */
+	private static class AnalysisTransferException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private AnalysisTransferException(AnalysisAlreadySetException cause) {
+			super(cause);
+		}
 	}
 }
@@ -1,5 +1,6 @@
 package ca.corefacility.bioinformatics.irida.service.analysis.workspace.galaxy;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -12,6 +13,7 @@ import ca.corefacility.bioinformatics.irida.model.irida.IridaSequenceFile;
 import ca.corefacility.bioinformatics.irida.model.irida.IridaSequenceFilePair;
 import ca.corefacility.bioinformatics.irida.model.irida.IridaSingleEndSequenceFile;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFilePair;
 import ca.corefacility.bioinformatics.irida.model.workflow.execution.InputFileType;
 import ca.corefacility.bioinformatics.irida.model.workflow.execution.galaxy.DatasetCollectionType;
@@ -83,8 +85,7 @@ public class AnalysisCollectionServiceGalaxy {
 
 		// upload files to library and then to a history
 		Set<Path> pathsToUpload = samplesMap.keySet();
-		Map<Path, String> pathHistoryDatasetId = galaxyHistoriesService.filesToLibraryToHistory(pathsToUpload,
-				InputFileType.FASTQ_SANGER, workflowHistory, workflowLibrary, DataStorage.LOCAL);
+		Map<Path, String> pathHistoryDatasetId = uploadFastqFiles(pathsToUpload, workflowHistory, workflowLibrary);
 
 		for (Path sequenceFilePath : samplesMap.keySet()) {
 			if (!pathHistoryDatasetId.containsKey(sequenceFilePath)) {
@@ -141,8 +142,7 @@ public class AnalysisCollectionServiceGalaxy {
 		}
 
 		// upload files to library and then to a history
-		Map<Path, String> pathHistoryDatasetId = galaxyHistoriesService.filesToLibraryToHistory(pathsToUpload,
-				InputFileType.FASTQ_SANGER, workflowHistory, workflowLibrary, DataStorage.LOCAL);
+		Map<Path, String> pathHistoryDatasetId = uploadFastqFiles(pathsToUpload, workflowHistory, workflowLibrary);
 
 		for (Sample sample : sampleSequenceFilesPaired.keySet()) {
 			Path fileForward = samplesMapPairForward.get(sample);
@@ -176,4 +176,61 @@ public class AnalysisCollectionServiceGalaxy {
 
 		return galaxyHistoriesService.constructCollection(description, workflowHistory);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Uploads fastq files to a library and then to a history. Compressed files
+	 * are uploaded as they're stored with the compressed fastq type, so they
+	 * don't need to be decompressed before being sent to Galaxy.
+	 * 
+	 * @param paths
+	 *            The paths of the files to upload.
+	 * @param workflowHistory
+	 *            The history to upload the sequence files into.
+	 * @param workflowLibrary
+	 *            A temporary library to upload files into.
+	 * @return A map of paths to the history dataset ids of the uploaded files.
+	 * @throws ExecutionManagerException
+	 *             If there was an error uploading the files.
+	 */
+	private Map<Path, String> uploadFastqFiles(Set<Path> paths, History workflowHistory, Library workflowLibrary)
+			throws ExecutionManagerException {
+		Set<Path> uncompressedPaths = new HashSet<>();
+		Set<Path> compressedPaths = new HashSet<>();
+		for (Path path : paths) {
+			if (isGzipped(path)) {
+				compressedPaths.add(path);
+			} else {
+				uncompressedPaths.add(path);
+			}
+		}
+
+		Map<Path, String> pathHistoryDatasetId = new HashMap<>();
+		if (!uncompressedPaths.isEmpty()) {
+			pathHistoryDatasetId.putAll(galaxyHistoriesService.filesToLibraryToHistory(uncompressedPaths,
+					InputFileType.FASTQ_SANGER, workflowHistory, workflowLibrary, DataStorage.LOCAL));
+		}
+		if (!compressedPaths.isEmpty()) {
+			pathHistoryDatasetId.putAll(galaxyHistoriesService.filesToLibraryToHistory(compressedPaths,
+					InputFileType.FASTQ_SANGER_GZ, workflowHistory, workflowLibrary, DataStorage.LOCAL));
+		}
+
+		return pathHistoryDatasetId;
+	}
+
+	/**
+	 * Check whether a file starts with the gzip magic number.
+	 * 
+	 * @param path
+	 *            The file to check.
+	 * @return true if the file is gzip compressed.
+	 * @throws UploadException
+	 *             If the file can't be read.
+	 */
+	private static boolean isGzipped(Path path) throws UploadException {
+		try {
+			return SequenceFile.isGzipped(path);
+		} catch (IOException e) {
+			throw new UploadException("Error, could not read " + path, e);
+		}
+	}
+}
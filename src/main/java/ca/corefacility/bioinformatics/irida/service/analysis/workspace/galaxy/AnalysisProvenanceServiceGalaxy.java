@@ -2,11 +2,15 @@ package ca.corefacility.bioinformatics.irida.service.analysis.workspace.galaxy;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -50,12 +54,27 @@ public class AnalysisProvenanceServiceGalaxy {
 	private final GalaxyHistoriesService galaxyHistoriesService;
 	private final ToolsClient toolsClient;
 	private final JobsClient jobsClient;
+	private final Executor executor;
 
+	/**
+	 * Builds a new {@link AnalysisProvenanceServiceGalaxy}.
+	 * 
+	 * @param galaxyHistoriesService
+	 *            the service to read history provenance from.
+	 * @param toolsClient
+	 *            the client to read tool details from.
+	 * @param jobsClient
+	 *            the client to read job details from.
+	 * @param executor
+	 *            the {@link Executor} to look up provenance on. Its pool size
+	 *            bounds the number of requests made to Galaxy at once.
+	 */
 	public AnalysisProvenanceServiceGalaxy(final GalaxyHistoriesService galaxyHistoriesService,
-			final ToolsClient toolsClient, final JobsClient jobsClient) {
+			final ToolsClient toolsClient, final JobsClient jobsClient, final Executor executor) {
 		this.galaxyHistoriesService = galaxyHistoriesService;
 		this.toolsClient = toolsClient;
 		this.jobsClient = jobsClient;
+		this.executor = executor;
 	}
 
 	/**
@@ -85,6 +104,33 @@ public class AnalysisProvenanceServiceGalaxy {
 	 */
 	public ToolExecution buildToolExecutionForOutputFile(final String remoteAnalysisId,
 			final String analysisOutputFilename) throws ExecutionManagerException {
+		return buildToolExecutionsForOutputFiles(remoteAnalysisId, Sets.newHashSet(analysisOutputFilename))
+				.get(analysisOutputFilename);
+	}
+
+	/**
+	 * Build up provenance reports for several files that are attached to the
+	 * outputs of an analysis submission. The history contents are listed once,
+	 * each step in the history is only looked up once no matter how many of the
+	 * files it led to, and the steps at the same depth are looked up at the
+	 * same time. Files that share an upstream step share the same
+	 * {@link ToolExecution} for it.
+	 * 
+	 * @param remoteAnalysisId
+	 *            the identifier of the submission history that the output files
+	 *            are attached to on the execution manager (i.e., Galaxy's
+	 *            history id).
+	 * @param analysisOutputFilenames
+	 *            the filenames to build reports for. These should be the raw
+	 *            basenames of the files (i.e., only the filename + extension
+	 *            part).
+	 * @return the complete report for each file, keyed by filename.
+	 * @throws ExecutionManagerException
+	 *             if the history contents could not be shown for one of the
+	 *             specified files.
+	 */
+	public Map<String, ToolExecution> buildToolExecutionsForOutputFiles(final String remoteAnalysisId,
+			final Set<String> analysisOutputFilenames) throws ExecutionManagerException {
 		final List<HistoryContents> historyContents = galaxyHistoriesService.showHistoryContents(remoteAnalysisId);
 		// group the history contents by name. The names that we're interested
 		// in starting from should match the filename of the output file.
@@ -92,85 +138,201 @@ public class AnalysisProvenanceServiceGalaxy {
 				filter(content -> !COLLECTION.equals(content.getHistoryContentType())).
 				collect(Collectors.groupingBy(HistoryContents::getName));
 
-		final List<HistoryContents> currentContents = historyContentsByName.get(analysisOutputFilename);
-		if (currentContents == null || currentContents.isEmpty() || currentContents.size() > 1) {
-			throw new ExecutionManagerException("Could not load a unique history contents for the specified filename ["
-					+ analysisOutputFilename + "] in history with id [" + remoteAnalysisId + "]");
+		final Map<String, String> outputContentIds = new HashMap<>();
+		for (final String analysisOutputFilename : analysisOutputFilenames) {
+			final List<HistoryContents> currentContents = historyContentsByName.get(analysisOutputFilename);
+			if (currentContents == null || currentContents.isEmpty() || currentContents.size() > 1) {
+				throw new ExecutionManagerException(
+						"Could not load a unique history contents for the specified filename ["
+								+ analysisOutputFilename + "] in history with id [" + remoteAnalysisId + "]");
+			}
+			outputContentIds.put(analysisOutputFilename, currentContents.get(0).getId());
 		}
-		final HistoryContentsProvenance currentProvenance = galaxyHistoriesService.showProvenance(
-				remoteAnalysisId, currentContents.get(0).getId());
 
 		try {
-			final Tool toolDetails = toolsClient.showTool(currentProvenance.getToolId());
-	
-			return buildToolExecutionForHistoryStep(toolDetails, currentProvenance, remoteAnalysisId);
+			final HistoryProvenance historyProvenance = new HistoryProvenance(remoteAnalysisId);
+			historyProvenance.load(outputContentIds.values());
+
+			final Map<String, ToolExecution> toolExecutions = new HashMap<>();
+			for (final Map.Entry<String, String> output : outputContentIds.entrySet()) {
+				toolExecutions.put(output.getKey(), historyProvenance.buildToolExecution(output.getValue()));
+			}
+			return toolExecutions;
 		} catch (final RuntimeException e) {
 			throw new ExecutionManagerException("Failed to build tool execution provenance.", e);
 		}
 	}
 
 	/**
-	 * Build up a complete *tree* of ToolExecution from Galaxy's history
-	 * contents provenance objects. Recursively follows predecessors from the
-	 * current history.
-	 * 
-	 * @param toolDetails
-	 *            the details of the current tool to build up tool execution
-	 *            details for.
-	 * @param currentProvenance
-	 *            the provenance that corresponds to the tool details.
-	 * @param historyId
-	 *            the Galaxy ID we should use to extract tool execution
-	 *            information.
-	 * @return the entire tree of ToolExecutions for the tool and its
-	 *         provenance.
-	 * @throws ExecutionManagerException
-	 *             if we could not get the history contents provenance or the
-	 *             tool details for a predecessor of the current tool details or
-	 *             provenance.
+	 * The provenance of the steps in one Galaxy history, looked up once per
+	 * call to
+	 * {@link AnalysisProvenanceServiceGalaxy#buildToolExecutionsForOutputFiles(String, Set)}.
 	 */
-	private ToolExecution buildToolExecutionForHistoryStep(final Tool toolDetails,
-			final HistoryContentsProvenance currentProvenance, final String historyId) throws ExecutionManagerException {
-		final Map<String, Set<String>> predecessors = getPredecessors(currentProvenance);
-		final Map<String, Object> parameters = currentProvenance.getParameters();
-		// remove keys from parameters that are Galaxy-related (and thus
-		// ignorable), or keys that *match* input keys (as mentioned in
-		// getPredecessors, the input keys are going to have a numeric
-		// suffix and so don't equal the key that we want to remove from the
-		// key set):
-		/* @formatter:off */
-		final Set<String> parameterKeys = parameters.keySet().stream()
-				.filter(k -> !PARAMETERS_TO_IGNORE.contains(k))
-				.filter(k -> !predecessors.keySet().stream().anyMatch(p -> k.contains(p)))
-				.collect(Collectors.toSet());
-		/* @formatter:on */
+	private class HistoryProvenance {
+		private final String historyId;
 
-		final Map<String, Object> paramValues = new HashMap<>();
-		for (final String parameterKey : parameterKeys) {
-			paramValues.put(parameterKey, parameters.get(parameterKey));
+		private final Map<String, HistoryContentsProvenance> provenance = new HashMap<>();
+		private final Map<String, Tool> tools = new HashMap<>();
+		private final Map<String, JobDetails> jobs = new HashMap<>();
+		// tool executions by Galaxy job id
+		private final Map<String, ToolExecution> toolExecutions = new HashMap<>();
+
+		private HistoryProvenance(final String historyId) {
+			this.historyId = historyId;
 		}
 
-		final Set<ToolExecution> prevSteps = new HashSet<>();
-		final String toolName = toolDetails.getName();
-		final String toolVersion = toolDetails.getVersion();
-		final String jobId = currentProvenance.getJobId();
-		final JobDetails jobDetails = jobsClient.showJob(jobId);
-		final String commandLine = jobDetails.getCommandLine();
-		final Map<String, String> paramStrings = buildParamMap(paramValues);
-
-		for (final String predecessorKey : predecessors.keySet()) {
-			// arbitrarily select one of the predecessors from the set, then
-			// recurse on that predecessor:
-			final String predecessor = predecessors.get(predecessorKey).iterator().next();
-			final HistoryContentsProvenance previousProvenance = galaxyHistoriesService.showProvenance(historyId,
-					predecessor);
-			final Tool previousToolDetails = toolsClient.showTool(previousProvenance.getToolId());
-
-			final ToolExecution toolExecution = buildToolExecutionForHistoryStep(previousToolDetails,
-					previousProvenance, historyId);
-			prevSteps.add(toolExecution);
+		/**
+		 * Look up the provenance, tool and job of the given history contents
+		 * and every step that led to them. Each level of predecessors is
+		 * looked up at the same time.
+		 * 
+		 * @param contentIds
+		 *            the ids of the history contents to start from.
+		 * @throws ExecutionManagerException
+		 *             if the provenance, tool or job of a step could not be
+		 *             looked up.
+		 */
+		private void load(final Collection<String> contentIds) throws ExecutionManagerException {
+			Set<String> level = new HashSet<>(contentIds);
+
+			while (!level.isEmpty()) {
+				provenance.putAll(lookup(level, id -> galaxyHistoriesService.showProvenance(historyId, id)));
+
+				final Set<String> toolIds = new HashSet<>();
+				final Set<String> jobIds = new HashSet<>();
+				final Set<String> nextLevel = new HashSet<>();
+				for (final String contentId : level) {
+					final HistoryContentsProvenance currentProvenance = provenance.get(contentId);
+					toolIds.add(currentProvenance.getToolId());
+					jobIds.add(currentProvenance.getJobId());
+					nextLevel.addAll(selectPredecessors(currentProvenance));
+				}
+				toolIds.removeAll(tools.keySet());
+				jobIds.removeAll(jobs.keySet());
+				nextLevel.removeAll(provenance.keySet());
+
+				tools.putAll(lookup(toolIds, toolsClient::showTool));
+				jobs.putAll(lookup(jobIds, jobsClient::showJob));
+
+				level = nextLevel;
+			}
 		}
-		return new ToolExecution(prevSteps, toolName, toolVersion, jobId, paramStrings, commandLine);
+
+		/**
+		 * Build up a complete *graph* of ToolExecution from the looked up
+		 * provenance, starting at the given history contents. Steps are
+		 * shared by Galaxy job, so the outputs of a job with several outputs
+		 * get the same ToolExecution, and steps that were already built are
+		 * reused.
+		 * 
+		 * @param contentId
+		 *            the id of the history contents to build tool execution
+		 *            details for.
+		 * @return the entire graph of ToolExecutions for the history contents.
+		 */
+		private ToolExecution buildToolExecution(final String contentId) {
+			final HistoryContentsProvenance currentProvenance = provenance.get(contentId);
+			final String jobId = currentProvenance.getJobId();
+			if (jobId != null && toolExecutions.containsKey(jobId)) {
+				return toolExecutions.get(jobId);
+			}
+
+			final Map<String, Set<String>> predecessors = getPredecessors(currentProvenance);
+			final Map<String, Object> parameters = currentProvenance.getParameters();
+			// remove keys from parameters that are Galaxy-related (and thus
+			// ignorable), or keys that *match* input keys (as mentioned in
+			// getPredecessors, the input keys are going to have a numeric
+			// suffix and so don't equal the key that we want to remove from the
+			// key set):
+			/* @formatter:off */
+			final Set<String> parameterKeys = parameters.keySet().stream()
+					.filter(k -> !PARAMETERS_TO_IGNORE.contains(k))
+					.filter(k -> !predecessors.keySet().stream().anyMatch(p -> k.contains(p)))
+					.collect(Collectors.toSet());
+			/* @formatter:on */
+
+			final Map<String, Object> paramValues = new HashMap<>();
+			for (final String parameterKey : parameterKeys) {
+				paramValues.put(parameterKey, parameters.get(parameterKey));
+			}
+
+			final Tool toolDetails = tools.get(currentProvenance.getToolId());
+			final String commandLine = jobs.get(jobId).getCommandLine();
+			final Map<String, String> paramStrings = buildParamMap(paramValues);
+
+			final Set<ToolExecution> prevSteps = new HashSet<>();
+			for (final String predecessor : selectPredecessors(currentProvenance)) {
+				prevSteps.add(buildToolExecution(predecessor));
+			}
+
+			final ToolExecution toolExecution = new ToolExecution(prevSteps, toolDetails.getName(),
+					toolDetails.getVersion(), jobId, paramStrings, commandLine);
+			if (jobId != null) {
+				toolExecutions.put(jobId, toolExecution);
+			}
+			return toolExecution;
+		}
+
+		/**
+		 * Look up a value for each of the given ids at the same time.
+		 * 
+		 * @param ids
+		 *            the ids to look up.
+		 * @param lookup
+		 *            the lookup to call for each id.
+		 * @return the values looked up, keyed by id.
+		 * @throws ExecutionManagerException
+		 *             if any of the lookups failed.
+		 */
+		private <T> Map<String, T> lookup(final Set<String> ids, final GalaxyLookup<T> lookup)
+				throws ExecutionManagerException {
+			final Map<String, CompletableFuture<T>> futures = new HashMap<>();
+			for (final String id : ids) {
+				futures.put(id, CompletableFuture.supplyAsync(() -> {
+					try {
+						return lookup.apply(id);
+					} catch (final ExecutionManagerException e) {
+						throw new CompletionException(e);
+					}
+				}, executor));
+			}
+
+			final Map<String, T> values = new HashMap<>();
+			try {
+				for (final Map.Entry<String, CompletableFuture<T>> future : futures.entrySet()) {
+					values.put(future.getKey(), future.getValue().join());
+				}
+			} catch (final CompletionException e) {
+				if (e.getCause() instanceof ExecutionManagerException) {
+					throw (ExecutionManagerException) e.getCause();
+				}
+				throw new ExecutionManagerException("Failed to build tool execution provenance.", e.getCause());
+			}
+			return values;
+		}
+	}
+
+	/**
+	 * Looks up one item from Galaxy by its id.
+	 */
+	@FunctionalInterface
+	private interface GalaxyLookup<T> {
+		public T apply(String id) throws ExecutionManagerException;
+	}
+
+	/**
+	 * Choose the history contents that each input of a step is followed back
+	 * through.
+	 * 
+	 * @param historyContentsProvenance
+	 *            the provenance node to find predecessors for.
+	 * @return the ids of the history contents to follow.
+	 */
+	private Set<String> selectPredecessors(final HistoryContentsProvenance historyContentsProvenance) {
+		// arbitrarily select one of the predecessors from the set for each
+		// input
+		return getPredecessors(historyContentsProvenance).values().stream().map(p -> p.iterator().next())
+				.collect(Collectors.toSet());
 	}
 
 	/**
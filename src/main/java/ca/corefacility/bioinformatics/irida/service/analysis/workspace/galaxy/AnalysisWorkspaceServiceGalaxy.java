@@ -31,14 +31,20 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -67,6 +73,10 @@ public class AnalysisWorkspaceServiceGalaxy implements AnalysisWorkspaceService
 
 	private SequencingObjectService sequencingObjectService;
 
+	private Executor downloadExecutor;
+
+	private Path outputFileBaseDirectory;
+
 	/**
 	 * Builds a new {@link AnalysisWorkspaceServiceGalaxy} with the given
 	 * information.
@@ -80,6 +90,10 @@ public class AnalysisWorkspaceServiceGalaxy implements AnalysisWorkspaceService
 	 * @param analysisProvenanceServiceGalaxy The service for provenance information.
 	 * @param analysisParameterServiceGalaxy  A service for setting up parameters in Galaxy.
 	 * @param sequencingObjectService         A service for reading {@link SequencingObject}s
+	 * @param downloadExecutor                The {@link Executor} to download output files on. Its pool
+	 *                                        size bounds the number of files downloaded at once.
+	 * @param outputFileBaseDirectory         The directory analysis output files are stored under. Output
+	 *                                        files are downloaded to a staging directory within it.
 	 */
 	public AnalysisWorkspaceServiceGalaxy(GalaxyHistoriesService galaxyHistoriesService,
 			GalaxyWorkflowService galaxyWorkflowService, GalaxyLibrariesService galaxyLibrariesService,
@@ -87,7 +101,8 @@ public class AnalysisWorkspaceServiceGalaxy implements AnalysisWorkspaceService
 			AnalysisCollectionServiceGalaxy analysisCollectionServiceGalaxy,
 			AnalysisProvenanceServiceGalaxy analysisProvenanceServiceGalaxy,
 			AnalysisParameterServiceGalaxy analysisParameterServiceGalaxy,
-			SequencingObjectService sequencingObjectService) {
+			SequencingObjectService sequencingObjectService, Executor downloadExecutor,
+			Path outputFileBaseDirectory) {
 		this.galaxyHistoriesService = galaxyHistoriesService;
 		this.galaxyWorkflowService = galaxyWorkflowService;
 		this.galaxyLibrariesService = galaxyLibrariesService;
@@ -96,6 +111,8 @@ public class AnalysisWorkspaceServiceGalaxy implements AnalysisWorkspaceService
 		this.analysisProvenanceServiceGalaxy = analysisProvenanceServiceGalaxy;
 		this.analysisParameterServiceGalaxy = analysisParameterServiceGalaxy;
 		this.sequencingObjectService = sequencingObjectService;
+		this.downloadExecutor = downloadExecutor;
+		this.outputFileBaseDirectory = outputFileBaseDirectory;
 	}
 
 	/**
@@ -112,39 +129,39 @@ public class AnalysisWorkspaceServiceGalaxy implements AnalysisWorkspaceService
 	}
 
 	/**
-	 * Builds a new AnalysisOutputFile from the given file in Galaxy.
+	 * Downloads the given file in Galaxy for a new AnalysisOutputFile.
 	 * 
 	 * @param analysisId
 	 *            The id of the analysis performed in Galaxy.
-	 * @param labelPrefix
-	 *            The prefix to add to the label of this file.
 	 * @param dataset
 	 *            The dataset containing the data for the AnalysisOutputFile.
 	 * @param outputDirectory
 	 *            A directory to download the resulting output files.
-	 * @return An AnalysisOutputFile storing a local copy of the Galaxy file.
+	 * @return The local copy of the Galaxy file.
 	 * @throws IOException
 	 *             If there was an issue creating a local file.
 	 * @throws ExecutionManagerDownloadException
-	 *             If there was an issue downloading the data from Galaxy.
-	 * @throws ExecutionManagerException
-	 *             If there was an issue extracting tool execution provenance
-	 *             from Galaxy.
+	 *             If there was an issue downloading the data from Galaxy, or
+	 *             the downloaded file isn't the size Galaxy reports.
 	 */
-	private AnalysisOutputFile buildOutputFile(String analysisId, String labelPrefix, Dataset dataset,
-			Path outputDirectory) throws IOException, ExecutionManagerDownloadException, ExecutionManagerException {
+	private Path downloadOutputFile(String analysisId, Dataset dataset, Path outputDirectory)
+			throws IOException, ExecutionManagerDownloadException {
 		String datasetId = dataset.getId();
 		String fileName = dataset.getName();
 
 		Path outputFile = outputDirectory.resolve(fileName);
 		galaxyHistoriesService.downloadDatasetTo(analysisId, datasetId, outputFile);
-		final ToolExecution toolExecution = analysisProvenanceServiceGalaxy.buildToolExecutionForOutputFile(analysisId,
-				fileName);
 
-		AnalysisOutputFile analysisOutputFile = new AnalysisOutputFile(outputFile, labelPrefix, datasetId,
-				toolExecution);
+		// Galaxy doesn't give a checksum for datasets, so make sure the whole
+		// file arrived by comparing against the size Galaxy reports
+		Integer expectedSize = dataset.getFileSize();
+		if (expectedSize != null && expectedSize > 0 && Files.size(outputFile) != expectedSize) {
+			throw new ExecutionManagerDownloadException("Downloaded dataset identified by historyId=" + analysisId
+					+ ", datasetId=" + datasetId + " to " + outputFile + " is " + Files.size(outputFile)
+					+ " bytes, expected " + expectedSize + " bytes");
+		}
 
-		return analysisOutputFile;
+		return outputFile;
 	}
 
 	/**
@@ -355,6 +372,12 @@ public class AnalysisWorkspaceServiceGalaxy implements AnalysisWorkspaceService
 
 	/**
 	 * {@inheritDoc}
+	 * 
+	 * The contents of the Galaxy history are listed once and every output file
+	 * is downloaded at the same time into a staging directory under the output
+	 * file base directory, so saving the {@link Analysis} only has to move the
+	 * files into place. The provenance of all of the output files is built
+	 * together while they download.
 	 */
 	@Override
 	public Analysis getAnalysisResults(AnalysisSubmission analysisSubmission) throws ExecutionManagerException,
@@ -363,9 +386,6 @@ public class AnalysisWorkspaceServiceGalaxy implements AnalysisWorkspaceService
 		checkNotNull(analysisSubmission.getWorkflowId(), "workflowId is null");
 		checkNotNull(analysisSubmission.getRemoteWorkflowId(), "remoteWorkflowId is null");
 
-		Path outputDirectory = Files.createTempDirectory("analysis-output");
-		logger.trace("Created temporary directory " + outputDirectory + " for analysis output files");
-
 		IridaWorkflow iridaWorkflow = iridaWorkflowsService.getIridaWorkflow(analysisSubmission.getWorkflowId());
 		String analysisId = analysisSubmission.getRemoteAnalysisId();
 
@@ -373,18 +393,86 @@ public class AnalysisWorkspaceServiceGalaxy implements AnalysisWorkspaceService
 
 		String labelPrefix = getLabelPrefix(analysisSubmission, iridaWorkflow);
 
-		Map<String, AnalysisOutputFile> analysisOutputFiles = Maps.newHashMap();
+		Set<String> outputFileNames = outputsMap.values().stream().map(IridaWorkflowOutput::getFileName)
+				.collect(Collectors.toSet());
+		Map<String, Dataset> outputDatasets = galaxyHistoriesService.getDatasetsForFilesInHistory(outputFileNames,
+				analysisId);
+
+		Files.createDirectories(outputFileBaseDirectory);
+		Path outputDirectory = Files.createTempDirectory(outputFileBaseDirectory, "analysis-output");
+		logger.trace("Created staging directory " + outputDirectory + " for analysis output files");
+
+		Executor executor = new DelegatingSecurityContextExecutor(downloadExecutor);
+		Map<String, CompletableFuture<Path>> downloads = Maps.newHashMap();
 		for (String analysisOutputName : outputsMap.keySet()) {
-			String outputFileName = outputsMap.get(analysisOutputName).getFileName();
-			Dataset outputDataset = galaxyHistoriesService.getDatasetForFileInHistory(outputFileName, analysisId);
+			Dataset outputDataset = outputDatasets.get(outputsMap.get(analysisOutputName).getFileName());
 
-			AnalysisOutputFile analysisOutput = buildOutputFile(analysisId, labelPrefix, outputDataset,
-					outputDirectory);
-			analysisOutputFiles.put(analysisOutputName, analysisOutput);
+			downloads.put(analysisOutputName, CompletableFuture.supplyAsync(() -> {
+				try {
+					return downloadOutputFile(analysisId, outputDataset, outputDirectory);
+				} catch (IOException | ExecutionManagerException e) {
+					throw new CompletionException(e);
+				}
+			}, executor));
+		}
+		CompletableFuture<Void> allDownloads = CompletableFuture
+				.allOf(downloads.values().toArray(new CompletableFuture[downloads.size()]));
+
+		// provenance for every output is built while the files download
+		Map<String, ToolExecution> toolExecutions;
+		try {
+			toolExecutions = analysisProvenanceServiceGalaxy.buildToolExecutionsForOutputFiles(analysisId,
+					outputFileNames);
+		} catch (ExecutionManagerException | RuntimeException e) {
+			allDownloads.exceptionally(t -> null).join();
+			deleteOutputDirectory(outputDirectory);
+			throw e;
+		}
+
+		Map<String, AnalysisOutputFile> analysisOutputFiles = Maps.newHashMap();
+		try {
+			allDownloads.join();
+
+			for (Map.Entry<String, CompletableFuture<Path>> download : downloads.entrySet()) {
+				String outputFileName = outputsMap.get(download.getKey()).getFileName();
+				Dataset outputDataset = outputDatasets.get(outputFileName);
+
+				analysisOutputFiles.put(download.getKey(), new AnalysisOutputFile(download.getValue().join(),
+						labelPrefix, outputDataset.getId(), toolExecutions.get(outputFileName)));
+			}
+		} catch (CompletionException e) {
+			deleteOutputDirectory(outputDirectory);
+
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof ExecutionManagerException) {
+				throw (ExecutionManagerException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else {
+				throw e;
+			}
 		}
 
 		AnalysisType analysisType = iridaWorkflow.getWorkflowDescription().getAnalysisType();
 		
 		return new Analysis(analysisId, analysisOutputFiles, analysisType);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Deletes a staging directory and any files that were downloaded to it.
+	 * 
+	 * @param outputDirectory
+	 *            The staging directory to delete.
+	 */
+	private void deleteOutputDirectory(Path outputDirectory) {
+		try (Stream<Path> paths = Files.walk(outputDirectory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.deleteIfExists(path);
+			}
+		} catch (IOException e) {
+			logger.warn("Could not delete staging directory " + outputDirectory, e);
+		}
+	}
+}
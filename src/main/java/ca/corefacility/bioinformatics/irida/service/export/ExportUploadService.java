@@ -27,31 +27,33 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.ConnectException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Class which handles uploading a {@link NcbiExportSubmission} to NCBI
@@ -60,15 +62,14 @@ import java.util.regex.Pattern;
 public class ExportUploadService {
 	private static final Logger logger = LoggerFactory.getLogger(ExportUploadService.class);
 
-	private static final String NCBI_TEMPLATE = "ncbi";
-
 	public static final String NCBI_ACCESSION_METADATA_LABEL = "NCBI SRA Accession";
 
 	private NcbiExportSubmissionService exportSubmissionService;
 	private SampleService sampleService;
 	private MetadataTemplateService metadataTemplateService;
-	private TemplateEngine templateEngine;
 	private EmailController emailController;
+	private Executor submissionExecutor;
+	private Executor transferExecutor;
 
 	@Value("${ncbi.upload.host}")
 	private String ftpHost;
@@ -98,6 +99,24 @@ public class ExportUploadService {
 
 	private static final long WAIT_BETWEEN_RETRIES = 5000L;
 
+	// number of times a submission's upload can fail before it's left in
+	// UPLOAD_ERROR for an administrator to look at
+	private static final int MAX_UPLOAD_ATTEMPTS = 3;
+
+	private static final Pattern REPORT_PATTERN = Pattern.compile("report\\.(\\d+)\\.xml");
+
+	private final NcbiSubmissionXmlWriter xmlWriter = new NcbiSubmissionXmlWriter();
+
+	// ids of the submissions being uploaded by this server
+	private final Set<Long> activeUploads = ConcurrentHashMap.newKeySet();
+
+	// how long a submission's upload is held by a server that has stopped
+	// checking in. Servers check in each time launchUpload runs.
+	private static final long UPLOAD_HEARTBEAT_EXPIRY = TimeUnit.MINUTES.toMillis(10);
+
+	// size of the buffers used to read, compress and send sequence files
+	private static final int TRANSFER_BUFFER_SIZE = 1024 * 1024;
+
 	// set of statuses that should be watched and update
 	private static Set<ExportUploadState> updateableStates = ImmutableSet.of(ExportUploadState.UPLOADED,
 			ExportUploadState.SUBMITTED, ExportUploadState.CREATED, ExportUploadState.QUEUED,
@@ -106,12 +125,15 @@ public class ExportUploadService {
 	@Autowired
 	public ExportUploadService(NcbiExportSubmissionService exportSubmissionService, SampleService sampleService,
 			MetadataTemplateService metadataTemplateService,
-			@Qualifier("exportUploadTemplateEngine") TemplateEngine templateEngine, EmailController emailController) {
+			EmailController emailController,
+			@Qualifier("ncbiSubmissionUploadExecutor") Executor submissionExecutor,
+			@Qualifier("ncbiFileUploadExecutor") Executor transferExecutor) {
 		this.exportSubmissionService = exportSubmissionService;
 		this.sampleService = sampleService;
 		this.metadataTemplateService = metadataTemplateService;
-		this.templateEngine = templateEngine;
 		this.emailController = emailController;
+		this.submissionExecutor = submissionExecutor;
+		this.transferExecutor = transferExecutor;
 	}
 
 	/**
@@ -139,39 +161,146 @@ public class ExportUploadService {
 
 	/**
 	 * Check for new {@link NcbiExportSubmission}s to be uploaded and begin
-	 * their upload
+	 * their upload. Submissions are claimed for this server in the database,
+	 * which marks them as {@link ExportUploadState#UPLOADING}, and uploaded on
+	 * the submission executor, so several submissions can upload at the same
+	 * time. A submission another server has claimed first is left to it.
+	 * <p>
+	 * Uploads that didn't finish are resumed as well: submissions left in
+	 * {@link ExportUploadState#UPLOADING} by a server that has stopped
+	 * checking in, and submissions in {@link ExportUploadState#UPLOAD_ERROR}
+	 * that haven't failed {@value #MAX_UPLOAD_ATTEMPTS} times yet. These are
+	 * uploaded to the directory they were started in, skipping the files that
+	 * were already sent.
+	 * </p>
 	 */
 	public synchronized void launchUpload() {
 
+		// hold on to the uploads this server is running
+		if (!activeUploads.isEmpty()) {
+			exportSubmissionService.updateUploadHeartbeat(ImmutableSet.copyOf(activeUploads));
+		}
+
 		logger.trace("Getting new exports");
 
-		List<NcbiExportSubmission> submissionsWithState = exportSubmissionService
-				.getSubmissionsWithState(ExportUploadState.NEW);
+		List<NcbiExportSubmission> submissions = new ArrayList<>(
+				exportSubmissionService.getSubmissionsWithState(ExportUploadState.NEW));
+		submissions.addAll(getUploadsToResume());
 
-		for (NcbiExportSubmission submission : submissionsWithState) {
+		Date expiry = new Date(System.currentTimeMillis() - UPLOAD_HEARTBEAT_EXPIRY);
+		Executor executor = new DelegatingSecurityContextExecutor(submissionExecutor);
+		for (NcbiExportSubmission submission : submissions) {
 
 			try {
-				logger.trace("Updating submission " + submission.getId());
+				if (!exportSubmissionService.claimUpload(submission, expiry)) {
+					logger.trace("Submission " + submission.getId() + " is being uploaded by another server");
+					continue;
+				}
 
-				submission.setUploadState(ExportUploadState.UPLOADING);
-				submission = exportSubmissionService.update(submission);
+				if (submission.getUploadState() == ExportUploadState.NEW) {
+					logger.trace("Uploading submission " + submission.getId());
+				} else {
+					logger.debug("Resuming upload of submission " + submission.getId() + " after "
+							+ submission.getUploadFailures() + " failures");
+				}
 
-				String xmlContent = createXml(submission);
+				submission.setUploadState(ExportUploadState.UPLOADING);
+				launch(executor, submission);
+			} catch (Exception e) {
+				uploadFailed(submission, e);
+			}
+		}
 
-				submission = uploadSubmission(submission, xmlContent);
+	}
 
-				submission.setUploadState(ExportUploadState.UPLOADED);
-				submission = exportSubmissionService.update(submission);
-			} catch (Exception e) {
-				logger.error("Upload failed", e);
+	/**
+	 * Get the {@link NcbiExportSubmission}s whose upload was started but may
+	 * need to be resumed: those marked as {@link ExportUploadState#UPLOADING}
+	 * that this server isn't uploading, and those that failed to upload fewer
+	 * than {@value #MAX_UPLOAD_ATTEMPTS} times. Uploads that another server is
+	 * still running are left out when they're claimed.
+	 *
+	 * @return the submissions to resume
+	 */
+	private List<NcbiExportSubmission> getUploadsToResume() {
+		List<NcbiExportSubmission> resume = new ArrayList<>();
 
-				submission.setUploadState(ExportUploadState.UPLOAD_ERROR);
-				submission = exportSubmissionService.update(submission);
+		for (NcbiExportSubmission submission : exportSubmissionService
+				.getSubmissionsWithState(ExportUploadState.UPLOADING)) {
+			if (!activeUploads.contains(submission.getId())) {
+				resume.add(submission);
+			}
+		}
 
-				emailController.sendNCBIUploadExceptionEmail(notificationAdminEmail, e, submission.getId());
+		// submissions that failed after they were uploaded (ie. an error
+		// report from NCBI) have no upload failures and aren't uploaded again
+		for (NcbiExportSubmission submission : exportSubmissionService
+				.getSubmissionsWithState(ExportUploadState.UPLOAD_ERROR)) {
+			if (submission.getUploadFailures() > 0 && submission.getUploadFailures() < MAX_UPLOAD_ATTEMPTS) {
+				resume.add(submission);
 			}
 		}
 
+		return resume;
+	}
+
+	/**
+	 * Start uploading a {@link NcbiExportSubmission} on the submission
+	 * executor.
+	 *
+	 * @param executor
+	 *            the executor to upload on
+	 * @param submission
+	 *            the {@link NcbiExportSubmission} to upload
+	 */
+	private void launch(Executor executor, NcbiExportSubmission submission) {
+		activeUploads.add(submission.getId());
+		try {
+			executor.execute(() -> upload(submission));
+		} catch (RuntimeException e) {
+			activeUploads.remove(submission.getId());
+			throw e;
+		}
+	}
+
+	/**
+	 * Upload a {@link NcbiExportSubmission} that has been marked as
+	 * {@link ExportUploadState#UPLOADING}.
+	 *
+	 * @param submission
+	 *            the {@link NcbiExportSubmission} to upload
+	 */
+	private void upload(NcbiExportSubmission submission) {
+		try {
+			submission = uploadSubmission(submission);
+
+			submission.setUploadState(ExportUploadState.UPLOADED);
+			submission = exportSubmissionService.update(submission);
+		} catch (Exception e) {
+			uploadFailed(submission, e);
+		} finally {
+			activeUploads.remove(submission.getId());
+		}
+	}
+
+	/**
+	 * Mark a {@link NcbiExportSubmission} as failed and let the administrator
+	 * know. The upload is tried again later unless it has failed
+	 * {@value #MAX_UPLOAD_ATTEMPTS} times.
+	 *
+	 * @param submission
+	 *            the {@link NcbiExportSubmission} that failed to upload
+	 * @param e
+	 *            the reason the upload failed
+	 */
+	private void uploadFailed(NcbiExportSubmission submission, Exception e) {
+		logger.error("Upload failed", e);
+
+		submission.setUploadState(ExportUploadState.UPLOAD_ERROR);
+		submission.setUploadFailures(submission.getUploadFailures() + 1);
+		submission = exportSubmissionService.update(submission);
+
+		emailController.sendNCBIUploadExceptionEmail(notificationAdminEmail, e, submission.getId());
 	}
 
 	/**
@@ -184,22 +313,29 @@ public class ExportUploadService {
 		List<NcbiExportSubmission> submissionsWithState = exportSubmissionService
 				.getSubmissionsWithState(updateableStates);
 
+		if (submissionsWithState.isEmpty()) {
+			return;
+		}
+
 		FTPClient client = null;
 		try {
+			// connect to FTP site once to check all of the submissions
+			client = getFtpClient();
+			String homeDirectory = client.printWorkingDirectory();
+
 			for (NcbiExportSubmission submission : submissionsWithState) {
-				// connect to FTP site
-				client = getFtpClient();
 				try {
-					logger.trace("Getting report for submission " + submission.getId());
-					InputStream xmlStream = getLatestXMLStream(client, submission);
+					if (!client.isConnected()) {
+						client = getFtpClient();
+					}
 
-					if (xmlStream != null) {
-						NcbiExportSubmission updateSubmissionForXml = updateSubmissionForXml(submission, xmlStream);
+					logger.trace("Getting report for submission " + submission.getId());
+					NcbiExportSubmission updateSubmissionForXml = readLatestReport(client, homeDirectory,
+							submission);
 
+					if (updateSubmissionForXml != null) {
 						exportSubmissionService.update(updateSubmissionForXml);
 
-						xmlStream.close();
-
 						//If we're done processing, add the accessions
 						if (updateSubmissionForXml.getUploadState().equals(ExportUploadState.PROCESSED_OK)) {
 							addSampleAccessions(submission);
@@ -214,12 +350,13 @@ public class ExportUploadService {
 
 					emailController.sendNCBIUploadExceptionEmail(notificationAdminEmail, e, submission.getId());
 				} catch (IOException e) {
-					logger.error("Error closing XML stream", e);
+					logger.error("Error reading report for submission " + submission.getId(), e);
+
+					// the next submission is checked on a new connection
+					disconnectFtpCient(client);
 				}
 
 			}
-
-			disconnectFtpCient(client);
 		} catch (Exception e) {
 			logger.error("Couldn't connect to FTP site", e);
 		} finally {
@@ -227,99 +364,71 @@ public class ExportUploadService {
 		}
 	}
 
-	/**
-	 * Create the XML for an {@link NcbiExportSubmission}
-	 *
-	 * @param submission
-	 *            the {@link NcbiExportSubmission} to create submission xml for
-	 * @return String content of the xml
-	 */
-	public String createXml(NcbiExportSubmission submission) {
-		logger.debug("Creating export xml for submission " + submission.getId());
-		final Context ctx = new Context();
-		ctx.setVariable("submission", submission);
-
-		String xmlContent = templateEngine.process(NCBI_TEMPLATE, ctx);
-
-		return xmlContent;
-	}
-
 	/**
 	 * Upload an {@link NcbiExportSubmission}'s files and submission xml to the
-	 * configured ftp site
+	 * configured ftp site. Sequence files are gzipped as they're sent, over as
+	 * many connections as the file upload executor allows. Each finished file
+	 * is recorded in {@link NcbiExportSubmission#getUploadedFiles()}, so
+	 * uploading a submission again (to the same directory) skips the files
+	 * that were already sent, and a file that was partly sent is resumed from
+	 * where it stopped.
 	 *
 	 * @param submission
 	 *            The {@link NcbiExportSubmission} to upload
-	 * @param xml
-	 *            The submission xml to upload
 	 * @return true/false if upload was successful
 	 * @throws UploadException
 	 *             if the upload failed
 	 */
-	public NcbiExportSubmission uploadSubmission(NcbiExportSubmission submission, String xml) throws UploadException {
+	public NcbiExportSubmission uploadSubmission(NcbiExportSubmission submission) throws UploadException {
 
 		FTPClient client = null;
 		try {
 			client = getFtpClient();
 
-			// create submission directory name
-			String directoryName = submission.getId().toString() + "-" + new Date().getTime();
+			if (submission.getDirectoryPath() == null) {
+				// create submission directory name
+				String directoryName = submission.getId().toString() + "-" + new Date().getTime();
 
-			// cd to submission base directory
-			if (!client.changeWorkingDirectory(baseDirectory)) {
-				throw new UploadException("Couldn't change to base directory " + baseDirectory + " : "
-						+ client.getReplyString());
-			}
+				// cd to submission base directory
+				if (!client.changeWorkingDirectory(baseDirectory)) {
+					throw new UploadException("Couldn't change to base directory " + baseDirectory + " : "
+							+ client.getReplyString());
+				}
 
-			// create new submission directory
-			if (!client.makeDirectory(directoryName)) {
-				throw new UploadException("Couldn't create new upload directory " + directoryName + " : "
-						+ client.getReplyString());
+				// create new submission directory
+				if (!client.makeDirectory(directoryName)) {
+					throw new UploadException("Couldn't create new upload directory " + directoryName + " : "
+							+ client.getReplyString());
+				}
+
+				// set the directory saved
+				submission.setDirectoryPath(baseDirectory + "/" + directoryName);
+				submission = exportSubmissionService.update(submission);
+			} else {
+				logger.debug("Resuming upload of submission " + submission.getId() + " to "
+						+ submission.getDirectoryPath());
 			}
 
+			String directoryPath = submission.getDirectoryPath();
+
 			// cd to submission directory
-			if (!client.changeWorkingDirectory(directoryName)) {
-				throw new UploadException("Couldn't change to upload directory " + directoryName + " : "
+			if (!client.changeWorkingDirectory(directoryPath)) {
+				throw new UploadException("Couldn't change to upload directory " + directoryPath + " : "
 						+ client.getReplyString());
 			}
 
-			// set the directory saved
-			String directoryPath = baseDirectory + "/" + directoryName;
-			submission.setDirectoryPath(directoryPath);
-
 			// upload submission.xml file
-			uploadString(client, "submission.xml", xml);
-
-			// upload biosample files
-			for (NcbiBioSampleFiles bsFile : submission.getBioSampleFiles()) {
+			uploadSubmissionXml(client, submission);
 
-				// upload single end files
-				for (SingleEndSequenceFile file : bsFile.getFiles()) {
-					// Just using file IDs as the basename for uploaded files to
-					// avoid accidentally sending sensitive sample names to NCBI
-					String filename = file.getSequenceFile().getId() + ".fastq";
-
-					uploadPath(client, filename, file.getSequenceFile().getFile());
-				}
-
-				// upload paired end files
-				for (SequenceFilePair pair : bsFile.getPairs()) {
-					// upload forward
-					SequenceFile file = pair.getForwardSequenceFile();
-					// Just using file IDs as the basename for uploaded files to
-					// avoid accidentally sending sensitive sample names to NCBI
-					String filename = file.getId() + ".fastq";
-					uploadPath(client, filename, file.getFile());
-
-					// upload reverse
-					file = pair.getReverseSequenceFile();
-					filename = file.getId() + ".fastq";
-					uploadPath(client, filename, file.getFile());
-				}
+			// the control connection would sit idle while the files upload
+			disconnectFtpCient(client);
 
-			}
+			// upload biosample files
+			submission = uploadFiles(submission, getFilesToUpload(submission));
 
 			// create submit.ready file
+			client = new FTPClient();
+			connectToDirectory(client, directoryPath);
 			uploadString(client, "submit.ready", "");
 
 		} catch (IOException e) {
@@ -334,64 +443,224 @@ public class ExportUploadService {
 	}
 
 	/**
-	 * Get the latest result.#.xml file for the given submission
+	 * Get the file name a {@link SequenceFile} is uploaded to NCBI as. Just
+	 * using file IDs as the basename for uploaded files to avoid accidentally
+	 * sending sensitive sample names to NCBI.
+	 *
+	 * @param file
+	 *            the {@link SequenceFile} to upload
+	 * @return the name of the uploaded file
+	 */
+	public static String getUploadFileName(SequenceFile file) {
+		return file.getId() + ".fastq.gz";
+	}
+
+	/**
+	 * Get the sequence files of an {@link NcbiExportSubmission} that haven't
+	 * been uploaded yet.
+	 *
+	 * @param submission
+	 *            the {@link NcbiExportSubmission} to upload
+	 * @return the files to upload by their uploaded file name
+	 */
+	private Map<String, Path> getFilesToUpload(NcbiExportSubmission submission) {
+		List<SequenceFile> files = new ArrayList<>();
+		for (NcbiBioSampleFiles bsFile : submission.getBioSampleFiles()) {
+			// single end files
+			for (SingleEndSequenceFile file : bsFile.getFiles()) {
+				files.add(file.getSequenceFile());
+			}
+
+			// paired end files
+			for (SequenceFilePair pair : bsFile.getPairs()) {
+				files.add(pair.getForwardSequenceFile());
+				files.add(pair.getReverseSequenceFile());
+			}
+		}
+
+		Map<String, Path> toUpload = new LinkedHashMap<>();
+		for (SequenceFile file : files) {
+			String filename = getUploadFileName(file);
+			if (!submission.getUploadedFiles().containsKey(filename)) {
+				toUpload.put(filename, file.getFile());
+			}
+		}
+
+		return toUpload;
+	}
+
+	/**
+	 * Upload sequence files to a submission's directory on the file upload
+	 * executor. Each upload takes an open connection from a pool shared by
+	 * the submission's uploads, or opens a new one if none are free.
+	 *
+	 * @param submission
+	 *            the {@link NcbiExportSubmission} being uploaded
+	 * @param files
+	 *            the files to upload by their uploaded file name
+	 * @return the {@link NcbiExportSubmission} with its uploaded files saved
+	 * @throws UploadException
+	 *             if any of the files couldn't be uploaded
+	 */
+	private NcbiExportSubmission uploadFiles(NcbiExportSubmission submission, Map<String, Path> files)
+			throws UploadException {
+		String directoryPath = submission.getDirectoryPath();
+		BlockingQueue<FTPClient> connections = new LinkedBlockingQueue<>();
+		Executor executor = new DelegatingSecurityContextExecutor(transferExecutor);
+
+		logger.debug("Uploading " + files.size() + " files for submission " + submission.getId());
+
+		Map<String, CompletableFuture<Long>> transfers = new LinkedHashMap<>();
+		for (Map.Entry<String, Path> file : files.entrySet()) {
+			transfers.put(file.getKey(), CompletableFuture.supplyAsync(() -> {
+				FTPClient client = connections.poll();
+				if (client == null) {
+					client = new FTPClient();
+				}
+
+				try {
+					return uploadPath(client, directoryPath, file.getKey(), file.getValue());
+				} catch (UploadException e) {
+					throw new CompletionException(e);
+				} finally {
+					connections.add(client);
+				}
+			}, executor));
+		}
+
+		// save each file as it finishes so an interrupted upload can be resumed
+		UploadException failure = null;
+		for (Map.Entry<String, CompletableFuture<Long>> transfer : transfers.entrySet()) {
+			try {
+				long bytes = transfer.getValue().join();
+
+				submission.getUploadedFiles().put(transfer.getKey(), bytes);
+				submission = exportSubmissionService.update(submission);
+			} catch (CompletionException e) {
+				logger.error("Error uploading file " + transfer.getKey(), e.getCause());
+				if (failure == null) {
+					failure = new UploadException("Could not upload file " + transfer.getKey(), e.getCause());
+				}
+			}
+		}
+
+		for (FTPClient client : connections) {
+			disconnectFtpCient(client);
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+
+		return submission;
+	}
+
+	/**
+	 * Read the latest report.#.xml file for the given submission and update
+	 * the submission from it.
 	 *
 	 * @param client
 	 *            {@link FTPClient} to use for the connection
+	 * @param homeDirectory
+	 *            the directory the client logged in to. Submission directory
+	 *            paths that aren't absolute are relative to it.
 	 * @param submission
 	 *            {@link NcbiExportSubmission} to get results for
-	 * @return {@link InputStream} for the newest file if found. null if no file
-	 *         was found
+	 * @return the updated {@link NcbiExportSubmission}, or null if there's no
+	 *         report yet
 	 * @throws NcbiXmlParseException
-	 *             if the file couldn't be found
+	 *             if the submission directory couldn't be found or the report
+	 *             couldn't be parsed
+	 * @throws IOException
+	 *             if the report couldn't be read
 	 */
-	private InputStream getLatestXMLStream(FTPClient client, NcbiExportSubmission submission)
-			throws NcbiXmlParseException {
-		InputStream retrieveFileStream = null;
+	private NcbiExportSubmission readLatestReport(FTPClient client, String homeDirectory,
+			NcbiExportSubmission submission) throws NcbiXmlParseException, IOException {
+		String directoryPath = submission.getDirectoryPath();
+
+		// the client may still be in the last submission's directory
+		if (homeDirectory != null && !directoryPath.startsWith("/")
+				&& !client.changeWorkingDirectory(homeDirectory)) {
+			throw new IOException("Couldn't change to home directory " + homeDirectory + " : "
+					+ client.getReplyString());
+		}
+
+		// cd to submission directory
+		if (!client.changeWorkingDirectory(directoryPath)) {
+			throw new NcbiXmlParseException("Couldn't change to submission directory " + directoryPath + " : "
+					+ client.getReplyString());
+		}
+
+		String latestFile = findLatestReport(client);
+		if (latestFile == null) {
+			return null;
+		}
 
+		logger.trace("newest file is " + latestFile);
+		InputStream xmlStream = client.retrieveFileStream(latestFile);
+		if (xmlStream == null) {
+			throw new IOException("Couldn't retrieve " + latestFile + " : " + client.getReplyString());
+		}
+
+		boolean completed;
 		try {
-			String directoryPath = submission.getDirectoryPath();
+			updateSubmissionForXml(submission, xmlStream);
+		} finally {
+			xmlStream.close();
+			completed = client.completePendingCommand();
+		}
 
-			// cd to submission base directory
-			if (!client.changeWorkingDirectory(directoryPath)) {
-				throw new NcbiXmlParseException("Couldn't change to base directory " + baseDirectory + " : "
-						+ client.getReplyString());
-			}
+		if (!completed) {
+			throw new IOException("Couldn't finish retrieving " + latestFile + " : " + client.getReplyString());
+		}
 
-			Pattern regex = Pattern.compile("report.(\\d+).xml");
-
-			String latestFile = null;
-			int highestNumber = 0;
-
-			// search for the highest number in the report.#.xml files
-			FTPFile[] listFiles = client.listFiles();
-			for (FTPFile file : listFiles) {
-				String fileName = file.getName();
-				Matcher matcher = regex.matcher(fileName);
-				if (matcher.matches()) {
-					int reportNumber = Integer.parseInt(matcher.group(1));
-					if (reportNumber > highestNumber) {
-						highestNumber = reportNumber;
-						latestFile = fileName;
-					}
-				}
-			}
+		return submission;
+	}
 
-			if (latestFile != null) {
-				logger.trace("newest file is " + latestFile);
-				retrieveFileStream = client.retrieveFileStream(latestFile);
-			}
+	/**
+	 * Find the report.#.xml file with the highest number in the current
+	 * directory. Only the report files are listed if the server supports
+	 * wildcards, otherwise the names of all the files are listed.
+	 *
+	 * @param client
+	 *            {@link FTPClient} to use for the connection
+	 * @return the name of the newest report, or null if there are none
+	 * @throws IOException
+	 *             if the directory couldn't be listed
+	 */
+	private String findLatestReport(FTPClient client) throws IOException {
+		String[] names = client.listNames("report.*.xml");
+		if (names == null || names.length == 0) {
+			names = client.listNames();
+		}
 
-		} catch (IOException e) {
-			throw new NcbiXmlParseException("Couldn't get response xml", e);
+		if (names == null) {
+			return null;
+		}
+
+		String latestFile = null;
+		int highestNumber = 0;
+
+		// search for the highest number in the report.#.xml files
+		for (String name : names) {
+			String fileName = name.substring(name.lastIndexOf('/') + 1);
+			Matcher matcher = REPORT_PATTERN.matcher(fileName);
+			if (matcher.matches()) {
+				int reportNumber = Integer.parseInt(matcher.group(1));
+				if (reportNumber > highestNumber) {
+					highestNumber = reportNumber;
+					latestFile = fileName;
+				}
+			}
 		}
 
-		return retrieveFileStream;
+		return latestFile;
 	}
 
 	/**
 	 * Get the updates from the result.#.xml file for the given submission and
-	 * update the object. XML will look like the following:
+	 * update the object. The xml is read as a stream with StAX. XML will look
+	 * like the following:
 	 *
 	 * <pre>
 	 * <?xml version='1.0' encoding='utf-8'?>
@@ -419,64 +688,87 @@ public class ExportUploadService {
 	private NcbiExportSubmission updateSubmissionForXml(NcbiExportSubmission submission, InputStream xml)
 			throws NcbiXmlParseException {
 
-		try {
-			// read the incoming xml file
-			DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder docBuilder = docBuilderFactory.newDocumentBuilder();
-			Document doc = docBuilder.parse(xml);
-
-			XPath xPath = XPathFactory.newInstance().newXPath();
+		XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
 
-			// get the submission status and set it in the submission
-			String submissionStatusString = xPath.compile("SubmissionStatus/@status").evaluate(doc);
-
-			if (submissionStatusString == null) {
-				throw new NcbiXmlParseException("result file should have 1 SubmissionStatus element with a status");
-			}
-
-			ExportUploadState submissionStatus = ExportUploadState.fromString(submissionStatusString);
-			submission.setUploadState(submissionStatus);
-
-			logger.trace("Root export state is " + submissionStatus);
+		XMLStreamReader reader = null;
+		try {
+			reader = inputFactory.createXMLStreamReader(xml);
 
 			// get all the sample files objects by name
 			Map<String, NcbiBioSampleFiles> sampleMap = getSampleNameMap(submission);
 
-			// get the actions
-			NodeList actions = (NodeList) xPath.compile("SubmissionStatus/Action")
-					.evaluate(doc, XPathConstants.NODESET);
-			for (int i = 0; i < actions.getLength(); i++) {
+			int depth = 0;
+			NcbiBioSampleFiles currentSample = null;
+			boolean foundAccession = false;
 
-				if (actions.item(i).getNodeType() == Node.ELEMENT_NODE) {
-					Element action = (Element) actions.item(i);
+			while (reader.hasNext()) {
+				int event = reader.next();
 
-					// get the status and action id
-					String status = action.getAttribute("status");
-					String actionId = action.getAttribute("action_id");
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					depth++;
+					String name = reader.getLocalName();
 
-					// action id is of the form SUBMISSIONID-sampleid
-					String sampleId = actionId.substring(actionId.indexOf("-") + 1);
+					if (depth == 1) {
+						// get the submission status and set it in the submission
+						String submissionStatusString = reader.getAttributeValue(null, "status");
+						if (!"SubmissionStatus".equals(name) || submissionStatusString == null) {
+							throw new NcbiXmlParseException(
+									"result file should have 1 SubmissionStatus element with a status");
+						}
 
-					// get the sample for this action
-					NcbiBioSampleFiles ncbiBioSampleFiles = sampleMap.get(sampleId);
+						ExportUploadState submissionStatus = ExportUploadState.fromString(submissionStatusString);
+						submission.setUploadState(submissionStatus);
 
-					ExportUploadState sampleStatus = ExportUploadState.fromString(status);
+						logger.trace("Root export state is " + submissionStatus);
+					} else if (depth == 2 && "Action".equals(name)) {
+						// get the status and action id
+						String status = reader.getAttributeValue(null, "status");
+						String actionId = reader.getAttributeValue(null, "action_id");
 
-					ncbiBioSampleFiles.setSubmissionStatus(sampleStatus);
-					logger.trace("Sample export state for sample " + ncbiBioSampleFiles.getId() + " is " + sampleStatus);
+						// action id is of the form SUBMISSIONID-sampleid
+						String sampleId = actionId.substring(actionId.indexOf("-") + 1);
 
-					String accession = xPath.compile("Response/Object/@accession").evaluate(action);
-					if (accession != null && !accession.isEmpty()) {
-						logger.trace("Found accession " + accession);
-						ncbiBioSampleFiles.setAccession(accession);
-					}
+						// get the sample for this action
+						currentSample = sampleMap.get(sampleId);
+						if (currentSample == null) {
+							throw new NcbiXmlParseException("No sample in submission for action " + actionId);
+						}
 
+						ExportUploadState sampleStatus = ExportUploadState.fromString(status);
+
+						currentSample.setSubmissionStatus(sampleStatus);
+						foundAccession = false;
+						logger.trace("Sample export state for sample " + currentSample.getId() + " is "
+								+ sampleStatus);
+					} else if (depth == 4 && currentSample != null && !foundAccession && "Object".equals(name)) {
+						String accession = reader.getAttributeValue(null, "accession");
+						if (accession != null && !accession.isEmpty()) {
+							logger.trace("Found accession " + accession);
+							currentSample.setAccession(accession);
+							foundAccession = true;
+						}
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					if (depth == 2) {
+						currentSample = null;
+					}
+					depth--;
 				}
 			}
 
-		} catch (XPathExpressionException | ParserConfigurationException | SAXException | IOException e) {
+		} catch (XMLStreamException e) {
 			logger.error("Couldn't parse response XML", e);
 			throw new NcbiXmlParseException("Error parsing NCBI response", e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					logger.error("Couldn't close response XML reader", e);
+				}
+			}
 		}
 
 		return submission;
@@ -508,6 +800,20 @@ public class ExportUploadService {
 	 */
 	private FTPClient getFtpClient() throws IOException {
 		FTPClient client = new FTPClient();
+		connectFtpClient(client);
+		return client;
+	}
+
+	/**
+	 * Connect and log in an {@link FTPClient} with the configured connection
+	 * details
+	 *
+	 * @param client
+	 *            the {@link FTPClient} to connect
+	 * @throws IOException
+	 *             if a connection error occurred
+	 */
+	private void connectFtpClient(FTPClient client) throws IOException {
 		// login to host
 		logger.trace("Logging in to " + ftpHost + " as " + ftpUser);
 
@@ -532,8 +838,28 @@ public class ExportUploadService {
 					+ controlKeepAliveReplyTimeout);
 			client.setControlKeepAliveTimeout(controlKeepAliveTimeout);
 		}
-		
-		return client;
+
+		client.setBufferSize(TRANSFER_BUFFER_SIZE);
+	}
+
+	/**
+	 * Connect an {@link FTPClient} and change to a submission's directory
+	 *
+	 * @param client
+	 *            the {@link FTPClient} to connect
+	 * @param directoryPath
+	 *            the submission directory to change to
+	 * @throws IOException
+	 *             if a connection error occurred or the directory couldn't be
+	 *             changed to
+	 */
+	private void connectToDirectory(FTPClient client, String directoryPath) throws IOException {
+		connectFtpClient(client);
+
+		if (!client.changeWorkingDirectory(directoryPath)) {
+			throw new IOException("Couldn't change to upload directory " + directoryPath + " : "
+					+ client.getReplyString());
+		}
 	}
 
 	/**
@@ -553,6 +879,59 @@ public class ExportUploadService {
 		}
 	}
 
+	/**
+	 * Write the submission.xml for an {@link NcbiExportSubmission} straight
+	 * to a remote ftp client
+	 *
+	 * @param client
+	 *            {@link FTPClient} to use for upload
+	 * @param submission
+	 *            the {@link NcbiExportSubmission} to write the xml for
+	 * @throws UploadException
+	 *             if file could not be uploaded
+	 */
+	private void uploadSubmissionXml(FTPClient client, NcbiExportSubmission submission)
+			throws UploadException, IOException {
+		int tries = 0;
+		boolean done = false;
+
+		client.setFileType(FTP.ASCII_FILE_TYPE);
+
+		logger.debug("Writing export xml for submission " + submission.getId());
+
+		do {
+			tries++;
+			try {
+				OutputStream remote = client.storeFileStream("submission.xml");
+				if (remote == null) {
+					throw new IOException("Couldn't open submission.xml for upload : " + client.getReplyString());
+				}
+
+				try (OutputStream out = remote) {
+					xmlWriter.write(submission, out);
+				}
+
+				if (!client.completePendingCommand()) {
+					throw new IOException("Upload of submission.xml didn't complete : " + client.getReplyString());
+				}
+
+				done = true;
+			} catch (Exception e) {
+				String reply = client.getReplyString();
+				if (tries >= MAX_RETRIES) {
+					throw new UploadException("Could not upload file submission.xml : " + reply, e);
+				}
+				logger.error("Error uploading file: " + reply, e);
+
+				try {
+					Thread.sleep(WAIT_BETWEEN_RETRIES);
+				} catch (InterruptedException e1) {
+					throw new UploadException("Sleep failed", e1);
+				}
+			}
+		} while (!done);
+	}
+
 	/**
 	 * Upload a string to remote ftp client
 	 *
@@ -595,28 +974,45 @@ public class ExportUploadService {
 	}
 
 	/**
-	 * Upload a file {@link Path} to a remote ftp client
+	 * Upload a sequence file {@link Path} to a remote ftp client, gzipping it
+	 * if it isn't already compressed. If part of an already compressed file is
+	 * on the server it's resumed with {@code APPE} rather than sent again. A
+	 * failed upload is retried on a new connection.
 	 *
-	 * @param client   {@link FTPClient} to upload with
-	 * @param filename name of file to create
-	 * @param path     {@link Path} to upload
+	 * @param client        {@link FTPClient} to upload with. Connected to the
+	 *                      submission directory if it isn't connected.
+	 * @param directoryPath the submission directory to upload to
+	 * @param filename      name of file to create
+	 * @param path          {@link Path} to upload
+	 * @return the size in bytes of the uploaded file
 	 * @throws UploadException if file could not be uploaded
 	 */
-	private void uploadPath(FTPClient client, String filename, Path path) throws UploadException, IOException {
+	private long uploadPath(FTPClient client, String directoryPath, String filename, Path path)
+			throws UploadException {
 		int tries = 0;
-		boolean done = false;
-		
-		client.setFileType(FTP.BINARY_FILE_TYPE);
-		
-		do {
+
+		while (true) {
 			tries++;
 
-			try (InputStream stream = Files.newInputStream(path)) {
-				client.storeFile(filename, stream);
+			try {
+				if (!client.isConnected()) {
+					connectToDirectory(client, directoryPath);
+				}
+
+				client.setFileType(FTP.BINARY_FILE_TYPE);
 
-				done = true;
+				long offset = getRemoteFileSize(client, filename);
+				if (offset > 0) {
+					logger.debug("Server already has " + offset + " bytes of " + filename);
+				}
+
+				return sendFile(client, filename, path, offset);
 			} catch (Exception e) {
 				String reply = client.getReplyString();
+
+				// start the next try on a new connection
+				disconnectFtpCient(client);
+
 				if (tries >= MAX_RETRIES) {
 					throw new UploadException("Could not upload file " + filename + " : " + reply, e);
 				}
@@ -628,7 +1024,109 @@ public class ExportUploadService {
 					throw new UploadException("Sleep failed", e1);
 				}
 			}
-		} while (!done);
+		}
+	}
+
+	/**
+	 * Get the size of a file in the current directory of an {@link FTPClient}
+	 *
+	 * @param client   the {@link FTPClient} to check with
+	 * @param filename the name of the file
+	 * @return the size of the file in bytes, or 0 if it doesn't exist
+	 * @throws IOException if the directory couldn't be listed
+	 */
+	private long getRemoteFileSize(FTPClient client, String filename) throws IOException {
+		FTPFile[] files = client.listFiles(filename);
+		if (files != null && files.length == 1 && files[0].isFile()) {
+			return Math.max(files[0].getSize(), 0);
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Send a file, skipping the bytes the server already has. Only files that
+	 * are already gzipped are resumed. Files compressed while they're sent are
+	 * sent again from the start, as compressing the file again (maybe with a
+	 * different JDK or zlib) isn't guaranteed to give the same bytes as the
+	 * earlier attempt.
+	 *
+	 * @param client   the {@link FTPClient} to send with
+	 * @param filename name of file to create or append to
+	 * @param path     {@link Path} to send
+	 * @param offset   the number of bytes the server already has
+	 * @return the size in bytes of the uploaded file
+	 * @throws IOException if the file couldn't be sent
+	 */
+	private long sendFile(FTPClient client, String filename, Path path, long offset) throws IOException {
+		try (InputStream source = new BufferedInputStream(Files.newInputStream(path), TRANSFER_BUFFER_SIZE)) {
+			boolean compressed = SequenceFile.isGzipped(source);
+			if (offset > 0 && !compressed) {
+				logger.debug("Restarting upload of " + filename + " as it's compressed while it's sent");
+				offset = 0;
+			}
+
+			OutputStream remote = offset > 0 ? client.appendFileStream(filename) : client.storeFileStream(filename);
+			if (remote == null) {
+				throw new IOException("Couldn't open " + filename + " for upload : " + client.getReplyString());
+			}
+
+			OffsetOutputStream resumed = new OffsetOutputStream(remote, offset);
+			try (OutputStream out = compressed ? resumed : new GZIPOutputStream(resumed, TRANSFER_BUFFER_SIZE)) {
+				byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+				int read;
+				while ((read = source.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+				}
+			}
+
+			if (!client.completePendingCommand()) {
+				throw new IOException("Upload of " + filename + " didn't complete : " + client.getReplyString());
+			}
+
+			if (resumed.getPosition() < offset) {
+				// the server has more than the file, so start over next time
+				client.deleteFile(filename);
+				throw new IOException("Remote file " + filename + " is larger than the file being uploaded");
+			}
+
+			return resumed.getPosition();
+		}
+	}
+
+	/**
+	 * An {@link OutputStream} that drops the first bytes written to it and
+	 * passes the rest on, counting everything written.
+	 */
+	private static class OffsetOutputStream extends FilterOutputStream {
+		private final long offset;
+		private long position = 0;
+
+		public OffsetOutputStream(OutputStream out, long offset) {
+			super(out);
+			this.offset = offset;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (position >= offset) {
+				out.write(b);
+			}
+			position++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			int skip = (int) Math.min(Math.max(offset - position, 0), len);
+			if (skip < len) {
+				out.write(b, off + skip, len - skip);
+			}
+			position += len;
+		}
+
+		public long getPosition() {
+			return position;
+		}
 	}
 
 	/**
@@ -1,5 +1,7 @@
 package ca.corefacility.bioinformatics.irida.service.export;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
@@ -41,4 +43,28 @@ public interface NcbiExportSubmissionService extends CRUDService<Long, NcbiExpor
 	 * @return a List of {@link NcbiExportSubmission}
 	 */
 	public List<NcbiExportSubmission> getSubmissionsForProject(Project project);
+
+	/**
+	 * Claim the upload of a {@link NcbiExportSubmission} for this server,
+	 * marking it as {@link ExportUploadState#UPLOADING}. A submission that's
+	 * already {@link ExportUploadState#UPLOADING} can only be claimed once the
+	 * server uploading it has stopped checking in.
+	 * 
+	 * @param submission
+	 *            the {@link NcbiExportSubmission} to claim, in the state it was
+	 *            read in
+	 * @param expiry
+	 *            upload heartbeats older than this time are expired
+	 * @return true if this server claimed the upload, false if another server
+	 *         has it
+	 */
+	public boolean claimUpload(NcbiExportSubmission submission, Date expiry);
+
+	/**
+	 * Record that this server is still uploading the given submissions.
+	 * 
+	 * @param ids
+	 *            IDs of the {@link NcbiExportSubmission}s being uploaded
+	 */
+	public void updateUploadHeartbeat(Collection<Long> ids);
 }
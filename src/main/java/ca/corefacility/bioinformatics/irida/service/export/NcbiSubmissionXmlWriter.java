@@ -0,0 +1,195 @@
+package ca.corefacility.bioinformatics.irida.service.export;
+
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.List;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import ca.corefacility.bioinformatics.irida.model.NcbiExportSubmission;
+import ca.corefacility.bioinformatics.irida.model.export.NcbiBioSampleFiles;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFilePair;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SingleEndSequenceFile;
+import ca.corefacility.bioinformatics.irida.model.user.User;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Writes the submission.xml for an {@link NcbiExportSubmission} with StAX, so
+ * the xml for a large submission can be streamed to its destination without
+ * being built in memory first.
+ *
+ * @see <a href=
+ *      "http://www.ncbi.nlm.nih.gov/viewvc/v1/trunk/submit/public-docs/common/submission.xsd?view=co">
+ *      NCBI submission schema</a>
+ */
+public class NcbiSubmissionXmlWriter {
+
+	private static final String SCHEMA_LOCATION = "http://www.ncbi.nlm.nih.gov/viewvc/v1/trunk/submit/public-docs/common/submission.xsd?view=co";
+
+	private static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+
+	private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+	/**
+	 * Write the submission xml for an {@link NcbiExportSubmission}. The stream
+	 * is not closed.
+	 *
+	 * @param submission
+	 *            the {@link NcbiExportSubmission} to write
+	 * @param out
+	 *            the {@link OutputStream} to write the xml to
+	 * @throws XMLStreamException
+	 *             if the xml couldn't be written
+	 */
+	public void write(NcbiExportSubmission submission, OutputStream out) throws XMLStreamException {
+		XMLStreamWriter writer = outputFactory.createXMLStreamWriter(out, "UTF-8");
+
+		writer.writeStartDocument("UTF-8", "1.0");
+		writer.writeStartElement("Submission");
+		writer.writeAttribute("schema_version", "2.0");
+		writer.writeNamespace("xsi", XSI_NAMESPACE);
+		writer.writeAttribute(XSI_NAMESPACE, "noNamespaceSchemaLocation", SCHEMA_LOCATION);
+
+		writeDescription(writer, submission);
+
+		for (NcbiBioSampleFiles sample : submission.getBioSampleFiles()) {
+			writer.writeStartElement("Action");
+
+			for (SingleEndSequenceFile file : sample.getFiles()) {
+				writeAddFiles(writer, submission, sample, Lists.newArrayList(file.getSequenceFile()), "SINGLE");
+			}
+
+			for (SequenceFilePair pair : sample.getPairs()) {
+				writeAddFiles(writer, submission, sample,
+						Lists.newArrayList(pair.getForwardSequenceFile(), pair.getReverseSequenceFile()), "PAIRED");
+			}
+
+			writer.writeEndElement();
+		}
+
+		writer.writeEndElement();
+		writer.writeEndDocument();
+		writer.flush();
+		writer.close();
+	}
+
+	/**
+	 * Write the organization, contact and release date of a submission
+	 */
+	private void writeDescription(XMLStreamWriter writer, NcbiExportSubmission submission)
+			throws XMLStreamException {
+		writer.writeStartElement("Description");
+
+		writer.writeStartElement("Organization");
+		writer.writeAttribute("role", "owner");
+		writer.writeAttribute("type", "institute");
+		writeElement(writer, "Name", submission.getOrganization());
+
+		User submitter = submission.getSubmitter();
+		writer.writeStartElement("Contact");
+		if (submitter != null) {
+			writeAttribute(writer, "email", submitter.getEmail());
+			writer.writeStartElement("Name");
+			writeElement(writer, "First", submitter.getFirstName());
+			writeElement(writer, "Last", submitter.getLastName());
+			writer.writeEndElement();
+		}
+		writer.writeEndElement();
+
+		writer.writeEndElement();
+
+		writer.writeStartElement("Hold");
+		if (submission.getReleaseDate() != null) {
+			writer.writeAttribute("release_date",
+					new SimpleDateFormat("yyyy-MM-dd").format(submission.getReleaseDate()));
+		}
+		writer.writeEndElement();
+
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Write an AddFiles element for one run of a sample
+	 */
+	private void writeAddFiles(XMLStreamWriter writer, NcbiExportSubmission submission, NcbiBioSampleFiles sample,
+			List<SequenceFile> files, String layout) throws XMLStreamException {
+		writer.writeStartElement("AddFiles");
+		writer.writeAttribute("target_db", "SRA");
+
+		for (SequenceFile file : files) {
+			writer.writeStartElement("File");
+			writer.writeAttribute("file_path", ExportUploadService.getUploadFileName(file));
+			writeElement(writer, "DataType", "generic-data");
+			writer.writeEndElement();
+		}
+
+		writeAttributeElement(writer, "instrument_model",
+				sample.getInstrumentModel() != null ? sample.getInstrumentModel().getValue() : null);
+		writeAttributeElement(writer, "library_name", sample.getLibraryName());
+		writeAttributeElement(writer, "library_strategy",
+				sample.getLibraryStrategy() != null ? sample.getLibraryStrategy().getValue() : null);
+		writeAttributeElement(writer, "library_source",
+				sample.getLibrarySource() != null ? sample.getLibrarySource().getValue() : null);
+		writeAttributeElement(writer, "library_selection",
+				sample.getLibrarySelection() != null ? sample.getLibrarySelection().getValue() : null);
+		writeAttributeElement(writer, "library_layout", layout);
+		writeAttributeElement(writer, "library_construction_protocol", sample.getLibraryConstructionProtocol());
+
+		writeRefId(writer, "BioProject", submission.getBioProjectId());
+		writeRefId(writer, "BioSample", sample.getBioSample());
+
+		writer.writeStartElement("Identifier");
+		writer.writeStartElement("SPUID");
+		writeAttribute(writer, "spuid_namespace", submission.getNcbiNamespace());
+		writeText(writer, sample.getId());
+		writer.writeEndElement();
+		writer.writeEndElement();
+
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Write an AttributeRefId element referring to a BioProject or BioSample
+	 */
+	private void writeRefId(XMLStreamWriter writer, String db, String id) throws XMLStreamException {
+		writer.writeStartElement("AttributeRefId");
+		writer.writeAttribute("name", db);
+		writer.writeStartElement("RefId");
+		writer.writeStartElement("PrimaryId");
+		writer.writeAttribute("db", db);
+		writeText(writer, id);
+		writer.writeEndElement();
+		writer.writeEndElement();
+		writer.writeEndElement();
+	}
+
+	private void writeAttributeElement(XMLStreamWriter writer, String name, String value)
+			throws XMLStreamException {
+		writer.writeStartElement("Attribute");
+		writer.writeAttribute("name", name);
+		writeText(writer, value);
+		writer.writeEndElement();
+	}
+
+	private void writeElement(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+		writer.writeStartElement(name);
+		writeText(writer, value);
+		writer.writeEndElement();
+	}
+
+	private void writeAttribute(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+		if (value != null) {
+			writer.writeAttribute(name, value);
+		}
+	}
+
+	private void writeText(XMLStreamWriter writer, String value) throws XMLStreamException {
+		if (value != null) {
+			writer.writeCharacters(value);
+		}
+	}
+}
@@ -3,6 +3,8 @@ package ca.corefacility.bioinformatics.irida.service.impl;
 import java.io.IOException;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
@@ -25,13 +27,18 @@ import ca.corefacility.bioinformatics.irida.repositories.analysis.submission.Job
 import ca.corefacility.bioinformatics.irida.service.AnalysisExecutionScheduledTask;
 import ca.corefacility.bioinformatics.irida.service.CleanupAnalysisSubmissionCondition;
 import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisExecutionService;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisSubmissionQueue;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisWorkflowMonitor;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisWorkflowMonitor.WorkflowStatusListener;
 
 import com.google.common.collect.Sets;
 
 /**
  * Implementation of analysis execution tasks. This will scan for
  * {@link AnalysisSubmission}s and execute the {@link Analysis} defined by the
- * submissions.
+ * submissions. When stages are pipelined, finishing one stage immediately
+ * starts the next and the periodic tasks only pick up submissions that were
+ * missed, for example after a restart.
  */
 public class AnalysisExecutionScheduledTaskImpl implements AnalysisExecutionScheduledTask {
 
@@ -49,6 +56,10 @@ public class AnalysisExecutionScheduledTaskImpl implements AnalysisExecutionSche
 	private final CleanupAnalysisSubmissionCondition cleanupCondition;
 	private GalaxyJobErrorsService galaxyJobErrorsService;
 	private JobErrorRepository jobErrorRepository;
+	private final AnalysisWorkflowMonitor workflowMonitor;
+	private final AnalysisSubmissionQueue submissionQueue;
+	private final boolean pipelineStages;
+	private final Set<Long> submissionsInStage = ConcurrentHashMap.newKeySet();
 
 	/**
 	 * Builds a new AnalysisExecutionScheduledTaskImpl with the given service
@@ -60,18 +71,30 @@ public class AnalysisExecutionScheduledTaskImpl implements AnalysisExecutionSche
 	 *                                       should be cleaned up.
 	 * @param galaxyJobErrorsService		 {@link GalaxyJobErrorsService} for getting {@link JobError} objects
 	 * @param jobErrorRepository             {@link JobErrorRepository} for {@link JobError} objects
+	 * @param workflowMonitor                {@link AnalysisWorkflowMonitor} for checking the status of
+	 *                                       running {@link AnalysisSubmission}s
+	 * @param submissionQueue                {@link AnalysisSubmissionQueue} deciding which new
+	 *                                       {@link AnalysisSubmission}s to run next
+	 * @param pipelineStages                 Whether to start the next stage for a submission as soon as a
+	 *                                       stage finishes. When false, each stage is only started by its
+	 *                                       periodic task.
 	 */
 	@Autowired
 	public AnalysisExecutionScheduledTaskImpl(AnalysisSubmissionRepository analysisSubmissionRepository,
 			AnalysisExecutionService analysisExecutionServiceGalaxy,
 			CleanupAnalysisSubmissionCondition cleanupCondition,
 			GalaxyJobErrorsService galaxyJobErrorsService,
-			JobErrorRepository jobErrorRepository) {
+			JobErrorRepository jobErrorRepository,
+			AnalysisWorkflowMonitor workflowMonitor, AnalysisSubmissionQueue submissionQueue,
+			boolean pipelineStages) {
 		this.analysisSubmissionRepository = analysisSubmissionRepository;
 		this.analysisExecutionService = analysisExecutionServiceGalaxy;
 		this.cleanupCondition = cleanupCondition;
 		this.galaxyJobErrorsService = galaxyJobErrorsService;
 		this.jobErrorRepository = jobErrorRepository;
+		this.workflowMonitor = workflowMonitor;
+		this.submissionQueue = submissionQueue;
+		this.pipelineStages = pipelineStages;
 	}
 
 	/**
@@ -82,36 +105,15 @@ public class AnalysisExecutionScheduledTaskImpl implements AnalysisExecutionSche
 		synchronized (prepareAnalysesLock) {
 			logger.trace("Running prepareAnalyses");
 
-			List<AnalysisSubmission> analysisSubmissions = analysisSubmissionRepository.findByAnalysisState(
-					AnalysisState.NEW);
-
-			// Sort submissions by priority high to low
-			analysisSubmissions.sort((a1, a2) -> {
-				return a2.getPriority()
-						.compareTo(a1.getPriority());
-			});
-
 			Set<Future<AnalysisSubmission>> submissions = Sets.newHashSet();
 
 			// check to see if execution service wants any more jobs
 			int capacity = analysisExecutionService.getCapacity();
 			if (capacity > 0) {
-
-				if (capacity < analysisSubmissions.size()) {
-					logger.debug("Attempting to submit more jobs than capacity, list will be trimmed: "
-							+ analysisSubmissions.size() + "=>" + capacity);
-					// only submit up to capacity
-					analysisSubmissions = analysisSubmissions.subList(0, capacity);
-				}
+				List<AnalysisSubmission> analysisSubmissions = submissionQueue.nextSubmissions(capacity);
 
 				for (AnalysisSubmission analysisSubmission : analysisSubmissions) {
-					logger.debug("Preparing " + analysisSubmission);
-
-					try {
-						submissions.add(analysisExecutionService.prepareSubmission(analysisSubmission));
-					} catch (ExecutionManagerException | IridaWorkflowNotFoundException | IOException e) {
-						logger.error("Error preparing submission " + analysisSubmission, e);
-					}
+					prepareSubmission(analysisSubmission, submissions);
 				}
 			} else {
 				logger.trace("AnalysisExecutionService at max capacity.  No jobs updated.");
@@ -135,21 +137,13 @@ public class AnalysisExecutionScheduledTaskImpl implements AnalysisExecutionSche
 			Set<Future<AnalysisSubmission>> submissions = Sets.newHashSet();
 
 			for (AnalysisSubmission analysisSubmission : analysisSubmissions) {
-				logger.debug("Executing " + analysisSubmission);
-
-				try {
-					submissions.add(analysisExecutionService.executeAnalysis(analysisSubmission));
-				} catch (ExecutionManagerException | IridaWorkflowException e) {
-					logger.error("Error executing submission " + analysisSubmission, e);
-				}
+				executeAnalysis(analysisSubmission, submissions);
 			}
 
 			return submissions;
 		}
 	}
 
-
-
 	/**
 	 * {@inheritDoc}
 	 */
@@ -163,19 +157,23 @@ public class AnalysisExecutionScheduledTaskImpl implements AnalysisExecutionSche
 
 			Set<Future<AnalysisSubmission>> submissions = Sets.newHashSet();
 
-			for (AnalysisSubmission analysisSubmission : analysisSubmissions) {
-				logger.trace("Checking state of " + analysisSubmission);
+			workflowMonitor.checkRunningSubmissions(analysisSubmissions, new WorkflowStatusListener() {
+				@Override
+				public void workflowStatus(AnalysisSubmission analysisSubmission, GalaxyWorkflowStatus workflowStatus) {
+					try {
+						submissions.add(handleWorkflowStatus(workflowStatus, analysisSubmission));
+					} catch (RuntimeException e) {
+						workflowStatusError(analysisSubmission, e);
+					}
+				}
 
-				try {
-					GalaxyWorkflowStatus workflowStatus = analysisExecutionService.getWorkflowStatus(
-							analysisSubmission);
-					submissions.add(handleWorkflowStatus(workflowStatus, analysisSubmission));
-				} catch (ExecutionManagerException | RuntimeException e) {
+				@Override
+				public void workflowStatusError(AnalysisSubmission analysisSubmission, Exception e) {
 					logger.error("Error checking state for " + analysisSubmission, e);
 					analysisSubmission.setAnalysisState(AnalysisState.ERROR);
 					submissions.add(new AsyncResult<>(analysisSubmissionRepository.save(analysisSubmission)));
 				}
-			}
+			});
 
 			return submissions;
 		}
@@ -211,13 +209,7 @@ public class AnalysisExecutionScheduledTaskImpl implements AnalysisExecutionSche
 			Set<Future<AnalysisSubmission>> submissions = Sets.newHashSet();
 
 			for (AnalysisSubmission analysisSubmission : analysisSubmissions) {
-				logger.debug("Transferring results for " + analysisSubmission);
-
-				try {
-					submissions.add(analysisExecutionService.transferAnalysisResults(analysisSubmission));
-				} catch (ExecutionManagerException | IOException | IridaWorkflowException e) {
-					logger.error("Error transferring submission " + analysisSubmission, e);
-				}
+				transferAnalysisResults(analysisSubmission, submissions);
 			}
 
 			return submissions;
@@ -238,14 +230,207 @@ public class AnalysisExecutionScheduledTaskImpl implements AnalysisExecutionSche
 			Set<Future<AnalysisSubmission>> submissions = Sets.newHashSet();
 
 			for (AnalysisSubmission analysisSubmission : analysisSubmissions) {
-				logger.debug("Post processing results for " + analysisSubmission);
-				submissions.add(analysisExecutionService.postProcessResults(analysisSubmission));
+				postProcessResults(analysisSubmission, submissions);
 			}
 
 			return submissions;
 		}
 	}
 
+	/**
+	 * Start preparing a submission.
+	 *
+	 * @param analysisSubmission The {@link AnalysisSubmission} to prepare.
+	 * @param submissions        The {@link Future}s to add the stage to.
+	 */
+	private void prepareSubmission(AnalysisSubmission analysisSubmission,
+			Set<Future<AnalysisSubmission>> submissions) {
+		if (!claimSubmission(analysisSubmission)) {
+			return;
+		}
+
+		logger.debug("Preparing " + analysisSubmission);
+
+		try {
+			submissions.add(pipelineStage(analysisSubmission,
+					analysisExecutionService.prepareSubmission(analysisSubmission)));
+		} catch (ExecutionManagerException | IridaWorkflowNotFoundException | IOException | RuntimeException e) {
+			releaseSubmission(analysisSubmission);
+			logger.error("Error preparing submission " + analysisSubmission, e);
+		}
+	}
+
+	/**
+	 * Start executing a prepared submission.
+	 *
+	 * @param analysisSubmission The {@link AnalysisSubmission} to execute.
+	 * @param submissions        The {@link Future}s to add the stage to.
+	 */
+	private void executeAnalysis(AnalysisSubmission analysisSubmission,
+			Set<Future<AnalysisSubmission>> submissions) {
+		if (!claimSubmission(analysisSubmission)) {
+			return;
+		}
+
+		logger.debug("Executing " + analysisSubmission);
+
+		try {
+			submissions.add(pipelineStage(analysisSubmission,
+					analysisExecutionService.executeAnalysis(analysisSubmission)));
+		} catch (ExecutionManagerException | IridaWorkflowException | RuntimeException e) {
+			releaseSubmission(analysisSubmission);
+			logger.error("Error executing submission " + analysisSubmission, e);
+		}
+	}
+
+	/**
+	 * Start transferring the results of a finished submission.
+	 *
+	 * @param analysisSubmission The {@link AnalysisSubmission} to transfer results for.
+	 * @param submissions        The {@link Future}s to add the stage to.
+	 */
+	private void transferAnalysisResults(AnalysisSubmission analysisSubmission,
+			Set<Future<AnalysisSubmission>> submissions) {
+		if (!claimSubmission(analysisSubmission)) {
+			return;
+		}
+
+		logger.debug("Transferring results for " + analysisSubmission);
+
+		try {
+			submissions.add(pipelineStage(analysisSubmission,
+					analysisExecutionService.transferAnalysisResults(analysisSubmission)));
+		} catch (ExecutionManagerException | IOException | IridaWorkflowException | RuntimeException e) {
+			releaseSubmission(analysisSubmission);
+			logger.error("Error transferring submission " + analysisSubmission, e);
+		}
+	}
+
+	/**
+	 * Start post-processing the results of a transferred submission.
+	 *
+	 * @param analysisSubmission The {@link AnalysisSubmission} to post-process.
+	 * @param submissions        The {@link Future}s to add the stage to.
+	 */
+	private void postProcessResults(AnalysisSubmission analysisSubmission,
+			Set<Future<AnalysisSubmission>> submissions) {
+		if (!claimSubmission(analysisSubmission)) {
+			return;
+		}
+
+		logger.debug("Post processing results for " + analysisSubmission);
+
+		try {
+			submissions.add(pipelineStage(analysisSubmission,
+					analysisExecutionService.postProcessResults(analysisSubmission)));
+		} catch (RuntimeException e) {
+			releaseSubmission(analysisSubmission);
+			logger.error("Error post processing submission " + analysisSubmission, e);
+		}
+	}
+
+	/**
+	 * Claim a submission so that only one stage is started for it at a time.
+	 * Stages started by the periodic tasks and stages started when the
+	 * previous stage finishes would otherwise race for the same submission.
+	 *
+	 * @param analysisSubmission The {@link AnalysisSubmission} to claim.
+	 * @return true if the submission was claimed, false if it is already in a
+	 * stage.
+	 */
+	private boolean claimSubmission(AnalysisSubmission analysisSubmission) {
+		if (!pipelineStages) {
+			return true;
+		}
+
+		boolean claimed = submissionsInStage.add(analysisSubmission.getId());
+		if (!claimed) {
+			logger.trace("Skipping " + analysisSubmission + ", it is already in a stage");
+		}
+		return claimed;
+	}
+
+	/**
+	 * Release a claimed submission.
+	 *
+	 * @param analysisSubmission The {@link AnalysisSubmission} to release.
+	 */
+	private void releaseSubmission(AnalysisSubmission analysisSubmission) {
+		if (pipelineStages) {
+			submissionsInStage.remove(analysisSubmission.getId());
+		}
+	}
+
+	/**
+	 * Start the next stage for a submission as soon as its current stage
+	 * finishes, rather than waiting for the next periodic task.
+	 *
+	 * @param analysisSubmission The {@link AnalysisSubmission} in the stage.
+	 * @param stage              The running stage.
+	 * @return A {@link Future} for the stage.
+	 */
+	private Future<AnalysisSubmission> pipelineStage(AnalysisSubmission analysisSubmission,
+			CompletableFuture<AnalysisSubmission> stage) {
+		if (!pipelineStages) {
+			return stage;
+		}
+
+		return stage.whenComplete((nextSubmission, exception) -> {
+			releaseSubmission(analysisSubmission);
+
+			if (exception == null) {
+				startNextStage(nextSubmission);
+			} else {
+				// the stage has switched the submission to an error state,
+				// freeing up a slot for another submission
+				try {
+					prepareAnalyses();
+				} catch (RuntimeException e) {
+					logger.error("Error preparing analyses after " + analysisSubmission + " failed", e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Start the stage that follows the current state of a submission.
+	 * Submissions that are running are left to the workflow monitor.
+	 * Submissions that have finished free up a slot for a new submission to be
+	 * prepared.
+	 *
+	 * @param analysisSubmission The {@link AnalysisSubmission} to continue.
+	 */
+	private void startNextStage(AnalysisSubmission analysisSubmission) {
+		if (!pipelineStages) {
+			return;
+		}
+
+		Set<Future<AnalysisSubmission>> submissions = Sets.newHashSet();
+
+		try {
+			switch (analysisSubmission.getAnalysisState()) {
+			case PREPARED:
+				executeAnalysis(analysisSubmission, submissions);
+				break;
+			case FINISHED_RUNNING:
+				transferAnalysisResults(analysisSubmission, submissions);
+				break;
+			case TRANSFERRED:
+				postProcessResults(analysisSubmission, submissions);
+				break;
+			case COMPLETED:
+			case ERROR:
+				prepareAnalyses();
+				break;
+			default:
+				break;
+			}
+		} catch (RuntimeException e) {
+			logger.error("Error starting next stage for " + analysisSubmission
+					+ ", leaving it for the periodic task", e);
+		}
+	}
+
 	/**
 	 * Handles checking the status of a workflow in an execution manager.
 	 *
@@ -264,11 +449,14 @@ public class AnalysisExecutionScheduledTaskImpl implements AnalysisExecutionSche
 			analysisSubmission.setAnalysisState(AnalysisState.ERROR);
 			returnedSubmission = new AsyncResult<>(analysisSubmissionRepository.save(analysisSubmission));
 			handleJobErrors(analysisSubmission);
+			startNextStage(analysisSubmission);
 		} else if (workflowStatus.completedSuccessfully()) {
 			logger.debug("Analysis finished " + analysisSubmission);
 
 			analysisSubmission.setAnalysisState(AnalysisState.FINISHED_RUNNING);
-			returnedSubmission = new AsyncResult<>(analysisSubmissionRepository.save(analysisSubmission));
+			AnalysisSubmission finishedSubmission = analysisSubmissionRepository.save(analysisSubmission);
+			returnedSubmission = new AsyncResult<>(finishedSubmission);
+			startNextStage(finishedSubmission);
 		} else if (workflowStatus.isRunning()) {
 			logger.trace("Workflow for analysis " + analysisSubmission + " is running: proportion complete "
 					+ workflowStatus.getProportionComplete());
@@ -280,6 +468,7 @@ public class AnalysisExecutionScheduledTaskImpl implements AnalysisExecutionSche
 			analysisSubmission.setAnalysisState(AnalysisState.ERROR);
 			returnedSubmission = new AsyncResult<>(analysisSubmissionRepository.save(analysisSubmission));
 			handleJobErrors(analysisSubmission);
+			startNextStage(analysisSubmission);
 		}
 
 		return returnedSubmission;
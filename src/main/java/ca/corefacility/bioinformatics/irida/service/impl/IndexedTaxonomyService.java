@@ -0,0 +1,346 @@
+package ca.corefacility.bioinformatics.irida.service.impl;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ca.corefacility.bioinformatics.irida.service.TaxonomyService;
+import ca.corefacility.bioinformatics.irida.util.TreeNode;
+
+import com.google.common.base.Strings;
+
+/**
+ * A {@link TaxonomyService} answering searches from a compact index of the
+ * taxonomy built once when it's loaded.
+ *
+ * Each taxonomy term is stored as its label and the position of its parent
+ * term. Labels are indexed by the lowercase trigrams (three letter
+ * substrings) they contain, so the labels containing a search term are found
+ * by checking only the labels containing its rarest trigram.
+ */
+public class IndexedTaxonomyService implements TaxonomyService {
+	private static final Logger logger = LoggerFactory.getLogger(IndexedTaxonomyService.class);
+
+	private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+	private static final String RDFS_NS = "http://www.w3.org/2000/01/rdf-schema#";
+	private static final String OWL_NS = "http://www.w3.org/2002/07/owl#";
+
+	private static final int GRAM_SIZE = 3;
+	private static final int NO_PARENT = -1;
+
+	private static final String ROOT_IRI = "http://purl.obolibrary.org/obo/NCBITaxon_2";
+
+	// label of each term
+	private final String[] labels;
+	// position of the parent of each term, or NO_PARENT
+	private final int[] parents;
+	// terms that are the root term or one of its descendants
+	private final BitSet searchable;
+
+	// sorted trigrams, and the sorted positions of the terms whose labels
+	// contain each trigram
+	private final long[] grams;
+	private final int[][] postings;
+
+	/**
+	 * Build the index of a taxonomy in OWL (RDF/XML) format.
+	 *
+	 * @param taxonomy
+	 *            the taxonomy to index
+	 * @throws XMLStreamException
+	 *             if the taxonomy can't be read
+	 */
+	public IndexedTaxonomyService(InputStream taxonomy) throws XMLStreamException {
+		List<String> terms = new ArrayList<>();
+		List<String> termLabels = new ArrayList<>();
+		List<String> termParents = new ArrayList<>();
+		readTerms(taxonomy, terms, termLabels, termParents);
+
+		Map<String, Integer> positions = new HashMap<>();
+		for (int i = 0; i < terms.size(); i++) {
+			positions.put(terms.get(i), i);
+		}
+
+		labels = termLabels.toArray(new String[termLabels.size()]);
+		parents = new int[labels.length];
+		for (int i = 0; i < labels.length; i++) {
+			Integer parent = termParents.get(i) == null ? null : positions.get(termParents.get(i));
+			parents[i] = parent == null ? NO_PARENT : parent;
+		}
+
+		searchable = descendantsOf(positions.get(ROOT_IRI));
+
+		// count the labels containing each trigram, then fill in the postings
+		Map<Long, int[]> counts = new HashMap<>();
+		for (String label : labels) {
+			for (long gram : grams(label)) {
+				counts.computeIfAbsent(gram, g -> new int[1])[0]++;
+			}
+		}
+		grams = counts.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+		postings = new int[grams.length][];
+		for (int g = 0; g < grams.length; g++) {
+			postings[g] = new int[counts.get(grams[g])[0]];
+		}
+		int[] filled = new int[grams.length];
+		for (int i = 0; i < labels.length; i++) {
+			for (long gram : grams(labels[i])) {
+				int g = Arrays.binarySearch(grams, gram);
+				postings[g][filled[g]++] = i;
+			}
+		}
+
+		logger.debug("Indexed " + labels.length + " taxonomy terms with " + grams.length + " trigrams.");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Collection<TreeNode<String>> search(String searchTerm) {
+		List<TreeNode<String>> roots = new ArrayList<>();
+		if (Strings.isNullOrEmpty(searchTerm)) {
+			return roots;
+		}
+
+		BitSet matching = matching(searchTerm);
+
+		Map<Integer, TreeNode<String>> visited = new HashMap<>();
+		for (int i = matching.nextSetBit(0); i >= 0; i = matching.nextSetBit(i + 1)) {
+			if (searchable.get(i)) {
+				buildTrimmedResultTree(i, matching, visited, roots);
+			}
+		}
+
+		return roots;
+	}
+
+	/**
+	 * Build a result tree from a matching term. This will look upwards in the
+	 * tree until there are no more matching parent terms.
+	 *
+	 * @param term
+	 *            the position of the term to start from
+	 * @param matching
+	 *            the terms whose labels contain the search term
+	 * @param visited
+	 *            the nodes already built for each term
+	 * @param roots
+	 *            the nodes without a matching parent
+	 * @return the node for the term
+	 */
+	private TreeNode<String> buildTrimmedResultTree(int term, BitSet matching, Map<Integer, TreeNode<String>> visited,
+			List<TreeNode<String>> roots) {
+		TreeNode<String> treeNode = visited.get(term);
+		if (treeNode == null) {
+			treeNode = new TreeNode<>(labels[term]);
+			visited.put(term, treeNode);
+
+			int parent = parents[term];
+			while (parent != NO_PARENT && !matching.get(parent)) {
+				parent = parents[parent];
+			}
+
+			if (parent == NO_PARENT) {
+				roots.add(treeNode);
+			} else {
+				TreeNode<String> parentNode = buildTrimmedResultTree(parent, matching, visited, roots);
+				parentNode.addChild(treeNode);
+				treeNode.setParent(parentNode);
+			}
+		}
+
+		return treeNode;
+	}
+
+	/**
+	 * Find the terms whose labels contain a search term, ignoring case.
+	 *
+	 * @param searchTerm
+	 *            the search term
+	 * @return the positions of the matching terms
+	 */
+	private BitSet matching(String searchTerm) {
+		BitSet matching = new BitSet(labels.length);
+
+		// check only the labels containing the rarest trigram of the term
+		int[] candidates = null;
+		for (long gram : grams(searchTerm)) {
+			int g = Arrays.binarySearch(grams, gram);
+			if (g < 0) {
+				return matching;
+			}
+			if (candidates == null || postings[g].length < candidates.length) {
+				candidates = postings[g];
+			}
+		}
+
+		if (candidates == null) {
+			for (int i = 0; i < labels.length; i++) {
+				if (containsIgnoreCase(labels[i], searchTerm)) {
+					matching.set(i);
+				}
+			}
+		} else {
+			for (int i : candidates) {
+				if (containsIgnoreCase(labels[i], searchTerm)) {
+					matching.set(i);
+				}
+			}
+		}
+
+		return matching;
+	}
+
+	/**
+	 * Find the root term and all of its descendants.
+	 *
+	 * @param root
+	 *            the position of the root term, or null if it isn't in the
+	 *            taxonomy
+	 * @return the positions of the root term and its descendants
+	 */
+	private BitSet descendantsOf(Integer root) {
+		BitSet descendants = new BitSet(labels.length);
+		if (root == null) {
+			logger.warn("The taxonomy doesn't contain " + ROOT_IRI + ", no terms will be found.");
+			return descendants;
+		}
+
+		// terms known not to descend from the root
+		BitSet others = new BitSet(labels.length);
+		descendants.set(root);
+		for (int i = 0; i < labels.length; i++) {
+			// walk up to the first term already known, giving up on cycles
+			int current = i;
+			int steps = 0;
+			while (current != NO_PARENT && !descendants.get(current) && !others.get(current)
+					&& steps++ < labels.length) {
+				current = parents[current];
+			}
+
+			BitSet found = current != NO_PARENT && descendants.get(current) ? descendants : others;
+			for (int j = i; j != NO_PARENT && !found.get(j); j = parents[j]) {
+				found.set(j);
+			}
+		}
+
+		return descendants;
+	}
+
+	/**
+	 * Get the distinct lowercase trigrams of a value, each packed into a long.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the trigrams
+	 */
+	private static long[] grams(String value) {
+		if (value.length() < GRAM_SIZE) {
+			return new long[0];
+		}
+
+		long[] grams = new long[value.length() - GRAM_SIZE + 1];
+		for (int i = 0; i < grams.length; i++) {
+			long gram = 0;
+			for (int j = i; j < i + GRAM_SIZE; j++) {
+				gram = (gram << Character.SIZE) | Character.toLowerCase(value.charAt(j));
+			}
+			grams[i] = gram;
+		}
+		return Arrays.stream(grams).distinct().toArray();
+	}
+
+	/**
+	 * Check whether a label contains a search term, ignoring case.
+	 *
+	 * @param label
+	 *            the label
+	 * @param searchTerm
+	 *            the search term
+	 * @return whether the search term is in the label
+	 */
+	private static boolean containsIgnoreCase(String label, String searchTerm) {
+		for (int i = 0; i + searchTerm.length() <= label.length(); i++) {
+			if (label.regionMatches(true, i, searchTerm, 0, searchTerm.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Read the IRI, label and parent IRI of every class in an OWL (RDF/XML)
+	 * document.
+	 *
+	 * @param taxonomy
+	 *            the OWL document
+	 * @param terms
+	 *            the IRIs of the classes are added to this list
+	 * @param labels
+	 *            the labels of the classes are added to this list
+	 * @param parents
+	 *            the parent IRIs of the classes are added to this list, or
+	 *            null for classes without a parent
+	 * @throws XMLStreamException
+	 *             if the document can't be read
+	 */
+	private static void readTerms(InputStream taxonomy, List<String> terms, List<String> labels,
+			List<String> parents) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		XMLStreamReader reader = factory.createXMLStreamReader(taxonomy);
+
+		try {
+			String term = null;
+			String label = null;
+			String parent = null;
+			int depth = 0;
+
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					depth++;
+					if (depth == 2 && OWL_NS.equals(reader.getNamespaceURI()) && "Class".equals(reader.getLocalName())) {
+						term = reader.getAttributeValue(RDF_NS, "about");
+						label = null;
+						parent = null;
+					} else if (term != null && depth == 3 && RDFS_NS.equals(reader.getNamespaceURI())) {
+						if ("label".equals(reader.getLocalName()) && label == null) {
+							label = reader.getElementText();
+							depth--;
+						} else if ("subClassOf".equals(reader.getLocalName()) && parent == null) {
+							parent = reader.getAttributeValue(RDF_NS, "resource");
+						}
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					if (depth == 2 && term != null) {
+						if (label != null) {
+							terms.add(term);
+							labels.add(label);
+							parents.add(parent);
+						}
+						term = null;
+					}
+					depth--;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+}
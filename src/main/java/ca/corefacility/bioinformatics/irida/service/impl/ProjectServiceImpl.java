@@ -75,6 +75,7 @@ import ca.corefacility.bioinformatics.irida.repositories.sample.SampleRepository
 import ca.corefacility.bioinformatics.irida.repositories.sequencefile.SequencingObjectRepository;
 import ca.corefacility.bioinformatics.irida.repositories.user.UserRepository;
 import ca.corefacility.bioinformatics.irida.service.ProjectService;
+import ca.corefacility.bioinformatics.irida.service.search.SearchIndex;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
@@ -105,6 +106,7 @@ public class ProjectServiceImpl extends CRUDServiceImpl<Long, Project> implement
 	private final ProjectAnalysisSubmissionJoinRepository pasRepository;
 	private final SequencingObjectRepository sequencingObjectRepository;
 	private final ProjectRepository projectRepository;
+	private final SearchIndex searchIndex;
 
 	@Autowired
 	public ProjectServiceImpl(ProjectRepository projectRepository, SampleRepository sampleRepository,
@@ -113,7 +115,7 @@ public class ProjectServiceImpl extends CRUDServiceImpl<Long, Project> implement
 			ReferenceFileRepository referenceFileRepository, ProjectReferenceFileJoinRepository prfjRepository,
 			final UserGroupProjectJoinRepository ugpjRepository, SampleSequencingObjectJoinRepository ssoRepository,
 			ProjectAnalysisSubmissionJoinRepository pasRepository,
-			SequencingObjectRepository sequencingObjectRepository, Validator validator) {
+			SequencingObjectRepository sequencingObjectRepository, SearchIndex searchIndex, Validator validator) {
 		super(projectRepository, validator, Project.class);
 		this.projectRepository = projectRepository;
 		this.sampleRepository = sampleRepository;
@@ -127,6 +129,7 @@ public class ProjectServiceImpl extends CRUDServiceImpl<Long, Project> implement
 		this.ssoRepository = ssoRepository;
 		this.pasRepository = pasRepository;
 		this.sequencingObjectRepository = sequencingObjectRepository;
+		this.searchIndex = searchIndex;
 	}
 
 	/**
@@ -139,6 +142,17 @@ public class ProjectServiceImpl extends CRUDServiceImpl<Long, Project> implement
 		return super.readMultiple(idents);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@PreAuthorize("hasRole('ROLE_USER')")
+	@PostFilter("hasPermission(filterObject, 'canReadProject')")
+	public List<Project> getReadableProjects(Iterable<Long> projectIds) {
+		return Lists.newArrayList(super.readMultiple(projectIds));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -647,6 +661,13 @@ public class ProjectServiceImpl extends CRUDServiceImpl<Long, Project> implement
 		final UserDetails loggedInDetails = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
 		final User loggedIn = userRepository.loadUserByUsername(loggedInDetails.getUsername());
 		final PageRequest pr = new PageRequest(page, count, getOrDefaultSort(sort));
+
+		Optional<Page<Long>> found = searchIndex.searchProjects(projectRepository.getProjectIdsForUser(loggedIn),
+				search, pr);
+		if (found.isPresent()) {
+			return SearchIndex.load(found.get(), projectRepository::findAll);
+		}
+
 		return projectRepository.findAll(searchForProjects(search, null, null, loggedIn), pr);
 	}
 	
@@ -657,6 +678,12 @@ public class ProjectServiceImpl extends CRUDServiceImpl<Long, Project> implement
 	@PreAuthorize("hasRole('ROLE_ADMIN')")
 	public Page<Project> findAllProjects(String searchValue, int currentPage, int length, Sort sort) {
 		final PageRequest pr = new PageRequest(currentPage, length, sort);
+
+		Optional<Page<Long>> found = searchIndex.searchProjects(null, searchValue, pr);
+		if (found.isPresent()) {
+			return SearchIndex.load(found.get(), projectRepository::findAll);
+		}
+
 		return projectRepository.findAll(searchForProjects(searchValue, null, null, null), pr);
 	}
 
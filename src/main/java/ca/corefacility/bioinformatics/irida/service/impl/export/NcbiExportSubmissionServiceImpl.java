@@ -1,5 +1,7 @@
 package ca.corefacility.bioinformatics.irida.service.impl.export;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
@@ -112,4 +114,32 @@ public class NcbiExportSubmissionServiceImpl extends CRUDServiceImpl<Long, NcbiE
 		return super.update(object);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@PreAuthorize("hasRole('ROLE_ADMIN')")
+	public boolean claimUpload(NcbiExportSubmission submission, Date expiry) {
+		Date heartbeat = new Date();
+		int claimed;
+		if (submission.getUploadState() == ExportUploadState.UPLOADING) {
+			claimed = repository.claimExpiredUpload(submission.getId(), ExportUploadState.UPLOADING, heartbeat,
+					expiry);
+		} else {
+			claimed = repository.claimUpload(submission.getId(), submission.getUploadState(),
+					ExportUploadState.UPLOADING, heartbeat);
+		}
+
+		return claimed > 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@PreAuthorize("hasRole('ROLE_ADMIN')")
+	public void updateUploadHeartbeat(Collection<Long> ids) {
+		repository.updateUploadHeartbeat(ids, ExportUploadState.UPLOADING, new Date());
+	}
+
 }
@@ -24,6 +24,9 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
 import ca.corefacility.bioinformatics.irida.exceptions.EntityNotFoundException;
 import ca.corefacility.bioinformatics.irida.exceptions.InvalidPropertyException;
 import ca.corefacility.bioinformatics.irida.exceptions.SequenceFileAnalysisException;
@@ -44,6 +47,7 @@ import ca.corefacility.bioinformatics.irida.model.user.group.UserGroup;
 import ca.corefacility.bioinformatics.irida.model.user.group.UserGroupProjectJoin;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisFastQC;
 import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission;
+import ca.corefacility.bioinformatics.irida.repositories.ProjectRepository;
 import ca.corefacility.bioinformatics.irida.repositories.analysis.AnalysisRepository;
 import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectSampleJoinRepository;
 import ca.corefacility.bioinformatics.irida.repositories.joins.sample.SampleGenomeAssemblyJoinRepository;
@@ -56,6 +60,7 @@ import ca.corefacility.bioinformatics.irida.repositories.specification.ProjectSa
 import ca.corefacility.bioinformatics.irida.repositories.user.UserRepository;
 import ca.corefacility.bioinformatics.irida.service.impl.CRUDServiceImpl;
 import ca.corefacility.bioinformatics.irida.service.sample.SampleService;
+import ca.corefacility.bioinformatics.irida.service.search.SearchIndex;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -69,6 +74,11 @@ public class SampleServiceImpl extends CRUDServiceImpl<Long, Sample> implements
 
 	private static final Logger logger = LoggerFactory.getLogger(SampleServiceImpl.class);
 
+	/**
+	 * The most sample ids to put in the IN clause of a single query.
+	 */
+	private static final int SAMPLE_ID_BATCH_SIZE = 1000;
+
 	/**
 	 * Reference to {@link SampleRepository} for managing {@link Sample}.
 	 */
@@ -94,6 +104,10 @@ public class SampleServiceImpl extends CRUDServiceImpl<Long, Sample> implements
 
 	private final UserRepository userRepository;
 
+	private final ProjectRepository projectRepository;
+
+	private final SearchIndex searchIndex;
+
 	/**
 	 * Constructor.
 	 *
@@ -105,13 +119,16 @@ public class SampleServiceImpl extends CRUDServiceImpl<Long, Sample> implements
 	 * @param qcEntryRepository                  a repository for storing and reading {@link QCEntry}
 	 * @param sampleGenomeAssemblyJoinRepository A {@link SampleGenomeAssemblyJoinRepository}
 	 * @param userRepository                     A {@link UserRepository}
+	 * @param projectRepository                  A {@link ProjectRepository}
+	 * @param searchIndex                        the {@link SearchIndex} used to search for samples
 	 * @param validator                          validator.
 	 */
 	@Autowired
 	public SampleServiceImpl(SampleRepository sampleRepository, ProjectSampleJoinRepository psjRepository,
 			final AnalysisRepository analysisRepository, SampleSequencingObjectJoinRepository ssoRepository,
 			QCEntryRepository qcEntryRepository, SequencingObjectRepository sequencingObjectRepository,
-			SampleGenomeAssemblyJoinRepository sampleGenomeAssemblyJoinRepository, UserRepository userRepository, Validator validator) {
+			SampleGenomeAssemblyJoinRepository sampleGenomeAssemblyJoinRepository, UserRepository userRepository,
+			ProjectRepository projectRepository, SearchIndex searchIndex, Validator validator) {
 		super(sampleRepository, validator, Sample.class);
 		this.sampleRepository = sampleRepository;
 		this.psjRepository = psjRepository;
@@ -121,6 +138,8 @@ public class SampleServiceImpl extends CRUDServiceImpl<Long, Sample> implements
 		this.sequencingObjectRepository = sequencingObjectRepository;
 		this.userRepository = userRepository;
 		this.sampleGenomeAssemblyJoinRepository = sampleGenomeAssemblyJoinRepository;
+		this.projectRepository = projectRepository;
+		this.searchIndex = searchIndex;
 	}
 
 	/**
@@ -133,6 +152,17 @@ public class SampleServiceImpl extends CRUDServiceImpl<Long, Sample> implements
 		return super.readMultiple(idents);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@PreAuthorize("hasRole('ROLE_USER')")
+	@PostFilter("hasPermission(filterObject, 'canReadSample')")
+	public List<Sample> getReadableSamples(Iterable<Long> sampleIds) {
+		return Lists.newArrayList(super.readMultiple(sampleIds));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -250,6 +280,26 @@ public class SampleServiceImpl extends CRUDServiceImpl<Long, Sample> implements
 		return samplesForProjectShallow;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Transactional(readOnly = true)
+	@PreAuthorize("hasRole('ROLE_ADMIN') or hasPermission(#project, 'canReadProject')")
+	@Override
+	public List<Sample> getSamplesForProjectShallowChangedSince(Project project, Date since) {
+		return sampleRepository.getSamplesForProjectShallowChangedSince(project, since);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Transactional(readOnly = true)
+	@PreAuthorize("hasRole('ROLE_ADMIN') or hasPermission(#project, 'canReadProject')")
+	@Override
+	public List<Long> getSampleIdsRemovedFromProjectSince(Project project, Date since) {
+		return sampleRepository.getSampleIdsRemovedFromProjectSince(project, since);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -385,6 +435,42 @@ public class SampleServiceImpl extends CRUDServiceImpl<Long, Sample> implements
 		return totalBases;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	@PreAuthorize("hasRole('ROLE_ADMIN') or hasPermission(#samples, 'canReadSample')")
+	public Map<Long, Long> getTotalBasesForSamples(Collection<Sample> samples) {
+		checkNotNull(samples, "samples is null");
+
+		final Map<Long, Long> totalBases = new HashMap<>();
+		final Set<Long> missingFastQC = new HashSet<>();
+
+		for (List<Long> batch : Iterables.partition(sampleIds(samples), SAMPLE_ID_BATCH_SIZE)) {
+			batch.forEach(id -> totalBases.put(id, 0L));
+
+			final List<Object[]> counts = new ArrayList<>(ssoRepository.countSingleEndBasesForSamples(batch));
+			counts.addAll(ssoRepository.countPairedBasesForSamples(batch));
+			for (Object[] count : counts) {
+				final Long sampleId = (Long) count[0];
+				final long files = (Long) count[1];
+				final long filesWithBases = (Long) count[2];
+				final Long bases = (Long) count[3];
+
+				if (files != filesWithBases) {
+					logger.trace("Missing FastQC analysis for a SequenceFile in Sample [" + sampleId + "]");
+					missingFastQC.add(sampleId);
+				} else if (bases != null) {
+					totalBases.merge(sampleId, bases, Long::sum);
+				}
+			}
+		}
+
+		totalBases.keySet().removeAll(missingFastQC);
+		return totalBases;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -442,9 +528,18 @@ public class SampleServiceImpl extends CRUDServiceImpl<Long, Sample> implements
 	@PreAuthorize("hasAnyRole('ROLE_ADMIN') or hasPermission(#projects, 'canReadProject')")
 	public Page<ProjectSampleJoin> getFilteredSamplesForProjects(List<Project> projects, List<String> sampleNames, String sampleName, String searchTerm,
 			String organism, Date minDate, Date maxDate, int currentPage, int pageSize, Sort sort) {
+		final PageRequest pr = new PageRequest(currentPage, pageSize, sort);
+		final List<Long> projectIds = projects.stream().map(Project::getId).collect(Collectors.toList());
+
+		Optional<Page<Long>> found = searchIndex.searchSamples(projectIds, null, sampleNames, sampleName, searchTerm,
+				organism, minDate, maxDate, pr);
+		if (found.isPresent()) {
+			return SearchIndex.load(found.get(), psjRepository::findAll);
+		}
+
 		return psjRepository
 				.findAll(ProjectSampleSpecification.getSamples(projects, sampleNames, sampleName, searchTerm, organism, minDate, maxDate),
-						new PageRequest(currentPage, pageSize, sort));
+						pr);
 	}
 
 	/**
@@ -472,6 +567,36 @@ public class SampleServiceImpl extends CRUDServiceImpl<Long, Sample> implements
 		return qcEntryRepository.getQCEntriesForSample(sample);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Transactional(readOnly = true)
+	@Override
+	@PreAuthorize("hasRole('ROLE_ADMIN') or hasPermission(#samples, 'canReadSample')")
+	public Map<Long, List<QCEntry>> getQCEntriesForSamples(Collection<Sample> samples) {
+		checkNotNull(samples, "samples is null");
+
+		final Map<Long, List<QCEntry>> qcEntries = new HashMap<>();
+		for (List<Long> batch : Iterables.partition(sampleIds(samples), SAMPLE_ID_BATCH_SIZE)) {
+			for (Object[] entry : qcEntryRepository.getQCEntriesForSamples(batch)) {
+				qcEntries.computeIfAbsent((Long) entry[0], k -> new ArrayList<>()).add((QCEntry) entry[1]);
+			}
+		}
+
+		return qcEntries;
+	}
+
+	/**
+	 * Get the distinct ids of a collection of {@link Sample}s
+	 *
+	 * @param samples
+	 *            the {@link Sample}s to get ids for
+	 * @return the ids of the {@link Sample}s
+	 */
+	private static Set<Long> sampleIds(Collection<Sample> samples) {
+		return samples.stream().map(Sample::getId).collect(Collectors.toCollection(LinkedHashSet::new));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -494,6 +619,12 @@ public class SampleServiceImpl extends CRUDServiceImpl<Long, Sample> implements
 
 		final PageRequest pr = new PageRequest(page, count, sort);
 
+		Optional<Page<Long>> found = searchIndex.searchSamples(projectRepository.getProjectIdsForUser(loggedIn),
+				query, null, null, null, null, null, null, pr);
+		if (found.isPresent()) {
+			return SearchIndex.load(found.get(), psjRepository::findAll);
+		}
+
 		return psjRepository.findAll(sampleForUserSpecification(loggedIn, query), pr);
 	}
 
@@ -506,6 +637,11 @@ public class SampleServiceImpl extends CRUDServiceImpl<Long, Sample> implements
 			final Sort sort) {
 		final PageRequest pr = new PageRequest(page, count, sort);
 
+		Optional<Page<Long>> found = searchIndex.searchSamples(null, query, null, null, null, null, null, null, pr);
+		if (found.isPresent()) {
+			return SearchIndex.load(found.get(), psjRepository::findAll);
+		}
+
 		return psjRepository.findAll(sampleForUserSpecification(null, query), pr);
 	}
 
@@ -39,6 +39,7 @@ import ca.corefacility.bioinformatics.irida.repositories.joins.project.UserGroup
 import ca.corefacility.bioinformatics.irida.repositories.user.UserGroupJoinRepository;
 import ca.corefacility.bioinformatics.irida.repositories.user.UserGroupRepository;
 import ca.corefacility.bioinformatics.irida.repositories.user.UserRepository;
+import ca.corefacility.bioinformatics.irida.security.permissions.project.ProjectRoleCache;
 import ca.corefacility.bioinformatics.irida.service.impl.CRUDServiceImpl;
 import ca.corefacility.bioinformatics.irida.service.user.UserGroupService;
 
@@ -53,6 +54,7 @@ public class UserGroupServiceImpl extends CRUDServiceImpl<Long, UserGroup> imple
 	private final UserRepository userRepository;
 	private final UserGroupProjectJoinRepository userGroupProjectJoinRepository;
 	private final UserGroupRepository userGroupRepository;
+	private final ProjectRoleCache projectRoleCache;
 
 	/**
 	 * Create a new {@link UserGroupServiceImpl}.
@@ -67,16 +69,21 @@ public class UserGroupServiceImpl extends CRUDServiceImpl<Long, UserGroup> imple
 	 *            The {@link UserGroupProjectJoinRepository}
 	 * @param validator
 	 *            the {@link Validator}
+	 * @param projectRoleCache
+	 *            the {@link ProjectRoleCache} to clear when group membership
+	 *            changes
 	 */
 	@Autowired
 	public UserGroupServiceImpl(final UserGroupRepository userGroupRepository,
 			final UserGroupJoinRepository userGroupJoinRepository, final UserRepository userRepository,
-			final UserGroupProjectJoinRepository userGroupProjectJoinRepository, final Validator validator) {
+			final UserGroupProjectJoinRepository userGroupProjectJoinRepository, final Validator validator,
+			final ProjectRoleCache projectRoleCache) {
 		super(userGroupRepository, validator, UserGroup.class);
 		this.userGroupRepository = userGroupRepository;
 		this.userGroupJoinRepository = userGroupJoinRepository;
 		this.userRepository = userRepository;
 		this.userGroupProjectJoinRepository = userGroupProjectJoinRepository;
+		this.projectRoleCache = projectRoleCache;
 	}
 
 	/**
@@ -118,6 +125,7 @@ public class UserGroupServiceImpl extends CRUDServiceImpl<Long, UserGroup> imple
 	@PreAuthorize("hasRole('ROLE_ADMIN') or hasPermission(#id, 'canUpdateUserGroup')")
 	public void delete(Long id) throws EntityNotFoundException {
 		super.delete(id);
+		projectRoleCache.invalidateAll();
 	}
 
 	/**
@@ -221,7 +229,9 @@ public class UserGroupServiceImpl extends CRUDServiceImpl<Long, UserGroup> imple
 	public UserGroupJoin addUserToGroup(final User user, final UserGroup userGroup, final UserGroupRole role) {
 		final UserGroupJoin join = new UserGroupJoin(user, userGroup, role);
 
-		return userGroupJoinRepository.save(join);
+		final UserGroupJoin saved = userGroupJoinRepository.save(join);
+		projectRoleCache.invalidateUser(user);
+		return saved;
 	}
 
 	/**
@@ -256,6 +266,7 @@ public class UserGroupServiceImpl extends CRUDServiceImpl<Long, UserGroup> imple
 		}
 
 		userGroupJoinRepository.delete(join);
+		projectRoleCache.invalidateUser(user);
 	}
 
 	/**
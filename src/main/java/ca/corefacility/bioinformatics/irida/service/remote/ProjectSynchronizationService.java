@@ -10,6 +10,7 @@ import ca.corefacility.bioinformatics.irida.model.project.ProjectSyncFrequency;
 import ca.corefacility.bioinformatics.irida.model.remote.RemoteStatus;
 import ca.corefacility.bioinformatics.irida.model.remote.RemoteStatus.SyncStatus;
 import ca.corefacility.bioinformatics.irida.model.remote.RemoteSynchronizable;
+import ca.corefacility.bioinformatics.irida.model.remote.resource.ResourceList;
 import ca.corefacility.bioinformatics.irida.model.sample.MetadataTemplateField;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
 import ca.corefacility.bioinformatics.irida.model.sample.SampleSequencingObjectJoin;
@@ -28,13 +29,25 @@ import org.apache.commons.lang3.time.DateUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import com.google.common.collect.Lists;
+
 /**
  * Service class to run a project synchornization task. Ths class will be
  * responsible for communicating with Remote IRIDA installations and pulling
@@ -55,11 +68,63 @@ public class ProjectSynchronizationService {
 	private SequenceFilePairRemoteService pairRemoteService;
 	private RemoteAPITokenService tokenService;
 
+	// runs the synchronization of each project
+	private Executor projectExecutor;
+	// runs the metadata, file listing and file mirroring stages for samples
+	private Executor stageExecutor;
+
+	private RemoteAPILimits metadataLimits;
+	private RemoteAPILimits listingLimits;
+	private RemoteAPILimits mirroringLimits;
+
+	// projects that have been handed to the project executor
+	private final Set<Long> projectsInProgress = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Create a new {@link ProjectSynchronizationService}
+	 * 
+	 * @param projectService
+	 *            the local project service
+	 * @param sampleService
+	 *            the local sample service
+	 * @param objectService
+	 *            the local sequencing object service
+	 * @param metadataTemplateService
+	 *            the local metadata template service
+	 * @param projectRemoteService
+	 *            service for reading remote projects
+	 * @param sampleRemoteService
+	 *            service for reading remote samples
+	 * @param singleEndRemoteService
+	 *            service for reading remote single end files
+	 * @param pairRemoteService
+	 *            service for reading remote pairs
+	 * @param tokenService
+	 *            service for refreshing OAuth2 tokens
+	 * @param projectExecutor
+	 *            executor to synchronize projects on. Its thread count is the
+	 *            number of projects synchronized at the same time.
+	 * @param stageExecutor
+	 *            executor to run the per-sample stages on
+	 * @param metadataConcurrency
+	 *            the number of samples per remote API to read at the same time
+	 * @param listingConcurrency
+	 *            the number of samples per remote API to list files for at the
+	 *            same time
+	 * @param mirroringConcurrency
+	 *            the number of sequencing objects per remote API to mirror at
+	 *            the same time
+	 */
 	@Autowired
 	public ProjectSynchronizationService(ProjectService projectService, SampleService sampleService,
 			SequencingObjectService objectService, MetadataTemplateService metadataTemplateService, ProjectRemoteService projectRemoteService,
 			SampleRemoteService sampleRemoteService, SingleEndSequenceFileRemoteService singleEndRemoteService,
-			SequenceFilePairRemoteService pairRemoteService, RemoteAPITokenService tokenService) {
+			SequenceFilePairRemoteService pairRemoteService, RemoteAPITokenService tokenService,
+			@Qualifier("projectSyncExecutor") Executor projectExecutor,
+			@Qualifier("projectSyncStageExecutor") Executor stageExecutor,
+			@Value("${project.sync.api.metadata.concurrency:4}") int metadataConcurrency,
+			@Value("${project.sync.api.listing.concurrency:4}") int listingConcurrency,
+			@Value("${project.sync.api.mirroring.concurrency:2}") int mirroringConcurrency) {
 
 		this.projectService = projectService;
 		this.sampleService = sampleService;
@@ -70,6 +135,11 @@ public class ProjectSynchronizationService {
 		this.singleEndRemoteService = singleEndRemoteService;
 		this.pairRemoteService = pairRemoteService;
 		this.tokenService = tokenService;
+		this.projectExecutor = projectExecutor;
+		this.stageExecutor = stageExecutor;
+		this.metadataLimits = new RemoteAPILimits(metadataConcurrency);
+		this.listingLimits = new RemoteAPILimits(listingConcurrency);
+		this.mirroringLimits = new RemoteAPILimits(mirroringConcurrency);
 	}
 
 	/**
@@ -116,9 +186,11 @@ public class ProjectSynchronizationService {
 
 	/**
 	 * Find projects which should be synchronized and launch a synchornization
-	 * task.
+	 * task for each of them. Projects are synchronized in parallel on the
+	 * project executor; projects that are still being synchronized from an
+	 * earlier check are skipped.
 	 */
-	public synchronized void findMarkedProjectsToSync() {
+	public void findMarkedProjectsToSync() {
 		// mark any projects which should be synched first
 		findProjectsToMark();
 
@@ -127,41 +199,66 @@ public class ProjectSynchronizationService {
 		logger.trace("Checking for projects to sync");
 
 		for (Project project : markedProjects) {
-			/*
-			 * Set the correct authorization for the user who's syncing the
-			 * project
-			 */
-			User readBy = project.getRemoteStatus().getReadBy();
-			setAuthentication(readBy);
-
-			logger.trace("Syncing project at " + project.getRemoteStatus().getURL());
+			if (!projectsInProgress.add(project.getId())) {
+				logger.trace("Project " + project.getRemoteStatus().getURL() + " is already being synchronized");
+				continue;
+			}
 
 			try {
-				RemoteAPI api = project.getRemoteStatus().getApi();
-				tokenService.updateTokenFromRefreshToken(api);
-
-				syncProject(project);
-			} catch (IridaOAuthException e) {
-				logger.trace("Can't sync project " + project.getRemoteStatus().getURL() + " due to oauth error:", e);
-				//re-reading project to get updated version
-				project = projectService.read(project.getId());
-				project.getRemoteStatus().setSyncStatus(SyncStatus.UNAUTHORIZED);
-				projectService.update(project);
-			} catch (Exception e) {
-				logger.debug("An error occurred while synchronizing project " + project.getRemoteStatus().getURL(), e);
-				//re-reading project to get updated version
-				project = projectService.read(project.getId());
-				project.getRemoteStatus().setSyncStatus(SyncStatus.ERROR);
-				projectService.update(project);
-			} finally {
-				// clear the context holder when you're done
-				SecurityContextHolder.clearContext();
-
-				logger.trace("Done project " + project.getRemoteStatus().getURL());
+				projectExecutor.execute(() -> {
+					try {
+						syncMarkedProject(project);
+					} finally {
+						projectsInProgress.remove(project.getId());
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				projectsInProgress.remove(project.getId());
+				logger.debug("Could not start synchronizing project " + project.getRemoteStatus().getURL(), e);
 			}
-
 		}
+	}
+
+	/**
+	 * Synchronize a project marked for synchronization as the user who added
+	 * the project, recording any error in the project's sync status.
+	 * 
+	 * @param project
+	 *            the {@link Project} to synchronize
+	 */
+	private void syncMarkedProject(Project project) {
+		/*
+		 * Set the correct authorization for the user who's syncing the
+		 * project
+		 */
+		User readBy = project.getRemoteStatus().getReadBy();
+		setAuthentication(readBy);
 
+		logger.trace("Syncing project at " + project.getRemoteStatus().getURL());
+
+		try {
+			RemoteAPI api = project.getRemoteStatus().getApi();
+			tokenService.updateTokenFromRefreshToken(api);
+
+			syncProject(project);
+		} catch (IridaOAuthException e) {
+			logger.trace("Can't sync project " + project.getRemoteStatus().getURL() + " due to oauth error:", e);
+			//re-reading project to get updated version
+			project = projectService.read(project.getId());
+			project.getRemoteStatus().setSyncStatus(SyncStatus.UNAUTHORIZED);
+			projectService.update(project);
+		} catch (Exception e) {
+			logger.debug("An error occurred while synchronizing project " + project.getRemoteStatus().getURL(), e);
+			//re-reading project to get updated version
+			project = projectService.read(project.getId());
+			project.getRemoteStatus().setSyncStatus(SyncStatus.ERROR);
+			projectService.update(project);
+		} finally {
+			// clear the context holder when you're done
+			SecurityContextHolder.clearContext();
+
+			logger.trace("Done project " + project.getRemoteStatus().getURL());
+		}
 	}
 
 	/**
@@ -212,21 +309,34 @@ public class ProjectSynchronizationService {
 			}
 		});
 
-		//read the remote samples from the remote API
-		List<Sample> readSamplesForProject = sampleRemoteService.getSamplesForProject(readProject);
+		// read the samples that changed since the last sync from the remote API
+		String changeToken = project.getRemoteStatus().getChangeToken();
+		ResourceList<Sample> sampleChanges = sampleRemoteService.getSampleChangesForProject(readProject, changeToken);
+		List<Sample> readSamplesForProject = sampleChanges.getResources();
 
-		//get a list of all remote URLs in the project
-		Set<String> remoteUrls = readSamplesForProject.stream()
-				.map(s -> s.getRemoteStatus()
-						.getURL())
-				.collect(Collectors.toSet());
+		Set<String> localUrls;
+		if (changeToken != null && sampleChanges.getChangeToken() != null) {
+			logger.trace("Read " + readSamplesForProject.size() + " changed samples for project " + projectURL);
 
-		// Check for local samples which no longer exist by URL
-		Set<String> localUrls = new HashSet<>(samplesByUrl.keySet());
-		//remove any URL from the local list that we've seen remotely
-		remoteUrls.forEach(s -> {
-			localUrls.remove(s);
-		});
+			// only the samples removed since the last sync need to be removed
+			localUrls = new HashSet<>();
+			if (sampleChanges.getRemoved() != null) {
+				sampleChanges.getRemoved().stream().filter(samplesByUrl::containsKey).forEach(localUrls::add);
+			}
+		} else {
+			//get a list of all remote URLs in the project
+			Set<String> remoteUrls = readSamplesForProject.stream()
+					.map(s -> s.getRemoteStatus()
+							.getURL())
+					.collect(Collectors.toSet());
+
+			// Check for local samples which no longer exist by URL
+			localUrls = new HashSet<>(samplesByUrl.keySet());
+			//remove any URL from the local list that we've seen remotely
+			remoteUrls.forEach(s -> {
+				localUrls.remove(s);
+			});
+		}
 
 		// if any URLs still exist in localUrls, it must have been deleted remotely
 		for (String localUrl : localUrls) {
@@ -236,13 +346,27 @@ public class ProjectSynchronizationService {
 			samplesByUrl.remove(localUrl);
 		}
 
-		List<ProjectSynchronizationException> syncExceptions = new ArrayList<>();
-		for (Sample s : readSamplesForProject) {
-			s.setId(null);
-			s = syncSampleMetadata(s);
-			List<ProjectSynchronizationException> syncExceptionsSample = syncSample(s, project, samplesByUrl);
+		// run the stages for each sample on the stage executor as the user
+		// syncing the project
+		Executor executor = new DelegatingSecurityContextExecutor(stageExecutor, SecurityContextHolder.getContext());
+		RemoteAPI api = project.getRemoteStatus().getApi();
 
-			syncExceptions.addAll(syncExceptionsSample);
+		final Project localProject = project;
+		List<CompletableFuture<List<ProjectSynchronizationException>>> sampleSyncs = readSamplesForProject.stream()
+				.map(s -> syncSampleStages(s, localProject, samplesByUrl, api, executor))
+				.collect(Collectors.toList());
+
+		List<ProjectSynchronizationException> syncExceptions = new ArrayList<>();
+		for (CompletableFuture<List<ProjectSynchronizationException>> sampleSync : sampleSyncs) {
+			try {
+				syncExceptions.addAll(sampleSync.join());
+			} catch (CompletionException e) {
+				// the token went bad part way through the project
+				if (e.getCause() instanceof IridaOAuthException) {
+					throw (IridaOAuthException) e.getCause();
+				}
+				throw e;
+			}
 		}
 
 		// re-read project to ensure any updates are reflected
@@ -251,8 +375,11 @@ public class ProjectSynchronizationService {
 
 		if (syncExceptions.isEmpty()) {
 			project.getRemoteStatus().setSyncStatus(SyncStatus.SYNCHRONIZED);
+			project.getRemoteStatus().setChangeToken(sampleChanges.getChangeToken());
 		} else {
+			// keep the old token so the failed samples are read again
 			project.getRemoteStatus().setSyncStatus(SyncStatus.ERROR);
+			project.getRemoteStatus().setChangeToken(changeToken);
 
 			logger.error("Error syncing project " + project.getId() + " setting sync status to ERROR");
 		}
@@ -260,6 +387,69 @@ public class ProjectSynchronizationService {
 		projectService.update(project);
 	}
 
+	/**
+	 * Run the synchronization stages for a {@link Sample} on the given
+	 * executor. The sample's metadata is read and the local sample created or
+	 * updated, then its files are listed, then each new sequencing object is
+	 * mirrored. Each stage is limited to a number of concurrent requests to
+	 * the remote API.
+	 *
+	 * @param sample          the {@link Sample} to synchronize. This should have been read
+	 *                        from a remote api.
+	 * @param project         The {@link Project} the {@link Sample} belongs in.
+	 * @param existingSamples A map of samples that have already been synchronized.
+	 * @param api             the {@link RemoteAPI} the sample is read from
+	 * @param executor        the executor to run the stages on
+	 * @return a future list of {@link ProjectSynchronizationException}s, empty if no errors.
+	 */
+	private CompletableFuture<List<ProjectSynchronizationException>> syncSampleStages(Sample sample, Project project,
+			Map<String, Sample> existingSamples, RemoteAPI api, Executor executor) {
+		String sampleURL = sample.getRemoteStatus().getURL();
+
+		CompletableFuture<Sample> localSampleStage = CompletableFuture.supplyAsync(() -> metadataLimits.run(api, () -> {
+			// an unchanged sample has unchanged metadata, so don't read it.
+			// This has to be checked before the sample is modified.
+			Sample existing = existingSamples.get(sampleURL);
+			if (existing == null || checkForChanges(existing.getRemoteStatus(), sample)) {
+				sample.setId(null);
+				syncSampleMetadata(sample);
+			}
+
+			return syncSampleDetails(sample, project, existingSamples);
+		}), executor);
+
+		CompletableFuture<List<SequencingObject>> listingStage = localSampleStage.thenApplyAsync(
+				localSample -> listingLimits.run(api, () -> getSequencingObjectsToSync(sample, localSample)), executor);
+
+		CompletableFuture<List<ProjectSynchronizationException>> mirroringStage = listingStage
+				.thenCompose(objects -> {
+					Sample localSample = localSampleStage.join();
+					List<CompletableFuture<ProjectSynchronizationException>> mirrors = objects.stream()
+							.map(o -> CompletableFuture.supplyAsync(
+									() -> mirroringLimits.run(api, () -> syncSequencingObject(o, localSample)),
+									executor))
+							.collect(Collectors.toList());
+
+					return CompletableFuture.allOf(mirrors.toArray(new CompletableFuture<?>[mirrors.size()]))
+							.thenApplyAsync(v -> {
+								List<ProjectSynchronizationException> errors = mirrors.stream()
+										.map(CompletableFuture::join).filter(Objects::nonNull)
+										.collect(Collectors.toList());
+								return finishSampleSync(localSample, errors);
+							}, executor);
+				});
+
+		return mirroringStage.exceptionally(e -> {
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			if (cause instanceof IridaOAuthException) {
+				throw (IridaOAuthException) cause;
+			}
+			logger.error("Error synchronizing sample " + sampleURL, cause);
+			return Lists.newArrayList(
+					new ProjectSynchronizationException("Could not synchronize sample " + sampleURL, cause));
+		});
+	}
+
 	/**
 	 * Synchronize a given {@link Sample} to the local installation.
 	 *
@@ -270,6 +460,28 @@ public class ProjectSynchronizationService {
 	 * @return A list of {@link ProjectSynchronizationException}s, empty if no errors.
 	 */
 	public List<ProjectSynchronizationException> syncSample(Sample sample, Project project, Map<String, Sample> existingSamples) {
+		Sample localSample = syncSampleDetails(sample, project, existingSamples);
+
+		List<ProjectSynchronizationException> syncErrors = new ArrayList<>();
+		for (SequencingObject object : getSequencingObjectsToSync(sample, localSample)) {
+			ProjectSynchronizationException error = syncSequencingObject(object, localSample);
+			if (error != null) {
+				syncErrors.add(error);
+			}
+		}
+
+		return finishSampleSync(localSample, syncErrors);
+	}
+
+	/**
+	 * Create or update the local copy of a {@link Sample}.
+	 *
+	 * @param sample          the {@link Sample} read from a remote api.
+	 * @param project         The {@link Project} the {@link Sample} belongs in.
+	 * @param existingSamples A map of samples that have already been synchronized.  These will be checked to see if they've been updated
+	 * @return the local {@link Sample}
+	 */
+	private Sample syncSampleDetails(Sample sample, Project project, Map<String, Sample> existingSamples) {
 		Sample localSample;
 
 		if (existingSamples.containsKey(sample.getRemoteStatus().getURL())) {
@@ -294,6 +506,18 @@ public class ProjectSynchronizationService {
 			projectService.addSampleToProject(project, sample, true);
 		}
 
+		return localSample;
+	}
+
+	/**
+	 * List the remote sequencing objects of a {@link Sample} that haven't been
+	 * synchronized to the local sample yet.
+	 *
+	 * @param sample      the {@link Sample} read from a remote api
+	 * @param localSample the local copy of the {@link Sample}
+	 * @return the remote {@link SequencingObject}s to synchronize
+	 */
+	private List<SequencingObject> getSequencingObjectsToSync(Sample sample, Sample localSample) {
 		// get the local files and organize by their url
 		
 		Collection<SampleSequencingObjectJoin> localObjects = objectService.getSequencingObjectsForSample(localSample);
@@ -311,18 +535,14 @@ public class ProjectSynchronizationService {
 			}
 		});
 
+		List<SequencingObject> objectsToSync = new ArrayList<>();
+
 		List<SequenceFilePair> sequenceFilePairsForSample = pairRemoteService.getSequenceFilePairsForSample(sample);
-		
-		List<ProjectSynchronizationException> syncErrors = new ArrayList<>();
 
 		for (SequenceFilePair pair : sequenceFilePairsForSample) {
 			if (!objectsByUrl.containsKey(pair.getRemoteStatus().getURL())) {
 				pair.setId(null);
-				try {
-					syncSequenceFilePair(pair, localSample);
-				} catch (ProjectSynchronizationException e) {
-					syncErrors.add(e);
-				}
+				objectsToSync.add(pair);
 			}
 		}
 
@@ -331,14 +551,44 @@ public class ProjectSynchronizationService {
 		for (SingleEndSequenceFile file : unpairedFilesForSample) {
 			if (!objectsByUrl.containsKey(file.getRemoteStatus().getURL())) {
 				file.setId(null);
-				try {
-					syncSingleEndSequenceFile(file, localSample);
-				} catch (ProjectSynchronizationException e) {
-					syncErrors.add(e);
-				}
+				objectsToSync.add(file);
 			}
 		}
 
+		return objectsToSync;
+	}
+
+	/**
+	 * Mirror a remote {@link SequencingObject} into a local {@link Sample}.
+	 *
+	 * @param object the {@link SequencingObject} read from a remote api
+	 * @param sample the local {@link Sample} to add the object to
+	 * @return the {@link ProjectSynchronizationException} if the object couldn't
+	 * be synchronized, null if it was
+	 */
+	private ProjectSynchronizationException syncSequencingObject(SequencingObject object, Sample sample) {
+		try {
+			if (object instanceof SequenceFilePair) {
+				syncSequenceFilePair((SequenceFilePair) object, sample);
+			} else {
+				syncSingleEndSequenceFile((SingleEndSequenceFile) object, sample);
+			}
+			return null;
+		} catch (ProjectSynchronizationException e) {
+			return e;
+		}
+	}
+
+	/**
+	 * Set the sync status of a local {@link Sample} once all its files have
+	 * been synchronized.
+	 *
+	 * @param localSample the local {@link Sample}
+	 * @param syncErrors  errors from synchronizing the sample's files
+	 * @return the given list of errors
+	 */
+	private List<ProjectSynchronizationException> finishSampleSync(Sample localSample,
+			List<ProjectSynchronizationException> syncErrors) {
 		if (syncErrors.isEmpty()) {
 			localSample.getRemoteStatus().setSyncStatus(SyncStatus.SYNCHRONIZED);
 		} else {
@@ -482,4 +732,42 @@ public class ProjectSynchronizationService {
 		context.setAuthentication(userAuthentication);
 		SecurityContextHolder.setContext(context);
 	}
+
+	/**
+	 * Limits the number of tasks for a pipeline stage that may talk to each
+	 * {@link RemoteAPI} at the same time.
+	 */
+	private static class RemoteAPILimits {
+		private final int permits;
+		private final Map<String, Semaphore> limits = new ConcurrentHashMap<>();
+
+		public RemoteAPILimits(int permits) {
+			this.permits = Math.max(1, permits);
+		}
+
+		/**
+		 * Run a task once there's room for it with the given {@link RemoteAPI}
+		 * 
+		 * @param api
+		 *            the {@link RemoteAPI} the task talks to
+		 * @param task
+		 *            the task to run
+		 * @return the result of the task
+		 */
+		public <T> T run(RemoteAPI api, Supplier<T> task) {
+			Semaphore limit = limits.computeIfAbsent(String.valueOf(api.getId()), k -> new Semaphore(permits, true));
+			try {
+				limit.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ProjectSynchronizationException("Interrupted waiting to communicate with " + api, e);
+			}
+
+			try {
+				return task.get();
+			} finally {
+				limit.release();
+			}
+		}
+	}
 }
@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Map;
 
 import ca.corefacility.bioinformatics.irida.model.project.Project;
+import ca.corefacility.bioinformatics.irida.model.remote.resource.ResourceList;
 import ca.corefacility.bioinformatics.irida.model.sample.MetadataTemplateField;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
 import ca.corefacility.bioinformatics.irida.model.sample.metadata.MetadataEntry;
@@ -23,6 +24,21 @@ public interface SampleRemoteService extends RemoteService<Sample> {
 	 */
 	public List<Sample> getSamplesForProject(Project project);
 
+	/**
+	 * Get the {@link Sample}s in a {@link Project} that have changed since the
+	 * given change token, and the links of samples removed since then. If the
+	 * remote api doesn't support listing changes, every sample is returned and
+	 * the list has no change token.
+	 * 
+	 * @param project
+	 *            The {@link Project} to get samples from
+	 * @param changeToken
+	 *            the change token from the last synchronization, or null to
+	 *            list every sample
+	 * @return the changed {@link Sample}s
+	 */
+	public ResourceList<Sample> getSampleChangesForProject(Project project, String changeToken);
+
 	/**
 	 * Get the {@link Sample} metadata for a remote sample
 	 * 
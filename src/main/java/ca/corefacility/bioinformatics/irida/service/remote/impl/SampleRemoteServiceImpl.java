@@ -6,8 +6,10 @@ import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.Link;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import ca.corefacility.bioinformatics.irida.model.project.Project;
+import ca.corefacility.bioinformatics.irida.model.remote.resource.ResourceList;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
 import ca.corefacility.bioinformatics.irida.model.sample.metadata.MetadataEntry;
 import ca.corefacility.bioinformatics.irida.repositories.RemoteAPIRepository;
@@ -27,6 +29,8 @@ public class SampleRemoteServiceImpl extends RemoteServiceImpl<Sample> implement
 
 	public static final String FILE_SAMPLE_REL = "sample";
 
+	public static final String MODIFIED_SINCE_PARAM = "modifiedSince";
+
 	private final SampleRemoteRepository sampleRemoteRepository;
 
 	@Autowired
@@ -45,6 +49,17 @@ public class SampleRemoteServiceImpl extends RemoteServiceImpl<Sample> implement
 		return list(samplesHref, project.getRemoteStatus().getApi());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ResourceList<Sample> getSampleChangesForProject(Project project, String changeToken) {
+		Link link = project.getLink(PROJECT_SAMPLES_REL);
+		String changesHref = UriComponentsBuilder.fromHttpUrl(link.getHref())
+				.queryParam(MODIFIED_SINCE_PARAM, changeToken == null ? "0" : changeToken).toUriString();
+		return sampleRemoteRepository.listChanges(changesHref, project.getRemoteStatus().getApi());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
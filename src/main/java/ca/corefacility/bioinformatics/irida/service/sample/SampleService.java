@@ -3,6 +3,7 @@ package ca.corefacility.bioinformatics.irida.service.sample;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Sort;
@@ -76,6 +77,27 @@ public interface SampleService extends CRUDService<Long, Sample> {
 	 */
 	public List<Sample> getSamplesForProjectShallow(Project project);
 
+	/**
+	 * Get a shallow listing of the {@link Sample}s in a {@link Project} that
+	 * have changed since the given time. A sample has changed if it was
+	 * modified, added to the project, or had sequencing objects added to it.
+	 *
+	 * @param project The {@link Project} to get samples for
+	 * @param since   the time to get changes since
+	 * @return a List of {@link Sample}
+	 */
+	public List<Sample> getSamplesForProjectShallowChangedSince(Project project, Date since);
+
+	/**
+	 * Get the ids of the {@link Sample}s removed from a {@link Project} since
+	 * the given time.
+	 *
+	 * @param project The {@link Project} the samples were removed from
+	 * @param since   the time to get removals since
+	 * @return a List of {@link Sample} ids
+	 */
+	public List<Long> getSampleIdsRemovedFromProjectSince(Project project, Date since);
+
 	/**
 	 * Get a list of {@link Sample} in a {@link Project} given some Sample ids.
 	 * @param project {@link Project} to get samples for.
@@ -83,6 +105,16 @@ public interface SampleService extends CRUDService<Long, Sample> {
 	 * @return List of Samples from a {@link Project}.
 	 */
 	List<Sample> getSamplesInProject(Project project, List<Long> sampleIds);
+
+	/**
+	 * Get the {@link Sample}s with the given ids that exist and that the
+	 * current user can read. Unlike {@link #readMultiple(Iterable)}, ids of
+	 * deleted or unreadable {@link Sample}s are left out instead of failing.
+	 *
+	 * @param sampleIds the {@link Sample} ids
+	 * @return the readable {@link Sample}s
+	 */
+	List<Sample> getReadableSamples(Iterable<Long> sampleIds);
 		
 	/**
 	 * Get a list of the organism fields stored for all {@link Sample}s in a
@@ -180,6 +212,19 @@ public interface SampleService extends CRUDService<Long, Sample> {
 	public Long getTotalBasesForSample(Sample sample)
 			throws SequenceFileAnalysisException;
 
+	/**
+	 * Get the total number of bases in all sequence files for each of a
+	 * collection of samples, with a constant number of queries for the whole
+	 * collection. Samples that have a sequence file without a FastQC analysis
+	 * are left out, as {@link #getTotalBasesForSample(Sample)} would fail for
+	 * them.
+	 * 
+	 * @param samples
+	 *            the samples to find the total number of bases for.
+	 * @return the total number of bases for each sample, by sample id.
+	 */
+	public Map<Long, Long> getTotalBasesForSamples(Collection<Sample> samples);
+
 	/**
 	 * Given the length of a reference file, estimate the total coverage for
 	 * this sample.
@@ -264,6 +309,18 @@ public interface SampleService extends CRUDService<Long, Sample> {
 	 */
 	public List<QCEntry> getQCEntriesForSample(Sample sample);
 
+	/**
+	 * Find all the {@link QCEntry} associated with {@link SequencingObject}s
+	 * in each of a collection of {@link Sample}s, with a constant number of
+	 * queries for the whole collection.
+	 * 
+	 * @param samples
+	 *            the {@link Sample}s to get {@link QCEntry} for
+	 * @return the {@link QCEntry} for each {@link Sample} with any, by sample
+	 *         id
+	 */
+	public Map<Long, List<QCEntry>> getQCEntriesForSamples(Collection<Sample> samples);
+
 	/**
 	 * Gets a collection of {@link SampleGenomeAssemblyJoin}s for the given
 	 * sample.
@@ -0,0 +1,748 @@
+package ca.corefacility.bioinformatics.irida.service.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.TermsFilter;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.domain.Sort.Order;
+
+import ca.corefacility.bioinformatics.irida.model.IridaThing;
+import ca.corefacility.bioinformatics.irida.model.joins.impl.ProjectSampleJoin;
+import ca.corefacility.bioinformatics.irida.model.project.Project;
+import ca.corefacility.bioinformatics.irida.model.sample.Sample;
+import ca.corefacility.bioinformatics.irida.model.sample.metadata.MetadataEntry;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Full-text index of {@link Sample}s and {@link Project}s stored on the local
+ * disk, used to search sample names, organisms and metadata values and project
+ * names and organisms by substring without scanning the sample and project
+ * tables.
+ *
+ * The index has a document for every {@link ProjectSampleJoin}, and one for
+ * every {@link Project}. Text fields are indexed as lowercase trigrams, so a
+ * search term is found anywhere in a value by looking for its trigrams in
+ * sequence. Terms shorter than a trigram are matched against the whole
+ * lowercase value instead.
+ *
+ * Searches return the ids of the matching entities, or nothing when the index
+ * can't answer the search (it is disabled, it is still being built, or the
+ * search is sorted by a property that isn't indexed), in which case the caller
+ * should search the database instead.
+ */
+public class SearchIndex implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(SearchIndex.class);
+
+	/**
+	 * Version of the layout of the documents in the index. Increase this when
+	 * the layout changes so that existing indexes are rebuilt.
+	 */
+	static final String INDEX_VERSION = "1";
+
+	private static final int GRAM_SIZE = 3;
+	private static final int MAX_EXACT_LENGTH = 1024;
+
+	private static final String VERSION = "version";
+	private static final String KEY = "key";
+	private static final String TYPE = "type";
+	private static final String SAMPLE_TYPE = "sample";
+	private static final String PROJECT_TYPE = "project";
+
+	private static final String JOIN_ID = "joinId";
+	private static final String SAMPLE_ID = "sampleId";
+	private static final String PROJECT_ID = "projectId";
+	private static final String SAMPLE_NAME = "sampleName";
+	private static final String PROJECT_NAME = "name";
+	private static final String ORGANISM = "organism";
+	private static final String METADATA = "metadata";
+	private static final String CREATED_DATE = "createdDate";
+	private static final String SAMPLE_CREATED_DATE = "sampleCreatedDate";
+	private static final String MODIFIED_DATE = "modifiedDate";
+
+	// suffixes for the other forms of a field
+	private static final String EXACT = "_exact";
+	private static final String NUMBER = "_number";
+
+	// indexed properties samples and projects can be sorted by
+	private static final Map<String, SortField> SAMPLE_SORT_FIELDS = ImmutableMap.<String, SortField> builder()
+			.put("sample.sampleName", new SortField(SAMPLE_NAME + EXACT, SortField.Type.STRING))
+			.put("sample.organism", new SortField(ORGANISM + EXACT, SortField.Type.STRING))
+			.put("sample.createdDate", new SortField(SAMPLE_CREATED_DATE, SortField.Type.LONG))
+			.put("sample.modifiedDate", new SortField(MODIFIED_DATE, SortField.Type.LONG))
+			.put("sample.id", new SortField(SAMPLE_ID + NUMBER, SortField.Type.LONG))
+			.put("project.id", new SortField(PROJECT_ID + NUMBER, SortField.Type.LONG))
+			.put("createdDate", new SortField(CREATED_DATE, SortField.Type.LONG))
+			.put("id", new SortField(JOIN_ID + NUMBER, SortField.Type.LONG)).build();
+	private static final Map<String, SortField> PROJECT_SORT_FIELDS = ImmutableMap.<String, SortField> builder()
+			.put("name", new SortField(PROJECT_NAME + EXACT, SortField.Type.STRING))
+			.put("organism", new SortField(ORGANISM + EXACT, SortField.Type.STRING))
+			.put("createdDate", new SortField(CREATED_DATE, SortField.Type.LONG))
+			.put("modifiedDate", new SortField(MODIFIED_DATE, SortField.Type.LONG))
+			.put("id", new SortField(PROJECT_ID + NUMBER, SortField.Type.LONG)).build();
+
+	private final Directory directory;
+	private final Analyzer analyzer;
+	private final IndexWriter writer;
+	private final SearcherManager searcherManager;
+
+	private volatile boolean ready;
+
+	// whether the index has been changed since the version was last committed.
+	// The version is left out of commits while there are changes that aren't
+	// saved, so an index that wasn't closed cleanly is rebuilt when it's opened
+	private boolean uncommitted;
+
+	/**
+	 * Create a {@link SearchIndex} that doesn't index anything. Every search
+	 * on it must be run against the database.
+	 */
+	public SearchIndex() {
+		this.directory = null;
+		this.analyzer = null;
+		this.writer = null;
+		this.searcherManager = null;
+	}
+
+	/**
+	 * Open the {@link SearchIndex} stored in a {@link Directory}, creating it if
+	 * it doesn't exist yet.
+	 *
+	 * @param directory
+	 *            the {@link Directory} the index is stored in
+	 * @throws IOException
+	 *             if the index can't be opened
+	 */
+	public SearchIndex(Directory directory) throws IOException {
+		this.directory = directory;
+		this.analyzer = new TrigramAnalyzer();
+		this.ready = INDEX_VERSION.equals(indexVersion(directory));
+		this.writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_46, analyzer));
+		this.searcherManager = new SearcherManager(writer, true, null);
+	}
+
+	/**
+	 * Whether this index is stored anywhere.
+	 *
+	 * @return true if changes to samples and projects should be indexed
+	 */
+	public boolean isEnabled() {
+		return writer != null;
+	}
+
+	/**
+	 * Whether the index has everything in it and can be searched.
+	 *
+	 * @return true if the index has been completely built
+	 */
+	public boolean isReady() {
+		return isEnabled() && ready;
+	}
+
+	/**
+	 * Remove everything from the index before adding all samples and projects
+	 * again. The index can't be searched until
+	 * {@link #finishRebuild()} is called.
+	 */
+	public synchronized void startRebuild() {
+		ready = false;
+		try {
+			writer.deleteAll();
+			writer.setCommitData(Collections.emptyMap());
+			writer.commit();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Save the rebuilt index and start searching it.
+	 */
+	public synchronized void finishRebuild() {
+		try {
+			writer.setCommitData(ImmutableMap.of(VERSION, INDEX_VERSION));
+			writer.commit();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		uncommitted = false;
+		refresh();
+		ready = true;
+	}
+
+	/**
+	 * Index a {@link ProjectSampleJoin}, replacing any existing document for
+	 * it.
+	 *
+	 * @param join
+	 *            the {@link ProjectSampleJoin} to index
+	 */
+	public void updateJoin(ProjectSampleJoin join) {
+		change(() -> writer.updateDocument(new Term(KEY, joinKey(join.getId())), joinDocument(join)));
+	}
+
+	/**
+	 * Replace the documents for a {@link Sample} with documents for the
+	 * projects it's currently in.
+	 *
+	 * @param sampleId
+	 *            the id of the {@link Sample}
+	 * @param joins
+	 *            the {@link ProjectSampleJoin}s for the sample
+	 */
+	public void updateSample(Long sampleId, Collection<ProjectSampleJoin> joins) {
+		BooleanQuery removed = new BooleanQuery();
+		removed.add(new TermQuery(new Term(SAMPLE_ID, sampleId.toString())), Occur.MUST);
+		for (ProjectSampleJoin join : joins) {
+			updateJoin(join);
+			removed.add(new TermQuery(new Term(KEY, joinKey(join.getId()))), Occur.MUST_NOT);
+		}
+
+		change(() -> writer.deleteDocuments(removed));
+		refresh();
+	}
+
+	/**
+	 * Remove the documents for a {@link Sample} that has been deleted.
+	 *
+	 * @param sampleId
+	 *            the id of the deleted {@link Sample}
+	 */
+	public void deleteSample(Long sampleId) {
+		change(() -> writer.deleteDocuments(new Term(SAMPLE_ID, sampleId.toString())));
+		refresh();
+	}
+
+	/**
+	 * Index a {@link Project}, replacing any existing document for it.
+	 *
+	 * @param project
+	 *            the {@link Project} to index
+	 */
+	public void updateProject(Project project) {
+		change(() -> writer.updateDocument(new Term(KEY, projectKey(project.getId())), projectDocument(project)));
+		refresh();
+	}
+
+	/**
+	 * Remove the documents for a {@link Project} that has been deleted and for
+	 * the samples in it.
+	 *
+	 * @param projectId
+	 *            the id of the deleted {@link Project}
+	 */
+	public void deleteProject(Long projectId) {
+		change(() -> writer.deleteDocuments(new Term(PROJECT_ID, projectId.toString())));
+		refresh();
+	}
+
+	/**
+	 * Save the changes made to the index since it was last saved. A complete
+	 * index is saved with its version so it can be searched as soon as it's
+	 * opened again.
+	 */
+	public synchronized void commit() {
+		try {
+			if (ready && uncommitted) {
+				writer.setCommitData(ImmutableMap.of(VERSION, INDEX_VERSION));
+				uncommitted = false;
+			}
+			if (writer.hasUncommittedChanges()) {
+				writer.commit();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Search for {@link ProjectSampleJoin}s. Text search terms are found
+	 * anywhere in a value, ignoring case.
+	 *
+	 * @param projectIds
+	 *            the ids of the projects the samples must be in, or null for
+	 *            samples in any project
+	 * @param query
+	 *            search term for the sample name, organism or any metadata
+	 *            value, or the exact id of the sample
+	 * @param sampleNames
+	 *            the samples must have one of these names, ignoring case
+	 * @param sampleName
+	 *            search term for the sample name
+	 * @param searchTerm
+	 *            another search term for the sample name
+	 * @param organism
+	 *            search term for the sample organism
+	 * @param minDate
+	 *            minimum date the sample was modified
+	 * @param maxDate
+	 *            maximum date the sample was modified
+	 * @param pageable
+	 *            the page of results to get
+	 * @return the ids of the {@link ProjectSampleJoin}s in the page, or nothing
+	 *         if the search should be run against the database
+	 */
+	public Optional<Page<Long>> searchSamples(Collection<Long> projectIds, String query, List<String> sampleNames,
+			String sampleName, String searchTerm, String organism, Date minDate, Date maxDate, Pageable pageable) {
+		Optional<Sort> sort = sort(pageable, SAMPLE_SORT_FIELDS, JOIN_ID + NUMBER);
+		if (!isReady() || !sort.isPresent()) {
+			return Optional.empty();
+		}
+
+		BooleanQuery search = new BooleanQuery();
+		search.add(new TermQuery(new Term(TYPE, SAMPLE_TYPE)), Occur.MUST);
+
+		if (!Strings.isNullOrEmpty(query)) {
+			BooleanQuery anyField = new BooleanQuery();
+			anyField.add(contains(SAMPLE_NAME, query), Occur.SHOULD);
+			anyField.add(contains(ORGANISM, query), Occur.SHOULD);
+			anyField.add(contains(METADATA, query), Occur.SHOULD);
+			anyField.add(new TermQuery(new Term(SAMPLE_ID, query.trim())), Occur.SHOULD);
+			search.add(anyField, Occur.MUST);
+		}
+		if (sampleNames != null && !sampleNames.isEmpty()) {
+			BooleanQuery names = new BooleanQuery();
+			for (String name : sampleNames) {
+				names.add(new TermQuery(new Term(SAMPLE_NAME + EXACT, exact(name))), Occur.SHOULD);
+			}
+			search.add(names, Occur.MUST);
+		}
+		if (!Strings.isNullOrEmpty(sampleName)) {
+			search.add(contains(SAMPLE_NAME, sampleName), Occur.MUST);
+		}
+		if (!Strings.isNullOrEmpty(searchTerm)) {
+			search.add(contains(SAMPLE_NAME, searchTerm), Occur.MUST);
+		}
+		if (!Strings.isNullOrEmpty(organism)) {
+			search.add(contains(ORGANISM, organism), Occur.MUST);
+		}
+		if (minDate != null || maxDate != null) {
+			search.add(NumericRangeQuery.newLongRange(MODIFIED_DATE, minDate == null ? null : minDate.getTime(),
+					maxDate == null ? null : maxDate.getTime(), true, true), Occur.MUST);
+		}
+
+		return Optional.of(search(search, projectIds, sort.get(), pageable, JOIN_ID));
+	}
+
+	/**
+	 * Search for {@link Project}s by name, organism or id. The search term is
+	 * found anywhere in a value, ignoring case.
+	 *
+	 * @param projectIds
+	 *            the ids of the projects that can be found, or null to find
+	 *            any project
+	 * @param query
+	 *            search term for the project name, organism or id
+	 * @param pageable
+	 *            the page of results to get
+	 * @return the ids of the {@link Project}s in the page, or nothing if the
+	 *         search should be run against the database
+	 */
+	public Optional<Page<Long>> searchProjects(Collection<Long> projectIds, String query, Pageable pageable) {
+		Optional<Sort> sort = sort(pageable, PROJECT_SORT_FIELDS, PROJECT_ID + NUMBER);
+		if (!isReady() || !sort.isPresent()) {
+			return Optional.empty();
+		}
+
+		BooleanQuery search = new BooleanQuery();
+		search.add(new TermQuery(new Term(TYPE, PROJECT_TYPE)), Occur.MUST);
+
+		if (!Strings.isNullOrEmpty(query)) {
+			BooleanQuery anyField = new BooleanQuery();
+			anyField.add(contains(PROJECT_NAME, query), Occur.SHOULD);
+			anyField.add(contains(ORGANISM, query), Occur.SHOULD);
+			anyField.add(new WildcardQuery(new Term(PROJECT_ID, wildcard(query))), Occur.SHOULD);
+			search.add(anyField, Occur.MUST);
+		}
+
+		return Optional.of(search(search, projectIds, sort.get(), pageable, PROJECT_ID));
+	}
+
+	/**
+	 * Load the entities for a page of ids found by searching the index, in the
+	 * same order as the ids.
+	 *
+	 * @param ids
+	 *            a page of ids found in the index
+	 * @param loader
+	 *            loads the entities with the given ids
+	 * @param <T>
+	 *            the type of entity
+	 * @return a page of the entities
+	 */
+	public static <T extends IridaThing> Page<T> load(Page<Long> ids, Function<Iterable<Long>, Iterable<T>> loader) {
+		Map<Long, T> entities = new HashMap<>();
+		if (ids.hasContent()) {
+			loader.apply(ids.getContent()).forEach(e -> entities.put(e.getId(), e));
+		}
+
+		List<T> content = ids.getContent().stream().filter(entities::containsKey).map(entities::get)
+				.collect(Collectors.toList());
+		return new PageImpl<>(content, new PageRequest(ids.getNumber(), ids.getSize(), ids.getSort()), ids.getTotalElements());
+	}
+
+	/**
+	 * Stop indexing and save any changes.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (isEnabled()) {
+			commit();
+			searcherManager.close();
+			writer.close();
+			directory.close();
+		}
+	}
+
+	/**
+	 * Run a search and get a page of the ids of the documents found.
+	 *
+	 * @param query
+	 *            the search
+	 * @param projectIds
+	 *            the projects the documents must be in, or null for all
+	 *            projects
+	 * @param sort
+	 *            how to order the documents
+	 * @param pageable
+	 *            the page of documents to get
+	 * @param idField
+	 *            the field containing the id to return for each document
+	 * @return the page of ids
+	 */
+	private Page<Long> search(Query query, Collection<Long> projectIds, Sort sort, Pageable pageable,
+			String idField) {
+		if (projectIds != null && projectIds.isEmpty()) {
+			return new PageImpl<>(Collections.emptyList(), pageable, 0);
+		}
+
+		TermsFilter projects = null;
+		if (projectIds != null) {
+			projects = new TermsFilter(projectIds.stream().map(id -> new Term(PROJECT_ID, id.toString()))
+					.collect(Collectors.toList()));
+		}
+
+		try {
+			IndexSearcher searcher = searcherManager.acquire();
+			try {
+				TopDocs found = searcher.search(query, projects, Math.max(pageable.getOffset() + pageable.getPageSize(),
+						1), sort);
+
+				List<Long> ids = new ArrayList<>(pageable.getPageSize());
+				for (int i = pageable.getOffset(); i < found.scoreDocs.length; i++) {
+					ScoreDoc doc = found.scoreDocs[i];
+					ids.add(Long.valueOf(searcher.doc(doc.doc, Collections.singleton(idField)).get(idField)));
+				}
+
+				return new PageImpl<>(ids, pageable, found.totalHits);
+			} finally {
+				searcherManager.release(searcher);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Get the Lucene {@link Sort} for the sort of a {@link Pageable}.
+	 *
+	 * @param pageable
+	 *            the {@link Pageable}
+	 * @param sortFields
+	 *            the indexed properties that can be sorted by
+	 * @param idField
+	 *            the numeric id field used to order documents that are
+	 *            otherwise equal
+	 * @return the {@link Sort}, or nothing if a property isn't indexed
+	 */
+	private static Optional<Sort> sort(Pageable pageable, Map<String, SortField> sortFields, String idField) {
+		List<SortField> fields = new ArrayList<>();
+		if (pageable.getSort() != null) {
+			for (Order order : pageable.getSort()) {
+				SortField field = sortFields.get(order.getProperty());
+				if (field == null) {
+					logger.trace("Can't sort by [" + order.getProperty() + "] with the search index.");
+					return Optional.empty();
+				}
+				fields.add(new SortField(field.getField(), field.getType(), order.getDirection() == Direction.DESC));
+			}
+		}
+		if (fields.isEmpty()) {
+			fields.add(SortField.FIELD_SCORE);
+		}
+		fields.add(new SortField(idField, SortField.Type.LONG));
+
+		return Optional.of(new Sort(fields.toArray(new SortField[fields.size()])));
+	}
+
+	/**
+	 * Build a query finding documents with a term anywhere in a text field.
+	 *
+	 * @param field
+	 *            the text field
+	 * @param term
+	 *            the term to find
+	 * @return the query
+	 */
+	private Query contains(String field, String term) {
+		List<String> grams = grams(field, term);
+		if (grams.isEmpty()) {
+			return new WildcardQuery(new Term(field + EXACT, wildcard(exact(term))));
+		}
+
+		PhraseQuery phrase = new PhraseQuery();
+		for (String gram : grams) {
+			phrase.add(new Term(field, gram));
+		}
+		return phrase;
+	}
+
+	/**
+	 * Split a value into the trigrams it's indexed as.
+	 *
+	 * @param field
+	 *            the field the value is in
+	 * @param value
+	 *            the value to split
+	 * @return the trigrams, in order
+	 */
+	private List<String> grams(String field, String value) {
+		List<String> grams = new ArrayList<>();
+		try (TokenStream stream = analyzer.tokenStream(field, value)) {
+			CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+			stream.reset();
+			while (stream.incrementToken()) {
+				grams.add(term.toString());
+			}
+			stream.end();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return grams;
+	}
+
+	/**
+	 * Build the document for a {@link ProjectSampleJoin}.
+	 *
+	 * @param join
+	 *            the {@link ProjectSampleJoin}
+	 * @return the document
+	 */
+	private static Document joinDocument(ProjectSampleJoin join) {
+		Sample sample = join.getObject();
+
+		Document document = new Document();
+		document.add(new StringField(KEY, joinKey(join.getId()), Field.Store.NO));
+		document.add(new StringField(TYPE, SAMPLE_TYPE, Field.Store.NO));
+		addId(document, JOIN_ID, join.getId(), Field.Store.YES);
+		addId(document, SAMPLE_ID, sample.getId(), Field.Store.NO);
+		addId(document, PROJECT_ID, join.getSubject().getId(), Field.Store.NO);
+		addText(document, SAMPLE_NAME, sample.getSampleName());
+		addText(document, ORGANISM, sample.getOrganism());
+		if (sample.getMetadata() != null) {
+			for (MetadataEntry entry : sample.getMetadata().values()) {
+				addText(document, METADATA, entry.getValue());
+			}
+		}
+		addDate(document, CREATED_DATE, join.getCreatedDate());
+		addDate(document, SAMPLE_CREATED_DATE, sample.getCreatedDate());
+		addDate(document, MODIFIED_DATE, sample.getModifiedDate());
+		return document;
+	}
+
+	/**
+	 * Build the document for a {@link Project}.
+	 *
+	 * @param project
+	 *            the {@link Project}
+	 * @return the document
+	 */
+	private static Document projectDocument(Project project) {
+		Document document = new Document();
+		document.add(new StringField(KEY, projectKey(project.getId()), Field.Store.NO));
+		document.add(new StringField(TYPE, PROJECT_TYPE, Field.Store.NO));
+		addId(document, PROJECT_ID, project.getId(), Field.Store.YES);
+		addText(document, PROJECT_NAME, project.getName());
+		addText(document, ORGANISM, project.getOrganism());
+		addDate(document, CREATED_DATE, project.getCreatedDate());
+		addDate(document, MODIFIED_DATE, project.getModifiedDate());
+		return document;
+	}
+
+	private static void addId(Document document, String field, Long id, Field.Store store) {
+		document.add(new StringField(field, id.toString(), store));
+		document.add(new LongField(field + NUMBER, id, Field.Store.NO));
+	}
+
+	private static void addText(Document document, String field, String value) {
+		if (value != null) {
+			document.add(new TextField(field, value, Field.Store.NO));
+			document.add(new StringField(field + EXACT, exact(value), Field.Store.NO));
+		}
+	}
+
+	private static void addDate(Document document, String field, Date date) {
+		if (date != null) {
+			document.add(new LongField(field, date.getTime(), Field.Store.NO));
+		}
+	}
+
+	/**
+	 * Get the form of a value used to match it exactly, ignoring case.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the lowercase value, shortened if it's too long to index
+	 */
+	private static String exact(String value) {
+		String lower = value.toLowerCase(Locale.ROOT);
+		return lower.length() > MAX_EXACT_LENGTH ? lower.substring(0, MAX_EXACT_LENGTH) : lower;
+	}
+
+	/**
+	 * Get a wildcard pattern matching any value containing a term.
+	 *
+	 * @param term
+	 *            the term
+	 * @return the wildcard pattern
+	 */
+	private static String wildcard(String term) {
+		StringBuilder pattern = new StringBuilder("*");
+		for (char c : term.toCharArray()) {
+			if (c == WildcardQuery.WILDCARD_STRING || c == WildcardQuery.WILDCARD_CHAR
+					|| c == WildcardQuery.WILDCARD_ESCAPE) {
+				pattern.append(WildcardQuery.WILDCARD_ESCAPE);
+			}
+			pattern.append(c);
+		}
+		return pattern.append('*').toString();
+	}
+
+	private static String joinKey(Long joinId) {
+		return SAMPLE_TYPE + ":" + joinId;
+	}
+
+	private static String projectKey(Long projectId) {
+		return PROJECT_TYPE + ":" + projectId;
+	}
+
+	/**
+	 * Get the version of the layout of the index saved in a {@link Directory}.
+	 *
+	 * @param directory
+	 *            the {@link Directory}
+	 * @return the version, or null if there's no complete index saved
+	 * @throws IOException
+	 *             if the index can't be read
+	 */
+	private static String indexVersion(Directory directory) throws IOException {
+		if (!DirectoryReader.indexExists(directory)) {
+			return null;
+		}
+		List<IndexCommit> commits = DirectoryReader.listCommits(directory);
+		return commits.get(commits.size() - 1).getUserData().get(VERSION);
+	}
+
+	/**
+	 * Make a change to the index. The first change after the index was saved
+	 * first saves the index without its version, so the change isn't lost if
+	 * the index isn't closed cleanly before it's saved again.
+	 *
+	 * @param change
+	 *            the change to make
+	 */
+	private synchronized void change(IndexChange change) {
+		try {
+			if (ready && !uncommitted) {
+				writer.setCommitData(Collections.emptyMap());
+				writer.commit();
+				uncommitted = true;
+			}
+			change.apply();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * A change to the documents in the index.
+	 */
+	@FunctionalInterface
+	private interface IndexChange {
+		public void apply() throws IOException;
+	}
+
+	/**
+	 * Make changes written to the index visible to searches.
+	 */
+	private void refresh() {
+		try {
+			searcherManager.maybeRefresh();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * {@link Analyzer} splitting values into lowercase trigrams.
+	 */
+	private static class TrigramAnalyzer extends Analyzer {
+		@Override
+		protected TokenStreamComponents createComponents(String fieldName, Reader reader) {
+			Tokenizer tokenizer = new NGramTokenizer(Version.LUCENE_46, reader, GRAM_SIZE, GRAM_SIZE);
+			return new TokenStreamComponents(tokenizer, new LowerCaseFilter(Version.LUCENE_46, tokenizer));
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package ca.corefacility.bioinformatics.irida.service.search;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ca.corefacility.bioinformatics.irida.events.ProjectChangedEvent;
+import ca.corefacility.bioinformatics.irida.events.SampleChangedEvent;
+import ca.corefacility.bioinformatics.irida.model.joins.impl.ProjectSampleJoin;
+import ca.corefacility.bioinformatics.irida.model.project.Project;
+import ca.corefacility.bioinformatics.irida.model.sample.Sample;
+import ca.corefacility.bioinformatics.irida.repositories.ProjectRepository;
+import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectSampleJoinRepository;
+import ca.corefacility.bioinformatics.irida.repositories.sample.SampleRepository;
+
+/**
+ * Keeps the {@link SearchIndex} up to date. The index is built from the
+ * database when it's empty at startup, then changed {@link Sample}s and
+ * {@link Project}s are indexed again after the transaction changing them has
+ * committed.
+ */
+@Component
+public class SearchIndexUpdater {
+	private static final Logger logger = LoggerFactory.getLogger(SearchIndexUpdater.class);
+
+	private static final int REBUILD_BATCH_SIZE = 1000;
+
+	private final SearchIndex searchIndex;
+	private final SampleRepository sampleRepository;
+	private final ProjectRepository projectRepository;
+	private final ProjectSampleJoinRepository psjRepository;
+	private final TransactionTemplate transactionTemplate;
+
+	private final AtomicBoolean rebuildStarted = new AtomicBoolean();
+
+	@Autowired
+	public SearchIndexUpdater(SearchIndex searchIndex, SampleRepository sampleRepository,
+			ProjectRepository projectRepository, ProjectSampleJoinRepository psjRepository,
+			PlatformTransactionManager transactionManager) {
+		this.searchIndex = searchIndex;
+		this.sampleRepository = sampleRepository;
+		this.projectRepository = projectRepository;
+		this.psjRepository = psjRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.transactionTemplate.setReadOnly(true);
+	}
+
+	/**
+	 * Index a {@link Sample} again once the transaction that changed it has
+	 * committed.
+	 *
+	 * @param event
+	 *            the {@link SampleChangedEvent} for the sample
+	 */
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void handleSampleChanged(SampleChangedEvent event) {
+		if (!searchIndex.isEnabled()) {
+			return;
+		}
+
+		try {
+			transactionTemplate.execute(status -> {
+				Sample sample = sampleRepository.findOne(event.getSampleId());
+				if (sample == null) {
+					searchIndex.deleteSample(event.getSampleId());
+				} else {
+					List<ProjectSampleJoin> joins = psjRepository.getProjectForSample(sample).stream()
+							.map(j -> (ProjectSampleJoin) j).collect(Collectors.toList());
+					searchIndex.updateSample(sample.getId(), joins);
+				}
+				return null;
+			});
+		} catch (UncheckedIOException e) {
+			logger.error("Could not update sample [" + event.getSampleId() + "] in the search index", e);
+		}
+	}
+
+	/**
+	 * Index a {@link Project} again once the transaction that changed it has
+	 * committed.
+	 *
+	 * @param event
+	 *            the {@link ProjectChangedEvent} for the project
+	 */
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void handleProjectChanged(ProjectChangedEvent event) {
+		if (!searchIndex.isEnabled()) {
+			return;
+		}
+
+		try {
+			transactionTemplate.execute(status -> {
+				Project project = projectRepository.findOne(event.getProjectId());
+				if (project == null) {
+					searchIndex.deleteProject(event.getProjectId());
+				} else {
+					searchIndex.updateProject(project);
+				}
+				return null;
+			});
+		} catch (UncheckedIOException e) {
+			logger.error("Could not update project [" + event.getProjectId() + "] in the search index", e);
+		}
+	}
+
+	/**
+	 * Save the changes made to the search index regularly. If the server stops
+	 * unexpectedly before changes are saved, the index is rebuilt when the
+	 * server starts again.
+	 */
+	@Scheduled(fixedDelayString = "${search.index.commit.delay:60000}")
+	public void commitSearchIndex() {
+		if (searchIndex.isEnabled()) {
+			searchIndex.commit();
+		}
+	}
+
+	/**
+	 * Build the search index in the background when the server starts if it
+	 * hasn't been built yet. Searches use the database until it's done.
+	 *
+	 * @param event
+	 *            the {@link ContextRefreshedEvent}
+	 */
+	@EventListener
+	public void handleContextRefreshed(ContextRefreshedEvent event) {
+		if (searchIndex.isEnabled() && !searchIndex.isReady() && rebuildStarted.compareAndSet(false, true)) {
+			Thread rebuild = new Thread(this::rebuildSearchIndex, "search-index-rebuild");
+			rebuild.setDaemon(true);
+			rebuild.start();
+		}
+	}
+
+	/**
+	 * Add every {@link Project} and {@link ProjectSampleJoin} to the search
+	 * index.
+	 */
+	public void rebuildSearchIndex() {
+		logger.info("Building the search index.");
+		try {
+			searchIndex.startRebuild();
+
+			transactionTemplate.execute(status -> {
+				projectRepository.findAll().forEach(searchIndex::updateProject);
+				return null;
+			});
+
+			long lastId = 0L;
+			long count = 0L;
+			Page<ProjectSampleJoin> batch;
+			do {
+				final long afterId = lastId;
+				batch = transactionTemplate.execute(status -> {
+					Page<ProjectSampleJoin> joins = psjRepository.findAll(
+							(root, query, cb) -> cb.greaterThan(root.<Long> get("id"), afterId),
+							new PageRequest(0, REBUILD_BATCH_SIZE, Direction.ASC, "id"));
+					joins.forEach(searchIndex::updateJoin);
+					return joins;
+				});
+
+				if (batch.hasContent()) {
+					lastId = batch.getContent().get(batch.getNumberOfElements() - 1).getId();
+					count += batch.getNumberOfElements();
+					logger.debug("Indexed " + count + " samples in projects.");
+				}
+			} while (batch.getNumberOfElements() == REBUILD_BATCH_SIZE);
+
+			searchIndex.finishRebuild();
+			logger.info("Finished building the search index with " + count + " samples in projects.");
+		} catch (RuntimeException e) {
+			logger.error("Could not build the search index, searches will use the database.", e);
+		}
+	}
+}
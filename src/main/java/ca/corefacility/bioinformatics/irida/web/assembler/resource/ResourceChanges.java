@@ -0,0 +1,69 @@
+package ca.corefacility.bioinformatics.irida.web.assembler.resource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * A {@link ResourceCollection} holding the resources that have changed since a
+ * client last asked. Resources that have been removed since then are listed by
+ * their self link in {@link #getRemoved()}. The client should send
+ * {@link #getChangeToken()} with its next request to get the changes after
+ * this one.
+ *
+ * @param <Type>
+ *            The type of object in this collection
+ */
+@XmlRootElement(name = "resource")
+public class ResourceChanges<Type> extends ResourceCollection<Type> {
+
+	@XmlElement
+	private String changeToken;
+
+	@XmlElement
+	private List<String> removed;
+
+	/**
+	 * Create a new set of changes
+	 *
+	 * @param size
+	 *            the number of changed resources
+	 * @param changeToken
+	 *            the token to get the next changes with
+	 */
+	public ResourceChanges(long size, String changeToken) {
+		super(size);
+		this.changeToken = changeToken;
+		this.removed = new ArrayList<>();
+	}
+
+	/**
+	 * Add the self link of a resource that has been removed
+	 *
+	 * @param href
+	 *            the self link of the removed resource
+	 */
+	public void addRemoved(String href) {
+		removed.add(href);
+	}
+
+	/**
+	 * Get the self links of the resources that have been removed
+	 *
+	 * @return a list of self links
+	 */
+	public List<String> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * Get the token to send to get the changes after this one
+	 *
+	 * @return the change token
+	 */
+	public String getChangeToken() {
+		return changeToken;
+	}
+}
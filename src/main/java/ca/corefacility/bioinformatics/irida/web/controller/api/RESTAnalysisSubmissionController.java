@@ -3,6 +3,7 @@ package ca.corefacility.bioinformatics.irida.web.controller.api;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -11,8 +12,10 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
 import org.springframework.hateoas.Link;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
@@ -40,10 +43,13 @@ import ca.corefacility.bioinformatics.irida.model.workflow.description.IridaWork
 import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission;
 import ca.corefacility.bioinformatics.irida.service.AnalysisSubmissionService;
 import ca.corefacility.bioinformatics.irida.service.SequencingObjectService;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisSubmissionQueue;
 import ca.corefacility.bioinformatics.irida.service.sample.SampleService;
 import ca.corefacility.bioinformatics.irida.service.workflow.IridaWorkflowsService;
+import ca.corefacility.bioinformatics.irida.web.assembler.resource.ResourceAdditionalProperties;
 import ca.corefacility.bioinformatics.irida.web.assembler.resource.ResourceCollection;
 import ca.corefacility.bioinformatics.irida.web.controller.api.samples.RESTSampleSequenceFilesController;
+import ca.corefacility.bioinformatics.irida.web.spring.view.RangedFileSender;
 
 /**
  * REST controller to manage sharing of {@link AnalysisSubmission},
@@ -56,6 +62,7 @@ public class RESTAnalysisSubmissionController extends RESTGenericController<Anal
 	private SampleService sampleService;
 	private SequencingObjectService sequencingObjectService;
 	private IridaWorkflowsService iridaWorkflowsService;
+	private AnalysisSubmissionQueue analysisSubmissionQueue;
 
 	// rel for reading the analysis for a submission
 	public static final String ANALYSIS_REL = "analysis";
@@ -64,6 +71,12 @@ public class RESTAnalysisSubmissionController extends RESTGenericController<Anal
 
 	public static final String SUBMISSIONS_REL = "analysisSubmissions";
 
+	// rel for reading the place of a waiting submission in the queue
+	public static final String QUEUE_REL = "queue";
+
+	public static final String QUEUE_POSITION_PROPERTY = "queuePosition";
+	public static final String QUEUE_LENGTH_PROPERTY = "queueLength";
+
 	// rels for reading input files for a submission
 	public static final String INPUT_FILES_UNPAIRED_REL = "input/unpaired";
 	public static final String INPUT_FILES_PAIRED_REL = "input/paired";
@@ -77,12 +90,13 @@ public class RESTAnalysisSubmissionController extends RESTGenericController<Anal
 	@Autowired
 	public RESTAnalysisSubmissionController(AnalysisSubmissionService analysisSubmissionService,
 			SampleService sampleService, SequencingObjectService sequencingObjectService,
-			IridaWorkflowsService iridaWorkflowsService) {
+			IridaWorkflowsService iridaWorkflowsService, AnalysisSubmissionQueue analysisSubmissionQueue) {
 		super(analysisSubmissionService, AnalysisSubmission.class);
 		this.analysisSubmissionService = analysisSubmissionService;
 		this.sampleService = sampleService;
 		this.sequencingObjectService = sequencingObjectService;
 		this.iridaWorkflowsService = iridaWorkflowsService;
+		this.analysisSubmissionQueue = analysisSubmissionQueue;
 	}
 
 	/**
@@ -211,6 +225,37 @@ public class RESTAnalysisSubmissionController extends RESTGenericController<Anal
 		return map;
 	}
 
+	/**
+	 * Get the place of an {@link AnalysisSubmission} in the queue of
+	 * submissions waiting to run. The position starts at 1 and is 0 if the
+	 * submission isn't waiting.
+	 * 
+	 * @param identifier
+	 *            {@link AnalysisSubmission} identifier to read
+	 * @return ModelMap containing the {@link AnalysisSubmission} with its queue
+	 *         position and the length of the queue
+	 */
+	@RequestMapping("/{identifier}/queue")
+	public ModelMap getQueuePosition(@PathVariable Long identifier) {
+		ModelMap model = new ModelMap();
+		AnalysisSubmission read = analysisSubmissionService.read(identifier);
+
+		List<Long> queue = analysisSubmissionQueue.getQueuedSubmissionIds();
+
+		read.add(linkTo(methodOn(RESTAnalysisSubmissionController.class).getQueuePosition(identifier))
+				.withSelfRel());
+		read.add(linkTo(methodOn(RESTAnalysisSubmissionController.class).getResource(identifier))
+				.withRel(SUBMISSIONS_REL));
+
+		ResourceAdditionalProperties<AnalysisSubmission> resource = new ResourceAdditionalProperties<>(read);
+		resource.addProperty(QUEUE_POSITION_PROPERTY, queue.indexOf(read.getId()) + 1);
+		resource.addProperty(QUEUE_LENGTH_PROPERTY, queue.size());
+
+		model.addAttribute(RESOURCE_NAME, resource);
+
+		return model;
+	}
+
 	/**
 	 * Get the {@link Analysis} for an {@link AnalysisSubmission}.
 	 * 
@@ -276,20 +321,25 @@ public class RESTAnalysisSubmissionController extends RESTGenericController<Anal
 	}
 
 	/**
-	 * Get the actual file contents for an analysis output file.
+	 * Get the actual file contents for an analysis output file. Byte range
+	 * requests are honoured so interrupted downloads can be resumed.
 	 *
 	 * @param submissionId
 	 *            The {@link AnalysisSubmission} id
 	 * @param fileType
 	 *            The {@link AnalysisOutputFile} type as defined in the
 	 *            {@link Analysis} subclass
-	 * @return a {@link FileSystemResource} containing the contents of the
-	 *         {@link AnalysisOutputFile}.
+	 * @param request
+	 *            The request for the file
+	 * @param response
+	 *            The response to write the contents of the
+	 *            {@link AnalysisOutputFile} to
+	 * @throws IOException
+	 *             if the file can't be written to the response
 	 */
 	@RequestMapping(value = "/{submissionId}/analysis/file/{fileType}", produces = MediaType.TEXT_PLAIN_VALUE)
-	@ResponseBody
-	public FileSystemResource getAnalysisOutputFileContents(@PathVariable Long submissionId,
-			@PathVariable String fileType) {
+	public void getAnalysisOutputFileContents(@PathVariable Long submissionId, @PathVariable String fileType,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
 		AnalysisSubmission read = analysisSubmissionService.read(submissionId);
 
 		if (read.getAnalysisState() != AnalysisState.COMPLETED) {
@@ -297,7 +347,7 @@ public class RESTAnalysisSubmissionController extends RESTGenericController<Anal
 		}
 
 		AnalysisOutputFile analysisOutputFile = read.getAnalysis().getAnalysisOutputFile(fileType);
-		return new FileSystemResource(analysisOutputFile.getFile().toFile());
+		new RangedFileSender(analysisOutputFile.getFile(), MediaType.TEXT_PLAIN_VALUE).send(request, response);
 	}
 
 	/**
@@ -312,6 +362,11 @@ public class RESTAnalysisSubmissionController extends RESTGenericController<Anal
 							.withRel(ANALYSIS_REL));
 		}
 
+		if (resource.getAnalysisState().equals(AnalysisState.NEW)) {
+			links.add(linkTo(methodOn(RESTAnalysisSubmissionController.class).getQueuePosition(resource.getId()))
+					.withRel(QUEUE_REL));
+		}
+
 		links.add(
 				linkTo(methodOn(RESTAnalysisSubmissionController.class).getAnalysisInputUnpairedFiles(resource.getId()))
 						.withRel(INPUT_FILES_UNPAIRED_REL));
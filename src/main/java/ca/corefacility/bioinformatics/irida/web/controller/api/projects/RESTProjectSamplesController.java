@@ -8,6 +8,7 @@ import ca.corefacility.bioinformatics.irida.model.sequenceFile.SingleEndSequence
 import ca.corefacility.bioinformatics.irida.service.ProjectService;
 import ca.corefacility.bioinformatics.irida.service.sample.SampleService;
 import ca.corefacility.bioinformatics.irida.web.assembler.resource.LabelledRelationshipResource;
+import ca.corefacility.bioinformatics.irida.web.assembler.resource.ResourceChanges;
 import ca.corefacility.bioinformatics.irida.web.assembler.resource.ResourceCollection;
 import ca.corefacility.bioinformatics.irida.web.assembler.resource.RootResource;
 import ca.corefacility.bioinformatics.irida.web.controller.api.RESTGenericController;
@@ -24,10 +25,12 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.view.RedirectView;
 
 import javax.servlet.http.HttpServletResponse;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -54,6 +57,11 @@ public class RESTProjectSamplesController {
 	
 	public static final String REL_PROJECT_SAMPLE = "project/sample";
 
+	/**
+	 * How far (in milliseconds) before a change token to look for changes.
+	 */
+	private static final long CHANGE_TOKEN_OVERLAP = 1000;
+
 	/**
 	 * Reference to {@link ProjectService}.
 	 */
@@ -197,6 +205,56 @@ public class RESTProjectSamplesController {
 		return modelMap;
 	}
 
+	/**
+	 * Get the {@link Sample}s in this {@link Project} that have changed since a
+	 * client last synchronized it, along with links to the samples that have
+	 * been removed from the project since then.
+	 *
+	 * @param projectId
+	 *            the identifier of the {@link Project} to get the
+	 *            {@link Sample}s for.
+	 * @param modifiedSince
+	 *            the change token returned by the client's last request, or 0
+	 *            to get every sample
+	 * @return the changed {@link Sample}s and a token to get the next changes
+	 */
+	@RequestMapping(value = "/api/projects/{projectId}/samples", method = RequestMethod.GET, params = "modifiedSince")
+	public ModelMap getProjectSampleChanges(@PathVariable Long projectId, @RequestParam long modifiedSince) {
+		// the token is read before the changes so nothing made during the
+		// request is missed by the next request
+		long changeToken = System.currentTimeMillis();
+
+		ModelMap modelMap = new ModelMap();
+		Project p = projectService.read(projectId);
+
+		// sample dates are only stored to the second, so look back a little
+		// further than asked. Resending a few samples is harmless.
+		Date since = new Date(Math.max(modifiedSince - CHANGE_TOKEN_OVERLAP, 0));
+		List<Sample> samples = modifiedSince > 0 ? sampleService.getSamplesForProjectShallowChangedSince(p, since)
+				: sampleService.getSamplesForProjectShallow(p);
+
+		ResourceChanges<Sample> sampleResources = new ResourceChanges<>(samples.size(), String.valueOf(changeToken));
+
+		for (Sample sample : samples) {
+			addLinksForSample(Optional.of(p), sample);
+			sampleResources.add(sample);
+		}
+
+		if (modifiedSince > 0) {
+			for (Long removedId : sampleService.getSampleIdsRemovedFromProjectSince(p, since)) {
+				sampleResources.addRemoved(linkTo(methodOn(RESTProjectSamplesController.class).getSample(removedId))
+						.withSelfRel().getHref());
+			}
+		}
+
+		sampleResources.add(linkTo(methodOn(RESTProjectSamplesController.class).getProjectSamples(projectId))
+				.withSelfRel());
+
+		modelMap.addAttribute(RESTGenericController.RESOURCE_NAME, sampleResources);
+
+		return modelMap;
+	}
+
 	/**
 	 * Get samples by a given string name
 	 *
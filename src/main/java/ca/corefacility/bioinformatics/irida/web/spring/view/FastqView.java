@@ -1,13 +1,14 @@
 package ca.corefacility.bioinformatics.irida.web.spring.view;
 
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.servlet.view.AbstractView;
@@ -24,6 +25,7 @@ import com.google.common.net.HttpHeaders;
 public class FastqView extends AbstractView {
     public static final String DEFAULT_CONTENT_TYPE = "application/fastq";
     private static final Logger logger = LoggerFactory.getLogger(FastqView.class);
+    private static final String GZIP_EXTENSION = ".gz";
 
     /**
      * Default constructor
@@ -40,13 +42,25 @@ public class FastqView extends AbstractView {
     	SequenceFile sfr = (SequenceFile) model.get(RESTGenericController.RESOURCE_NAME);
         Path fileContent = sfr.getFile();
         String filename = fileContent.getFileName().toString();
+        boolean gzipped = sfr.isGzipped();
+        if (gzipped && filename.endsWith(GZIP_EXTENSION)) {
+            // the client asked for FASTQ, so send the decompressed file
+            filename = filename.substring(0, filename.length() - GZIP_EXTENSION.length());
+        }
         logger.trace("Sending file to client [" + filename + "]");
         response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
-        response.setHeader(HttpHeaders.CONTENT_TYPE, DEFAULT_CONTENT_TYPE);
-        response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(Files.size(fileContent)));
-        OutputStream os = response.getOutputStream();
-        Files.copy(fileContent, os);
-        os.flush();
-        os.close();
+        if (gzipped) {
+            // the decompressed size isn't known without reading the whole file,
+            // so ranges can't be served
+            response.setHeader(HttpHeaders.CONTENT_TYPE, DEFAULT_CONTENT_TYPE);
+            OutputStream os = response.getOutputStream();
+            try (InputStream is = sfr.getFileInputStream()) {
+                IOUtils.copyLarge(is, os);
+            }
+            os.flush();
+            os.close();
+        } else {
+            new RangedFileSender(fileContent, DEFAULT_CONTENT_TYPE).send(request, response);
+        }
     }
 }
@@ -1,7 +1,5 @@
 package ca.corefacility.bioinformatics.irida.web.spring.view;
 
-import java.io.OutputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Map;
 
@@ -43,11 +41,6 @@ public class NewickFileView extends AbstractView {
 		String filename = fileContent.getFileName().toString();
 		logger.trace("Sending file to client [" + filename + "]");
 		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
-		response.setHeader(HttpHeaders.CONTENT_TYPE, DEFAULT_CONTENT_TYPE);
-		response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(Files.size(fileContent)));
-		OutputStream os = response.getOutputStream();
-		Files.copy(fileContent, os);
-		os.flush();
-		os.close();
+		new RangedFileSender(fileContent, DEFAULT_CONTENT_TYPE).send(request, response);
 	}
 }
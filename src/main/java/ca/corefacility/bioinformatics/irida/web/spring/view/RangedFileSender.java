@@ -0,0 +1,369 @@
+package ca.corefacility.bioinformatics.irida.web.spring.view;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.net.HttpHeaders;
+
+/**
+ * Sends a file on disk to the client, honouring HTTP conditional and byte
+ * range requests so that an interrupted download can be resumed instead of
+ * restarted.
+ * <p>
+ * When the servlet container supports it (Tomcat's sendfile) the file is
+ * handed to the container to be sent directly by the kernel. Otherwise the
+ * file is transferred to the response with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+ * </p>
+ */
+public class RangedFileSender {
+	private static final Logger logger = LoggerFactory.getLogger(RangedFileSender.class);
+
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	private static final String BYTES_UNIT = "bytes";
+	private static final String CRLF = "\r\n";
+
+	/**
+	 * Requests for more ranges than this are answered with the whole file
+	 * rather than building a huge multipart response.
+	 */
+	private static final int MAX_RANGES = 32;
+
+	private final Path file;
+	private final String contentType;
+	private final String entityTag;
+
+	/**
+	 * Create a sender for a file. The entity tag is built from the path, size
+	 * and modification time of the file being sent, so it changes whenever a
+	 * different file or a different version of the file is served.
+	 *
+	 * @param file
+	 *            the file to send
+	 * @param contentType
+	 *            the content type of the file
+	 * @throws IOException
+	 *             if the file's attributes can't be read
+	 */
+	public RangedFileSender(Path file, String contentType) throws IOException {
+		this.file = file;
+		this.contentType = contentType;
+		this.entityTag = "\"" + Long.toHexString(Files.size(file)) + "-"
+				+ Long.toHexString(Files.getLastModifiedTime(file).toMillis()) + "-"
+				+ Integer.toHexString(file.toAbsolutePath().toString().hashCode()) + "\"";
+	}
+
+	/**
+	 * Send the file to the client. Headers other than the content and caching
+	 * headers (ie. Content-Disposition) should be set before calling this.
+	 *
+	 * @param request
+	 *            the request for the file
+	 * @param response
+	 *            the response to write the file to
+	 * @throws IOException
+	 *             if the file can't be read or the response can't be written
+	 */
+	public void send(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		long length = Files.size(file);
+		long lastModified = Files.getLastModifiedTime(file).toMillis();
+
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT);
+		response.setHeader(HttpHeaders.ETAG, entityTag);
+		response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+		if (isNotModified(request, lastModified)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		List<long[]> ranges = null;
+		String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+		if (rangeHeader != null && isRangeCurrent(request, lastModified)) {
+			ranges = parseRanges(rangeHeader, length);
+		}
+
+		boolean sendBody = !"HEAD".equalsIgnoreCase(request.getMethod());
+
+		if (ranges == null) {
+			response.setStatus(HttpServletResponse.SC_OK);
+			response.setContentType(contentType);
+			response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(length));
+			if (sendBody) {
+				sendRange(request, response, 0, length);
+			}
+		} else if (ranges.isEmpty()) {
+			response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " */" + length);
+			response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+		} else if (ranges.size() == 1) {
+			long[] range = ranges.get(0);
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setContentType(contentType);
+			response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, length));
+			response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(range[1] - range[0] + 1));
+			if (sendBody) {
+				sendRange(request, response, range[0], range[1] - range[0] + 1);
+			}
+		} else {
+			sendMultipart(response, ranges, length, sendBody);
+		}
+	}
+
+	/**
+	 * Check the If-None-Match and If-Modified-Since headers of the request.
+	 *
+	 * @param request
+	 *            the request
+	 * @param lastModified
+	 *            when the file was last modified
+	 * @return true if the client's cached copy is current
+	 */
+	private boolean isNotModified(HttpServletRequest request, long lastModified) {
+		String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+		if (ifNoneMatch != null) {
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.equals("*") || weakTag(tag).equals(weakTag(entityTag))) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		long ifModifiedSince = getDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+		return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+	}
+
+	/**
+	 * Check the If-Range header of the request. A range is only sent if the
+	 * client's partial copy is of the current file.
+	 *
+	 * @param request
+	 *            the request
+	 * @param lastModified
+	 *            when the file was last modified
+	 * @return true if the requested range should be sent
+	 */
+	private boolean isRangeCurrent(HttpServletRequest request, long lastModified) {
+		String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+		if (ifRange == null) {
+			return true;
+		}
+
+		ifRange = ifRange.trim();
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			// only strong entity tags can be used for ranges
+			return ifRange.equals(entityTag);
+		}
+
+		long date = getDateHeader(request, HttpHeaders.IF_RANGE);
+		return date != -1 && lastModified / 1000 <= date / 1000;
+	}
+
+	/**
+	 * Parse a Range header into a list of inclusive start and end offsets.
+	 *
+	 * @param rangeHeader
+	 *            the value of the Range header
+	 * @param length
+	 *            the length of the file
+	 * @return the satisfiable ranges (empty if none are satisfiable), or null
+	 *         if the header is invalid and the whole file should be sent
+	 */
+	static List<long[]> parseRanges(String rangeHeader, long length) {
+		int equals = rangeHeader.indexOf('=');
+		if (equals == -1 || !rangeHeader.substring(0, equals).trim().equalsIgnoreCase(BYTES_UNIT)) {
+			return null;
+		}
+
+		String[] specs = rangeHeader.substring(equals + 1).split(",");
+		if (specs.length > MAX_RANGES) {
+			return null;
+		}
+
+		List<long[]> ranges = new ArrayList<>();
+		try {
+			for (String spec : specs) {
+				spec = spec.trim();
+				int dash = spec.indexOf('-');
+				if (dash == -1) {
+					return null;
+				}
+
+				String first = spec.substring(0, dash).trim();
+				String last = spec.substring(dash + 1).trim();
+				long start;
+				long end;
+				if (first.isEmpty()) {
+					// suffix range: the last n bytes of the file
+					long suffix = Long.parseLong(last);
+					if (suffix <= 0) {
+						continue;
+					}
+					start = Math.max(0, length - suffix);
+					end = length - 1;
+				} else {
+					start = Long.parseLong(first);
+					end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+					if (start < 0 || end < start) {
+						return null;
+					}
+					if (start >= length) {
+						continue;
+					}
+					end = Math.min(end, length - 1);
+				}
+
+				ranges.add(new long[] { start, end });
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+
+		return ranges;
+	}
+
+	/**
+	 * Send a single section of the file as the whole response body.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @param start
+	 *            the offset in the file to start at
+	 * @param count
+	 *            the number of bytes to send
+	 * @throws IOException
+	 *             if the file can't be sent
+	 */
+	private void sendRange(HttpServletRequest request, HttpServletResponse response, long start, long count)
+			throws IOException {
+		if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+			logger.trace("Sending [" + file + "] with container sendfile");
+			request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+			request.setAttribute(SENDFILE_START, start);
+			request.setAttribute(SENDFILE_END, start + count);
+			return;
+		}
+
+		ServletOutputStream os = response.getOutputStream();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			transfer(channel, start, count, Channels.newChannel(os));
+		}
+		os.flush();
+	}
+
+	/**
+	 * Send several sections of the file as a multipart/byteranges response.
+	 *
+	 * @param response
+	 *            the response
+	 * @param ranges
+	 *            the sections to send
+	 * @param length
+	 *            the length of the file
+	 * @param sendBody
+	 *            whether to write the response body
+	 * @throws IOException
+	 *             if the file can't be sent
+	 */
+	private void sendMultipart(HttpServletResponse response, List<long[]> ranges, long length, boolean sendBody)
+			throws IOException {
+		String boundary = UUID.randomUUID().toString().replace("-", "");
+
+		List<byte[]> partHeaders = new ArrayList<>();
+		long contentLength = 0;
+		for (long[] range : ranges) {
+			byte[] header = (CRLF + "--" + boundary + CRLF + HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+					+ HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, length) + CRLF + CRLF)
+							.getBytes(StandardCharsets.US_ASCII);
+			partHeaders.add(header);
+			contentLength += header.length + range[1] - range[0] + 1;
+		}
+		byte[] closing = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+		contentLength += closing.length;
+
+		response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		response.setContentType("multipart/byteranges; boundary=" + boundary);
+		response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(contentLength));
+		if (!sendBody) {
+			return;
+		}
+
+		ServletOutputStream os = response.getOutputStream();
+		WritableByteChannel out = Channels.newChannel(os);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			for (int i = 0; i < ranges.size(); i++) {
+				long[] range = ranges.get(i);
+				os.write(partHeaders.get(i));
+				transfer(channel, range[0], range[1] - range[0] + 1, out);
+			}
+		}
+		os.write(closing);
+		os.flush();
+	}
+
+	/**
+	 * Transfer a section of a file to a channel.
+	 *
+	 * @param channel
+	 *            the file to read from
+	 * @param position
+	 *            the offset in the file to start at
+	 * @param count
+	 *            the number of bytes to transfer
+	 * @param out
+	 *            the channel to write to
+	 * @throws IOException
+	 *             if the transfer fails or the file is shorter than expected
+	 */
+	private void transfer(FileChannel channel, long position, long count, WritableByteChannel out)
+			throws IOException {
+		while (count > 0) {
+			long sent = channel.transferTo(position, count, out);
+			if (sent <= 0) {
+				throw new IOException("File [" + file + "] ended before " + count + " remaining bytes were sent");
+			}
+			position += sent;
+			count -= sent;
+		}
+	}
+
+	private static String contentRange(long[] range, long length) {
+		return BYTES_UNIT + " " + range[0] + "-" + range[1] + "/" + length;
+	}
+
+	private static String weakTag(String tag) {
+		return tag.startsWith("W/") ? tag.substring(2) : tag;
+	}
+
+	private static long getDateHeader(HttpServletRequest request, String name) {
+		try {
+			return request.getDateHeader(name);
+		} catch (IllegalArgumentException e) {
+			logger.trace("Ignoring invalid " + name + " header", e);
+			return -1;
+		}
+	}
+}
@@ -1,11 +1,13 @@
 package ca.corefacility.bioinformatics.irida.config.analysis;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
@@ -17,10 +19,12 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import com.github.jmchilton.blend4j.galaxy.JobsClient;
 import com.github.jmchilton.blend4j.galaxy.ToolsClient;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import ca.corefacility.bioinformatics.irida.config.conditions.NonWindowsPlatformCondition;
 import ca.corefacility.bioinformatics.irida.model.user.Role;
@@ -96,6 +100,13 @@ public class AnalysisExecutionServiceTestConfig {
 
 	@Autowired
 	private SequencingObjectService sequencingObjectService;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	@Qualifier("outputFileBaseDirectory")
+	private Path outputFileBaseDirectory;
 	
 	@Autowired
 	private AnalysisSubmissionSampleProcessor analysisSubmissionSampleService;
@@ -121,7 +132,8 @@ public class AnalysisExecutionServiceTestConfig {
 	@Bean
 	public AnalysisExecutionServiceGalaxyAsync analysisExecutionServiceGalaxyAsync() {
 		return new AnalysisExecutionServiceGalaxyAsync(analysisSubmissionService, analysisService,
-				galaxyWorkflowService, analysisWorkspaceService(), iridaWorkflowsService, analysisSubmissionSampleService);
+				galaxyWorkflowService, analysisWorkspaceService(), iridaWorkflowsService, analysisSubmissionSampleService,
+				transactionManager);
 	}
 	
 	@Lazy
@@ -137,7 +149,7 @@ public class AnalysisExecutionServiceTestConfig {
 		return new AnalysisWorkspaceServiceGalaxy(galaxyHistoriesService, galaxyWorkflowService,
 				galaxyLibrariesService, iridaWorkflowsService, analysisCollectionServiceGalaxy(),
 				analysisProvenanceServiceGalaxy(), analysisParameterServiceGalaxy,
-				sequencingObjectService);
+				sequencingObjectService, MoreExecutors.sameThreadExecutor(), outputFileBaseDirectory);
 	}
 
 	@Lazy
@@ -151,7 +163,8 @@ public class AnalysisExecutionServiceTestConfig {
 	public AnalysisProvenanceServiceGalaxy analysisProvenanceServiceGalaxy() {
 		final ToolsClient toolsClient = localGalaxy.getGalaxyInstanceAdmin().getToolsClient();
 		final JobsClient jobsClient = localGalaxy.getGalaxyInstanceAdmin().getJobsClient();
-		return new AnalysisProvenanceServiceGalaxy(galaxyHistoriesService, toolsClient, jobsClient);
+		return new AnalysisProvenanceServiceGalaxy(galaxyHistoriesService, toolsClient, jobsClient,
+				MoreExecutors.sameThreadExecutor());
 	}
 
 	/**
@@ -167,6 +180,50 @@ public class AnalysisExecutionServiceTestConfig {
 		return new DelegatingSecurityContextScheduledExecutorService(delegateExecutor, schedulerContext);
 	}
 
+	/**
+	 * Executor for preparing analyses.
+	 * 
+	 * @return The single threaded {@link #analysisTaskExecutor()}.
+	 */
+	@Profile({"test", "it"})
+	@Bean
+	public Executor analysisPrepareExecutor() {
+		return analysisTaskExecutor();
+	}
+
+	/**
+	 * Executor for executing analyses.
+	 * 
+	 * @return The single threaded {@link #analysisTaskExecutor()}.
+	 */
+	@Profile({"test", "it"})
+	@Bean
+	public Executor analysisExecuteExecutor() {
+		return analysisTaskExecutor();
+	}
+
+	/**
+	 * Executor for transferring analysis results.
+	 * 
+	 * @return The single threaded {@link #analysisTaskExecutor()}.
+	 */
+	@Profile({"test", "it"})
+	@Bean
+	public Executor analysisTransferExecutor() {
+		return analysisTaskExecutor();
+	}
+
+	/**
+	 * Executor for post-processing analysis results.
+	 * 
+	 * @return The single threaded {@link #analysisTaskExecutor()}.
+	 */
+	@Profile({"test", "it"})
+	@Bean
+	public Executor analysisPostProcessingExecutor() {
+		return analysisTaskExecutor();
+	}
+
 	/**
 	 * Creates a security context object for the analysis tasks.
 	 * 
@@ -33,6 +33,7 @@ import ca.corefacility.bioinformatics.irida.repositories.ProjectEventRepository;
 import ca.corefacility.bioinformatics.irida.repositories.ProjectRepository;
 import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectSampleJoinRepository;
 import ca.corefacility.bioinformatics.irida.repositories.sample.SampleRepository;
+import ca.corefacility.bioinformatics.irida.security.permissions.project.ProjectRoleCache;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -43,6 +44,7 @@ public class ProjectEventHandlerTest {
 	private ProjectSampleJoinRepository psjRepository;
 	private ProjectRepository projectRepository;
 	private SampleRepository sampleRepository;
+	private ProjectRoleCache projectRoleCache;
 
 	@Before
 	public void setup() {
@@ -50,7 +52,9 @@ public class ProjectEventHandlerTest {
 		psjRepository = mock(ProjectSampleJoinRepository.class);
 		projectRepository = mock(ProjectRepository.class);
 		sampleRepository = mock(SampleRepository.class);
-		handler = new ProjectEventHandler(eventRepository, psjRepository, projectRepository, sampleRepository);
+		projectRoleCache = mock(ProjectRoleCache.class);
+		handler = new ProjectEventHandler(eventRepository, psjRepository, projectRepository, sampleRepository,
+				projectRoleCache);
 	}
 
 	@Test
@@ -72,6 +76,7 @@ public class ProjectEventHandlerTest {
 		assertTrue(event instanceof SampleAddedProjectEvent);
 
 		verify(projectRepository).save(any(Project.class));
+		verifyZeroInteractions(projectRoleCache);
 	}
 
 	@Test
@@ -93,6 +98,7 @@ public class ProjectEventHandlerTest {
 		assertTrue(event instanceof UserRoleSetProjectEvent);
 
 		verify(projectRepository).save(any(Project.class));
+		verify(projectRoleCache).invalidateProject(project);
 	}
 
 	@Test
@@ -113,6 +119,7 @@ public class ProjectEventHandlerTest {
 		assertTrue(event instanceof UserRemovedProjectEvent);
 
 		verify(projectRepository).save(any(Project.class));
+		verify(projectRoleCache).invalidateProject(project);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -11,6 +11,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.time.Clock;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -44,6 +45,7 @@ import com.github.springtestdbunit.annotation.DatabaseTearDown;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import ca.corefacility.bioinformatics.irida.config.IridaApiGalaxyTestConfig;
 import ca.corefacility.bioinformatics.irida.config.conditions.WindowsPlatformCondition;
@@ -63,6 +65,8 @@ import ca.corefacility.bioinformatics.irida.service.CleanupAnalysisSubmissionCon
 import ca.corefacility.bioinformatics.irida.service.DatabaseSetupGalaxyITService;
 import ca.corefacility.bioinformatics.irida.service.SequencingObjectService;
 import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisExecutionService;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisSubmissionQueue;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisWorkflowMonitor;
 import ca.corefacility.bioinformatics.irida.service.impl.AnalysisExecutionScheduledTaskImpl;
 
 /**
@@ -99,6 +103,9 @@ public class SNVPhylAnalysisIT {
 	@Autowired
 	private AnalysisExecutionService analysisExecutionService;
 
+	@Autowired
+	private AnalysisSubmissionQueue submissionQueue;
+
 	@Autowired
 	private IridaWorkflow snvPhylWorkflow;
 
@@ -160,8 +167,10 @@ public class SNVPhylAnalysisIT {
 	public void setup() throws URISyntaxException, IOException {
 		Assume.assumeFalse(WindowsPlatformCondition.isWindows());
 
+		AnalysisWorkflowMonitor workflowMonitor = new AnalysisWorkflowMonitor(analysisExecutionService,
+				MoreExecutors.sameThreadExecutor(), 0, 0, Clock.systemUTC());
 		analysisExecutionScheduledTask = new AnalysisExecutionScheduledTaskImpl(analysisSubmissionRepository,
-				analysisExecutionService, CleanupAnalysisSubmissionCondition.NEVER_CLEANUP, galaxyJobErrorsService, jobErrorRepository);
+				analysisExecutionService, CleanupAnalysisSubmissionCondition.NEVER_CLEANUP, galaxyJobErrorsService, jobErrorRepository, workflowMonitor, submissionQueue, false);
 
 		Path tempDir = Files.createTempDirectory(rootTempDirectory, "snvphylTest");
 
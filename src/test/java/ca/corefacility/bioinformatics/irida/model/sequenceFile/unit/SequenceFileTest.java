@@ -0,0 +1,85 @@
+package ca.corefacility.bioinformatics.irida.model.sequenceFile.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
+
+/**
+ * Tests for reading the contents of a {@link SequenceFile}
+ */
+public class SequenceFileTest {
+	private static final String FASTQ_CONTENTS = "@testread\nACGTACGT\n+\n????????\n";
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory(null);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (Path path : Files.newDirectoryStream(directory)) {
+			Files.delete(path);
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void testReadUncompressedFile() throws IOException {
+		Path path = directory.resolve("file.fastq");
+		Files.write(path, FASTQ_CONTENTS.getBytes(StandardCharsets.UTF_8));
+		SequenceFile sequenceFile = new SequenceFile(path);
+
+		assertFalse("file should not be gzipped", sequenceFile.isGzipped());
+		try (InputStream is = sequenceFile.getFileInputStream()) {
+			assertEquals("contents should be read as stored", FASTQ_CONTENTS,
+					IOUtils.toString(is, "UTF-8"));
+		}
+	}
+
+	@Test
+	public void testReadCompressedFile() throws IOException {
+		Path path = directory.resolve("file.fastq.gz");
+		try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(path))) {
+			os.write(FASTQ_CONTENTS.getBytes(StandardCharsets.UTF_8));
+		}
+		SequenceFile sequenceFile = new SequenceFile(path);
+
+		assertTrue("file should be gzipped", sequenceFile.isGzipped());
+		try (InputStream is = sequenceFile.getFileInputStream()) {
+			assertEquals("contents should be decompressed as they're read", FASTQ_CONTENTS,
+					IOUtils.toString(is, "UTF-8"));
+		}
+	}
+
+	@Test
+	public void testIsGzippedStream() throws IOException {
+		byte[] magic = { (byte) 0x1f, (byte) 0x8b, 1 };
+		BufferedInputStream stream = new BufferedInputStream(new ByteArrayInputStream(magic));
+		assertTrue("stream should be gzipped", SequenceFile.isGzipped(stream));
+		assertEquals("no bytes should be consumed from the stream", 0x1f, stream.read());
+
+		assertFalse("reversed magic number should not be gzipped", SequenceFile.isGzipped(new ByteArrayInputStream(
+				new byte[] { (byte) 0x8b, (byte) 0x1f })));
+		assertFalse("stream shorter than the magic number should not be gzipped",
+				SequenceFile.isGzipped(new ByteArrayInputStream(new byte[] { (byte) 0x1f })));
+	}
+}
@@ -5,6 +5,7 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Clock;
 import java.util.List;
 import java.util.UUID;
 
@@ -34,11 +35,14 @@ import ca.corefacility.bioinformatics.irida.service.AnalysisExecutionScheduledTa
 import ca.corefacility.bioinformatics.irida.service.CleanupAnalysisSubmissionCondition;
 import ca.corefacility.bioinformatics.irida.service.DatabaseSetupGalaxyITService;
 import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisExecutionService;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisSubmissionQueue;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisWorkflowMonitor;
 import ca.corefacility.bioinformatics.irida.service.impl.AnalysisExecutionScheduledTaskImpl;
 
 import com.github.springtestdbunit.DbUnitTestExecutionListener;
 import com.github.springtestdbunit.annotation.DatabaseSetup;
 import com.github.springtestdbunit.annotation.DatabaseTearDown;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -73,6 +77,8 @@ public class GalaxyJobErrorsServiceIT {
 	@Autowired
 	private AnalysisExecutionService analysisExecutionService;
 	@Autowired
+	private AnalysisSubmissionQueue submissionQueue;
+	@Autowired
 	private JobErrorRepository jobErrorRepository;
 
 	@Before
@@ -91,9 +97,11 @@ public class GalaxyJobErrorsServiceIT {
 		Files.delete(referenceFilePath);
 		Files.copy(referenceFilePathReal, referenceFilePath);
 
+		AnalysisWorkflowMonitor workflowMonitor = new AnalysisWorkflowMonitor(analysisExecutionService,
+				MoreExecutors.sameThreadExecutor(), 0, 0, Clock.systemUTC());
 		analysisExecutionScheduledTask = new AnalysisExecutionScheduledTaskImpl(analysisSubmissionRepository,
 				analysisExecutionService, CleanupAnalysisSubmissionCondition.ALWAYS_CLEANUP, galaxyJobErrorsService,
-				jobErrorRepository);
+				jobErrorRepository, workflowMonitor, submissionQueue, false);
 	}
 
 	/**
@@ -4,6 +4,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.URISyntaxException;
@@ -11,7 +14,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -44,6 +46,7 @@ import com.github.jmchilton.blend4j.galaxy.beans.HistoryDataset;
 import com.github.jmchilton.blend4j.galaxy.beans.HistoryDetails;
 import com.github.jmchilton.blend4j.galaxy.beans.collection.request.CollectionDescription;
 import com.github.jmchilton.blend4j.galaxy.beans.collection.request.HistoryDatasetElement;
+import com.google.common.collect.Sets;
 import com.github.jmchilton.blend4j.galaxy.beans.collection.response.CollectionResponse;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.UniformInterfaceException;
@@ -339,14 +342,13 @@ public class GalaxyHistoriesServiceTest {
 	 */
 	@Test
 	public void testGetHistory() throws ExecutionManagerObjectNotFoundException {
-		List<History> historyList = new LinkedList<History>();
-		historyList.add(history);
-		
-		when(historiesClient.getHistories()).thenReturn(historyList);
+		when(historyDetails.getId()).thenReturn(HISTORY_ID);
+		when(historiesClient.showHistory(HISTORY_ID)).thenReturn(historyDetails);
 		
 		History history = galaxyHistory.findById(HISTORY_ID);
 		assertNotNull(history);
 		assertEquals(HISTORY_ID, history.getId());
+		verify(historiesClient, never()).getHistories();
 	}
 	
 	/**
@@ -358,6 +360,17 @@ public class GalaxyHistoriesServiceTest {
 		galaxyHistory.findById(INVALID_HISTORY_ID);
 	}
 	
+	/**
+	 * Tests not getting a History when Galaxy responds with an error.
+	 * @throws ExecutionManagerObjectNotFoundException 
+	 */
+	@Test(expected=NoGalaxyHistoryException.class)
+	public void testGetHistoryError() throws ExecutionManagerObjectNotFoundException {
+		when(historiesClient.showHistory(INVALID_HISTORY_ID)).thenThrow(uniformInterfaceException);
+		
+		galaxyHistory.findById(INVALID_HISTORY_ID);
+	}
+	
 	
 	/**
 	 * Tests getting a valid history dataset given a file name and history.
@@ -408,4 +421,39 @@ public class GalaxyHistoriesServiceTest {
 		
 		galaxyHistory.getDatasetForFileInHistory(FILENAME, HISTORY_ID);
 	}
+	
+	/**
+	 * Tests getting datasets for several files in a history only lists the
+	 * history contents once.
+	 * @throws GalaxyDatasetException 
+	 */
+	@Test
+	public void testGetDatasetsForFilesInHistory() throws GalaxyDatasetException {
+		Dataset dataset1 = new Dataset();
+		Dataset dataset2 = new Dataset();
+		List<HistoryContents> historyContentsList = buildHistoryContentsList("file1", DATA_ID, "file2", DATA_ID_2);
+		
+		when(historiesClient.showHistoryContents(HISTORY_ID)).thenReturn(historyContentsList);
+		when(historiesClient.showDataset(HISTORY_ID, DATA_ID)).thenReturn(dataset1);
+		when(historiesClient.showDataset(HISTORY_ID, DATA_ID_2)).thenReturn(dataset2);
+		
+		Map<String, Dataset> datasets = galaxyHistory.getDatasetsForFilesInHistory(Sets.newHashSet("file1", "file2"),
+				HISTORY_ID);
+		
+		assertEquals(dataset1, datasets.get("file1"));
+		assertEquals(dataset2, datasets.get("file2"));
+		verify(historiesClient, times(1)).showHistoryContents(HISTORY_ID);
+	}
+	
+	/**
+	 * Tests getting datasets for several files when one of the files is
+	 * missing from the history.
+	 * @throws GalaxyDatasetException 
+	 */
+	@Test(expected=GalaxyDatasetNotFoundException.class)
+	public void testGetDatasetsForFilesInHistoryMissingDataset() throws GalaxyDatasetException {
+		when(historiesClient.showHistoryContents(HISTORY_ID)).thenReturn(buildHistoryContentsList("file1", DATA_ID));
+		
+		galaxyHistory.getDatasetsForFilesInHistory(Sets.newHashSet("file1", "file2"), HISTORY_ID);
+	}
 }
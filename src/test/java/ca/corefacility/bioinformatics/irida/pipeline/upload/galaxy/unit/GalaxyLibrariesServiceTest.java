@@ -3,18 +3,35 @@ package ca.corefacility.bioinformatics.irida.pipeline.upload.galaxy.unit;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import com.github.jmchilton.blend4j.galaxy.LibrariesClient;
+import com.github.jmchilton.blend4j.galaxy.beans.FilesystemPathsLibraryUpload;
 import com.github.jmchilton.blend4j.galaxy.beans.Library;
+import com.github.jmchilton.blend4j.galaxy.beans.LibraryContent;
+import com.github.jmchilton.blend4j.galaxy.beans.LibraryDataset;
+import com.google.common.collect.ImmutableSet;
+import com.sun.jersey.api.client.ClientResponse;
 
+import ca.corefacility.bioinformatics.irida.exceptions.UploadErrorException;
+import ca.corefacility.bioinformatics.irida.exceptions.UploadException;
 import ca.corefacility.bioinformatics.irida.exceptions.galaxy.CreateLibraryException;
 import ca.corefacility.bioinformatics.irida.model.upload.galaxy.GalaxyProjectName;
+import ca.corefacility.bioinformatics.irida.model.workflow.execution.InputFileType;
+import ca.corefacility.bioinformatics.irida.pipeline.upload.DataStorage;
 import ca.corefacility.bioinformatics.irida.pipeline.upload.galaxy.GalaxyLibrariesService;
 
 /**
@@ -26,17 +43,43 @@ public class GalaxyLibrariesServiceTest {
 	@Mock
 	private LibrariesClient librariesClient;
 	
+	@Mock
+	private ClientResponse uploadResponse;
+	
 	private final static String LIBRARY_ID = "1";
+	private final static String ROOT_FOLDER_ID = "2";
+	private final static String DATASET_ID_1 = "3";
+	private final static String DATASET_ID_2 = "4";
+	
+	private final static InputFileType FILE_TYPE = InputFileType.FASTQ_SANGER;
 	
 	private Library testLibrary;
 	
+	private Path dataFile1;
+	private Path dataFile2;
+	
 	/**
 	 * Setup for tests.
+	 * @throws URISyntaxException 
 	 */
 	@Before
-	public void setup() {
+	public void setup() throws URISyntaxException {
 		MockitoAnnotations.initMocks(this);
 		setupLibrariesTest();
+		
+		dataFile1 = Paths.get(this.getClass().getResource("testData1.fastq").toURI());
+		dataFile2 = Paths.get(this.getClass().getResource("testData2.fastq").toURI());
+		
+		LibraryContent rootFolder = new LibraryContent();
+		rootFolder.setId(ROOT_FOLDER_ID);
+		when(librariesClient.getRootFolder(LIBRARY_ID)).thenReturn(rootFolder);
+		
+		when(uploadResponse.getClientResponseStatus()).thenReturn(ClientResponse.Status.OK);
+		when(uploadResponse.getEntity(String.class)).thenReturn("[{\"id\": \"" + DATASET_ID_1
+				+ "\", \"name\": \"testData1.fastq\"}, {\"id\": \"" + DATASET_ID_2
+				+ "\", \"name\": \"testData2.fastq\"}]");
+		when(librariesClient.uploadFilesystemPathsRequest(eq(LIBRARY_ID), any(FilesystemPathsLibraryUpload.class)))
+				.thenReturn(uploadResponse);
 	}
 	
 	/**
@@ -117,4 +160,93 @@ public class GalaxyLibrariesServiceTest {
 
 		new GalaxyLibrariesService(librariesClient, 1, 2, 1).buildEmptyLibrary(new GalaxyProjectName("test"));
 	}
+
+	/**
+	 * Tests uploading many files to a library in a single request.
+	 * 
+	 * @throws UploadException
+	 */
+	@Test
+	public void testFilesToLibraryWaitSingleRequest() throws UploadException {
+		when(librariesClient.showDataset(LIBRARY_ID, DATASET_ID_1)).thenReturn(libraryDataset("ok"));
+		when(librariesClient.showDataset(LIBRARY_ID, DATASET_ID_2)).thenReturn(libraryDataset("ok"));
+
+		Map<Path, String> datasets = new GalaxyLibrariesService(librariesClient, 1, 2, 1).filesToLibraryWait(
+				ImmutableSet.of(dataFile1, dataFile2), FILE_TYPE, testLibrary, DataStorage.LOCAL);
+
+		assertEquals(DATASET_ID_1, datasets.get(dataFile1));
+		assertEquals(DATASET_ID_2, datasets.get(dataFile2));
+		verify(librariesClient, times(1)).uploadFilesystemPathsRequest(eq(LIBRARY_ID),
+				any(FilesystemPathsLibraryUpload.class));
+	}
+
+	/**
+	 * Tests the root folder of a library is only looked up once.
+	 * 
+	 * @throws UploadException
+	 */
+	@Test
+	public void testRootFolderCached() throws UploadException {
+		GalaxyLibrariesService galaxyLibrariesService = new GalaxyLibrariesService(librariesClient, 1, 2, 1);
+
+		assertEquals(DATASET_ID_1, galaxyLibrariesService.fileToLibrary(dataFile1, FILE_TYPE, testLibrary,
+				DataStorage.LOCAL));
+		assertEquals(DATASET_ID_2, galaxyLibrariesService.fileToLibrary(dataFile2, FILE_TYPE, testLibrary,
+				DataStorage.LOCAL));
+
+		verify(librariesClient, times(1)).getRootFolder(LIBRARY_ID);
+	}
+
+	/**
+	 * Tests waiting for a dataset still being uploaded.
+	 * 
+	 * @throws UploadException
+	 */
+	@Test
+	public void testFilesToLibraryWaitPolling() throws UploadException {
+		when(librariesClient.showDataset(LIBRARY_ID, DATASET_ID_1)).thenReturn(libraryDataset("ok"));
+		when(librariesClient.showDataset(LIBRARY_ID, DATASET_ID_2)).thenReturn(libraryDataset("queued"),
+				libraryDataset("running"), libraryDataset("ok"));
+
+		new GalaxyLibrariesService(librariesClient, 1, 5, 2).filesToLibraryWait(
+				ImmutableSet.of(dataFile1, dataFile2), FILE_TYPE, testLibrary, DataStorage.LOCAL);
+
+		verify(librariesClient, times(1)).showDataset(LIBRARY_ID, DATASET_ID_1);
+		verify(librariesClient, times(3)).showDataset(LIBRARY_ID, DATASET_ID_2);
+	}
+
+	/**
+	 * Tests failing when a dataset ends up in an error state.
+	 * 
+	 * @throws UploadException
+	 */
+	@Test(expected = UploadErrorException.class)
+	public void testFilesToLibraryWaitFailState() throws UploadException {
+		when(librariesClient.showDataset(LIBRARY_ID, DATASET_ID_1)).thenReturn(libraryDataset("ok"));
+		when(librariesClient.showDataset(LIBRARY_ID, DATASET_ID_2)).thenReturn(libraryDataset("error"));
+
+		new GalaxyLibrariesService(librariesClient, 1, 2, 1).filesToLibraryWait(
+				ImmutableSet.of(dataFile1, dataFile2), FILE_TYPE, testLibrary, DataStorage.LOCAL);
+	}
+
+	/**
+	 * Tests failing when Galaxy doesn't return a dataset for every uploaded
+	 * file.
+	 * 
+	 * @throws UploadException
+	 */
+	@Test(expected = UploadException.class)
+	public void testFilesToLibraryMissingDataset() throws UploadException {
+		when(uploadResponse.getEntity(String.class)).thenReturn(
+				"[{\"id\": \"" + DATASET_ID_1 + "\", \"name\": \"testData1.fastq\"}]");
+
+		new GalaxyLibrariesService(librariesClient, 1, 2, 1).filesToLibrary(ImmutableSet.of(dataFile1, dataFile2),
+				FILE_TYPE, testLibrary, DataStorage.LOCAL);
+	}
+
+	private LibraryDataset libraryDataset(String state) {
+		LibraryDataset libraryDataset = new LibraryDataset();
+		libraryDataset.setState(state);
+		return libraryDataset;
+	}
 }
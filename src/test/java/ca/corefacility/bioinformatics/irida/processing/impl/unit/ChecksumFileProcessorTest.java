@@ -1,19 +1,29 @@
 package ca.corefacility.bioinformatics.irida.processing.impl.unit;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFilePair;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SingleEndSequenceFile;
 import ca.corefacility.bioinformatics.irida.processing.FileProcessorException;
 import ca.corefacility.bioinformatics.irida.processing.impl.ChecksumFileProcessor;
@@ -47,6 +57,49 @@ public class ChecksumFileProcessorTest {
 		assertEquals("checksums should be equal", CHECKSUM, file.getUploadSha256());
 	}
 
+	@Test
+	public void testChecksumPairInPool() throws IOException, InterruptedException {
+		final SequenceFile forward = constructSequenceFile();
+		final SequenceFile reverse = constructSequenceFile();
+		SequenceFilePair pair = new SequenceFilePair(forward, reverse);
+
+		Thread chainThread = Thread.currentThread();
+		Set<Thread> saveThreads = new HashSet<>();
+		doAnswer(invocation -> {
+			saveThreads.add(Thread.currentThread());
+			return invocation.getArguments()[0];
+		}).when(sequenceFileRepository).saveMetadata(any(SequenceFile.class));
+
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			fileProcessor.setFileProcessingPool(pool);
+			fileProcessor.process(pair);
+		} finally {
+			pool.shutdownNow();
+			pool.awaitTermination(1, TimeUnit.SECONDS);
+		}
+
+		verify(sequenceFileRepository, times(2)).saveMetadata(any(SequenceFile.class));
+		assertEquals("forward checksum should be set", CHECKSUM, forward.getUploadSha256());
+		assertEquals("reverse checksum should be set", CHECKSUM, reverse.getUploadSha256());
+		assertEquals("files should be saved on the calling thread", Collections.singleton(chainThread), saveThreads);
+	}
+
+	@Test(expected = FileProcessorException.class)
+	public void testFileNotExistsInPool() throws IOException, InterruptedException {
+		SequenceFilePair pair = new SequenceFilePair(constructSequenceFile(),
+				new SequenceFile(Paths.get("/reallyfakefile")));
+
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			fileProcessor.setFileProcessingPool(pool);
+			fileProcessor.process(pair);
+		} finally {
+			pool.shutdownNow();
+			pool.awaitTermination(1, TimeUnit.SECONDS);
+		}
+	}
+
 	@Test(expected = FileProcessorException.class)
 	public void testFileNotExists() throws IOException {
 		final SequenceFile sf = new SequenceFile(Paths.get("/reallyfakefile"));
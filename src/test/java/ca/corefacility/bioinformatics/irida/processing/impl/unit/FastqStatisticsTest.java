@@ -0,0 +1,60 @@
+package ca.corefacility.bioinformatics.irida.processing.impl.unit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisFastQC;
+import ca.corefacility.bioinformatics.irida.processing.impl.FastqStatistics;
+import uk.ac.babraham.FastQC.Sequence.SequenceFormatException;
+
+/**
+ * Tests for {@link FastqStatistics}.
+ */
+public class FastqStatisticsTest {
+
+	@Test
+	public void testFilteredReadsCounted() throws IOException, SequenceFormatException {
+		AnalysisFastQC analysis = computeStatistics("@read1 1:N:0:ATCACG\nACGT\n+\n????\n"
+				+ "@read2 1:Y:0:ATCACG\nAAAAAAAA\n+\n????????\n" + "@read3 2:N:0:ATCACG\nACGT\n+\n????\n");
+
+		assertEquals("Filtered read was not counted.", Integer.valueOf(1), analysis.getFilteredSequences());
+		assertEquals("Filtered read should not be in the total.", Integer.valueOf(2), analysis.getTotalSequences());
+		assertEquals("Filtered read should not be in the lengths.", Integer.valueOf(4), analysis.getMaxLength());
+	}
+
+	@Test
+	public void testReadNameWithFlagIsNotFiltered() throws IOException, SequenceFormatException {
+		AnalysisFastQC analysis = computeStatistics("@read:Y:1\nACGT\n+\n????\n");
+
+		assertEquals("Read should not be filtered.", Integer.valueOf(0), analysis.getFilteredSequences());
+		assertEquals("Read was not counted.", Integer.valueOf(1), analysis.getTotalSequences());
+	}
+
+	@Test(expected = SequenceFormatException.class)
+	public void testQualityLengthMismatch() throws IOException, SequenceFormatException {
+		computeStatistics("@read1\nACGT\n+\n???\n");
+	}
+
+	@Test
+	public void testDistinctSequencesNotMerged() throws IOException, SequenceFormatException {
+		AnalysisFastQC analysis = computeStatistics("@read1\nACGT\n+\n????\n@read2\nTGCA\n+\n????\n");
+
+		assertArrayEquals("Distinct sequences should not be duplicates.", new double[] { 0, 100 },
+				analysis.getDuplicationLevels().get(0), 0.001);
+	}
+
+	private static AnalysisFastQC computeStatistics(String fastq) throws IOException, SequenceFormatException {
+		FastqStatistics statistics = new FastqStatistics();
+		statistics.parse(new ByteArrayInputStream(fastq.getBytes(StandardCharsets.US_ASCII)));
+
+		AnalysisFastQC.AnalysisFastQCBuilder analysis = AnalysisFastQC.sloppyBuilder();
+		statistics.populate(analysis);
+		return analysis.build();
+	}
+}
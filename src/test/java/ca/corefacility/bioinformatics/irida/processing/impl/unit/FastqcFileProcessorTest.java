@@ -1,18 +1,22 @@
 package ca.corefacility.bioinformatics.irida.processing.impl.unit;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -27,6 +31,7 @@ import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SingleEndSequenceFile;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisFastQC;
 import ca.corefacility.bioinformatics.irida.processing.FileProcessorException;
+import ca.corefacility.bioinformatics.irida.processing.impl.FastqStatistics;
 import ca.corefacility.bioinformatics.irida.processing.impl.FastqcFileProcessor;
 import ca.corefacility.bioinformatics.irida.repositories.sequencefile.SequenceFileRepository;
 
@@ -94,6 +99,8 @@ public class FastqcFileProcessorTest {
 		assertEquals("GC Content was not set correctly.", Short.valueOf((short) 50), updated.getGcContent());
 		assertEquals("Filtered sequences was not 0.", Integer.valueOf(0), updated.getFilteredSequences());
 		assertEquals("File type was not correct.", "Conventional base calls", updated.getFileType());
+		assertEquals("Statistics implementation was not recorded.", FastqStatistics.VERSION,
+				updated.getFastqcVersion());
 		assertEquals("Max length was not correct.", Integer.valueOf(SEQUENCE.length()), updated.getMaxLength());
 		assertEquals("Min length was not correct.", Integer.valueOf(SEQUENCE.length()), updated.getMinLength());
 		assertEquals("Total sequences was not correct.", Integer.valueOf(2), updated.getTotalSequences());
@@ -101,16 +108,31 @@ public class FastqcFileProcessorTest {
 		assertEquals("Total number of bases was not correct.", Long.valueOf(SEQUENCE.length() * 2),
 				updated.getTotalBases());
 
-		assertNotNull("Per-base quality score chart was not created.", updated.getPerBaseQualityScoreChart());
-		assertTrue("Per-base quality score chart was created, but was empty.",
-				((byte[]) updated.getPerBaseQualityScoreChart()).length > 0);
+		assertNull("Per-base quality score chart should not be rendered.", updated.getPerBaseQualityScoreChart());
 
-		assertNotNull("Per-sequence quality score chart was not created.", updated.getPerSequenceQualityScoreChart());
-		assertTrue("Per-sequence quality score chart was created, but was empty.",
-				((byte[]) updated.getPerSequenceQualityScoreChart()).length > 0);
+		List<double[]> perBase = updated.getPerBaseQualityScores();
+		assertEquals("Per-base quality scores should have a row for each position.", SEQUENCE.length(),
+				perBase.size());
+		assertArrayEquals("Per-base quality scores were not correct.", new double[] { 1, 30, 30, 30, 30, 30, 30 },
+				perBase.get(0), 0.001);
 
-		assertNotNull("Duplication level chart was not created.", updated.getDuplicationLevelChart());
-		assertTrue("Duplication level chart was not created.", ((byte[]) updated.getDuplicationLevelChart()).length > 0);
+		List<double[]> perSequence = updated.getPerSequenceQualityScores();
+		assertEquals("Per-sequence quality scores should only have the quality seen.", 1, perSequence.size());
+		assertArrayEquals("Per-sequence quality scores were not correct.", new double[] { 30, 2 },
+				perSequence.get(0), 0.001);
+
+		List<double[]> lengths = updated.getSequenceLengthDistribution();
+		assertEquals("Sequence length distribution should only have the length seen.", 1, lengths.size());
+		assertArrayEquals("Sequence length distribution was not correct.", new double[] { SEQUENCE.length(), 2 },
+				lengths.get(0), 0.001);
+
+		assertEquals("GC content distribution should have every percentage.", 101,
+				updated.getGcContentDistribution().size());
+		assertArrayEquals("GC content distribution was not correct.", new double[] { 50, 2 },
+				updated.getGcContentDistribution().get(50), 0.001);
+
+		assertArrayEquals("All sequences should be duplicated twice.", new double[] { 1, 100 },
+				updated.getDuplicationLevels().get(1), 0.001);
 
 		Iterator<OverrepresentedSequence> ovrs = updated.getOverrepresentedSequences().iterator();
 		assertTrue("No overrepresented sequences added to analysis.", ovrs.hasNext());
@@ -121,6 +143,43 @@ public class FastqcFileProcessorTest {
 
 	}
 
+	@Test
+	public void testHandleCompressedFastqFile() throws IOException, IllegalAccessException {
+		Path fastq = Files.createTempFile(null, ".fastq.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(fastq))) {
+			out.write(FASTQ_FILE_CONTENTS.replace("\n", "\r\n").getBytes());
+		}
+		Runtime.getRuntime().addShutdownHook(new DeleteFileOnExit(fastq));
+
+		SequenceFile sf = new SequenceFile(fastq);
+		sf.setId(1L);
+		SingleEndSequenceFile so = new SingleEndSequenceFile(sf);
+
+		fileProcessor.process(so);
+
+		ArgumentCaptor<SequenceFile> argument = ArgumentCaptor.forClass(SequenceFile.class);
+		verify(sequenceFileRepository).saveMetadata(argument.capture());
+		final Field fastqcAnalysis = ReflectionUtils.findField(SequenceFile.class, "fastqcAnalysis");
+		ReflectionUtils.makeAccessible(fastqcAnalysis);
+		AnalysisFastQC updated = (AnalysisFastQC) fastqcAnalysis.get(argument.getValue());
+
+		assertEquals("Total sequences was not correct.", Integer.valueOf(2), updated.getTotalSequences());
+		assertEquals("Line endings should not be counted as bases.", Integer.valueOf(SEQUENCE.length()),
+				updated.getMaxLength());
+	}
+
+	@Test(expected = FileProcessorException.class)
+	public void testHandleTruncatedFastqFile() throws IOException {
+		Path fastq = Files.createTempFile(null, null);
+		Files.write(fastq, "@testread\nACGT\n+\n".getBytes());
+		Runtime.getRuntime().addShutdownHook(new DeleteFileOnExit(fastq));
+
+		SequenceFile sf = new SequenceFile(fastq);
+		sf.setId(1L);
+
+		fileProcessor.process(new SingleEndSequenceFile(sf));
+	}
+
 	private static final class DeleteFileOnExit extends Thread {
 
 		private final Path fileToDelete;
@@ -128,6 +128,8 @@ public class GzipFileProcessorTest {
 		String uncompressedFileContents = new String(Files.readAllBytes(modified.getFile()));
 		assertEquals("uncompressed file and file in database should be the same.", FILE_CONTENTS,
 				uncompressedFileContents);
+		assertEquals("file should be marked as decompressed after upload", "true",
+				modified.getOptionalProperty(SequenceFile.DECOMPRESSED_AFTER_UPLOAD));
 		Files.delete(uncompressed);
 		assertTrue("Original compressed file should not have been deleted.", Files.exists(compressed));
 		Files.delete(compressed);
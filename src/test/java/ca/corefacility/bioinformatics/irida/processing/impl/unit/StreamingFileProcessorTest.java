@@ -0,0 +1,179 @@
+package ca.corefacility.bioinformatics.irida.processing.impl.unit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.MessageSource;
+import org.springframework.util.ReflectionUtils;
+
+import ca.corefacility.bioinformatics.irida.model.sample.CoverageQCEntry;
+import ca.corefacility.bioinformatics.irida.model.sample.FileProcessorErrorQCEntry;
+import ca.corefacility.bioinformatics.irida.model.sample.QCEntry;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SingleEndSequenceFile;
+import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisFastQC;
+import ca.corefacility.bioinformatics.irida.processing.impl.CoverageFileProcessor;
+import ca.corefacility.bioinformatics.irida.processing.impl.FastqcFileProcessor;
+import ca.corefacility.bioinformatics.irida.processing.impl.StreamingFileProcessor;
+import ca.corefacility.bioinformatics.irida.repositories.analysis.AnalysisRepository;
+import ca.corefacility.bioinformatics.irida.repositories.sample.QCEntryRepository;
+import ca.corefacility.bioinformatics.irida.repositories.sequencefile.SequenceFileRepository;
+
+/**
+ * Tests for {@link StreamingFileProcessor}.
+ */
+public class StreamingFileProcessorTest {
+	private StreamingFileProcessor fileProcessor;
+	private SequenceFileRepository sequenceFileRepository;
+	private QCEntryRepository qcEntryRepository;
+
+	private static final String SEQUENCE = "ACGTACGTN";
+	private static final String FASTQ_FILE_CONTENTS = "@testread\n" + SEQUENCE + "\n+\n?????????\n@testread2\n"
+			+ SEQUENCE + "\n+\n?????????\n";
+	private static final String FASTA_FILE_CONTENTS = ">test read\n" + SEQUENCE;
+
+	@Before
+	public void setUp() {
+		sequenceFileRepository = mock(SequenceFileRepository.class);
+		qcEntryRepository = mock(QCEntryRepository.class);
+
+		FastqcFileProcessor fastqcFileProcessor = new FastqcFileProcessor(mock(MessageSource.class),
+				sequenceFileRepository);
+		CoverageFileProcessor coverageFileProcessor = new CoverageFileProcessor(qcEntryRepository,
+				mock(AnalysisRepository.class));
+
+		fileProcessor = new StreamingFileProcessor(sequenceFileRepository, qcEntryRepository, fastqcFileProcessor,
+				coverageFileProcessor);
+	}
+
+	@Test
+	public void testProcessUncompressedFile() throws IOException, IllegalAccessException {
+		Path fastq = Files.createTempFile(null, ".fastq");
+		Files.write(fastq, FASTQ_FILE_CONTENTS.getBytes());
+
+		SequenceFile sf = new SequenceFile(fastq);
+		sf.setId(1L);
+		SingleEndSequenceFile so = new SingleEndSequenceFile(sf);
+
+		fileProcessor.process(so);
+
+		ArgumentCaptor<SequenceFile> fileCaptor = ArgumentCaptor.forClass(SequenceFile.class);
+		verify(sequenceFileRepository).saveMetadata(fileCaptor.capture());
+		verify(sequenceFileRepository, never()).save(any(SequenceFile.class));
+
+		SequenceFile updated = fileCaptor.getValue();
+		assertEquals("checksum should be of the file contents", DigestUtils.sha256Hex(FASTQ_FILE_CONTENTS),
+				updated.getUploadSha256());
+		assertEquals("file should not have changed", fastq, updated.getFile());
+
+		AnalysisFastQC fastqc = getFastQC(updated);
+		assertNotNull("fastqc should have been set", fastqc);
+		assertEquals("Total sequences was not correct.", Integer.valueOf(2), fastqc.getTotalSequences());
+		assertEquals("Total number of bases was not correct.", Long.valueOf(SEQUENCE.length() * 2),
+				fastqc.getTotalBases());
+
+		ArgumentCaptor<QCEntry> qcCaptor = ArgumentCaptor.forClass(QCEntry.class);
+		verify(qcEntryRepository).save(qcCaptor.capture());
+		assertTrue("should have saved a coverage entry", qcCaptor.getValue() instanceof CoverageQCEntry);
+		assertEquals("coverage entry should count all bases", SEQUENCE.length() * 2,
+				((CoverageQCEntry) qcCaptor.getValue()).getTotalBases());
+	}
+
+	@Test
+	public void testProcessCompressedFile() throws IOException, IllegalAccessException {
+		fileProcessor.setRemoveCompressedFiles(true);
+
+		Path compressed = Files.createTempFile(null, ".fastq.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+			out.write(FASTQ_FILE_CONTENTS.getBytes());
+		}
+		byte[] compressedBytes = Files.readAllBytes(compressed);
+
+		SequenceFile sf = new SequenceFile(compressed);
+		sf.setId(1L);
+		SingleEndSequenceFile so = new SingleEndSequenceFile(sf);
+
+		fileProcessor.process(so);
+
+		ArgumentCaptor<SequenceFile> fileCaptor = ArgumentCaptor.forClass(SequenceFile.class);
+		verify(sequenceFileRepository).save(fileCaptor.capture());
+
+		SequenceFile updated = fileCaptor.getValue();
+		assertEquals("checksum should be of the uploaded compressed file", DigestUtils.sha256Hex(compressedBytes),
+				updated.getUploadSha256());
+		assertFalse("decompressed file should not have a gzip extension",
+				updated.getFile().getFileName().toString().endsWith(".gz"));
+		assertArrayEquals("decompressed file should have the original contents", FASTQ_FILE_CONTENTS.getBytes(),
+				Files.readAllBytes(updated.getFile()));
+		assertNotNull("fastqc should have been set", getFastQC(updated));
+		assertFalse("The original file should have been deleted.", Files.exists(compressed));
+	}
+
+	@Test
+	public void testProcessCompressedFileWithoutDecompressing() throws IOException {
+		fileProcessor.setDecompressFiles(false);
+
+		Path compressed = Files.createTempFile(null, ".fastq.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+			out.write(FASTQ_FILE_CONTENTS.getBytes());
+		}
+
+		SequenceFile sf = new SequenceFile(compressed);
+		sf.setId(1L);
+		SingleEndSequenceFile so = new SingleEndSequenceFile(sf);
+
+		fileProcessor.process(so);
+
+		verify(sequenceFileRepository).saveMetadata(sf);
+		verify(sequenceFileRepository, never()).save(any(SequenceFile.class));
+		assertEquals("file should not have changed", compressed, sf.getFile());
+		assertFalse("processor should not modify files", fileProcessor.modifiesFile());
+	}
+
+	@Test
+	public void testProcessFastaFile() throws IOException, IllegalAccessException {
+		Path fasta = Files.createTempFile(null, null);
+		Files.write(fasta, FASTA_FILE_CONTENTS.getBytes());
+
+		SequenceFile sf = new SequenceFile(fasta);
+		sf.setId(1L);
+		SingleEndSequenceFile so = new SingleEndSequenceFile(sf);
+
+		fileProcessor.process(so);
+
+		verify(sequenceFileRepository).saveMetadata(sf);
+		assertEquals("checksum should still be calculated", DigestUtils.sha256Hex(FASTA_FILE_CONTENTS),
+				sf.getUploadSha256());
+		assertNull("fastqc should not have been set", getFastQC(sf));
+
+		ArgumentCaptor<QCEntry> qcCaptor = ArgumentCaptor.forClass(QCEntry.class);
+		verify(qcEntryRepository, times(1)).save(qcCaptor.capture());
+		assertTrue("should have saved an error entry", qcCaptor.getValue() instanceof FileProcessorErrorQCEntry);
+	}
+
+	private AnalysisFastQC getFastQC(SequenceFile file) throws IllegalAccessException {
+		final Field fastqcAnalysis = ReflectionUtils.findField(SequenceFile.class, "fastqcAnalysis");
+		ReflectionUtils.makeAccessible(fastqcAnalysis);
+		return (AnalysisFastQC) fastqcAnalysis.get(file);
+	}
+}
@@ -0,0 +1,279 @@
+package ca.corefacility.bioinformatics.irida.repositories.remote.resttemplate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import ca.corefacility.bioinformatics.irida.util.RecursiveDeleteVisitor;
+
+/**
+ * Unit tests for {@link ChunkedFileDownloader}
+ */
+public class ChunkedFileDownloaderTest {
+	private static final String URI = "http://remote/api/sequenceFiles/1";
+	private static final String CONTENTS = "0123456789";
+	private static final String ETAG = "\"" + DigestUtils.sha256Hex(CONTENTS) + "\"";
+	private static final long CHUNK_SIZE = 4;
+
+	private Path journalDirectory;
+	private RestTemplate restTemplate;
+	private MockRestServiceServer server;
+	private ChunkedFileDownloader downloader;
+	private HttpHeaders requestHeaders;
+
+	@Before
+	public void setUp() throws IOException {
+		journalDirectory = Files.createTempDirectory(null);
+		restTemplate = new RestTemplate();
+		server = MockRestServiceServer.createServer(restTemplate);
+
+		// run chunks in order so the mock server sees the requests in order
+		ExecutorService executor = MoreExecutors.sameThreadExecutor();
+		downloader = new ChunkedFileDownloader(restTemplate, executor, journalDirectory, CHUNK_SIZE, 3, 0);
+
+		requestHeaders = new HttpHeaders();
+		requestHeaders.setAccept(ImmutableList.of(new MediaType("application", "fastq")));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.walkFileTree(journalDirectory, new RecursiveDeleteVisitor());
+	}
+
+	@Test
+	public void testDownloadInChunks() throws IOException {
+		expectChunk("bytes=0-3", null, partial(0, 3));
+		expectChunk("bytes=4-7", ETAG, partial(4, 7));
+		expectChunk("bytes=8-9", ETAG, partial(8, 9));
+
+		Path downloaded = downloader.download(URI, requestHeaders, "file.fastq", DigestUtils.sha256Hex(CONTENTS), false);
+
+		server.verify();
+		assertEquals("file should be named as requested", "file.fastq", downloaded.getFileName().toString());
+		assertEquals("file should be downloaded", CONTENTS, new String(Files.readAllBytes(downloaded),
+				StandardCharsets.UTF_8));
+		assertFalse("partial download should be cleaned up",
+				Files.exists(journalDirectory.resolve(DigestUtils.sha256Hex(URI))));
+	}
+
+	@Test
+	public void testDownloadWithoutRangeSupport() throws IOException {
+		server.expect(requestTo(URI)).andRespond(withSuccess(CONTENTS, new MediaType("application", "fastq")));
+
+		Path downloaded = downloader.download(URI, requestHeaders, "file.fastq", null, false);
+
+		server.verify();
+		assertEquals("file should be downloaded", CONTENTS, new String(Files.readAllBytes(downloaded),
+				StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testResumeDownload() throws IOException {
+		// a previous download got the first and last chunks
+		Path partial = journalDirectory.resolve(DigestUtils.sha256Hex(URI));
+		Files.createDirectories(partial);
+		Files.write(partial.resolve("data"), "0123\0\0\0\089".getBytes(StandardCharsets.UTF_8));
+		Files.write(partial.resolve("journal"), ImmutableList.of("10", "4", ETAG, "0", "2"), StandardCharsets.UTF_8);
+
+		expectChunk("bytes=4-7", ETAG, partial(4, 7));
+
+		Path downloaded = downloader.download(URI, requestHeaders, "file.fastq", DigestUtils.sha256Hex(CONTENTS), false);
+
+		server.verify();
+		assertEquals("file should be completed from the partial download", CONTENTS,
+				new String(Files.readAllBytes(downloaded), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testRetryFailedChunk() throws IOException {
+		expectChunk("bytes=0-3", null, partial(0, 3));
+		expectChunk("bytes=4-7", ETAG, withServerError());
+		expectChunk("bytes=4-7", ETAG, partial(4, 7));
+		expectChunk("bytes=8-9", ETAG, partial(8, 9));
+
+		Path downloaded = downloader.download(URI, requestHeaders, "file.fastq", null, false);
+
+		server.verify();
+		assertEquals("file should be downloaded after the retry", CONTENTS,
+				new String(Files.readAllBytes(downloaded), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testRemoteFileChanged() throws IOException {
+		Path partial = journalDirectory.resolve(DigestUtils.sha256Hex(URI));
+		Files.createDirectories(partial);
+		Files.write(partial.resolve("data"), "abcd".getBytes(StandardCharsets.UTF_8));
+		Files.write(partial.resolve("journal"), ImmutableList.of("10", "4", "\"old\"", "0"), StandardCharsets.UTF_8);
+
+		// the server ignores the range as the validator doesn't match
+		expectChunk("bytes=4-7", "\"old\"", withSuccess(CONTENTS, new MediaType("application", "fastq")));
+		// so the download starts over
+		expectChunk("bytes=0-3", null, partial(0, 3));
+		expectChunk("bytes=4-7", ETAG, partial(4, 7));
+		expectChunk("bytes=8-9", ETAG, partial(8, 9));
+
+		Path downloaded = downloader.download(URI, requestHeaders, "file.fastq", null, false);
+
+		server.verify();
+		assertEquals("file should be downloaded from the start", CONTENTS,
+				new String(Files.readAllBytes(downloaded), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testChecksumMismatch() throws IOException {
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+			out.write(CONTENTS.getBytes(StandardCharsets.UTF_8));
+		}
+		server.expect(requestTo(URI)).andRespond(
+				withSuccess(gzipped.toByteArray(), new MediaType("application", "fastq")));
+
+		try {
+			downloader.download(URI, requestHeaders, "file.fastq.gz", DigestUtils.sha256Hex("something else"), false);
+			fail("download should fail when the checksum doesn't match");
+		} catch (ResourceAccessException e) {
+			server.verify();
+			assertFalse("partial download should be thrown away",
+					Files.exists(journalDirectory.resolve(DigestUtils.sha256Hex(URI))));
+		}
+	}
+
+	@Test
+	public void testChecksumMismatchDecompressedAfterUpload() throws IOException {
+		expectChunk("bytes=0-3", null, partial(0, 3));
+		expectChunk("bytes=4-7", ETAG, partial(4, 7));
+		expectChunk("bytes=8-9", ETAG, partial(8, 9));
+
+		// the checksum is of the gzipped upload
+		Path downloaded = downloader.download(URI, requestHeaders, "file.fastq",
+				DigestUtils.sha256Hex("compressed upload"), true);
+
+		server.verify();
+		assertEquals("decompressed file should be downloaded", CONTENTS,
+				new String(Files.readAllBytes(downloaded), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testChecksumMismatchLegacyDecompressed() throws IOException {
+		expectChunk("bytes=0-3", null, partial(0, 3));
+		expectChunk("bytes=4-7", ETAG, partial(4, 7));
+		expectChunk("bytes=8-9", ETAG, partial(8, 9));
+
+		// decompressed by a remote that doesn't mark decompressed files
+		Path downloaded = downloader.download(URI, requestHeaders, "file.fastq",
+				DigestUtils.sha256Hex("compressed upload"), false);
+
+		server.verify();
+		assertEquals("unmarked decompressed file should be kept", CONTENTS,
+				new String(Files.readAllBytes(downloaded), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testDownloadChunksInPoolAsCallingUser() throws IOException, InterruptedException {
+		// requests fail without a user, like the OAuth token rest template
+		Set<String> requestThreads = ConcurrentHashMap.newKeySet();
+		ClientHttpRequestFactory requestFactory = (uri, method) -> new MockClientHttpRequest(method, uri) {
+			@Override
+			protected ClientHttpResponse executeInternal() throws IOException {
+				Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+				if (authentication == null || !"tom".equals(authentication.getName())) {
+					throw new IllegalStateException("Request made without the calling user");
+				}
+				requestThreads.add(Thread.currentThread().getName());
+
+				Matcher range = Pattern.compile("bytes=(\\d+)-(\\d+)").matcher(getHeaders().getFirst(HttpHeaders.RANGE));
+				assertTrue("request should be for a range", range.matches());
+				int start = Integer.parseInt(range.group(1));
+				int end = Math.min(Integer.parseInt(range.group(2)), CONTENTS.length() - 1);
+				MockClientHttpResponse response = new MockClientHttpResponse(CONTENTS.substring(start, end + 1)
+						.getBytes(StandardCharsets.UTF_8), HttpStatus.PARTIAL_CONTENT);
+				response.getHeaders().set(HttpHeaders.CONTENT_RANGE,
+						"bytes " + start + "-" + end + "/" + CONTENTS.length());
+				response.getHeaders().setETag(ETAG);
+				return response;
+			}
+		};
+
+		// start the threads before the user is set so they can't inherit it
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>());
+		executor.prestartAllCoreThreads();
+		try {
+			SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("tom",
+					"password1"));
+			ChunkedFileDownloader pooledDownloader = new ChunkedFileDownloader(new RestTemplate(requestFactory),
+					executor, journalDirectory, CHUNK_SIZE, 1, 0);
+
+			Path downloaded = pooledDownloader.download(URI, requestHeaders, "file.fastq",
+					DigestUtils.sha256Hex(CONTENTS), false);
+
+			assertEquals("file should be downloaded", CONTENTS, new String(Files.readAllBytes(downloaded),
+					StandardCharsets.UTF_8));
+			assertTrue("chunks should be requested from the pool", requestThreads.size() > 1);
+		} finally {
+			SecurityContextHolder.clearContext();
+			executor.shutdownNow();
+			executor.awaitTermination(1, TimeUnit.SECONDS);
+		}
+	}
+
+	private void expectChunk(String range, String ifRange, ResponseCreator response) {
+		if (ifRange == null) {
+			server.expect(requestTo(URI)).andExpect(header(HttpHeaders.RANGE, range)).andRespond(response);
+		} else {
+			server.expect(requestTo(URI)).andExpect(header(HttpHeaders.RANGE, range))
+					.andExpect(header(HttpHeaders.IF_RANGE, ifRange)).andRespond(response);
+		}
+	}
+
+	private ResponseCreator partial(int start, int end) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + CONTENTS.length());
+		headers.setETag(ETAG);
+		return withStatus(HttpStatus.PARTIAL_CONTENT).headers(headers).contentType(new MediaType("application",
+				"fastq")).body(CONTENTS.substring(start, end + 1));
+	}
+}
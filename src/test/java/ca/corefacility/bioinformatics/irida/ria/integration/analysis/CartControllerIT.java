@@ -7,12 +7,15 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.security.test.context.support.WithSecurityContextTestExcecutionListener;
 import org.springframework.test.context.ActiveProfiles;
@@ -31,6 +34,7 @@ import ca.corefacility.bioinformatics.irida.config.web.IridaUIWebConfig;
 import ca.corefacility.bioinformatics.irida.model.joins.Join;
 import ca.corefacility.bioinformatics.irida.model.project.Project;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
+import ca.corefacility.bioinformatics.irida.model.user.Role;
 import ca.corefacility.bioinformatics.irida.ria.web.analysis.CartController;
 import ca.corefacility.bioinformatics.irida.service.ProjectService;
 import ca.corefacility.bioinformatics.irida.service.sample.SampleService;
@@ -38,6 +42,7 @@ import ca.corefacility.bioinformatics.irida.service.sample.SampleService;
 import com.github.springtestdbunit.DbUnitTestExecutionListener;
 import com.github.springtestdbunit.annotation.DatabaseSetup;
 import com.github.springtestdbunit.annotation.DatabaseTearDown;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -102,6 +107,27 @@ public class CartControllerIT {
 		}
 	}
 
+	@Test
+	@WithMockUser(username = "mrtest", roles = "ADMIN")
+	public void testGetSelectedLeavesOutMissingAndUnreadable() {
+		controller.addProjectSample(2L, Sets.newHashSet(4L), Locale.US);
+		// delete a sample after it was added to the cart
+		projectService.removeSampleFromProject(projectService.read(1L), sampleService.read(2L));
+
+		// a user that can only read project 1
+		SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("testUser",
+				"password1", ImmutableList.of(Role.ROLE_USER)));
+
+		Map<Project, Set<Sample>> selected = controller.getSelected();
+		assertEquals("only the readable project should be in the cart", 1, selected.size());
+		Project project = selected.keySet().iterator().next();
+		assertEquals(Long.valueOf(1L), project.getId());
+		assertEquals("deleted sample should be left out", Sets.newHashSet(1L, 3L),
+				selected.get(project).stream().map(Sample::getId).collect(Collectors.toSet()));
+		assertEquals("missing and unreadable samples should be removed from the cart", 2,
+				controller.getNumberOfSamples());
+	}
+
 	@Test
 	@WithMockUser(username = "mrtest", roles = "ADMIN")
 	public void testClearCart(){
@@ -3,7 +3,10 @@ package ca.corefacility.bioinformatics.irida.ria.unit.web.analysis;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -67,21 +70,48 @@ public class CartControllerTest {
 		verify(projectService).read(projectId);
 		verify(sampleService).getSamplesInProject(project, new ArrayList<>(subIds));
 
-		Map<Project, Set<Sample>> selected = controller.getSelected();
+		Map<Long, Set<Long>> selected = controller.getSelectedIds();
 		assertEquals(1, selected.keySet().size());
-		Project projectKey = selected.keySet().iterator().next();
-		assertEquals(project, projectKey);
-		for (Sample s : selected.get(projectKey)) {
-			assertTrue(subIds.contains(s.getId()));
-		}
+		assertEquals(subIds, selected.get(projectId));
+		assertEquals(1, controller.getNumberOfSamples());
+	}
+
+	@Test
+	public void testAddProjectSampleAlreadyInCart() {
+		controller.addProjectSample(projectId, sampleIds, Locale.US);
+		controller.addProjectSample(projectId, sampleIds, Locale.US);
 
+		verify(sampleService, times(1)).getSamplesInProject(project, new ArrayList<>(sampleIds));
+		assertEquals("samples should only be in the cart once", sampleIds, controller.getSelectedIds().get(projectId));
+	}
+
+	@Test
+	public void testAddProjectSampleWithExistingName() {
+		controller.addProjectSample(projectId, sampleIds, Locale.US);
+
+		Project other = new Project("other");
+		other.setId(4L);
+		Sample sameName = new Sample("sample2");
+		sameName.setId(5L);
+		when(projectService.read(4L)).thenReturn(other);
+		when(sampleService.getSamplesInProject(other, Lists.newArrayList(5L))).thenReturn(Lists.newArrayList(sameName));
+
+		Map<String, Object> added = controller.addProjectSample(4L, Sets.newHashSet(5L), Locale.US);
+
+		assertTrue("sample with an existing name should be excluded", added.containsKey("excluded"));
+		assertFalse("project without added samples should not be in the cart",
+				controller.getSelectedIds().containsKey(4L));
+		assertEquals(2, controller.getNumberOfSamples());
+
+		controller.removeProjectSample(projectId, 2L);
+		added = controller.addProjectSample(4L, Sets.newHashSet(5L), Locale.US);
+		assertFalse("sample name should be free once removed", added.containsKey("excluded"));
+		assertEquals(Sets.newHashSet(5L), controller.getSelectedIds().get(4L));
 	}
 
 	@Test
 	public void testRemoveProjectSamples() {
-		Map<Project, Set<Sample>> selected = new HashMap<>();
-		selected.put(project, samples);
-		controller.setSelected(selected);
+		controller.addProjectSample(projectId, sampleIds, Locale.US);
 
 		Set<Long> subIds = Sets.newHashSet(sampleIds.iterator().next());
 
@@ -89,89 +119,108 @@ public class CartControllerTest {
 
 		assertTrue((boolean) addProjectSample.get("success"));
 
-		verify(projectService).read(projectId);
-		verify(sampleService).getSamplesInProject(project, new ArrayList<>(subIds));
-
-		selected = controller.getSelected();
+		Map<Long, Set<Long>> selected = controller.getSelectedIds();
 
 		assertEquals(1, selected.keySet().size());
-		Project projectKey = selected.keySet().iterator().next();
-		assertEquals(project, projectKey);
-		for (Sample s : selected.get(projectKey)) {
-			assertFalse(subIds.contains(s.getId()));
+		for (Long id : selected.get(projectId)) {
+			assertFalse(subIds.contains(id));
 		}
+		assertEquals(1, controller.getNumberOfSamples());
 	}
 
 	@Test
 	public void testRemoveProjectSample() {
-		Map<Project, Set<Sample>> selected = new HashMap<>();
-		selected.put(project, samples);
-		controller.setSelected(selected);
+		controller.addProjectSample(projectId, sampleIds, Locale.US);
 		Sample sample = samples.iterator().next();
 		Map<String, Object> removeProjectSample = controller.removeProjectSample(projectId, sample.getId());
 
 		assertTrue((boolean) removeProjectSample.get("success"));
 
-		selected = controller.getSelected();
+		Map<Long, Set<Long>> selected = controller.getSelectedIds();
 		assertEquals(1, selected.keySet().size());
-		assertFalse(selected.get(project).contains(sample));
-
+		assertFalse(selected.get(projectId).contains(sample.getId()));
 	}
 
 	@Test
 	public void testRemoveAllProjectSamples() {
-		Map<Project, Set<Sample>> selected = new HashMap<>();
-		selected.put(project, samples);
-		controller.setSelected(selected);
+		controller.addProjectSample(projectId, sampleIds, Locale.US);
 
 		Map<String, Object> addProjectSample = controller.removeProjectSamples(projectId, sampleIds);
 
 		assertTrue((boolean) addProjectSample.get("success"));
 
-		verify(projectService).read(projectId);
-		verify(sampleService).getSamplesInProject(project, Lists.newArrayList(sampleIds));
+		Map<Long, Set<Long>> selected = controller.getSelectedIds();
 
-		selected = controller.getSelected();
-
-		assertFalse("project should have been removed because all samples were removed", selected.containsKey(project));
+		assertFalse("project should have been removed because all samples were removed", selected.containsKey(projectId));
+		assertEquals(0, controller.getNumberOfSamples());
 	}
 
 	@Test
 	public void testClearCart() {
+		controller.addProjectSample(projectId, sampleIds, Locale.US);
+
 		Map<String, Object> clearCart = controller.clearCart();
 		assertTrue((boolean) clearCart.get("success"));
 
-		Map<Project, Set<Sample>> selected = controller.getSelected();
-		assertTrue(selected.isEmpty());
+		assertTrue(controller.getSelectedIds().isEmpty());
+		assertEquals(0, controller.getNumberOfSamples());
 	}
 
 	@Test
 	public void testAddProject() {
-		Map<String, Object> addProject = controller.addProject(projectId);
-		assertTrue((boolean) addProject.get("success"));
-
 		List<Join<Project, Sample>> joins = new ArrayList<>();
 		samples.forEach((s) -> {
 			joins.add(new ProjectSampleJoin(project, s, true));
 		});
 		when(sampleService.getSamplesForProject(project)).thenReturn(joins);
 
+		Map<String, Object> addProject = controller.addProject(projectId);
+		assertTrue((boolean) addProject.get("success"));
+
 		verify(projectService).read(projectId);
 		verify(sampleService).getSamplesForProject(project);
 
-		Map<Project, Set<Sample>> selected = controller.getSelected();
+		Map<Long, Set<Long>> selected = controller.getSelectedIds();
 		assertEquals(1, selected.keySet().size());
-		Project projectKey = selected.keySet().iterator().next();
-		assertEquals(project, projectKey);
-		for (Sample s : selected.get(projectKey)) {
-			assertTrue(sampleIds.contains(s.getId()));
-		}
+		assertEquals(sampleIds, selected.get(projectId));
 	}
 
 	@Test
 	public void testRemoveProject() {
+		controller.addProjectSample(projectId, sampleIds, Locale.US);
+
 		controller.removeProject(projectId);
-		verify(projectService).read(projectId);
+
+		assertTrue(controller.getSelectedIds().isEmpty());
+		assertEquals(0, controller.getNumberOfSamples());
+		assertEquals(0, controller.getNumberOfProjects());
+	}
+
+	@Test
+	public void testGetSelected() {
+		controller.addProjectSample(projectId, sampleIds, Locale.US);
+		// a sample deleted after it was added to the cart
+		samples.removeIf(s -> s.getId().equals(3L));
+
+		Map<Project, Set<Sample>> selected = controller.getSelected();
+
+		verify(projectService).getReadableProjects(Lists.newArrayList(projectId));
+		verify(sampleService).getReadableSamples(new ArrayList<>(sampleIds));
+		assertEquals(1, selected.size());
+		assertEquals("deleted samples should be left out", samples, selected.get(project));
+		assertEquals("deleted samples should be removed from the cart", Sets.newHashSet(2L),
+				controller.getSelectedIds().get(projectId));
+		assertEquals(1, controller.getNumberOfSamples());
+	}
+
+	@Test
+	public void testGetSelectedWithoutReadableProject() {
+		controller.addProjectSample(projectId, sampleIds, Locale.US);
+		when(projectService.getReadableProjects(Lists.newArrayList(projectId))).thenReturn(Lists.newArrayList());
+
+		assertTrue("unreadable project should be left out", controller.getSelected().isEmpty());
+		assertTrue("unreadable project should be removed from the cart", controller.getSelectedIds().isEmpty());
+		assertEquals(0, controller.getNumberOfSamples());
 	}
 
 	@Test
@@ -179,9 +228,7 @@ public class CartControllerTest {
 		RequestAttributes ra = new ServletRequestAttributes(new MockHttpServletRequest());
 		RequestContextHolder.setRequestAttributes(ra);
 
-		Map<Project, Set<Sample>> selected = new HashMap<>();
-		selected.put(project, samples);
-		controller.setSelected(selected);
+		controller.addProjectSample(projectId, sampleIds, Locale.US);
 
 		Map<String, Object> cartMap = controller.getCartMap();
 		assertTrue(cartMap.containsKey("projects"));
@@ -192,6 +239,7 @@ public class CartControllerTest {
 		assertTrue(projectMap.containsKey("samples"));
 		@SuppressWarnings("unchecked")
 		List<Map<String, Object>> sList = (List<Map<String, Object>>) projectMap.get("samples");
+		assertEquals(sampleIds.size(), sList.size());
 		for (Map<String, Object> map : sList) {
 			assertTrue(map.containsKey("id"));
 			assertTrue(map.containsKey("label"));
@@ -220,5 +268,12 @@ public class CartControllerTest {
 		when(sampleService.getSamplesInProject(project, subIds)).thenReturn(samples.stream().filter(x -> Objects.equals(
 				x.getId(), subIds.get(0))).collect(
 				Collectors.toList()));
+
+		when(projectService.getReadableProjects(Lists.newArrayList(projectId))).thenReturn(Lists.newArrayList(project));
+		doAnswer(invocation -> {
+			@SuppressWarnings("unchecked")
+			Collection<Long> readIds = (Collection<Long>) invocation.getArguments()[0];
+			return samples.stream().filter(s -> readIds.contains(s.getId())).collect(Collectors.toList());
+		}).when(sampleService).getReadableSamples(any());
 	}
 }
@@ -16,6 +16,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.ui.ExtendedModelMap;
 import org.springframework.ui.Model;
@@ -91,7 +92,7 @@ public class SequenceFileControllerTest {
 		logger.debug("Testing downloadSequenceFile");
 		MockHttpServletResponse response = new MockHttpServletResponse();
 
-		controller.downloadSequenceFile(OBJECT_ID, FILE_ID, response);
+		controller.downloadSequenceFile(OBJECT_ID, FILE_ID, new MockHttpServletRequest(), response);
 		assertTrue("Response should contain a \"Content-Disposition\" header.",
 				response.containsHeader("Content-Disposition"));
 		assertEquals("Content-Disposition should include the file name", "attachment; filename=\"test_file.fastq\"",
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 import java.io.ByteArrayInputStream;
@@ -20,6 +21,7 @@ import org.mockito.ArgumentCaptor;
 import org.springframework.context.MessageSource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.mock.web.MockHttpServletResponse;
@@ -37,6 +39,7 @@ import ca.corefacility.bioinformatics.irida.model.sequenceFile.SingleEndSequence
 import ca.corefacility.bioinformatics.irida.model.user.Role;
 import ca.corefacility.bioinformatics.irida.model.user.User;
 import ca.corefacility.bioinformatics.irida.ria.unit.TestDataFactory;
+import ca.corefacility.bioinformatics.irida.ria.web.components.datatables.DataTablesExportTypes;
 import ca.corefacility.bioinformatics.irida.ria.web.components.datatables.DataTablesParams;
 import ca.corefacility.bioinformatics.irida.ria.web.components.datatables.DataTablesResponse;
 import ca.corefacility.bioinformatics.irida.ria.web.components.datatables.models.DataTablesResponseModel;
@@ -319,6 +322,55 @@ public class ProjectSamplesControllerTest {
 		DTProjectSamples sampleData = (DTProjectSamples) data.get(0);
 		assertEquals("Has the correct sample", "Joined Sample", sampleData.getSampleName());
 
+		// coverage and qc should be loaded for the whole page at once
+		verify(sampleService).getTotalBasesForSamples(any(Collection.class));
+		verify(sampleService).getQCEntriesForSamples(any(Collection.class));
+		verify(sampleService, never()).getQCEntriesForSample(any(Sample.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testExportProjectSamplesTableInPages() throws IOException {
+		Sample first = new Sample("first");
+		first.setId(1L);
+		Sample second = new Sample("second");
+		second.setId(2L);
+		// two pages, each with one sample
+		doAnswer(i -> {
+			int page = i.getArgumentAt(7, Integer.class);
+			int size = i.getArgumentAt(8, Integer.class);
+			Sample sample = page == 0 ? first : second;
+			return new PageImpl<>(ImmutableList.of(new ProjectSampleJoin(getProject(), sample, true)),
+					new PageRequest(page, size), size + 1);
+		}).when(sampleService)
+				.getFilteredSamplesForProjects(any(List.class), any(List.class), any(String.class), any(String.class),
+						any(String.class), any(Date.class), any(Date.class), any(Integer.class), any(Integer.class),
+						any(Sort.class));
+		when(messageSource.getMessage(any(String.class), any(Object[].class), any(Locale.class))).thenReturn("header");
+
+		DataTablesParams params = mock(DataTablesParams.class);
+		when(params.getSort()).thenReturn(new Sort(Direction.ASC, "sample.sampleName"));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.exportProjectSamplesTable(PROJECT_ID, DataTablesExportTypes.csv, params, ImmutableList.of(),
+				Lists.newArrayList(), new UISampleFilter(), null, response, Locale.US);
+
+		String[] lines = response.getContentAsString().split("\n");
+		assertEquals("should have a header and a row for each sample", 3, lines.length);
+		assertTrue("first page should be written", lines[1].startsWith("\"1\""));
+		assertTrue("second page should be written", lines[2].startsWith("\"2\""));
+
+		// samples should be loaded a page at a time, never all at once
+		verify(sampleService, never()).getFilteredSamplesForProjects(any(List.class), any(List.class),
+				any(String.class), any(String.class), any(String.class), any(Date.class), any(Date.class),
+				any(Integer.class), eq(Integer.MAX_VALUE), any(Sort.class));
+		verify(sampleService, times(2)).getTotalBasesForSamples(any(Collection.class));
+
+		// pages should be sorted with the join id breaking ties
+		Sort expectedSort = new Sort(new Sort.Order(Direction.ASC, "sample.sampleName"), new Sort.Order(Direction.ASC,
+				"id"));
+		verify(sampleService, times(2)).getFilteredSamplesForProjects(any(List.class), any(List.class),
+				any(String.class), any(String.class), any(String.class), any(Date.class), any(Date.class),
+				any(Integer.class), any(Integer.class), eq(expectedSort));
 	}
 
 	@Test
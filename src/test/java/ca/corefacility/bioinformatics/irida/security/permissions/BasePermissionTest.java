@@ -1,5 +1,6 @@
 package ca.corefacility.bioinformatics.irida.security.permissions;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -17,6 +18,8 @@ import org.springframework.security.core.Authentication;
 
 import ca.corefacility.bioinformatics.irida.exceptions.EntityNotFoundException;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
@@ -62,7 +65,7 @@ public class BasePermissionTest {
 	 */
 	@Test
 	public void testPermissionSingleCollectionLongSuccess() {
-		when(crudRepository.findOne(1L)).thenReturn(new Permittable(1L));
+		when(crudRepository.findAll(Lists.newArrayList(1L))).thenReturn(Lists.newArrayList(new Permittable(1L)));
 
 		assertTrue(basePermission.isAllowed(auth, Sets.newHashSet(1L)));
 	}
@@ -72,6 +75,8 @@ public class BasePermissionTest {
 	 */
 	@Test(expected = EntityNotFoundException.class)
 	public void testPermissionSingleCollectionLongFail() {
+		when(crudRepository.findAll(Lists.newArrayList(1L))).thenReturn(Lists.newArrayList());
+
 		basePermission.isAllowed(auth, Sets.newHashSet(1L));
 	}
 
@@ -80,8 +85,8 @@ public class BasePermissionTest {
 	 */
 	@Test
 	public void testPermissionTwoCollectionLongSuccess() {
-		when(crudRepository.findOne(1L)).thenReturn(new Permittable(1L));
-		when(crudRepository.findOne(2L)).thenReturn(new Permittable(2L));
+		when(crudRepository.findAll(Lists.newArrayList(1L, 2L))).thenReturn(
+				Lists.newArrayList(new Permittable(1L), new Permittable(2L)));
 
 		assertTrue(basePermission.isAllowed(auth, Sets.newHashSet(1L, 2L)));
 	}
@@ -92,7 +97,7 @@ public class BasePermissionTest {
 	 */
 	@Test(expected = EntityNotFoundException.class)
 	public void testPermissionTwoCollectionLongFail() {
-		when(crudRepository.findOne(1L)).thenReturn(new Permittable(1L));
+		when(crudRepository.findAll(Lists.newArrayList(1L, 2L))).thenReturn(Lists.newArrayList(new Permittable(1L)));
 
 		basePermission.isAllowed(auth, Sets.newHashSet(1L, 2L));
 	}
@@ -218,6 +223,21 @@ public class BasePermissionTest {
 		basePermission.isAllowed(auth, mixedSet);
 	}
 
+	/**
+	 * Tests filtering a collection down to the permitted elements, in order.
+	 */
+	@Test
+	public void testFilterAllowed() {
+		Permittable permittable1 = new Permittable(1L);
+		Permittable permittable2 = new Permittable(2L);
+		Permittable permittable3 = new Permittable(3L);
+		basePermission = new VariablePermittablePermission(Permittable.class, Long.class, crudRepository, permittable3,
+				permittable1);
+
+		assertEquals(ImmutableList.of(permittable1, permittable3),
+				basePermission.filterAllowed(auth, ImmutableList.of(permittable1, permittable2, permittable3)));
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testBizarreExecution() {
 		basePermission.isAllowed(auth, new Object());
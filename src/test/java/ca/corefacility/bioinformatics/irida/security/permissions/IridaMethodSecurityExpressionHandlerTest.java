@@ -0,0 +1,89 @@
+package ca.corefacility.bioinformatics.irida.security.permissions;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import ca.corefacility.bioinformatics.irida.model.joins.impl.ProjectSampleJoin;
+import ca.corefacility.bioinformatics.irida.model.project.Project;
+import ca.corefacility.bioinformatics.irida.model.sample.Sample;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for {@link IridaMethodSecurityExpressionHandler}.
+ */
+public class IridaMethodSecurityExpressionHandlerTest {
+	private IridaPermissionEvaluator permissionEvaluator;
+	private IridaMethodSecurityExpressionHandler handler;
+	private Authentication auth;
+	private EvaluationContext ctx;
+
+	private Project p1;
+	private Project p2;
+
+	@Before
+	public void setUp() {
+		permissionEvaluator = mock(IridaPermissionEvaluator.class);
+		handler = new IridaMethodSecurityExpressionHandler(permissionEvaluator);
+		auth = new UsernamePasswordAuthenticationToken("fbristow", "password1");
+		ctx = handler.createEvaluationContext(auth, mock(MethodInvocation.class));
+
+		p1 = new Project("p1");
+		p2 = new Project("p2");
+	}
+
+	@Test
+	public void testFilterInBulk() {
+		List<Project> projects = Lists.newArrayList(p1, p2);
+		when(permissionEvaluator.filterAllowed(auth, projects, "canReadProject")).thenReturn(ImmutableList.of(p2));
+
+		handler.filter(projects, expression("hasPermission(filterObject, 'canReadProject')"), ctx);
+
+		assertEquals("only the allowed project should be kept", ImmutableList.of(p2), projects);
+		verify(permissionEvaluator, never()).hasPermission(any(), any(), any());
+	}
+
+	@Test
+	public void testFilterPropertyInBulk() {
+		ProjectSampleJoin j1 = new ProjectSampleJoin(p1, new Sample("s1"), true);
+		ProjectSampleJoin j2 = new ProjectSampleJoin(p2, new Sample("s2"), true);
+		List<ProjectSampleJoin> joins = Lists.newArrayList(j1, j2);
+		when(permissionEvaluator.filterAllowed(auth, ImmutableList.of(p1, p2), "canReadProject"))
+				.thenReturn(ImmutableList.of(p1));
+
+		handler.filter(joins, expression("hasPermission(filterObject.subject, 'canReadProject')"), ctx);
+
+		assertEquals("only the join for the allowed project should be kept", ImmutableList.of(j1), joins);
+	}
+
+	@Test
+	public void testOtherExpressionsFilterEachElement() {
+		List<Project> projects = Lists.newArrayList(p1, p2);
+		when(permissionEvaluator.hasPermission(any(), eq(p1), eq("canReadProject"))).thenReturn(true);
+
+		handler.filter(projects, expression("hasPermission(filterObject, 'canReadProject') and true"), ctx);
+
+		assertEquals("only the allowed project should be kept", ImmutableList.of(p1), projects);
+		verify(permissionEvaluator, never()).filterAllowed(any(), any(), any());
+	}
+
+	private Expression expression(String expression) {
+		return handler.getExpressionParser().parseExpression(expression);
+	}
+}
@@ -1,5 +1,7 @@
 package ca.corefacility.bioinformatics.irida.security.permissions.project;
 
+import java.time.Clock;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -7,10 +9,11 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
 
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableList;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 
@@ -23,7 +26,6 @@ import ca.corefacility.bioinformatics.irida.model.user.User;
 import ca.corefacility.bioinformatics.irida.repositories.ProjectRepository;
 import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectUserJoinRepository;
 import ca.corefacility.bioinformatics.irida.repositories.joins.project.UserGroupProjectJoinRepository;
-import ca.corefacility.bioinformatics.irida.repositories.user.UserGroupJoinRepository;
 import ca.corefacility.bioinformatics.irida.repositories.user.UserRepository;
 import ca.corefacility.bioinformatics.irida.security.ProjectSynchronizationAuthenticationToken;
 import ca.corefacility.bioinformatics.irida.security.permissions.project.ProjectOwnerPermission;
@@ -40,8 +42,6 @@ public class ProjectOwnerPermissionTest {
 	ProjectUserJoinRepository pujRepository;
 	@Mock
 	UserGroupProjectJoinRepository ugpjRepository;
-	@Mock
-	UserGroupJoinRepository ugRepository;
 
 	Project project = new Project();
 	Long projectId = 1L;
@@ -54,13 +54,15 @@ public class ProjectOwnerPermissionTest {
 		user.setSystemRole(Role.ROLE_USER);
 		user.setUsername("tom");
 
-		permission = new ProjectOwnerPermission(projectRepository, userRepository, pujRepository, ugpjRepository,
-				ugRepository);
+		permission = new ProjectOwnerPermission(projectRepository,
+				new ProjectRoleCache(userRepository, pujRepository, ugpjRepository, 0, Clock.systemUTC()));
 
 		when(projectRepository.findOne(projectId)).thenReturn(project);
 		when(userRepository.loadUserByUsername(user.getUsername())).thenReturn(user);
-		when(pujRepository.getUsersForProjectByRole(project, ProjectRole.PROJECT_OWNER))
-				.thenReturn(Lists.newArrayList(new ProjectUserJoin(project, user, ProjectRole.PROJECT_OWNER)));
+		when(pujRepository.getProjectJoinForUser(project, user))
+				.thenReturn(new ProjectUserJoin(project, user, ProjectRole.PROJECT_OWNER));
+		when(ugpjRepository.findGroupsByProjectAndUser(any(Project.class), any(User.class)))
+				.thenReturn(ImmutableList.of());
 	}
 
 	@Test
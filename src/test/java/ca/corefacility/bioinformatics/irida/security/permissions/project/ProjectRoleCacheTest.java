@@ -0,0 +1,206 @@
+package ca.corefacility.bioinformatics.irida.security.permissions.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import ca.corefacility.bioinformatics.irida.model.enums.ProjectRole;
+import ca.corefacility.bioinformatics.irida.model.joins.impl.ProjectUserJoin;
+import ca.corefacility.bioinformatics.irida.model.project.Project;
+import ca.corefacility.bioinformatics.irida.model.user.User;
+import ca.corefacility.bioinformatics.irida.model.user.group.UserGroup;
+import ca.corefacility.bioinformatics.irida.model.user.group.UserGroupProjectJoin;
+import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectUserJoinRepository;
+import ca.corefacility.bioinformatics.irida.repositories.joins.project.UserGroupProjectJoinRepository;
+import ca.corefacility.bioinformatics.irida.repositories.user.UserRepository;
+
+/**
+ * Tests for {@link ProjectRoleCache}.
+ */
+public class ProjectRoleCacheTest {
+	private static final long TIME_TO_LIVE = 1000;
+
+	private UserRepository userRepository;
+	private ProjectUserJoinRepository pujRepository;
+	private UserGroupProjectJoinRepository ugpjRepository;
+	private SettableClock clock;
+	private ProjectRoleCache cache;
+
+	private User user;
+	private Project project;
+	private Authentication auth;
+
+	@Before
+	public void setUp() {
+		userRepository = mock(UserRepository.class);
+		pujRepository = mock(ProjectUserJoinRepository.class);
+		ugpjRepository = mock(UserGroupProjectJoinRepository.class);
+		clock = new SettableClock();
+		cache = new ProjectRoleCache(userRepository, pujRepository, ugpjRepository, TIME_TO_LIVE, clock);
+
+		user = new User();
+		user.setUsername("fbristow");
+		project = new Project();
+		project.setId(1L);
+		auth = new UsernamePasswordAuthenticationToken("fbristow", "password1");
+
+		when(userRepository.loadUserByUsername("fbristow")).thenReturn(user);
+		when(pujRepository.getProjectJoinForUser(project, user))
+				.thenReturn(new ProjectUserJoin(project, user, ProjectRole.PROJECT_USER));
+		when(ugpjRepository.findGroupsByProjectAndUser(project, user)).thenReturn(ImmutableList.of());
+	}
+
+	@After
+	public void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	public void testRoleIsCached() {
+		assertEquals(Optional.of(ProjectRole.PROJECT_USER), cache.getProjectRole(auth, project));
+		assertEquals(Optional.of(ProjectRole.PROJECT_USER), cache.getProjectRole(auth, project));
+
+		verify(pujRepository, times(1)).getProjectJoinForUser(project, user);
+	}
+
+	@Test
+	public void testRoleExpires() {
+		cache.getProjectRole(auth, project);
+		clock.advance(TIME_TO_LIVE);
+		cache.getProjectRole(auth, project);
+
+		verify(pujRepository, times(2)).getProjectJoinForUser(project, user);
+	}
+
+	@Test
+	public void testInvalidateProject() {
+		cache.getProjectRole(auth, project);
+
+		when(pujRepository.getProjectJoinForUser(project, user)).thenReturn(null);
+		cache.invalidateProject(project);
+
+		assertFalse("removed user should not have a role", cache.getProjectRole(auth, project).isPresent());
+	}
+
+	@Test
+	public void testInvalidateUser() {
+		cache.getProjectRole(auth, project);
+		cache.invalidateUser(user);
+		cache.getProjectRole(auth, project);
+
+		verify(pujRepository, times(2)).getProjectJoinForUser(project, user);
+	}
+
+	@Test
+	public void testInvalidateUserAfterCommit() {
+		TransactionSynchronizationManager.initSynchronization();
+		cache.invalidateUser(user);
+
+		// another request reads the role before the change is committed
+		cache.getProjectRole(auth, project);
+		when(pujRepository.getProjectJoinForUser(project, user)).thenReturn(null);
+
+		for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+			synchronization.afterCommit();
+		}
+
+		assertFalse("role read before the commit should not be kept", cache.getProjectRole(auth, project).isPresent());
+	}
+
+	@Test
+	public void testGroupRoleIsHighest() {
+		UserGroup group = new UserGroup("group");
+		when(ugpjRepository.findGroupsByProjectAndUser(project, user))
+				.thenReturn(ImmutableList.of(new UserGroupProjectJoin(project, group, ProjectRole.PROJECT_OWNER)));
+
+		assertEquals("group owner role should be used", Optional.of(ProjectRole.PROJECT_OWNER),
+				cache.getProjectRole(auth, project));
+	}
+
+	@Test
+	public void testRequestKeepsRole() {
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		cache = new ProjectRoleCache(userRepository, pujRepository, ugpjRepository, 0, clock);
+
+		cache.getProjectRole(auth, project);
+		cache.getProjectRole(auth, project);
+
+		verify(pujRepository, times(1)).getProjectJoinForUser(project, user);
+	}
+
+	@Test
+	public void testProjectRolesLoadedTogether() {
+		Project other = new Project();
+		other.setId(2L);
+		Project notMember = new Project();
+		notMember.setId(3L);
+		UserGroup group = new UserGroup("group");
+		when(pujRepository.getProjectJoinsForUser(eq(user), any()))
+				.thenReturn(ImmutableList.of(new ProjectUserJoin(project, user, ProjectRole.PROJECT_USER)));
+		when(ugpjRepository.findGroupsByProjectIdsAndUser(any(), eq(user)))
+				.thenReturn(ImmutableList.of(new UserGroupProjectJoin(other, group, ProjectRole.PROJECT_OWNER)));
+
+		assertEquals(ImmutableMap.of(1L, ProjectRole.PROJECT_USER, 2L, ProjectRole.PROJECT_OWNER),
+				cache.getProjectRoles(auth, ImmutableList.of(project, other, notMember)));
+		assertEquals("bulk loaded role should be cached", Optional.of(ProjectRole.PROJECT_OWNER),
+				cache.getProjectRole(auth, other));
+
+		verify(pujRepository, times(1)).getProjectJoinsForUser(eq(user), any());
+		verify(pujRepository, never()).getProjectJoinForUser(any(), any());
+	}
+
+	/**
+	 * A {@link Clock} that only moves when told to
+	 */
+	private static class SettableClock extends Clock {
+		private long millis = 0;
+
+		void advance(long by) {
+			millis += by;
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return Instant.ofEpochMilli(millis);
+		}
+	}
+}
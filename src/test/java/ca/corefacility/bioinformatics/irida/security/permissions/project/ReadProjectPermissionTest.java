@@ -7,6 +7,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -18,18 +19,15 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 
 import ca.corefacility.bioinformatics.irida.model.enums.ProjectRole;
-import ca.corefacility.bioinformatics.irida.model.joins.Join;
 import ca.corefacility.bioinformatics.irida.model.joins.impl.ProjectUserJoin;
 import ca.corefacility.bioinformatics.irida.model.project.Project;
 import ca.corefacility.bioinformatics.irida.model.user.Role;
 import ca.corefacility.bioinformatics.irida.model.user.User;
 import ca.corefacility.bioinformatics.irida.model.user.group.UserGroup;
-import ca.corefacility.bioinformatics.irida.model.user.group.UserGroupJoin;
 import ca.corefacility.bioinformatics.irida.model.user.group.UserGroupProjectJoin;
 import ca.corefacility.bioinformatics.irida.repositories.ProjectRepository;
 import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectUserJoinRepository;
 import ca.corefacility.bioinformatics.irida.repositories.joins.project.UserGroupProjectJoinRepository;
-import ca.corefacility.bioinformatics.irida.repositories.user.UserGroupJoinRepository;
 import ca.corefacility.bioinformatics.irida.repositories.user.UserRepository;
 import ca.corefacility.bioinformatics.irida.security.permissions.project.ReadProjectPermission;
 
@@ -46,7 +44,6 @@ public class ReadProjectPermissionTest {
 	private ProjectRepository projectRepository;
 	private ProjectUserJoinRepository pujRepository;
 	private UserGroupProjectJoinRepository ugpjRepository;
-	private UserGroupJoinRepository ugRepository;
 
 	@Before
 	public void setUp() {
@@ -54,9 +51,8 @@ public class ReadProjectPermissionTest {
 		projectRepository = mock(ProjectRepository.class);
 		pujRepository = mock(ProjectUserJoinRepository.class);
 		ugpjRepository = mock(UserGroupProjectJoinRepository.class);
-		ugRepository = mock(UserGroupJoinRepository.class);
-		readProjectPermission = new ReadProjectPermission(projectRepository, userRepository, pujRepository,
-				ugpjRepository, ugRepository);
+		readProjectPermission = new ReadProjectPermission(projectRepository,
+				new ProjectRoleCache(userRepository, pujRepository, ugpjRepository, 0, Clock.systemUTC()));
 	}
 
 	@Test
@@ -65,12 +61,11 @@ public class ReadProjectPermissionTest {
 		User u = new User();
 		u.setUsername(username);
 		Project p = new Project();
-		List<Join<Project, User>> projectUsers = new ArrayList<>();
-		projectUsers.add(new ProjectUserJoin(p, u, ProjectRole.PROJECT_USER));
 
 		when(userRepository.loadUserByUsername(username)).thenReturn(u);
 		when(projectRepository.findOne(1L)).thenReturn(p);
-		when(pujRepository.getUsersForProject(p)).thenReturn(projectUsers);
+		when(pujRepository.getProjectJoinForUser(p, u)).thenReturn(new ProjectUserJoin(p, u, ProjectRole.PROJECT_USER));
+		when(ugpjRepository.findGroupsByProjectAndUser(p, u)).thenReturn(ImmutableList.of());
 
 		Authentication auth = new UsernamePasswordAuthenticationToken("fbristow", "password1");
 
@@ -78,7 +73,7 @@ public class ReadProjectPermissionTest {
 
 		verify(userRepository).loadUserByUsername(username);
 		verify(projectRepository).findOne(1L);
-		verify(pujRepository).getUsersForProject(p);
+		verify(pujRepository).getProjectJoinForUser(p, u);
 	}
 
 	@Test
@@ -87,13 +82,10 @@ public class ReadProjectPermissionTest {
 		User u = new User();
 		u.setUsername(username);
 		Project p = new Project();
-		List<Join<Project, User>> projectUsers = new ArrayList<>();
-		projectUsers.add(new ProjectUserJoin(p, new User(), ProjectRole.PROJECT_USER));
 
 		when(userRepository.loadUserByUsername(username)).thenReturn(u);
 		when(projectRepository.findOne(1L)).thenReturn(p);
-		when(pujRepository.getUsersForProject(p)).thenReturn(projectUsers);
-		when(ugpjRepository.findGroupsByProject(p)).thenReturn(ImmutableList.of());
+		when(ugpjRepository.findGroupsByProjectAndUser(p, u)).thenReturn(ImmutableList.of());
 
 		Authentication auth = new UsernamePasswordAuthenticationToken("fbristow", "password1");
 
@@ -101,8 +93,8 @@ public class ReadProjectPermissionTest {
 
 		verify(userRepository).loadUserByUsername(username);
 		verify(projectRepository).findOne(1L);
-		verify(pujRepository).getUsersForProject(p);
-		verifyZeroInteractions(ugRepository);
+		verify(pujRepository).getProjectJoinForUser(p, u);
+		verify(ugpjRepository).findGroupsByProjectAndUser(p, u);
 	}
 
 	@Test
@@ -131,10 +123,7 @@ public class ReadProjectPermissionTest {
 
 		when(userRepository.loadUserByUsername(username)).thenReturn(u);
 		when(projectRepository.findOne(1L)).thenReturn(p);
-		when(pujRepository.getUsersForProject(p)).thenReturn(ImmutableList.of());
-		when(ugpjRepository.findGroupsByProject(p)).thenReturn(projectGroups);
-		when(ugRepository.findUsersInGroup(g))
-				.thenReturn(ImmutableList.of(new UserGroupJoin(u, g, UserGroupJoin.UserGroupRole.GROUP_MEMBER)));
+		when(ugpjRepository.findGroupsByProjectAndUser(p, u)).thenReturn(projectGroups);
 
 		Authentication auth = new UsernamePasswordAuthenticationToken("fbristow", "password1");
 
@@ -142,6 +131,6 @@ public class ReadProjectPermissionTest {
 
 		verify(userRepository).loadUserByUsername(username);
 		verify(projectRepository).findOne(1L);
-		verify(pujRepository).getUsersForProject(p);
+		verify(ugpjRepository).findGroupsByProjectAndUser(p, u);
 	}
 }
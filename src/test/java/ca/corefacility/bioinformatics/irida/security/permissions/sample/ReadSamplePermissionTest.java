@@ -1,10 +1,12 @@
 package ca.corefacility.bioinformatics.irida.security.permissions.sample;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -19,6 +21,8 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 
+import com.google.common.collect.ImmutableList;
+
 import ca.corefacility.bioinformatics.irida.model.enums.ProjectRole;
 import ca.corefacility.bioinformatics.irida.model.joins.Join;
 import ca.corefacility.bioinformatics.irida.model.joins.impl.ProjectSampleJoin;
@@ -138,4 +142,31 @@ public class ReadSamplePermissionTest {
 		// we should fast pass through to permission granted for administrators.
 		verifyZeroInteractions(psjRepository);
 	}
+
+	@Test
+	public void testFilterAllowedLoadsProjectsTogether() {
+		Project readable = new Project();
+		readable.setId(1L);
+		Project unreadable = new Project();
+		unreadable.setId(2L);
+		Sample s1 = new Sample();
+		s1.setId(1L);
+		Sample s2 = new Sample();
+		s2.setId(2L);
+		Sample s3 = new Sample();
+		s3.setId(3L);
+
+		when(psjRepository.getProjectsForSampleIds(any())).thenReturn(ImmutableList.of(
+				new ProjectSampleJoin(readable, s1, true), new ProjectSampleJoin(unreadable, s2, true),
+				new ProjectSampleJoin(unreadable, s3, true), new ProjectSampleJoin(readable, s3, false)));
+		when(readProjectPermission.filterAllowed(any(), any())).thenReturn(ImmutableList.of(readable));
+
+		Authentication auth = new UsernamePasswordAuthenticationToken("fbristow", "password1");
+
+		assertEquals("only samples in a readable project should be allowed", ImmutableList.of(s1, s3),
+				readSamplePermission.filterAllowed(auth, ImmutableList.of(s1, s2, s3)));
+
+		verify(psjRepository, times(1)).getProjectsForSampleIds(any());
+		verify(readProjectPermission, times(1)).filterAllowed(any(), any());
+	}
 }
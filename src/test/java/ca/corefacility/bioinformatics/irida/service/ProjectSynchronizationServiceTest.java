@@ -1,6 +1,7 @@
 package ca.corefacility.bioinformatics.irida.service;
 
 import java.util.Date;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -9,10 +10,13 @@ import org.mockito.MockitoAnnotations;
 
 import ca.corefacility.bioinformatics.irida.exceptions.ProjectSynchronizationException;
 import ca.corefacility.bioinformatics.irida.model.RemoteAPI;
+import ca.corefacility.bioinformatics.irida.model.joins.Join;
+import ca.corefacility.bioinformatics.irida.model.joins.impl.ProjectSampleJoin;
 import ca.corefacility.bioinformatics.irida.model.project.Project;
 import ca.corefacility.bioinformatics.irida.model.project.ProjectSyncFrequency;
 import ca.corefacility.bioinformatics.irida.model.remote.RemoteStatus;
 import ca.corefacility.bioinformatics.irida.model.remote.RemoteStatus.SyncStatus;
+import ca.corefacility.bioinformatics.irida.model.remote.resource.ResourceList;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFilePair;
 import ca.corefacility.bioinformatics.irida.model.user.User;
@@ -23,8 +27,10 @@ import ca.corefacility.bioinformatics.irida.service.sample.SampleService;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -62,7 +68,8 @@ public class ProjectSynchronizationServiceTest {
 
 		syncService = new ProjectSynchronizationService(projectService, sampleService, objectService,
 				metadataTemplateService, projectRemoteService, sampleRemoteService, singleEndRemoteService,
-				pairRemoteService, tokenService);
+				pairRemoteService, tokenService, MoreExecutors.sameThreadExecutor(),
+				MoreExecutors.sameThreadExecutor(), 1, 1, 1);
 
 		api = new RemoteAPI();
 		expired = new Project();
@@ -117,14 +124,80 @@ public class ProjectSynchronizationServiceTest {
 		when(projectRemoteService.read(expired.getRemoteStatus().getURL())).thenReturn(remoteProject);
 
 		when(projectService.update(remoteProject)).thenReturn(remoteProject);
+		when(sampleRemoteService.getSampleChangesForProject(remoteProject, null))
+				.thenReturn(sampleChanges("100", Lists.newArrayList(), null));
 
 		syncService.findMarkedProjectsToSync();
 
 		verify(projectService, times(3)).update(any(Project.class));
 
 		assertEquals(SyncStatus.SYNCHRONIZED, remoteProject.getRemoteStatus().getSyncStatus());
+		assertEquals("change token should be stored", "100", remoteProject.getRemoteStatus().getChangeToken());
+	}
+
+	@Test
+	public void testSyncProjectChanges() {
+		expired.getRemoteStatus().setSyncStatus(SyncStatus.MARKED);
+		expired.getRemoteStatus().setChangeToken("100");
+		expired.getRemoteStatus().setReadBy(new User());
+		when(projectService.read(expired.getId())).thenReturn(expired);
+		Project remoteProject = new Project();
+		remoteProject.setRemoteStatus(expired.getRemoteStatus());
+		when(projectService.getProjectsWithRemoteSyncStatus(RemoteStatus.SyncStatus.MARKED))
+				.thenReturn(Lists.newArrayList(expired));
+		when(projectRemoteService.read(expired.getRemoteStatus().getURL())).thenReturn(remoteProject);
+		when(projectService.update(remoteProject)).thenReturn(remoteProject);
+
+		Sample unchanged = new Sample("unchanged");
+		unchanged.setRemoteStatus(new RemoteStatus("http://unchanged", api));
+		Sample removed = new Sample("removed");
+		removed.setRemoteStatus(new RemoteStatus("http://removed", api));
+		when(sampleService.getSamplesForProject(any(Project.class))).thenReturn(Lists.<Join<Project, Sample>> newArrayList(
+				new ProjectSampleJoin(remoteProject, unchanged, true), new ProjectSampleJoin(remoteProject, removed, true)));
+
+		when(sampleRemoteService.getSampleChangesForProject(remoteProject, "100"))
+				.thenReturn(sampleChanges("200", Lists.newArrayList(), Lists.newArrayList("http://removed")));
+
+		syncService.findMarkedProjectsToSync();
+
+		verify(projectService).removeSampleFromProject(remoteProject, removed);
+		verify(projectService, times(0)).removeSampleFromProject(remoteProject, unchanged);
+		assertEquals(SyncStatus.SYNCHRONIZED, remoteProject.getRemoteStatus().getSyncStatus());
+		assertEquals("change token should be updated", "200", remoteProject.getRemoteStatus().getChangeToken());
 	}
 	
+	@Test
+	public void testSyncProjectSampleFileError() {
+		expired.getRemoteStatus().setSyncStatus(SyncStatus.MARKED);
+		when(projectService.read(expired.getId())).thenReturn(expired);
+		Project remoteProject = new Project();
+		remoteProject.setRemoteStatus(expired.getRemoteStatus());
+		expired.getRemoteStatus().setReadBy(new User());
+		when(projectService.getProjectsWithRemoteSyncStatus(RemoteStatus.SyncStatus.MARKED))
+				.thenReturn(Lists.newArrayList(expired));
+		when(projectRemoteService.read(expired.getRemoteStatus().getURL())).thenReturn(remoteProject);
+		when(projectService.update(remoteProject)).thenReturn(remoteProject);
+
+		Sample sample = new Sample();
+		sample.setRemoteStatus(new RemoteStatus("http://sample", api));
+		SequenceFilePair pair = new SequenceFilePair();
+		pair.setRemoteStatus(new RemoteStatus("http://pair", api));
+
+		when(sampleRemoteService.getSampleChangesForProject(remoteProject, null))
+				.thenReturn(sampleChanges("100", Lists.newArrayList(sample), null));
+		when(sampleService.create(sample)).thenReturn(sample);
+		when(pairRemoteService.getSequenceFilePairsForSample(sample)).thenReturn(Lists.newArrayList(pair));
+		when(pairRemoteService.mirrorSequencingObject(pair)).thenThrow(new NullPointerException("Bad file"));
+
+		syncService.findMarkedProjectsToSync();
+
+		verify(sampleRemoteService).getSampleMetadata(sample);
+		verify(pairRemoteService).mirrorSequencingObject(pair);
+		assertEquals("sample should have failed", SyncStatus.ERROR, sample.getRemoteStatus().getSyncStatus());
+		assertEquals("project should have failed", SyncStatus.ERROR, expired.getRemoteStatus().getSyncStatus());
+		assertNull("change token should not be stored after an error", expired.getRemoteStatus().getChangeToken());
+	}
+
 	@Test
 	public void testSyncNewSample(){
 		Sample sample = new Sample();
@@ -188,4 +261,12 @@ public class ProjectSynchronizationServiceTest {
 		
 		syncService.syncSequenceFilePair(pair, sample);
 	}
+
+	private ResourceList<Sample> sampleChanges(String changeToken, List<Sample> samples, List<String> removed) {
+		ResourceList<Sample> changes = new ResourceList<>();
+		changes.setChangeToken(changeToken);
+		changes.setResources(samples);
+		changes.setRemoved(removed);
+		return changes;
+	}
 }
@@ -1,7 +1,9 @@
 package ca.corefacility.bioinformatics.irida.service.analysis.execution.galaxy.impl.unit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -10,6 +12,8 @@ import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.doThrow;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.List;
@@ -25,6 +29,8 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.ReflectionUtils;
 
 import com.github.jmchilton.blend4j.galaxy.beans.HistoryDeleteResponse;
 import com.google.common.collect.Maps;
@@ -38,6 +44,7 @@ import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SingleEndSequenceFile;
 import ca.corefacility.bioinformatics.irida.model.workflow.IridaWorkflow;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.Analysis;
+import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisOutputFile;
 import ca.corefacility.bioinformatics.irida.model.workflow.execution.galaxy.GalaxyWorkflowState;
 import ca.corefacility.bioinformatics.irida.model.workflow.execution.galaxy.GalaxyWorkflowStatus;
 import ca.corefacility.bioinformatics.irida.model.workflow.execution.galaxy.PreparedWorkflowGalaxy;
@@ -69,6 +76,8 @@ public class AnalysisExecutionServiceGalaxyTest {
 	@Mock
 	private AnalysisService analysisService;
 	@Mock
+	private PlatformTransactionManager transactionManager;
+	@Mock
 	private GalaxyHistoriesService galaxyHistoriesService;
 	@Mock
 	private GalaxyWorkflowService galaxyWorkflowService;
@@ -148,7 +157,7 @@ public class AnalysisExecutionServiceGalaxyTest {
 
 		AnalysisExecutionServiceGalaxyAsync workflowManagementAsync = new AnalysisExecutionServiceGalaxyAsync(
 				analysisSubmissionService, analysisService, galaxyWorkflowService, analysisWorkspaceService,
-				iridaWorkflowsService, analysisSubmissionSampleProcessor);
+				iridaWorkflowsService, analysisSubmissionSampleProcessor, transactionManager);
 		AnalysisExecutionServiceGalaxyCleanupAsync analysisExecutionServiceGalaxyCleanupAsync = new AnalysisExecutionServiceGalaxyCleanupAsync(
 				analysisSubmissionService, galaxyWorkflowService, galaxyHistoriesService, galaxyLibrariesService);
 		workflowManagement = new AnalysisExecutionServiceGalaxy(analysisSubmissionService, galaxyHistoriesService,
@@ -508,6 +517,44 @@ public class AnalysisExecutionServiceGalaxyTest {
 		verify(analysisSubmissionService, times(2)).update(any(AnalysisSubmission.class));
 	}
 
+	/**
+	 * Tests that downloaded output files are removed when saving the analysis
+	 * fails after they were moved out of their staging directory.
+	 */
+	@Test
+	public void testTransferAnalysisResultsSaveFailsRemovesFiles() throws ExecutionManagerException, IOException,
+			IridaWorkflowNotFoundException, IridaWorkflowAnalysisTypeException {
+		Path staging = Files.createTempDirectory("staging");
+		Path outputDirectory = Files.createTempDirectory("output");
+		Path downloaded = Files.createFile(staging.resolve("output.txt"));
+		Path moved = outputDirectory.resolve("1").resolve("1").resolve("output.txt");
+		AnalysisOutputFile outputFile = new AnalysisOutputFile(downloaded, "", "", null);
+
+		when(analysisSubmissionService.exists(INTERNAL_ANALYSIS_ID)).thenReturn(true);
+		when(analysisSubmissionService.update(analysisFinishedRunning)).thenReturn(analysisCompleting);
+		when(analysisResults.getAnalysisOutputFiles()).thenReturn(Sets.newHashSet(outputFile));
+		when(analysisService.create(analysisResults)).thenAnswer(invocation -> {
+			// the file is moved into the output directory before the save fails
+			Files.createDirectories(moved.getParent());
+			Files.move(downloaded, moved);
+			Field file = ReflectionUtils.findField(AnalysisOutputFile.class, "file");
+			ReflectionUtils.makeAccessible(file);
+			ReflectionUtils.setField(file, outputFile, moved);
+			throw new StorageException("save failed");
+		});
+
+		try {
+			workflowManagement.transferAnalysisResults(analysisFinishedRunning);
+			fail("saving the analysis should fail");
+		} catch (StorageException e) {
+			assertFalse("staging directory should be removed", Files.exists(staging));
+			assertFalse("moved output file should be removed", Files.exists(moved));
+			assertFalse("output file directories should be removed", Files.exists(outputDirectory.resolve("1")));
+		} finally {
+			Files.deleteIfExists(outputDirectory);
+		}
+	}
+
 	/**
 	 * Tests failing to get analysis results.
 	 * 
@@ -0,0 +1,194 @@
+package ca.corefacility.bioinformatics.irida.service.analysis.execution.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import ca.corefacility.bioinformatics.irida.model.enums.AnalysisState;
+import ca.corefacility.bioinformatics.irida.model.workflow.IridaWorkflow;
+import ca.corefacility.bioinformatics.irida.model.workflow.analysis.type.AnalysisType;
+import ca.corefacility.bioinformatics.irida.model.workflow.analysis.type.BuiltInAnalysisTypes;
+import ca.corefacility.bioinformatics.irida.model.workflow.description.IridaWorkflowDescription;
+import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission;
+import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission.Priority;
+import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmissionQueueEntry;
+import ca.corefacility.bioinformatics.irida.repositories.analysis.submission.AnalysisSubmissionRepository;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisSubmissionQueue;
+import ca.corefacility.bioinformatics.irida.service.workflow.IridaWorkflowsService;
+
+/**
+ * Unit tests for {@link AnalysisSubmissionQueue}
+ */
+public class AnalysisSubmissionQueueTest {
+	private static final Duration AGING_INTERVAL = Duration.ofHours(1);
+	private static final Instant NOW = Instant.parse("2018-01-01T12:00:00Z");
+
+	private static final UUID PHYLOGENOMICS_WORKFLOW = UUID.randomUUID();
+	private static final UUID ASSEMBLY_WORKFLOW = UUID.randomUUID();
+
+	@Mock
+	private AnalysisSubmissionRepository analysisSubmissionRepository;
+
+	@Mock
+	private IridaWorkflowsService iridaWorkflowsService;
+
+	private List<AnalysisSubmissionQueueEntry> entries;
+	private AnalysisSubmissionQueue queue;
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+
+		entries = new ArrayList<>();
+		when(analysisSubmissionRepository.getQueueEntries(any(Collection.class))).thenReturn(entries);
+		when(analysisSubmissionRepository.findOne(anyLong())).thenAnswer(invocation -> {
+			return submission((Long) invocation.getArguments()[0], AnalysisState.NEW);
+		});
+
+		workflowOfType(PHYLOGENOMICS_WORKFLOW, BuiltInAnalysisTypes.PHYLOGENOMICS);
+		workflowOfType(ASSEMBLY_WORKFLOW, BuiltInAnalysisTypes.ASSEMBLY_ANNOTATION);
+
+		queue = new AnalysisSubmissionQueue(analysisSubmissionRepository, iridaWorkflowsService,
+				ImmutableMap.of(BuiltInAnalysisTypes.PHYLOGENOMICS, 1), AGING_INTERVAL,
+				Clock.fixed(NOW, ZoneOffset.UTC));
+	}
+
+	@Test
+	public void testPriorityOrder() {
+		entries.add(waiting(1L, 1L, null, Priority.MEDIUM, 0));
+		entries.add(waiting(2L, 1L, null, Priority.HIGH, 0));
+		entries.add(waiting(3L, 1L, null, Priority.LOW, 0));
+
+		assertEquals("submissions should be taken by priority", Lists.newArrayList(2L, 1L),
+				ids(queue.nextSubmissions(2)));
+	}
+
+	@Test
+	public void testAgingRaisesPriority() {
+		entries.add(waiting(1L, 1L, null, Priority.MEDIUM, 0));
+		entries.add(waiting(2L, 1L, null, Priority.LOW, 30));
+		entries.add(waiting(3L, 1L, null, Priority.LOW, 150));
+
+		assertEquals("long waiting LOW submission should be raised to HIGH", Lists.newArrayList(3L, 1L, 2L),
+				queue.getQueuedSubmissionIds());
+	}
+
+	@Test
+	public void testFairShareBetweenSubmitters() {
+		entries.add(waiting(1L, 1L, null, Priority.MEDIUM, 40));
+		entries.add(waiting(2L, 1L, null, Priority.MEDIUM, 30));
+		entries.add(waiting(3L, 1L, null, Priority.MEDIUM, 20));
+		entries.add(waiting(4L, 2L, null, Priority.MEDIUM, 10));
+
+		assertEquals("submitters should take turns", Lists.newArrayList(1L, 4L, 2L, 3L),
+				queue.getQueuedSubmissionIds());
+	}
+
+	@Test
+	public void testFairShareCountsRunning() {
+		entries.add(running(10L, 1L, null, PHYLOGENOMICS_WORKFLOW, AnalysisState.RUNNING));
+		entries.add(running(11L, 1L, null, ASSEMBLY_WORKFLOW, AnalysisState.RUNNING));
+		entries.add(waiting(1L, 1L, null, Priority.MEDIUM, 30));
+		entries.add(waiting(2L, 2L, null, Priority.MEDIUM, 10));
+
+		assertEquals("submitter with nothing running should go first", Lists.newArrayList(2L),
+				ids(queue.nextSubmissions(1)));
+	}
+
+	@Test
+	public void testFairShareBetweenProjects() {
+		entries.add(running(10L, 3L, 100L, ASSEMBLY_WORKFLOW, AnalysisState.RUNNING));
+		entries.add(waiting(1L, 1L, 100L, Priority.MEDIUM, 30));
+		entries.add(waiting(2L, 2L, 200L, Priority.MEDIUM, 10));
+
+		assertEquals("project with nothing running should go first", Lists.newArrayList(2L, 1L),
+				queue.getQueuedSubmissionIds());
+	}
+
+	@Test
+	public void testWorkflowTypeLimit() {
+		entries.add(running(10L, 3L, null, PHYLOGENOMICS_WORKFLOW, AnalysisState.RUNNING));
+		entries.add(waiting(1L, 1L, null, Priority.HIGH, 30, PHYLOGENOMICS_WORKFLOW));
+		entries.add(waiting(2L, 2L, null, Priority.LOW, 10, ASSEMBLY_WORKFLOW));
+
+		assertEquals("submission of a type at its limit should be passed over", Lists.newArrayList(2L),
+				ids(queue.nextSubmissions(2)));
+		assertEquals("passed over submission should keep its place", 1,
+				queue.getQueuePosition(submission(1L, AnalysisState.NEW)));
+	}
+
+	@Test
+	public void testSubmissionStartedSinceRead() {
+		entries.add(waiting(1L, 1L, null, Priority.MEDIUM, 0));
+		AnalysisSubmission preparing = submission(1L, AnalysisState.PREPARING);
+		doReturn(preparing).when(analysisSubmissionRepository).findOne(1L);
+
+		assertEquals("started submission should not be taken", 0, queue.nextSubmissions(1).size());
+	}
+
+	@Test
+	public void testQueuePositionNotWaiting() {
+		entries.add(waiting(1L, 1L, null, Priority.MEDIUM, 0));
+
+		assertEquals(0, queue.getQueuePosition(submission(2L, AnalysisState.COMPLETED)));
+	}
+
+	private void workflowOfType(UUID workflowId, AnalysisType analysisType) {
+		IridaWorkflowDescription description = mock(IridaWorkflowDescription.class);
+		when(description.getAnalysisType()).thenReturn(analysisType);
+		IridaWorkflow workflow = mock(IridaWorkflow.class);
+		when(workflow.getWorkflowDescription()).thenReturn(description);
+		when(iridaWorkflowsService.getIridaWorkflowOrUnknown(workflowId)).thenReturn(workflow);
+	}
+
+	private AnalysisSubmissionQueueEntry waiting(Long id, Long submitter, Long project, Priority priority,
+			long minutesWaiting) {
+		return waiting(id, submitter, project, priority, minutesWaiting, ASSEMBLY_WORKFLOW);
+	}
+
+	private AnalysisSubmissionQueueEntry waiting(Long id, Long submitter, Long project, Priority priority,
+			long minutesWaiting, UUID workflowId) {
+		Date created = Date.from(NOW.minus(Duration.ofMinutes(minutesWaiting)));
+		return new AnalysisSubmissionQueueEntry(id, submitter, project, workflowId, priority, AnalysisState.NEW,
+				created);
+	}
+
+	private AnalysisSubmissionQueueEntry running(Long id, Long submitter, Long project, UUID workflowId,
+			AnalysisState state) {
+		return new AnalysisSubmissionQueueEntry(id, submitter, project, workflowId, Priority.MEDIUM, state,
+				Date.from(NOW));
+	}
+
+	private AnalysisSubmission submission(Long id, AnalysisState state) {
+		AnalysisSubmission submission = mock(AnalysisSubmission.class);
+		when(submission.getId()).thenReturn(id);
+		when(submission.getAnalysisState()).thenReturn(state);
+		return submission;
+	}
+
+	private List<Long> ids(List<AnalysisSubmission> submissions) {
+		return submissions.stream().map(AnalysisSubmission::getId).collect(Collectors.toList());
+	}
+}
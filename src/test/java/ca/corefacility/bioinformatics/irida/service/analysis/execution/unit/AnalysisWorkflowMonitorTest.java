@@ -0,0 +1,169 @@
+package ca.corefacility.bioinformatics.irida.service.analysis.execution.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import ca.corefacility.bioinformatics.irida.exceptions.WorkflowException;
+import ca.corefacility.bioinformatics.irida.model.workflow.execution.galaxy.GalaxyWorkflowState;
+import ca.corefacility.bioinformatics.irida.model.workflow.execution.galaxy.GalaxyWorkflowStatus;
+import ca.corefacility.bioinformatics.irida.model.workflow.submission.AnalysisSubmission;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisExecutionService;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisWorkflowMonitor;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisWorkflowMonitor.WorkflowStatusListener;
+
+/**
+ * Unit tests for {@link AnalysisWorkflowMonitor}
+ */
+public class AnalysisWorkflowMonitorTest {
+	private static final long MIN_INTERVAL = 1000;
+	private static final long MAX_INTERVAL = 5000;
+
+	@Mock
+	private AnalysisExecutionService analysisExecutionService;
+
+	@Mock
+	private WorkflowStatusListener listener;
+
+	@Mock
+	private AnalysisSubmission submission;
+
+	private SettableClock clock;
+	private AnalysisWorkflowMonitor monitor;
+	private List<AnalysisSubmission> running;
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+
+		clock = new SettableClock();
+		monitor = new AnalysisWorkflowMonitor(analysisExecutionService, MoreExecutors.sameThreadExecutor(),
+				MIN_INTERVAL, MAX_INTERVAL, clock);
+
+		when(submission.getId()).thenReturn(1L);
+		running = Lists.newArrayList(submission);
+	}
+
+	@Test
+	public void testBackoffWithoutProgress() throws Exception {
+		GalaxyWorkflowStatus status = status(GalaxyWorkflowState.RUNNING, 1, 1);
+		when(analysisExecutionService.getWorkflowStatus(submission)).thenReturn(status);
+
+		assertEquals("new submission should be checked", 1, monitor.checkRunningSubmissions(running, listener));
+		assertEquals(MIN_INTERVAL, monitor.getCheckInterval(submission));
+
+		assertEquals("submission should not be checked before its interval", 0,
+				monitor.checkRunningSubmissions(running, listener));
+
+		clock.advance(MIN_INTERVAL);
+		assertEquals(1, monitor.checkRunningSubmissions(running, listener));
+		assertEquals("interval should grow without progress", MIN_INTERVAL * 2, monitor.getCheckInterval(submission));
+
+		clock.advance(MIN_INTERVAL * 2);
+		monitor.checkRunningSubmissions(running, listener);
+		clock.advance(MIN_INTERVAL * 4);
+		monitor.checkRunningSubmissions(running, listener);
+		assertEquals("interval should not grow past the maximum", MAX_INTERVAL, monitor.getCheckInterval(submission));
+
+		verify(listener, times(4)).workflowStatus(submission, status);
+	}
+
+	@Test
+	public void testProgressResetsInterval() throws Exception {
+		when(analysisExecutionService.getWorkflowStatus(submission)).thenReturn(
+				status(GalaxyWorkflowState.RUNNING, 1, 1));
+		monitor.checkRunningSubmissions(running, listener);
+		clock.advance(MIN_INTERVAL);
+		monitor.checkRunningSubmissions(running, listener);
+		assertEquals(MIN_INTERVAL * 2, monitor.getCheckInterval(submission));
+
+		when(analysisExecutionService.getWorkflowStatus(submission)).thenReturn(
+				status(GalaxyWorkflowState.RUNNING, 2, 0));
+		clock.advance(MIN_INTERVAL * 2);
+		monitor.checkRunningSubmissions(running, listener);
+
+		assertEquals("interval should reset after progress", MIN_INTERVAL, monitor.getCheckInterval(submission));
+	}
+
+	@Test
+	public void testFinishedWorkflowNotWatched() throws Exception {
+		GalaxyWorkflowStatus status = status(GalaxyWorkflowState.OK, 2, 0);
+		when(analysisExecutionService.getWorkflowStatus(submission)).thenReturn(status);
+
+		monitor.checkRunningSubmissions(running, listener);
+
+		verify(listener).workflowStatus(submission, status);
+		assertEquals("finished workflow should not be watched", 0, monitor.getCheckInterval(submission));
+	}
+
+	@Test
+	public void testStatusError() throws Exception {
+		WorkflowException exception = new WorkflowException("error");
+		when(analysisExecutionService.getWorkflowStatus(submission)).thenThrow(exception);
+
+		monitor.checkRunningSubmissions(running, listener);
+
+		verify(listener).workflowStatusError(submission, exception);
+		verify(listener, never()).workflowStatus(any(AnalysisSubmission.class), any(GalaxyWorkflowStatus.class));
+	}
+
+	/**
+	 * Build a workflow status with some items finished and some still running
+	 */
+	private GalaxyWorkflowStatus status(GalaxyWorkflowState state, int ok, int running) {
+		Map<GalaxyWorkflowState, Set<String>> stateIds = new HashMap<>();
+		for (GalaxyWorkflowState s : GalaxyWorkflowState.values()) {
+			stateIds.put(s, new HashSet<>());
+		}
+		for (int i = 0; i < ok; i++) {
+			stateIds.get(GalaxyWorkflowState.OK).add("ok" + i);
+		}
+		for (int i = 0; i < running; i++) {
+			stateIds.get(GalaxyWorkflowState.RUNNING).add("running" + i);
+		}
+		return new GalaxyWorkflowStatus(state, stateIds);
+	}
+
+	/**
+	 * A {@link Clock} that only moves when told to
+	 */
+	private static class SettableClock extends Clock {
+		private long millis = 0;
+
+		void advance(long by) {
+			millis += by;
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return Instant.ofEpochMilli(millis);
+		}
+	}
+}
@@ -2,10 +2,13 @@ package ca.corefacility.bioinformatics.irida.service.analysis.workspace.galaxy.i
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.nio.file.Paths;
@@ -31,6 +34,8 @@ import com.github.jmchilton.blend4j.galaxy.beans.Tool;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Tests for {@link AnalysisProvenanceServiceGalaxy}.
@@ -51,7 +56,8 @@ public class AnalysisProvenanceServiceGalaxyTest {
 		this.galaxyHistoriesService = mock(GalaxyHistoriesService.class);
 		this.toolsClient = mock(ToolsClient.class);
 		this.jobsClient = mock(JobsClient.class);
-		this.provenanceService = new AnalysisProvenanceServiceGalaxy(galaxyHistoriesService, toolsClient, jobsClient);
+		this.provenanceService = new AnalysisProvenanceServiceGalaxy(galaxyHistoriesService, toolsClient, jobsClient,
+				MoreExecutors.sameThreadExecutor());
 	}
 
 	@Test(expected = ExecutionManagerException.class)
@@ -262,6 +268,70 @@ public class AnalysisProvenanceServiceGalaxyTest {
 				.getExecutionTimeParameters().get("akey"));
 	}
 
+	@Test
+	public void testBuildToolExecutionsSharedPredecessor() throws ExecutionManagerException {
+		final HistoryContents hc1 = new HistoryContents();
+		hc1.setName("output1");
+		hc1.setId("output1Id");
+		final HistoryContents hc2 = new HistoryContents();
+		hc2.setName("output2");
+		hc2.setId("output2Id");
+		final HistoryContentsProvenance hcp1 = new HistoryContentsProvenance();
+		hcp1.setParameters(ImmutableMap.of("input", (Object) ImmutableMap.of("id", "sharedId")));
+		hcp1.setJobId("job1");
+		final HistoryContentsProvenance hcp2 = new HistoryContentsProvenance();
+		hcp2.setParameters(ImmutableMap.of("input", (Object) ImmutableMap.of("id", "sharedId")));
+		hcp2.setJobId("job2");
+		final HistoryContentsProvenance sharedProvenance = new HistoryContentsProvenance();
+		sharedProvenance.setParameters(ImmutableMap.of("akey", (Object) "avalue"));
+		sharedProvenance.setJobId("sharedJob");
+		when(galaxyHistoriesService.showHistoryContents(any(String.class))).thenReturn(Lists.newArrayList(hc1, hc2));
+		when(galaxyHistoriesService.showProvenance(any(String.class), eq("output1Id"))).thenReturn(hcp1);
+		when(galaxyHistoriesService.showProvenance(any(String.class), eq("output2Id"))).thenReturn(hcp2);
+		when(galaxyHistoriesService.showProvenance(any(String.class), eq("sharedId"))).thenReturn(sharedProvenance);
+		when(jobsClient.showJob(any(String.class))).thenReturn(new JobDetails());
+		when(toolsClient.showTool(any(String.class))).thenReturn(new Tool());
+
+		final Map<String, ToolExecution> toolExecutions = provenanceService.buildToolExecutionsForOutputFiles(
+				analysisSubmission(), Sets.newHashSet("output1", "output2"));
+
+		final ToolExecution shared1 = toolExecutions.get("output1").getPreviousSteps().iterator().next();
+		final ToolExecution shared2 = toolExecutions.get("output2").getPreviousSteps().iterator().next();
+		assertSame("outputs should share the tool execution of their common step", shared1, shared2);
+		verify(galaxyHistoriesService, times(1)).showHistoryContents(any(String.class));
+		verify(galaxyHistoriesService, times(1)).showProvenance(any(String.class), eq("sharedId"));
+		verify(jobsClient, times(1)).showJob("sharedJob");
+	}
+
+	@Test
+	public void testBuildToolExecutionsSharedJob() throws ExecutionManagerException {
+		final HistoryContents hc1 = new HistoryContents();
+		hc1.setName("output1");
+		hc1.setId("output1Id");
+		final HistoryContents hc2 = new HistoryContents();
+		hc2.setName("output2");
+		hc2.setId("output2Id");
+		// both outputs were written by the same job
+		final HistoryContentsProvenance hcp1 = new HistoryContentsProvenance();
+		hcp1.setParameters(ImmutableMap.of("akey", (Object) "avalue"));
+		hcp1.setJobId("job");
+		final HistoryContentsProvenance hcp2 = new HistoryContentsProvenance();
+		hcp2.setParameters(ImmutableMap.of("akey", (Object) "avalue"));
+		hcp2.setJobId("job");
+		when(galaxyHistoriesService.showHistoryContents(any(String.class))).thenReturn(Lists.newArrayList(hc1, hc2));
+		when(galaxyHistoriesService.showProvenance(any(String.class), eq("output1Id"))).thenReturn(hcp1);
+		when(galaxyHistoriesService.showProvenance(any(String.class), eq("output2Id"))).thenReturn(hcp2);
+		when(jobsClient.showJob(any(String.class))).thenReturn(new JobDetails());
+		when(toolsClient.showTool(any(String.class))).thenReturn(new Tool());
+
+		final Map<String, ToolExecution> toolExecutions = provenanceService.buildToolExecutionsForOutputFiles(
+				analysisSubmission(), Sets.newHashSet("output1", "output2"));
+
+		assertSame("outputs of the same job should share a tool execution", toolExecutions.get("output1"),
+				toolExecutions.get("output2"));
+		verify(jobsClient, times(1)).showJob("job");
+	}
+
 	private String analysisSubmission() {
 		return UUID.randomUUID().toString();
 	}
@@ -33,6 +33,7 @@ import com.github.jmchilton.blend4j.galaxy.beans.collection.response.CollectionR
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -40,6 +41,8 @@ import org.mockito.MockitoAnnotations;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
@@ -120,6 +123,9 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 	private Dataset output2Dataset;
 	private String output1Filename = "output1.txt";
 	private String output2Filename = "output2.txt";
+	private Set<String> outputFilenames = Sets.newHashSet(output1Filename, output2Filename);
+	private Map<String, Dataset> outputDatasets;
+	private Path outputFileBaseDirectory;
 
 	private UUID workflowId = IridaWorkflowTestBuilder.DEFAULT_ID;
 	private UUID workflowIdMultiSamples = IridaWorkflowTestBuilder.MULTI_SAMPLES_ID;
@@ -196,10 +202,13 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 		workflowDetails = new WorkflowDetails();
 		workflowDetails.setId(WORKFLOW_ID);
 
+		outputFileBaseDirectory = Files.createTempDirectory("output-files");
+		outputFileBaseDirectory.toFile().deleteOnExit();
+
 		workflowPreparation = new AnalysisWorkspaceServiceGalaxy(galaxyHistoriesService, galaxyWorkflowService,
 				galaxyLibrariesService, iridaWorkflowsService, analysisCollectionServiceGalaxy,
 				analysisProvenanceServiceGalaxy, analysisParameterServiceGalaxy,
-				sequencingObjectService);
+				sequencingObjectService, MoreExecutors.sameThreadExecutor(), outputFileBaseDirectory);
 
 		output1Dataset = new Dataset();
 		output1Dataset.setId("1");
@@ -209,6 +218,8 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 		output2Dataset.setId("2");
 		output2Dataset.setName("output2.txt");
 
+		outputDatasets = ImmutableMap.of(output1Filename, output1Dataset, output2Filename, output2Dataset);
+
 		collectionResponseSingle = new CollectionResponse();
 		collectionResponseSingle.setId(COLLECTION_SINGLE_ID);
 		collectionResponsePaired = new CollectionResponse();
@@ -716,8 +727,8 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 				.thenReturn(Sets.newHashSet(singleFiles));
 
 		when(iridaWorkflowsService.getIridaWorkflow(workflowId)).thenReturn(iridaWorkflowSingle);
-		when(galaxyHistoriesService.getDatasetForFileInHistory(output1Filename, HISTORY_ID)).thenReturn(output1Dataset);
-		when(galaxyHistoriesService.getDatasetForFileInHistory(output2Filename, HISTORY_ID)).thenReturn(output2Dataset);
+		when(galaxyHistoriesService.getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID))
+				.thenReturn(outputDatasets);
 
 		when(sequencingObjectService.getUniqueSamplesForSequencingObjects(singleFiles))
 				.thenReturn(sampleSingleSequenceFileMap);
@@ -733,8 +744,7 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 		assertEquals("missing output file for analysis", "SampleA-output2.txt",
 				analysis.getAnalysisOutputFile("output2").getLabel());
 
-		verify(galaxyHistoriesService).getDatasetForFileInHistory("output1.txt", HISTORY_ID);
-		verify(galaxyHistoriesService).getDatasetForFileInHistory("output2.txt", HISTORY_ID);
+		verify(galaxyHistoriesService).getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID);
 	}
 
 	/**
@@ -757,8 +767,8 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 		submission.setRemoteAnalysisId(HISTORY_ID);
 
 		when(iridaWorkflowsService.getIridaWorkflow(workflowId)).thenReturn(iridaWorkflowSingle);
-		when(galaxyHistoriesService.getDatasetForFileInHistory(output1Filename, HISTORY_ID)).thenReturn(output1Dataset);
-		when(galaxyHistoriesService.getDatasetForFileInHistory(output2Filename, HISTORY_ID)).thenReturn(output2Dataset);
+		when(galaxyHistoriesService.getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID))
+				.thenReturn(outputDatasets);
 
 		when(sequencingObjectService.getSequencingObjectsForAnalysisSubmission(submission))
 				.thenReturn(Sets.newHashSet(pairedFiles));
@@ -777,8 +787,7 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 		assertEquals("missing output file for analysis", "SampleB-output2.txt",
 				analysis.getAnalysisOutputFile("output2").getLabel());
 
-		verify(galaxyHistoriesService).getDatasetForFileInHistory("output1.txt", HISTORY_ID);
-		verify(galaxyHistoriesService).getDatasetForFileInHistory("output2.txt", HISTORY_ID);
+		verify(galaxyHistoriesService).getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID);
 	}
 
 	/**
@@ -814,8 +823,8 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 
 		when(iridaWorkflowsService.getIridaWorkflow(workflowIdMultiSamples))
 				.thenReturn(iridaWorkflowSinglePairedMultipleSamples);
-		when(galaxyHistoriesService.getDatasetForFileInHistory(output1Filename, HISTORY_ID)).thenReturn(output1Dataset);
-		when(galaxyHistoriesService.getDatasetForFileInHistory(output2Filename, HISTORY_ID)).thenReturn(output2Dataset);
+		when(galaxyHistoriesService.getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID))
+				.thenReturn(outputDatasets);
 
 		when(sequencingObjectService.getUniqueSamplesForSequencingObjects(joinedFiles))
 				.thenReturn(joinedMap);
@@ -833,8 +842,7 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 		assertEquals("missing output file for analysis", "output2.txt",
 				analysis.getAnalysisOutputFile("output2").getLabel());
 
-		verify(galaxyHistoriesService).getDatasetForFileInHistory("output1.txt", HISTORY_ID);
-		verify(galaxyHistoriesService).getDatasetForFileInHistory("output2.txt", HISTORY_ID);
+		verify(galaxyHistoriesService).getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID);
 	}
 
 	/**
@@ -865,8 +873,8 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 				SequenceFilePair.class)).thenReturn(pairedFiles);
 
 		when(iridaWorkflowsService.getIridaWorkflow(workflowId)).thenReturn(iridaWorkflowSingle);
-		when(galaxyHistoriesService.getDatasetForFileInHistory(output1Filename, HISTORY_ID)).thenReturn(output1Dataset);
-		when(galaxyHistoriesService.getDatasetForFileInHistory(output2Filename, HISTORY_ID)).thenReturn(output2Dataset);
+		when(galaxyHistoriesService.getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID))
+				.thenReturn(outputDatasets);
 
 		when(sequencingObjectService.getUniqueSamplesForSequencingObjects(singleFiles))
 				.thenReturn(sampleSingleSequenceFileMap);
@@ -886,8 +894,7 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 		assertEquals("missing output file for analysis", "output2.txt",
 				analysis.getAnalysisOutputFile("output2").getLabel());
 
-		verify(galaxyHistoriesService).getDatasetForFileInHistory("output1.txt", HISTORY_ID);
-		verify(galaxyHistoriesService).getDatasetForFileInHistory("output2.txt", HISTORY_ID);
+		verify(galaxyHistoriesService).getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID);
 	}
 
 	/**
@@ -910,8 +917,8 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 		submission.setRemoteAnalysisId(HISTORY_ID);
 
 		when(iridaWorkflowsService.getIridaWorkflow(workflowId)).thenReturn(iridaWorkflowSingle);
-		when(galaxyHistoriesService.getDatasetForFileInHistory(output1Filename, HISTORY_ID)).thenReturn(output1Dataset);
-		when(galaxyHistoriesService.getDatasetForFileInHistory(output2Filename, HISTORY_ID)).thenReturn(output2Dataset);
+		when(galaxyHistoriesService.getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID))
+				.thenReturn(outputDatasets);
 
 		Analysis analysis = workflowPreparation.getAnalysisResults(submission);
 
@@ -926,8 +933,7 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 		assertEquals("missing output file for analysis", "output2.txt",
 				analysis.getAnalysisOutputFile("output2").getLabel());
 
-		verify(galaxyHistoriesService).getDatasetForFileInHistory("output1.txt", HISTORY_ID);
-		verify(galaxyHistoriesService).getDatasetForFileInHistory("output2.txt", HISTORY_ID);
+		verify(galaxyHistoriesService).getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID);
 	}
 
 	/**
@@ -948,9 +954,86 @@ public class AnalysisWorkspaceServiceGalaxyTest {
 		submission.setRemoteAnalysisId(HISTORY_ID);
 
 		when(iridaWorkflowsService.getIridaWorkflow(workflowId)).thenReturn(iridaWorkflowSingle);
-		when(galaxyHistoriesService.getDatasetForFileInHistory(output1Filename, HISTORY_ID))
+		when(galaxyHistoriesService.getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID))
 				.thenThrow(new GalaxyDatasetException());
 
 		workflowPreparation.getAnalysisResults(submission);
 	}
+
+	/**
+	 * Tests that output files are downloaded into a staging directory under
+	 * the output file base directory.
+	 * 
+	 * @throws IridaWorkflowNotFoundException
+	 * @throws IOException
+	 * @throws ExecutionManagerException
+	 * @throws IridaWorkflowAnalysisTypeException
+	 */
+	@Test
+	public void testGetAnalysisResultsStagedUnderOutputDirectory() throws IridaWorkflowNotFoundException,
+			IridaWorkflowAnalysisTypeException, ExecutionManagerException, IOException {
+		submission = AnalysisSubmission.builder(workflowId).name("my analysis").inputFiles(singleInputFiles)
+				.referenceFile(referenceFile).build();
+		submission.setRemoteWorkflowId(WORKFLOW_ID);
+		submission.setRemoteAnalysisId(HISTORY_ID);
+
+		when(iridaWorkflowsService.getIridaWorkflow(workflowId)).thenReturn(iridaWorkflowSingle);
+		when(galaxyHistoriesService.getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID))
+				.thenReturn(outputDatasets);
+		output1Dataset.setFileSize(4);
+		downloadContents("data");
+
+		Analysis analysis = workflowPreparation.getAnalysisResults(submission);
+
+		Path output1 = analysis.getAnalysisOutputFile("output1").getFile();
+		Path output2 = analysis.getAnalysisOutputFile("output2").getFile();
+		assertEquals("output file should be staged under the output file directory", outputFileBaseDirectory,
+				output1.getParent().getParent());
+		assertEquals("output files should be staged together", output1.getParent(), output2.getParent());
+		assertTrue("output file should be downloaded", Files.exists(output1));
+		verify(analysisProvenanceServiceGalaxy).buildToolExecutionsForOutputFiles(HISTORY_ID, outputFilenames);
+	}
+
+	/**
+	 * Tests that a download that doesn't match the size of the Galaxy dataset
+	 * fails and leaves no staged files behind.
+	 * 
+	 * @throws IridaWorkflowNotFoundException
+	 * @throws IOException
+	 * @throws ExecutionManagerException
+	 * @throws IridaWorkflowAnalysisTypeException
+	 */
+	@Test
+	public void testGetAnalysisResultsFailIncompleteDownload() throws IridaWorkflowNotFoundException,
+			IridaWorkflowAnalysisTypeException, ExecutionManagerException, IOException {
+		submission = AnalysisSubmission.builder(workflowId).name("my analysis").inputFiles(singleInputFiles)
+				.referenceFile(referenceFile).build();
+		submission.setRemoteWorkflowId(WORKFLOW_ID);
+		submission.setRemoteAnalysisId(HISTORY_ID);
+
+		when(iridaWorkflowsService.getIridaWorkflow(workflowId)).thenReturn(iridaWorkflowSingle);
+		when(galaxyHistoriesService.getDatasetsForFilesInHistory(outputFilenames, HISTORY_ID))
+				.thenReturn(outputDatasets);
+		output2Dataset.setFileSize(100);
+		downloadContents("data");
+
+		try {
+			workflowPreparation.getAnalysisResults(submission);
+			fail("incomplete download should fail");
+		} catch (ExecutionManagerDownloadException e) {
+			try (DirectoryStream<Path> staged = Files.newDirectoryStream(outputFileBaseDirectory)) {
+				assertFalse("staging directory should be removed", staged.iterator().hasNext());
+			}
+		}
+	}
+
+	/**
+	 * Makes every dataset download write the given contents.
+	 */
+	private void downloadContents(String contents) throws IOException, ExecutionManagerDownloadException {
+		doAnswer(invocation -> {
+			Files.write((Path) invocation.getArguments()[2], contents.getBytes());
+			return null;
+		}).when(galaxyHistoriesService).downloadDatasetTo(eq(HISTORY_ID), any(String.class), any(Path.class));
+	}
 }
@@ -14,7 +14,10 @@ import ca.corefacility.bioinformatics.irida.service.impl.TestEmailController;
 import ca.corefacility.bioinformatics.irida.service.sample.MetadataTemplateService;
 import ca.corefacility.bioinformatics.irida.service.sample.SampleService;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.junit.Test;
 import org.mockftpserver.fake.FakeFtpServer;
 import org.mockftpserver.fake.UserAccount;
@@ -24,16 +27,25 @@ import org.mockftpserver.fake.filesystem.FileSystem;
 import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
 import org.mockito.ArgumentCaptor;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 public class ExportUploadServiceTest {
@@ -57,16 +69,15 @@ public class ExportUploadServiceTest {
 		// finds an open port
 		server.setServerControlPort(0);
 
-		ExportUploadService exportUploadService = new ExportUploadService(null, null, null, null,
-				new TestEmailController());
+		ExportUploadService exportUploadService = new ExportUploadService(updatingSubmissionService(), null, null,
+				new TestEmailController(), MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor());
 		try {
 			server.start();
 			int ftpPort = server.getServerControlPort();
 
 			exportUploadService.setConnectionDetails(ftpHost, ftpPort, ftpUser, ftpPassword, baseDirectory);
-			String xml = "<xml></xml>";
 
-			exportUploadService.uploadSubmission(submission, xml);
+			exportUploadService.uploadSubmission(submission);
 		} finally {
 			server.stop();
 		}
@@ -80,7 +91,305 @@ public class ExportUploadServiceTest {
 		assertTrue("submit.ready created", fileSystem.exists(createdDirectory + "/submit.ready"));
 		SequenceFile createdFile = submission.getBioSampleFiles().iterator().next().getFiles().iterator().next()
 				.getSequenceFile();
-		assertTrue("seqfile created", fileSystem.exists(createdDirectory + "/" + createdFile.getId() + ".fastq"));
+		String uploadedFile = createdDirectory + "/" + createdFile.getId() + ".fastq.gz";
+		assertTrue("seqfile created", fileSystem.exists(uploadedFile));
+		String submissionXml = new String(readRemoteFile(fileSystem, createdDirectory + "/submission.xml"), "UTF-8");
+		assertTrue("submission.xml should refer to the uploaded file",
+				submissionXml.contains("file_path=\"" + createdFile.getId() + ".fastq.gz\""));
+		assertArrayEquals("seqfile should be gzipped", gzip(Files.readAllBytes(createdFile.getFile())),
+				readRemoteFile(fileSystem, uploadedFile));
+		assertEquals("uploaded file should be recorded", ImmutableSet.of(createdFile.getId() + ".fastq.gz"),
+				submission.getUploadedFiles().keySet());
+	}
+
+	@Test
+	public void testUploadSubmissionResumesFile() throws UploadException, IOException {
+		NcbiExportSubmission submission = createFakeSubmission();
+		SequenceFile sequenceFile = submission.getBioSampleFiles().iterator().next().getFiles().iterator().next()
+				.getSequenceFile();
+
+		String ftpUser = "test";
+		String ftpPassword = "password";
+		String baseDirectory = "/home/test/submit/Test";
+		String submissionDirectory = baseDirectory + "/1-resumed";
+		String uploadedFile = submissionDirectory + "/" + sequenceFile.getId() + ".fastq.gz";
+		submission.setDirectoryPath(submissionDirectory);
+
+		// the server already has the start of the file, which was uploaded
+		// compressed
+		byte[] expected = gzip(Files.readAllBytes(sequenceFile.getFile()));
+		Files.write(sequenceFile.getFile(), expected);
+		FileEntry partial = new FileEntry(uploadedFile);
+		partial.setContents(Arrays.copyOf(expected, expected.length / 2));
+
+		FakeFtpServer server = new FakeFtpServer();
+		server.addUserAccount(new UserAccount(ftpUser, ftpPassword, "/home/test"));
+
+		FileSystem fileSystem = new UnixFakeFileSystem();
+		fileSystem.add(new DirectoryEntry(submissionDirectory));
+		fileSystem.add(partial);
+		server.setFileSystem(fileSystem);
+		server.setServerControlPort(0);
+
+		ExportUploadService exportUploadService = new ExportUploadService(updatingSubmissionService(), null, null,
+				new TestEmailController(), MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor());
+		try {
+			server.start();
+
+			exportUploadService.setConnectionDetails("localhost", server.getServerControlPort(), ftpUser, ftpPassword,
+					baseDirectory);
+			exportUploadService.uploadSubmission(submission);
+		} finally {
+			server.stop();
+		}
+
+		assertEquals("no new submission directory should be created", 1,
+				fileSystem.listNames(baseDirectory).size());
+		assertArrayEquals("partial file should be completed", expected, readRemoteFile(fileSystem, uploadedFile));
+		assertEquals(Long.valueOf(expected.length), submission.getUploadedFiles().get(sequenceFile.getId() + ".fastq.gz"));
+	}
+
+	@Test
+	public void testUploadSubmissionRestartsCompressedFile() throws UploadException, IOException {
+		NcbiExportSubmission submission = createFakeSubmission();
+		SequenceFile sequenceFile = submission.getBioSampleFiles().iterator().next().getFiles().iterator().next()
+				.getSequenceFile();
+
+		String ftpUser = "test";
+		String ftpPassword = "password";
+		String baseDirectory = "/home/test/submit/Test";
+		String submissionDirectory = baseDirectory + "/1-resumed";
+		String uploadedFile = submissionDirectory + "/" + sequenceFile.getId() + ".fastq.gz";
+		submission.setDirectoryPath(submissionDirectory);
+
+		// an earlier attempt compressed the file to different bytes
+		byte[] expected = gzip(Files.readAllBytes(sequenceFile.getFile()));
+		FileEntry partial = new FileEntry(uploadedFile);
+		partial.setContents("different compressed bytes".getBytes());
+
+		FakeFtpServer server = new FakeFtpServer();
+		server.addUserAccount(new UserAccount(ftpUser, ftpPassword, "/home/test"));
+
+		FileSystem fileSystem = new UnixFakeFileSystem();
+		fileSystem.add(new DirectoryEntry(submissionDirectory));
+		fileSystem.add(partial);
+		server.setFileSystem(fileSystem);
+		server.setServerControlPort(0);
+
+		ExportUploadService exportUploadService = new ExportUploadService(updatingSubmissionService(), null, null,
+				new TestEmailController(), MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor());
+		try {
+			server.start();
+
+			exportUploadService.setConnectionDetails("localhost", server.getServerControlPort(), ftpUser, ftpPassword,
+					baseDirectory);
+			exportUploadService.uploadSubmission(submission);
+		} finally {
+			server.stop();
+		}
+
+		assertArrayEquals("file compressed while it's sent should be sent again", expected,
+				readRemoteFile(fileSystem, uploadedFile));
+	}
+
+	@Test
+	public void testUploadSubmissionSkipsUploadedFiles() throws UploadException, IOException {
+		NcbiExportSubmission submission = createFakeSubmission();
+		SequenceFile sequenceFile = submission.getBioSampleFiles().iterator().next().getFiles().iterator().next()
+				.getSequenceFile();
+
+		String ftpUser = "test";
+		String ftpPassword = "password";
+		String baseDirectory = "/home/test/submit/Test";
+		String submissionDirectory = baseDirectory + "/1-resumed";
+		submission.setDirectoryPath(submissionDirectory);
+		submission.getUploadedFiles().put(sequenceFile.getId() + ".fastq.gz", 10L);
+
+		FakeFtpServer server = new FakeFtpServer();
+		server.addUserAccount(new UserAccount(ftpUser, ftpPassword, "/home/test"));
+
+		FileSystem fileSystem = new UnixFakeFileSystem();
+		fileSystem.add(new DirectoryEntry(submissionDirectory));
+		server.setFileSystem(fileSystem);
+		server.setServerControlPort(0);
+
+		ExportUploadService exportUploadService = new ExportUploadService(updatingSubmissionService(), null, null,
+				new TestEmailController(), MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor());
+		try {
+			server.start();
+
+			exportUploadService.setConnectionDetails("localhost", server.getServerControlPort(), ftpUser, ftpPassword,
+					baseDirectory);
+			exportUploadService.uploadSubmission(submission);
+		} finally {
+			server.stop();
+		}
+
+		assertFalse("uploaded file should not be sent again",
+				fileSystem.exists(submissionDirectory + "/" + sequenceFile.getId() + ".fastq.gz"));
+		assertTrue("submit.ready created", fileSystem.exists(submissionDirectory + "/submit.ready"));
+	}
+
+	@Test
+	public void testLaunchUploadResumesUnfinishedUploads() throws IOException {
+		// left uploading when the server stopped
+		NcbiExportSubmission interrupted = createFakeSubmission();
+		SequenceFile sequenceFile = interrupted.getBioSampleFiles().iterator().next().getFiles().iterator().next()
+				.getSequenceFile();
+		interrupted.setUploadState(ExportUploadState.UPLOADING);
+
+		// failed once, so it can be tried again
+		NcbiExportSubmission failed = createFakeSubmission();
+		failed.setId(2L);
+		failed.setUploadState(ExportUploadState.UPLOAD_ERROR);
+		failed.setUploadFailures(1);
+
+		// failed too many times
+		NcbiExportSubmission givenUp = createFakeSubmission();
+		givenUp.setId(3L);
+		givenUp.setUploadState(ExportUploadState.UPLOAD_ERROR);
+		givenUp.setUploadFailures(3);
+
+		// NCBI reported an error after it was uploaded
+		NcbiExportSubmission rejected = createFakeSubmission();
+		rejected.setId(4L);
+		rejected.setUploadState(ExportUploadState.UPLOAD_ERROR);
+
+		String ftpUser = "test";
+		String ftpPassword = "password";
+		String baseDirectory = "/home/test/submit/Test";
+		String interruptedDirectory = baseDirectory + "/1-interrupted";
+		String failedDirectory = baseDirectory + "/2-failed";
+		interrupted.setDirectoryPath(interruptedDirectory);
+		failed.setDirectoryPath(failedDirectory);
+
+		// the interrupted upload sent the start of its file
+		String uploadedFile = interruptedDirectory + "/" + sequenceFile.getId() + ".fastq.gz";
+		byte[] expected = gzip(Files.readAllBytes(sequenceFile.getFile()));
+		FileEntry partial = new FileEntry(uploadedFile);
+		partial.setContents(Arrays.copyOf(expected, expected.length / 2));
+
+		FakeFtpServer server = new FakeFtpServer();
+		server.addUserAccount(new UserAccount(ftpUser, ftpPassword, "/home/test"));
+
+		FileSystem fileSystem = new UnixFakeFileSystem();
+		fileSystem.add(new DirectoryEntry(interruptedDirectory));
+		fileSystem.add(new DirectoryEntry(failedDirectory));
+		fileSystem.add(partial);
+		server.setFileSystem(fileSystem);
+		server.setServerControlPort(0);
+
+		NcbiExportSubmissionService exportSubmissionService = updatingSubmissionService();
+		when(exportSubmissionService.getSubmissionsWithState(ExportUploadState.NEW)).thenReturn(Lists.newArrayList());
+		when(exportSubmissionService.getSubmissionsWithState(ExportUploadState.UPLOADING))
+				.thenReturn(Lists.newArrayList(interrupted));
+		when(exportSubmissionService.getSubmissionsWithState(ExportUploadState.UPLOAD_ERROR))
+				.thenReturn(Lists.newArrayList(failed, givenUp, rejected));
+
+		ExportUploadService exportUploadService = new ExportUploadService(exportSubmissionService, null, null,
+				new TestEmailController(), MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor());
+		try {
+			server.start();
+
+			exportUploadService.setConnectionDetails("localhost", server.getServerControlPort(), ftpUser, ftpPassword,
+					baseDirectory);
+			exportUploadService.launchUpload();
+		} finally {
+			server.stop();
+		}
+
+		assertEquals("no new submission directories should be created", 2,
+				fileSystem.listNames(baseDirectory).size());
+		assertArrayEquals("partial file should be completed", expected, readRemoteFile(fileSystem, uploadedFile));
+		assertEquals("interrupted upload should finish", ExportUploadState.UPLOADED, interrupted.getUploadState());
+		assertTrue("failed upload should be sent to its directory",
+				fileSystem.exists(failedDirectory + "/submit.ready"));
+		assertEquals("failed upload should finish", ExportUploadState.UPLOADED, failed.getUploadState());
+		assertEquals("upload that failed too often should not be tried again", ExportUploadState.UPLOAD_ERROR,
+				givenUp.getUploadState());
+		assertEquals("upload rejected by NCBI should not be tried again", ExportUploadState.UPLOAD_ERROR,
+				rejected.getUploadState());
+		verify(exportSubmissionService, never()).update(givenUp);
+		verify(exportSubmissionService, never()).update(rejected);
+	}
+
+	@Test
+	public void testLaunchUploadCountsFailures() throws IOException {
+		NcbiExportSubmission submission = createFakeSubmission();
+		submission.setUploadState(ExportUploadState.UPLOAD_ERROR);
+		submission.setUploadFailures(2);
+
+		NcbiExportSubmissionService exportSubmissionService = updatingSubmissionService();
+		when(exportSubmissionService.getSubmissionsWithState(ExportUploadState.UPLOAD_ERROR))
+				.thenReturn(Lists.newArrayList(submission));
+
+		// there's no server to upload to
+		ExportUploadService exportUploadService = new ExportUploadService(exportSubmissionService, null, null,
+				new TestEmailController(), MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor());
+		exportUploadService.setConnectionDetails("localhost", 1, "test", "password", "/home/test/submit/Test");
+		exportUploadService.launchUpload();
+
+		assertEquals("upload should fail again", ExportUploadState.UPLOAD_ERROR, submission.getUploadState());
+		assertEquals("failure should be counted", 3, submission.getUploadFailures());
+	}
+
+	@Test
+	public void testLaunchUploadSkipsClaimedUploads() throws IOException {
+		// another server is uploading this submission
+		NcbiExportSubmission submission = createFakeSubmission();
+		submission.setUploadState(ExportUploadState.UPLOADING);
+
+		NcbiExportSubmissionService exportSubmissionService = updatingSubmissionService();
+		when(exportSubmissionService.getSubmissionsWithState(ExportUploadState.UPLOADING))
+				.thenReturn(Lists.newArrayList(submission));
+		when(exportSubmissionService.claimUpload(eq(submission), any(Date.class))).thenReturn(false);
+
+		Executor submissionExecutor = mock(Executor.class);
+		ExportUploadService exportUploadService = new ExportUploadService(exportSubmissionService, null, null,
+				new TestEmailController(), submissionExecutor, MoreExecutors.sameThreadExecutor());
+		exportUploadService.launchUpload();
+
+		verify(submissionExecutor, never()).execute(any(Runnable.class));
+		verify(exportSubmissionService, never()).update(submission);
+		assertEquals("claimed upload should be left alone", ExportUploadState.UPLOADING, submission.getUploadState());
+	}
+
+	@Test
+	public void testUploadSubmissionCompressedFile() throws UploadException, IOException {
+		NcbiExportSubmission submission = createFakeSubmission();
+		SequenceFile sequenceFile = submission.getBioSampleFiles().iterator().next().getFiles().iterator().next()
+				.getSequenceFile();
+		byte[] compressed = gzip("@read\nACGT\n+\nIIII\n".getBytes());
+		Files.write(sequenceFile.getFile(), compressed);
+
+		String ftpUser = "test";
+		String ftpPassword = "password";
+		String baseDirectory = "/home/test/submit/Test";
+		String submissionDirectory = baseDirectory + "/1-compressed";
+		submission.setDirectoryPath(submissionDirectory);
+
+		FakeFtpServer server = new FakeFtpServer();
+		server.addUserAccount(new UserAccount(ftpUser, ftpPassword, "/home/test"));
+
+		FileSystem fileSystem = new UnixFakeFileSystem();
+		fileSystem.add(new DirectoryEntry(submissionDirectory));
+		server.setFileSystem(fileSystem);
+		server.setServerControlPort(0);
+
+		ExportUploadService exportUploadService = new ExportUploadService(updatingSubmissionService(), null, null,
+				new TestEmailController(), MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor());
+		try {
+			server.start();
+
+			exportUploadService.setConnectionDetails("localhost", server.getServerControlPort(), ftpUser, ftpPassword,
+					baseDirectory);
+			exportUploadService.uploadSubmission(submission);
+		} finally {
+			server.stop();
+		}
+
+		assertArrayEquals("gzipped file should be sent as is", compressed,
+				readRemoteFile(fileSystem, submissionDirectory + "/" + sequenceFile.getId() + ".fastq.gz"));
 	}
 
 	@Test(expected = UploadException.class)
@@ -102,16 +411,15 @@ public class ExportUploadServiceTest {
 		// finds an open port
 		server.setServerControlPort(0);
 
-		ExportUploadService exportUploadService = new ExportUploadService(null, null, null, null,
-				new TestEmailController());
+		ExportUploadService exportUploadService = new ExportUploadService(updatingSubmissionService(), null, null,
+				new TestEmailController(), MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor());
 		try {
 			server.start();
 			int ftpPort = server.getServerControlPort();
 
 			exportUploadService.setConnectionDetails(ftpHost, ftpPort, ftpUser, ftpPassword, baseDirectory);
-			String xml = "<xml></xml>";
 
-			exportUploadService.uploadSubmission(submission, xml);
+			exportUploadService.uploadSubmission(submission);
 		} finally {
 			server.stop();
 		}
@@ -131,16 +439,15 @@ public class ExportUploadServiceTest {
 		// finds an open port
 		server.setServerControlPort(0);
 
-		ExportUploadService exportUploadService = new ExportUploadService(null, null, null, null,
-				new TestEmailController());
+		ExportUploadService exportUploadService = new ExportUploadService(updatingSubmissionService(), null, null,
+				new TestEmailController(), MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor());
 		try {
 			server.start();
 			int ftpPort = server.getServerControlPort();
 
 			exportUploadService.setConnectionDetails(ftpHost, ftpPort, ftpUser, ftpPassword, baseDirectory);
-			String xml = "<xml></xml>";
 
-			exportUploadService.uploadSubmission(submission, xml);
+			exportUploadService.uploadSubmission(submission);
 		} finally {
 			server.stop();
 		}
@@ -156,13 +463,12 @@ public class ExportUploadServiceTest {
 		String baseDirectory = "/home/test/submit/Test";
 		int ftpPort = 1;
 
-		ExportUploadService exportUploadService = new ExportUploadService(null, null, null, null,
-				new TestEmailController());
+		ExportUploadService exportUploadService = new ExportUploadService(updatingSubmissionService(), null, null,
+				new TestEmailController(), MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor());
 
 		exportUploadService.setConnectionDetails(ftpHost, ftpPort, ftpUser, ftpPassword, baseDirectory);
-		String xml = "<xml></xml>";
 
-		exportUploadService.uploadSubmission(submission, xml);
+		exportUploadService.uploadSubmission(submission);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -206,8 +512,8 @@ public class ExportUploadServiceTest {
 		// finds an open port
 		server.setServerControlPort(0);
 
-		ExportUploadService exportUploadService = new ExportUploadService(exportSubmissionService, null, null, null,
-				new TestEmailController());
+		ExportUploadService exportUploadService = new ExportUploadService(exportSubmissionService, null, null,
+				new TestEmailController(), MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor());
 		try {
 			server.start();
 			int ftpPort = server.getServerControlPort();
@@ -280,7 +586,8 @@ public class ExportUploadServiceTest {
 		server.setServerControlPort(0);
 
 		ExportUploadService exportUploadService = new ExportUploadService(exportSubmissionService, sampleService,
-				metadataTemplateService, null, new TestEmailController());
+				metadataTemplateService, new TestEmailController(), MoreExecutors.sameThreadExecutor(),
+				MoreExecutors.sameThreadExecutor());
 		try {
 			server.start();
 			int ftpPort = server.getServerControlPort();
@@ -305,6 +612,102 @@ public class ExportUploadServiceTest {
 		assertTrue("saved sample shuold contain accession", savedSample.getMetadata().containsKey(field));
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testGetResultsLatestReport() throws IOException, UploadException {
+		NcbiExportSubmissionService exportSubmissionService = mock(NcbiExportSubmissionService.class);
+
+		NcbiBioSampleFiles sample1 = new NcbiBioSampleFiles();
+		sample1.setId("NMLTEST1");
+		NcbiExportSubmission submission1 = new NcbiExportSubmission();
+		submission1.setBioSampleFiles(Lists.newArrayList(sample1));
+		submission1.setDirectoryPath("submit/Test/first");
+
+		NcbiBioSampleFiles sample2 = new NcbiBioSampleFiles();
+		sample2.setId("NMLTEST2");
+		NcbiExportSubmission submission2 = new NcbiExportSubmission();
+		submission2.setBioSampleFiles(Lists.newArrayList(sample2));
+		submission2.setDirectoryPath("/home/test/submit/Test/second");
+
+		when(exportSubmissionService.getSubmissionsWithState(any(Set.class)))
+				.thenReturn(Lists.newArrayList(submission1, submission2));
+
+		String oldReport = "<?xml version='1.0' encoding='utf-8'?>\n"
+				+ "<SubmissionStatus submission_id=\"SUB1\" status=\"submitted\">\n"
+				+ "  <Action action_id=\"SUB1-nmltest1\" target_db=\"SRA\" status=\"submitted\"/>\n"
+				+ "</SubmissionStatus>\n";
+		String newReport = "<?xml version='1.0' encoding='utf-8'?>\n"
+				+ "<SubmissionStatus submission_id=\"SUB1\" status=\"processing\">\n"
+				+ "  <Action action_id=\"SUB1-nmltest1\" target_db=\"SRA\" status=\"processing\"/>\n"
+				+ "</SubmissionStatus>\n";
+		String secondReport = "<?xml version='1.0' encoding='utf-8'?>\n"
+				+ "<SubmissionStatus submission_id=\"SUB2\" status=\"submitted\">\n"
+				+ "  <Action action_id=\"SUB2-nmltest2\" target_db=\"SRA\" status=\"submitted\"/>\n"
+				+ "</SubmissionStatus>\n";
+
+		String ftpUser = "test";
+		String ftpPassword = "password";
+		String baseDirectory = "/home/test/submit/Test";
+
+		FakeFtpServer server = new FakeFtpServer();
+		server.addUserAccount(new UserAccount(ftpUser, ftpPassword, "/home/test"));
+
+		FileSystem fileSystem = new UnixFakeFileSystem();
+		fileSystem.add(new DirectoryEntry(baseDirectory + "/first"));
+		fileSystem.add(new FileEntry(baseDirectory + "/first/report.2.xml", oldReport));
+		fileSystem.add(new FileEntry(baseDirectory + "/first/report.10.xml", newReport));
+		fileSystem.add(new DirectoryEntry(baseDirectory + "/second"));
+		fileSystem.add(new FileEntry(baseDirectory + "/second/report.1.xml", secondReport));
+		server.setFileSystem(fileSystem);
+		server.setServerControlPort(0);
+
+		ExportUploadService exportUploadService = new ExportUploadService(exportSubmissionService, null, null,
+				new TestEmailController(), MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor());
+		try {
+			server.start();
+
+			exportUploadService.setConnectionDetails("localhost", server.getServerControlPort(), ftpUser, ftpPassword,
+					baseDirectory);
+			exportUploadService.updateRunningUploads();
+		} finally {
+			server.stop();
+		}
+
+		assertEquals("latest report should be read", ExportUploadState.PROCESSING, submission1.getUploadState());
+		assertEquals("latest report should be read", ExportUploadState.PROCESSING, sample1.getSubmissionStatus());
+		assertEquals("second submission should be read on the same run", ExportUploadState.SUBMITTED,
+				submission2.getUploadState());
+		verify(exportSubmissionService, times(2)).update(any(NcbiExportSubmission.class));
+	}
+
+	/**
+	 * Create a {@link NcbiExportSubmissionService} that returns submissions as
+	 * they're updated
+	 *
+	 * @return a mock {@link NcbiExportSubmissionService}
+	 */
+	private NcbiExportSubmissionService updatingSubmissionService() {
+		NcbiExportSubmissionService exportSubmissionService = mock(NcbiExportSubmissionService.class);
+		when(exportSubmissionService.update(any(NcbiExportSubmission.class)))
+				.thenAnswer(invocation -> invocation.getArguments()[0]);
+		when(exportSubmissionService.claimUpload(any(NcbiExportSubmission.class), any(Date.class))).thenReturn(true);
+		return exportSubmissionService;
+	}
+
+	private byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(content);
+		}
+		return bytes.toByteArray();
+	}
+
+	private byte[] readRemoteFile(FileSystem fileSystem, String path) throws IOException {
+		try (InputStream in = ((FileEntry) fileSystem.getEntry(path)).createInputStream()) {
+			return ByteStreams.toByteArray(in);
+		}
+	}
+
 	/**
 	 * Create a fake submission for test uploads
 	 *
@@ -317,6 +720,7 @@ public class ExportUploadServiceTest {
 
 		NcbiBioSampleFiles ncbiBioSampleFiles = new NcbiBioSampleFiles();
 		Path tempFile = Files.createTempFile("sequencefile", ".fastq");
+		Files.write(tempFile, "@read\nACGTACGTACGTACGT\n+\nIIIIIIIIIIIIIIII\n".getBytes());
 		SequenceFile sequenceFile = new SequenceFile(tempFile);
 		sequenceFile.setId(1L);
 		SingleEndSequenceFile singleFile = new SingleEndSequenceFile(sequenceFile);
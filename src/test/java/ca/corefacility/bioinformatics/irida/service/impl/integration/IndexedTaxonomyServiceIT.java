@@ -32,8 +32,8 @@ import com.github.springtestdbunit.DbUnitTestExecutionListener;
 @ActiveProfiles("it")
 @TestExecutionListeners({ DependencyInjectionTestExecutionListener.class, DbUnitTestExecutionListener.class,
 		WithSecurityContextTestExcecutionListener.class })
-public class InMemoryTaxonomyServiceIT {
-	private static final Logger logger = LoggerFactory.getLogger(InMemoryTaxonomyServiceIT.class);
+public class IndexedTaxonomyServiceIT {
+	private static final Logger logger = LoggerFactory.getLogger(IndexedTaxonomyServiceIT.class);
 
 	@Autowired
 	TaxonomyService taxonomyService;
@@ -1,6 +1,7 @@
 package ca.corefacility.bioinformatics.irida.service.impl.integration.sample;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -9,6 +10,7 @@ import static org.junit.Assert.fail;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -447,6 +449,20 @@ public class SampleServiceImplIT {
 		assertEquals("should be 1 qc entry", 1L, qcEntriesForSample.size());
 	}
 	
+	@Test
+	@WithMockUser(username = "fbristow", roles = "USER")
+	public void testGetBasesAndQCEntriesForSamples() {
+		Sample s1 = sampleService.read(1L);
+		Sample s2 = sampleService.read(2L);
+
+		Map<Long, Long> bases = sampleService.getTotalBasesForSamples(Lists.newArrayList(s1, s2));
+		assertEquals("should have bases for sample 1", Long.valueOf(1000), bases.get(1L));
+		assertFalse("sample 2 has no fastqc", bases.containsKey(2L));
+
+		Map<Long, List<QCEntry>> qcEntries = sampleService.getQCEntriesForSamples(Lists.newArrayList(s1, s2));
+		assertEquals("should be 1 qc entry", 1, qcEntries.get(1L).size());
+	}
+
 	@Test(expected = AccessDeniedException.class)
 	@WithMockUser(username = "dr-evil", roles = "USER")
 	public void testGetQCEntiresForSampleNotAllowed() {
@@ -4,12 +4,14 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.*;
 
 import java.io.IOException;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 import org.joda.time.DateTime;
@@ -17,9 +19,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.stubbing.Answer;
 
 import com.github.jmchilton.blend4j.galaxy.HistoriesClient;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import ca.corefacility.bioinformatics.irida.exceptions.ExecutionManagerException;
 import ca.corefacility.bioinformatics.irida.exceptions.IridaWorkflowAnalysisTypeException;
@@ -41,6 +45,8 @@ import ca.corefacility.bioinformatics.irida.service.AnalysisExecutionScheduledTa
 import ca.corefacility.bioinformatics.irida.service.AnalysisSubmissionService;
 import ca.corefacility.bioinformatics.irida.service.CleanupAnalysisSubmissionCondition;
 import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisExecutionService;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisSubmissionQueue;
+import ca.corefacility.bioinformatics.irida.service.analysis.execution.AnalysisWorkflowMonitor;
 import ca.corefacility.bioinformatics.irida.service.impl.AnalysisExecutionScheduledTaskImpl;
 import ca.corefacility.bioinformatics.irida.service.impl.analysis.submission.CleanupAnalysisSubmissionConditionAge;
 
@@ -83,10 +89,14 @@ public class AnalysisExecutionScheduledTaskImplTest {
 	@Mock
 	private JobErrorRepository jobErrorRepository;
 
+	@Mock
+	private AnalysisSubmissionQueue submissionQueue;
+
 	private static final String ANALYSIS_ID = "1";
 	private static final Long INTERNAL_ID = 1L;
 	private AnalysisSubmission analysisSubmission;
 
+	private AnalysisWorkflowMonitor workflowMonitor;
 	private AnalysisExecutionScheduledTask analysisExecutionScheduledTask;
 
 	private UUID workflowId = UUID.randomUUID();
@@ -98,9 +108,11 @@ public class AnalysisExecutionScheduledTaskImplTest {
 	public void setup() {
 		MockitoAnnotations.initMocks(this);
 
+		workflowMonitor = new AnalysisWorkflowMonitor(analysisExecutionService, MoreExecutors.sameThreadExecutor(),
+				0, 0, Clock.systemUTC());
 		analysisExecutionScheduledTask = new AnalysisExecutionScheduledTaskImpl(analysisSubmissionRepository,
 				analysisExecutionService, CleanupAnalysisSubmissionCondition.ALWAYS_CLEANUP,
-				galaxyJobErrorsService, jobErrorRepository);
+				galaxyJobErrorsService, jobErrorRepository, workflowMonitor, submissionQueue, false);
 
 		analysisSubmission = AnalysisSubmission.builder(workflowId)
 				.name("my analysis")
@@ -124,8 +136,7 @@ public class AnalysisExecutionScheduledTaskImplTest {
 			IOException {
 		analysisSubmission.setAnalysisState(AnalysisState.NEW);
 
-		when(analysisSubmissionRepository.findByAnalysisState(AnalysisState.NEW)).thenReturn(
-				Arrays.asList(analysisSubmission));
+		when(submissionQueue.nextSubmissions(1)).thenReturn(Arrays.asList(analysisSubmission));
 		when(analysisExecutionService.getCapacity()).thenReturn(1);
 
 		analysisExecutionScheduledTask.prepareAnalyses();
@@ -133,13 +144,21 @@ public class AnalysisExecutionScheduledTaskImplTest {
 		verify(analysisExecutionService).prepareSubmission(analysisSubmission);
 	}
 
+	/**
+	 * Tests that only the submissions taken from the queue are prepared, up to
+	 * the capacity of the execution service.
+	 * 
+	 * @throws ExecutionManagerException
+	 * @throws IridaWorkflowNotFoundException
+	 * @throws IOException
+	 */
 	@Test
-	public void testPrepareAnalysisPriorities()
+	public void testPrepareAnalysesFromQueue()
 			throws ExecutionManagerException, IOException, IridaWorkflowNotFoundException {
-		AnalysisSubmission low = AnalysisSubmission.builder(workflowId)
-				.name("low")
+		AnalysisSubmission high = AnalysisSubmission.builder(workflowId)
+				.name("high")
 				.inputFiles(sequenceFiles)
-				.priority(AnalysisSubmission.Priority.LOW)
+				.priority(AnalysisSubmission.Priority.HIGH)
 				.build();
 
 		AnalysisSubmission medium = AnalysisSubmission.builder(workflowId)
@@ -148,21 +167,33 @@ public class AnalysisExecutionScheduledTaskImplTest {
 				.priority(AnalysisSubmission.Priority.MEDIUM)
 				.build();
 
-		AnalysisSubmission high = AnalysisSubmission.builder(workflowId)
-				.name("high")
-				.inputFiles(sequenceFiles)
-				.priority(AnalysisSubmission.Priority.HIGH)
-				.build();
-
-		when(analysisSubmissionRepository.findByAnalysisState(AnalysisState.NEW))
-				.thenReturn(Arrays.asList(medium, high, low));
+		when(submissionQueue.nextSubmissions(2)).thenReturn(Arrays.asList(high, medium));
 		when(analysisExecutionService.getCapacity()).thenReturn(2);
 
 		analysisExecutionScheduledTask.prepareAnalyses();
 
+		verify(submissionQueue).nextSubmissions(2);
 		verify(analysisExecutionService).prepareSubmission(high);
 		verify(analysisExecutionService).prepareSubmission(medium);
-		verify(analysisExecutionService, times(0)).prepareSubmission(low);
+	}
+
+	/**
+	 * Tests that the queue isn't read when the execution service is at
+	 * capacity.
+	 * 
+	 * @throws ExecutionManagerException
+	 * @throws IridaWorkflowNotFoundException
+	 * @throws IOException
+	 */
+	@Test
+	public void testPrepareAnalysesNoCapacity()
+			throws ExecutionManagerException, IOException, IridaWorkflowNotFoundException {
+		when(analysisExecutionService.getCapacity()).thenReturn(0);
+
+		analysisExecutionScheduledTask.prepareAnalyses();
+
+		verifyZeroInteractions(submissionQueue);
+		verify(analysisExecutionService, never()).prepareSubmission(any(AnalysisSubmission.class));
 	}
 
 	/**
@@ -177,7 +208,8 @@ public class AnalysisExecutionScheduledTaskImplTest {
 			IOException {
 		analysisSubmission.setAnalysisState(AnalysisState.NEW);
 
-		when(analysisSubmissionRepository.findByAnalysisState(AnalysisState.NEW)).thenReturn(Arrays.asList());
+		when(analysisExecutionService.getCapacity()).thenReturn(1);
+		when(submissionQueue.nextSubmissions(1)).thenReturn(Arrays.asList());
 
 		analysisExecutionScheduledTask.prepareAnalyses();
 
@@ -548,7 +580,7 @@ public class AnalysisExecutionScheduledTaskImplTest {
 	public void testCleanupAnalysisSubmissionsCompletedOverOneDaySuccess() throws ExecutionManagerException {
 		analysisExecutionScheduledTask = new AnalysisExecutionScheduledTaskImpl(analysisSubmissionRepository,
 				analysisExecutionService, new CleanupAnalysisSubmissionConditionAge(Duration.ofDays(1)),
-				galaxyJobErrorsService, jobErrorRepository);
+				galaxyJobErrorsService, jobErrorRepository, workflowMonitor, submissionQueue, false);
 
 		when(analysisSubmissionMock.getAnalysisState()).thenReturn(AnalysisState.COMPLETED);
 		when(analysisSubmissionMock.getAnalysisCleanedState()).thenReturn(AnalysisCleanedState.NOT_CLEANED);
@@ -575,7 +607,7 @@ public class AnalysisExecutionScheduledTaskImplTest {
 	public void testCleanupAnalysisSubmissionsCompletedCleanupZeroSuccess() throws ExecutionManagerException {
 		analysisExecutionScheduledTask = new AnalysisExecutionScheduledTaskImpl(analysisSubmissionRepository,
 				analysisExecutionService, new CleanupAnalysisSubmissionConditionAge(Duration.ZERO),
-				galaxyJobErrorsService, jobErrorRepository);
+				galaxyJobErrorsService, jobErrorRepository, workflowMonitor, submissionQueue, false);
 
 		when(analysisSubmissionMock.getAnalysisState()).thenReturn(AnalysisState.COMPLETED);
 		when(analysisSubmissionMock.getAnalysisCleanedState()).thenReturn(AnalysisCleanedState.NOT_CLEANED);
@@ -603,7 +635,7 @@ public class AnalysisExecutionScheduledTaskImplTest {
 	public void testCleanupAnalysisSubmissionsCompletedUnderOneDaySuccess() throws ExecutionManagerException {
 		analysisExecutionScheduledTask = new AnalysisExecutionScheduledTaskImpl(analysisSubmissionRepository,
 				analysisExecutionService, new CleanupAnalysisSubmissionConditionAge(Duration.ofDays(1)),
-				galaxyJobErrorsService, jobErrorRepository);
+				galaxyJobErrorsService, jobErrorRepository, workflowMonitor, submissionQueue, false);
 
 		when(analysisSubmissionMock.getAnalysisState()).thenReturn(AnalysisState.COMPLETED);
 		when(analysisSubmissionMock.getAnalysisCleanedState()).thenReturn(AnalysisCleanedState.NOT_CLEANED);
@@ -631,7 +663,7 @@ public class AnalysisExecutionScheduledTaskImplTest {
 	public void testCleanupAnalysisSubmissionsCompletedOverUnderOneDaySuccess() throws ExecutionManagerException {
 		analysisExecutionScheduledTask = new AnalysisExecutionScheduledTaskImpl(analysisSubmissionRepository,
 				analysisExecutionService, new CleanupAnalysisSubmissionConditionAge(Duration.ofDays(1)),
-				galaxyJobErrorsService, jobErrorRepository);
+				galaxyJobErrorsService, jobErrorRepository, workflowMonitor, submissionQueue, false);
 
 		when(analysisSubmissionMock.getAnalysisState()).thenReturn(AnalysisState.COMPLETED);
 		when(analysisSubmissionMock.getAnalysisCleanedState()).thenReturn(AnalysisCleanedState.NOT_CLEANED);
@@ -653,4 +685,98 @@ public class AnalysisExecutionScheduledTaskImplTest {
 		verify(analysisExecutionService).cleanupSubmission(analysisSubmissionMock);
 		verify(analysisExecutionService, never()).cleanupSubmission(analysisSubmissionMock2);
 	}
+
+	/**
+	 * Tests that a prepared submission is executed as soon as it is prepared
+	 * when stages are pipelined.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testPipelinePrepareThenExecute() throws Exception {
+		analysisExecutionScheduledTask = new AnalysisExecutionScheduledTaskImpl(analysisSubmissionRepository,
+				analysisExecutionService, CleanupAnalysisSubmissionCondition.ALWAYS_CLEANUP, galaxyJobErrorsService,
+				jobErrorRepository, workflowMonitor, submissionQueue, true);
+		analysisSubmission.setAnalysisState(AnalysisState.NEW);
+
+		when(submissionQueue.nextSubmissions(1)).thenReturn(Arrays.asList(analysisSubmission));
+		when(analysisExecutionService.getCapacity()).thenReturn(1);
+		when(analysisExecutionService.prepareSubmission(analysisSubmission)).thenAnswer(
+				completeStage(AnalysisState.PREPARED));
+		when(analysisExecutionService.executeAnalysis(analysisSubmission)).thenAnswer(
+				completeStage(AnalysisState.RUNNING));
+
+		analysisExecutionScheduledTask.prepareAnalyses();
+
+		verify(analysisExecutionService).prepareSubmission(analysisSubmission);
+		verify(analysisExecutionService).executeAnalysis(analysisSubmission);
+	}
+
+	/**
+	 * Tests that the periodic task doesn't start a stage for a submission that
+	 * is already in a stage when stages are pipelined.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testPipelineSkipsSubmissionInStage() throws Exception {
+		analysisExecutionScheduledTask = new AnalysisExecutionScheduledTaskImpl(analysisSubmissionRepository,
+				analysisExecutionService, CleanupAnalysisSubmissionCondition.ALWAYS_CLEANUP, galaxyJobErrorsService,
+				jobErrorRepository, workflowMonitor, submissionQueue, true);
+		analysisSubmission.setAnalysisState(AnalysisState.PREPARED);
+
+		CompletableFuture<AnalysisSubmission> executing = new CompletableFuture<>();
+		when(analysisSubmissionRepository.findByAnalysisState(AnalysisState.PREPARED)).thenReturn(
+				Arrays.asList(analysisSubmission));
+		when(analysisExecutionService.executeAnalysis(analysisSubmission)).thenReturn(executing);
+
+		analysisExecutionScheduledTask.executeAnalyses();
+		analysisExecutionScheduledTask.executeAnalyses();
+
+		verify(analysisExecutionService, times(1)).executeAnalysis(analysisSubmission);
+	}
+
+	/**
+	 * Tests that the results of a finished submission are transferred and
+	 * post-processed as soon as it finishes running when stages are pipelined.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testPipelineFinishedThenTransfer() throws Exception {
+		analysisExecutionScheduledTask = new AnalysisExecutionScheduledTaskImpl(analysisSubmissionRepository,
+				analysisExecutionService, CleanupAnalysisSubmissionCondition.ALWAYS_CLEANUP, galaxyJobErrorsService,
+				jobErrorRepository, workflowMonitor, submissionQueue, true);
+		analysisSubmission.setAnalysisState(AnalysisState.RUNNING);
+		Map<GalaxyWorkflowState, Set<String>> stateIds = Util.buildStateIdsWithStateFilled(GalaxyWorkflowState.OK,
+				Sets.newHashSet("1"));
+
+		when(analysisSubmissionRepository.findByAnalysisState(AnalysisState.RUNNING)).thenReturn(
+				Arrays.asList(analysisSubmission));
+		when(analysisSubmissionRepository.save(analysisSubmission)).thenReturn(analysisSubmission);
+		when(analysisExecutionService.getWorkflowStatus(analysisSubmission)).thenReturn(
+				new GalaxyWorkflowStatus(GalaxyWorkflowState.OK, stateIds));
+		when(analysisExecutionService.transferAnalysisResults(analysisSubmission)).thenAnswer(
+				completeStage(AnalysisState.TRANSFERRED));
+		when(analysisExecutionService.postProcessResults(analysisSubmission)).thenAnswer(
+				completeStage(AnalysisState.COMPLETED));
+
+		analysisExecutionScheduledTask.monitorRunningAnalyses();
+
+		verify(analysisExecutionService).transferAnalysisResults(analysisSubmission);
+		verify(analysisExecutionService).postProcessResults(analysisSubmission);
+		assertEquals(AnalysisState.COMPLETED, analysisSubmission.getAnalysisState());
+	}
+
+	/**
+	 * Builds an answer for a stage that finishes immediately, leaving the
+	 * submission in the given state.
+	 */
+	private Answer<CompletableFuture<AnalysisSubmission>> completeStage(AnalysisState state) {
+		return invocation -> {
+			AnalysisSubmission submission = (AnalysisSubmission) invocation.getArguments()[0];
+			submission.setAnalysisState(state);
+			return CompletableFuture.completedFuture(submission);
+		};
+	}
 }
@@ -0,0 +1,73 @@
+package ca.corefacility.bioinformatics.irida.service.impl.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.corefacility.bioinformatics.irida.service.TaxonomyService;
+import ca.corefacility.bioinformatics.irida.service.impl.IndexedTaxonomyService;
+import ca.corefacility.bioinformatics.irida.util.TreeNode;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+/**
+ * Tests for {@link IndexedTaxonomyService}.
+ */
+public class IndexedTaxonomyServiceTest {
+	private static TaxonomyService taxonomyService;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		try (InputStream taxonomy = IndexedTaxonomyServiceTest.class
+				.getResourceAsStream("/ca/corefacility/bioinformatics/irida/ontology/NCBItax.owl")) {
+			taxonomyService = new IndexedTaxonomyService(taxonomy);
+		}
+	}
+
+	@Test
+	public void testSearchBuildsTreeOfMatchingAncestors() {
+		Collection<TreeNode<String>> search = taxonomyService.search("LISTERIA");
+		assertEquals("should have a single root", 1, search.size());
+
+		TreeNode<String> family = Iterables.getOnlyElement(search);
+		assertEquals("root should be the highest matching ancestor", "Listeriaceae", family.getValue());
+		TreeNode<String> genus = Iterables.getOnlyElement(family.getChildren());
+		assertEquals("Listeria", genus.getValue());
+		TreeNode<String> species = Iterables.getOnlyElement(genus.getChildren());
+		assertEquals("Listeria monocytogenes", species.getValue());
+		assertTrue("species should have no children", species.getChildren().isEmpty());
+	}
+
+	@Test
+	public void testSearchSkipsAncestorsThatDoNotMatch() {
+		Collection<TreeNode<String>> search = taxonomyService.search("coli");
+		assertEquals("should have a single root", 1, search.size());
+
+		TreeNode<String> species = Iterables.getOnlyElement(search);
+		assertEquals("Escherichia coli", species.getValue());
+		assertEquals("should have every strain under the species", 15, species.getChildren().size());
+	}
+
+	@Test
+	public void testSearchShortTerm() {
+		Collection<TreeNode<String>> search = taxonomyService.search("Hi");
+		Set<String> roots = search.stream().map(TreeNode::getValue).collect(Collectors.toSet());
+		assertEquals("should find terms containing a term shorter than a trigram", ImmutableSet.of("Escherichia",
+				"Salmonella enterica subsp. enterica serovar Typhimurium"), roots);
+	}
+
+	@Test
+	public void testSearchOnlyUnderRoot() {
+		assertTrue("terms outside of bacteria should not be found", taxonomyService.search("species").isEmpty());
+		assertTrue("missing terms should not be found", taxonomyService.search("xyz").isEmpty());
+		assertTrue("empty search should not find anything", taxonomyService.search("").isEmpty());
+	}
+}
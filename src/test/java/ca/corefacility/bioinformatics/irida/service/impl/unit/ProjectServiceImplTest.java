@@ -66,6 +66,7 @@ import ca.corefacility.bioinformatics.irida.repositories.sequencefile.Sequencing
 import ca.corefacility.bioinformatics.irida.repositories.user.UserRepository;
 import ca.corefacility.bioinformatics.irida.service.ProjectService;
 import ca.corefacility.bioinformatics.irida.service.impl.ProjectServiceImpl;
+import ca.corefacility.bioinformatics.irida.service.search.SearchIndex;
 
 /**
  */
@@ -101,7 +102,7 @@ public class ProjectServiceImplTest {
 		sequencingObjectRepository = mock(SequencingObjectRepository.class);
 		projectService = new ProjectServiceImpl(projectRepository, sampleRepository, userRepository, pujRepository,
 				psjRepository, relatedProjectRepository, referenceFileRepository, prfjRepository, ugpjRepository,
-				ssoRepository, pasRepository, sequencingObjectRepository, validator);
+				ssoRepository, pasRepository, sequencingObjectRepository, new SearchIndex(), validator);
 	}
 
 	@Test
@@ -0,0 +1,109 @@
+package ca.corefacility.bioinformatics.irida.service.impl.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.google.common.collect.ImmutableList;
+
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.FileProcessorHeartbeat;
+import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject.ProcessingState;
+import ca.corefacility.bioinformatics.irida.processing.FileProcessingChain;
+import ca.corefacility.bioinformatics.irida.repositories.sequencefile.FileProcessorHeartbeatRepository;
+import ca.corefacility.bioinformatics.irida.repositories.sequencefile.SequencingObjectRepository;
+import ca.corefacility.bioinformatics.irida.service.SequencingObjectProcessingService;
+
+/**
+ * Unit tests for {@link SequencingObjectProcessingService}
+ */
+public class SequencingObjectProcessingServiceTest {
+	private SequencingObjectProcessingService service;
+	private SequencingObjectRepository sequencingObjectRepository;
+	private FileProcessorHeartbeatRepository heartbeatRepository;
+	private ThreadPoolTaskExecutor executor;
+
+	private final String machineString = ManagementFactory.getRuntimeMXBean().getName();
+
+	@Before
+	public void setUp() {
+		sequencingObjectRepository = mock(SequencingObjectRepository.class);
+		heartbeatRepository = mock(FileProcessorHeartbeatRepository.class);
+		executor = mock(ThreadPoolTaskExecutor.class);
+
+		service = new SequencingObjectProcessingService(sequencingObjectRepository, heartbeatRepository, executor,
+				mock(FileProcessingChain.class), 300);
+	}
+
+	@Test
+	public void testFindFilesToProcessClaimsBatch() {
+		when(executor.getCorePoolSize()).thenReturn(4);
+		when(executor.getActiveCount()).thenReturn(1);
+		List<Long> ids = ImmutableList.of(1L, 2L, 3L);
+		when(sequencingObjectRepository.getSequencingObjectIdsWithProcessingState(eq(ProcessingState.UNPROCESSED),
+				any(Pageable.class))).thenReturn(ids);
+
+		service.findFilesToProcess();
+
+		ArgumentCaptor<Pageable> pageCaptor = ArgumentCaptor.forClass(Pageable.class);
+		verify(sequencingObjectRepository).getSequencingObjectIdsWithProcessingState(eq(ProcessingState.UNPROCESSED),
+				pageCaptor.capture());
+		assertEquals("should only read as many objects as there's queue space for", 3,
+				pageCaptor.getValue().getPageSize());
+
+		verify(sequencingObjectRepository).markFileProcessor(ids, machineString, ProcessingState.QUEUED);
+	}
+
+	@Test
+	public void testFindFilesToProcessNoQueueSpace() {
+		when(executor.getCorePoolSize()).thenReturn(4);
+		when(executor.getActiveCount()).thenReturn(4);
+
+		service.findFilesToProcess();
+
+		verify(sequencingObjectRepository, never()).getSequencingObjectIdsWithProcessingState(
+				any(ProcessingState.class), any(Pageable.class));
+	}
+
+	@Test
+	public void testReleaseExpiredProcessors() {
+		FileProcessorHeartbeat dead = new FileProcessorHeartbeat("1234@dead-server");
+		FileProcessorHeartbeat self = new FileProcessorHeartbeat(machineString);
+		when(heartbeatRepository.getExpiredHeartbeats(any(Date.class))).thenReturn(ImmutableList.of(dead, self));
+
+		service.releaseExpiredProcessors();
+
+		verify(heartbeatRepository).delete("1234@dead-server");
+		verify(heartbeatRepository, never()).delete(machineString);
+		verify(sequencingObjectRepository).releaseOrphanedSequencingObjects(
+				anyCollectionOf(ProcessingState.class), eq(ProcessingState.UNPROCESSED));
+	}
+
+	@Test
+	public void testRunProcessingJobChecksIn() {
+		service.runProcessingJob();
+
+		ArgumentCaptor<FileProcessorHeartbeat> heartbeatCaptor = ArgumentCaptor.forClass(FileProcessorHeartbeat.class);
+		verify(heartbeatRepository).save(heartbeatCaptor.capture());
+		assertEquals("should check in as this processor", machineString,
+				heartbeatCaptor.getValue().getFileProcessor());
+		verify(sequencingObjectRepository).getSequencingObjectsWithProcessingStateAndProcessor(ProcessingState.QUEUED,
+				machineString);
+		verify(heartbeatRepository, never()).delete(anyString());
+	}
+}
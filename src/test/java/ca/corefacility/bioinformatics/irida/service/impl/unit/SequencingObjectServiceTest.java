@@ -1,5 +1,6 @@
 package ca.corefacility.bioinformatics.irida.service.impl.unit;
 
+import ca.corefacility.bioinformatics.irida.events.SequencingObjectCreatedEvent;
 import ca.corefacility.bioinformatics.irida.model.run.MiseqRun;
 import ca.corefacility.bioinformatics.irida.model.run.SequencingRun;
 import ca.corefacility.bioinformatics.irida.model.run.SequencingRun.LayoutType;
@@ -16,10 +17,13 @@ import ca.corefacility.bioinformatics.irida.service.impl.SequencingObjectService
 import ca.corefacility.bioinformatics.irida.web.controller.test.unit.TestDataFactory;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
 
 import javax.validation.Validator;
 import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -31,6 +35,7 @@ public class SequencingObjectServiceTest {
 	SampleSequencingObjectJoinRepository ssoRepository;
 	SequenceConcatenationRepository concatenationRepository;
 	Validator validator;
+	ApplicationEventPublisher eventPublisher;
 
 	@Before
 	public void setUp() {
@@ -39,9 +44,10 @@ public class SequencingObjectServiceTest {
 		ssoRepository = mock(SampleSequencingObjectJoinRepository.class);
 
 		concatenationRepository = mock(SequenceConcatenationRepository.class);
+		eventPublisher = mock(ApplicationEventPublisher.class);
 
 		service = new SequencingObjectServiceImpl(repository, sequenceFileRepository, ssoRepository,
-				concatenationRepository, validator);
+				concatenationRepository, validator, eventPublisher);
 	}
 
 	@Test
@@ -57,6 +63,21 @@ public class SequencingObjectServiceTest {
 		verify(sequenceFileRepository, times(1)).save(any(SequenceFile.class));
 	}
 
+	@Test
+	public void testCreatePublishesEvent() throws IOException {
+		SingleEndSequenceFile sf = TestDataFactory.constructSingleEndSequenceFile();
+		sf.setId(5L);
+
+		when(repository.save(sf)).thenReturn(sf);
+
+		service.create(sf);
+
+		ArgumentCaptor<SequencingObjectCreatedEvent> captor = ArgumentCaptor
+				.forClass(SequencingObjectCreatedEvent.class);
+		verify(eventPublisher).publishEvent(captor.capture());
+		assertEquals("event should be for the created object", sf.getId(), captor.getValue().getSequencingObjectId());
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testCreateSequenceFileInSampleWrongType() throws IOException {
 		Sample s = new Sample();
@@ -1,6 +1,7 @@
 package ca.corefacility.bioinformatics.irida.service.impl.unit.sample;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -11,6 +12,7 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import javax.validation.Validation;
 import javax.validation.Validator;
@@ -32,6 +34,7 @@ import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequenceFile;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SequencingObject;
 import ca.corefacility.bioinformatics.irida.model.sequenceFile.SingleEndSequenceFile;
 import ca.corefacility.bioinformatics.irida.model.workflow.analysis.AnalysisFastQC;
+import ca.corefacility.bioinformatics.irida.repositories.ProjectRepository;
 import ca.corefacility.bioinformatics.irida.repositories.analysis.AnalysisRepository;
 import ca.corefacility.bioinformatics.irida.repositories.joins.project.ProjectSampleJoinRepository;
 import ca.corefacility.bioinformatics.irida.repositories.joins.sample.SampleGenomeAssemblyJoinRepository;
@@ -42,6 +45,7 @@ import ca.corefacility.bioinformatics.irida.repositories.sequencefile.Sequencing
 import ca.corefacility.bioinformatics.irida.repositories.user.UserRepository;
 import ca.corefacility.bioinformatics.irida.service.impl.sample.SampleServiceImpl;
 import ca.corefacility.bioinformatics.irida.service.sample.SampleService;
+import ca.corefacility.bioinformatics.irida.service.search.SearchIndex;
 
 /**
  * Unit tests for {@link SampleServiceImpl}.
@@ -58,6 +62,7 @@ public class SampleServiceImplTest {
 	private SequencingObjectRepository sequencingObjectRepository;
 	private SampleGenomeAssemblyJoinRepository sampleGenomeAssemblyJoinRepository;
 	private UserRepository userRepository;
+	private ProjectRepository projectRepository;
 	private Validator validator;
 
 	/**
@@ -74,11 +79,13 @@ public class SampleServiceImplTest {
 		qcEntryRepository = mock(QCEntryRepository.class);
 		sequencingObjectRepository = mock(SequencingObjectRepository.class);
 		sampleGenomeAssemblyJoinRepository = mock(SampleGenomeAssemblyJoinRepository.class);
+		projectRepository = mock(ProjectRepository.class);
 
 		ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
 		validator = factory.getValidator();
 		sampleService = new SampleServiceImpl(sampleRepository, psjRepository, analysisRepository,
-				ssoRepository, qcEntryRepository, sequencingObjectRepository, sampleGenomeAssemblyJoinRepository, userRepository, validator);
+				ssoRepository, qcEntryRepository, sequencingObjectRepository, sampleGenomeAssemblyJoinRepository, userRepository, projectRepository, new SearchIndex(),
+				validator);
 	}
 
 	@Test
@@ -398,6 +405,31 @@ public class SampleServiceImplTest {
 		sampleService.getTotalBasesForSample(s1);
 	}
 
+	/**
+	 * Tests getting the total bases for many samples from the summed counts
+	 * of their single end and paired files.
+	 */
+	@Test
+	public void testGetTotalBasesForSamples() {
+		Sample s1 = s(1L);
+		Sample s2 = s(2L);
+		Sample s3 = s(3L);
+		Sample s4 = s(4L);
+		List<Long> ids = Lists.newArrayList(1L, 2L, 3L, 4L);
+
+		when(ssoRepository.countSingleEndBasesForSamples(ids)).thenReturn(
+				Lists.<Object[]> newArrayList(new Object[] { 1L, 1L, 1L, 1000L }, new Object[] { 2L, 1L, 0L, null }));
+		when(ssoRepository.countPairedBasesForSamples(ids)).thenReturn(
+				Lists.<Object[]> newArrayList(new Object[] { 1L, 2L, 2L, 500L }, new Object[] { 3L, 2L, 2L, 300L }));
+
+		Map<Long, Long> totalBases = sampleService.getTotalBasesForSamples(Lists.newArrayList(s1, s2, s3, s4));
+
+		assertEquals("single end and paired bases should be added", Long.valueOf(1500), totalBases.get(1L));
+		assertFalse("sample missing fastqc should not have bases", totalBases.containsKey(2L));
+		assertEquals(Long.valueOf(300), totalBases.get(3L));
+		assertEquals("sample without files should have no bases", Long.valueOf(0), totalBases.get(4L));
+	}
+
 	private Sample s(Long id) {
 		Sample s = new Sample();
 		s.setId(id);
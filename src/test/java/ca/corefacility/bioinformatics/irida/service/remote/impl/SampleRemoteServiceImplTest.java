@@ -16,6 +16,7 @@ import com.google.common.collect.Lists;
 import ca.corefacility.bioinformatics.irida.model.RemoteAPI;
 import ca.corefacility.bioinformatics.irida.model.project.Project;
 import ca.corefacility.bioinformatics.irida.model.remote.RemoteStatus;
+import ca.corefacility.bioinformatics.irida.model.remote.resource.ResourceList;
 import ca.corefacility.bioinformatics.irida.model.sample.Sample;
 import ca.corefacility.bioinformatics.irida.repositories.RemoteAPIRepository;
 import ca.corefacility.bioinformatics.irida.repositories.remote.SampleRemoteRepository;
@@ -53,4 +54,23 @@ public class SampleRemoteServiceImplTest {
 		verify(sampleRemoteRepository).list(samplesHref, api);
 		assertEquals(samples, samplesForProject);
 	}
+
+	@Test
+	public void testGetSampleChangesForProject() {
+		String samplesHref = "http://somewhere/projects/5/samples";
+		Project project = new Project();
+		project.add(new Link(samplesHref, SampleRemoteServiceImpl.PROJECT_SAMPLES_REL));
+		RemoteAPI api = new RemoteAPI();
+		project.setRemoteStatus(new RemoteStatus("http://nowhere", api));
+
+		ResourceList<Sample> changes = new ResourceList<>();
+		when(sampleRemoteRepository.listChanges(samplesHref + "?modifiedSince=100", api)).thenReturn(changes);
+		when(sampleRemoteRepository.listChanges(samplesHref + "?modifiedSince=0", api)).thenReturn(changes);
+
+		assertEquals(changes, sampleRemoteService.getSampleChangesForProject(project, "100"));
+		assertEquals(changes, sampleRemoteService.getSampleChangesForProject(project, null));
+
+		verify(sampleRemoteRepository).listChanges(samplesHref + "?modifiedSince=100", api);
+		verify(sampleRemoteRepository).listChanges(samplesHref + "?modifiedSince=0", api);
+	}
 }
@@ -0,0 +1,252 @@
+package ca.corefacility.bioinformatics.irida.service.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort.Direction;
+
+import ca.corefacility.bioinformatics.irida.model.joins.impl.ProjectSampleJoin;
+import ca.corefacility.bioinformatics.irida.model.project.Project;
+import ca.corefacility.bioinformatics.irida.model.sample.MetadataTemplateField;
+import ca.corefacility.bioinformatics.irida.model.sample.Sample;
+import ca.corefacility.bioinformatics.irida.model.sample.metadata.MetadataEntry;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for {@link SearchIndex}.
+ */
+public class SearchIndexTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private SearchIndex searchIndex;
+
+	private Project p1;
+	private Project p2;
+	private ProjectSampleJoin j1;
+	private ProjectSampleJoin j2;
+	private ProjectSampleJoin j3;
+
+	@Before
+	public void setUp() throws IOException {
+		searchIndex = new SearchIndex(new RAMDirectory());
+
+		p1 = project(1L, "Salmonella Outbreak 2018", "Salmonella enterica");
+		p2 = project(25L, "E. coli surveillance", "Escherichia coli");
+
+		Sample s1 = sample(10L, "SE-2018-001", "Salmonella enterica");
+		s1.setMetadata(ImmutableMap.of(new MetadataTemplateField("source", "text"),
+				new MetadataEntry("Chicken breast", "text")));
+		Sample s2 = sample(11L, "EC-2018-002", "Escherichia coli");
+		Sample s3 = sample(12L, "se-2018-003", "Salmonella enterica");
+
+		j1 = join(100L, p1, s1);
+		j2 = join(101L, p2, s2);
+		j3 = join(102L, p1, s3);
+
+		searchIndex.startRebuild();
+		searchIndex.updateProject(p1);
+		searchIndex.updateProject(p2);
+		searchIndex.updateJoin(j1);
+		searchIndex.updateJoin(j2);
+		searchIndex.updateJoin(j3);
+		searchIndex.finishRebuild();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		searchIndex.close();
+	}
+
+	@Test
+	public void testSearchSampleNameSubstring() {
+		assertEquals("should find sample names containing the term ignoring case", ImmutableList.of(100L, 102L),
+				searchSamples(null, "e-2018-00", sortBy("sample.sampleName")));
+		assertEquals("should find short terms", ImmutableList.of(101L), searchSamples(null, "ec",
+				sortBy("sample.sampleName")));
+	}
+
+	@Test
+	public void testSearchOrganismAndMetadata() {
+		assertEquals("should find samples by metadata value", ImmutableList.of(100L), searchSamples(null, "chicken",
+				sortBy("id")));
+		assertEquals("should find samples by organism", ImmutableList.of(100L, 102L), searchSamples(null, "enterica",
+				sortBy("id")));
+		assertEquals("should find samples by exact id", ImmutableList.of(101L), searchSamples(null, "11", sortBy("id")));
+	}
+
+	@Test
+	public void testSearchOnlyInProjects() {
+		assertEquals("should only find samples in the given projects", ImmutableList.of(100L, 102L),
+				searchSamples(ImmutableList.of(1L), "2018", sortBy("id")));
+		assertEquals("should find nothing without projects", ImmutableList.of(),
+				searchSamples(ImmutableList.of(), "2018", sortBy("id")));
+	}
+
+	@Test
+	public void testSearchSampleFilters() {
+		Page<Long> page = searchIndex.searchSamples(ImmutableList.of(1L, 25L), null, ImmutableList.of("se-2018-001",
+				"EC-2018-002"), null, null, "coli", null, null, sortBy("id")).get();
+		assertEquals("should find samples with one of the names and the organism", ImmutableList.of(101L),
+				page.getContent());
+
+		page = searchIndex.searchSamples(ImmutableList.of(1L, 25L), null, null, null, null, null, new Date(1050),
+				new Date(1150), sortBy("id")).get();
+		assertEquals("should find samples modified in the date range", ImmutableList.of(101L), page.getContent());
+	}
+
+	@Test
+	public void testSearchSamplesPaged() {
+		Page<Long> page = searchIndex.searchSamples(null, "2018", null, null, null, null, null, null,
+				new PageRequest(1, 2, Direction.DESC, "sample.sampleName")).get();
+		assertEquals("should count every sample found", 3, page.getTotalElements());
+		assertEquals("should get the last page of samples", ImmutableList.of(101L), page.getContent());
+	}
+
+	@Test
+	public void testUnsupportedSort() {
+		assertFalse("should not search sorted by a property that isn't indexed", searchIndex.searchSamples(null,
+				"2018", null, null, null, null, null, null, sortBy("project.name")).isPresent());
+		assertFalse("should not search a disabled index", new SearchIndex().searchSamples(null, "2018", null, null,
+				null, null, null, null, sortBy("id")).isPresent());
+	}
+
+	@Test
+	public void testUpdateAndDelete() {
+		ProjectSampleJoin moved = join(103L, p2, j1.getObject());
+		searchIndex.updateSample(10L, ImmutableList.of(moved));
+		assertEquals("sample should only be found in its new project", ImmutableList.of(103L),
+				searchSamples(null, "chicken", sortBy("id")));
+
+		searchIndex.deleteSample(10L);
+		assertEquals("deleted sample should not be found", ImmutableList.of(), searchSamples(null, "chicken",
+				sortBy("id")));
+
+		searchIndex.deleteProject(1L);
+		assertEquals("samples in deleted project should not be found", ImmutableList.of(101L),
+				searchSamples(null, "2018", sortBy("id")));
+		assertEquals("deleted project should not be found", ImmutableList.of(25L), searchProjects(null, ""));
+	}
+
+	@Test
+	public void testSearchProjects() {
+		assertEquals("should find projects by name", ImmutableList.of(1L), searchProjects(null, "outbreak"));
+		assertEquals("should find projects by organism", ImmutableList.of(25L), searchProjects(null, "escherichia"));
+		assertEquals("should find projects by id", ImmutableList.of(25L), searchProjects(null, "25"));
+		assertEquals("should only find projects in the given projects", ImmutableList.of(25L),
+				searchProjects(ImmutableList.of(25L), "o"));
+	}
+
+	@Test
+	public void testLoadKeepsOrder() {
+		Page<Long> ids = searchIndex.searchProjects(null, null, new PageRequest(0, 10, Direction.DESC, "id")).get();
+		Page<Project> projects = SearchIndex.load(ids, i -> Lists.newArrayList(p1, p2));
+		assertEquals("projects should be in the order they were found", ImmutableList.of(p2, p1),
+				projects.getContent());
+	}
+
+	@Test
+	public void testReopenIndex() throws IOException {
+		File directory = folder.newFolder();
+		SearchIndex index = new SearchIndex(FSDirectory.open(directory));
+		assertFalse("new index should need to be built", index.isReady());
+		index.startRebuild();
+		index.updateProject(p1);
+		index.finishRebuild();
+		index.close();
+
+		SearchIndex reopened = new SearchIndex(FSDirectory.open(directory));
+		assertTrue("built index should be ready when it's opened", reopened.isReady());
+		reopened.close();
+	}
+
+	@Test
+	public void testUncommittedChangesRebuildIndex() throws IOException {
+		File directory = folder.newFolder();
+		SearchIndex index = new SearchIndex(FSDirectory.open(directory));
+		index.startRebuild();
+		index.updateProject(p1);
+		index.finishRebuild();
+
+		// the server stops before the change is committed
+		index.updateProject(p2);
+		SearchIndex crashed = new SearchIndex(FSDirectory.open(copyIndex(directory)));
+		assertFalse("index with lost changes should be rebuilt", crashed.isReady());
+		crashed.close();
+
+		index.commit();
+		SearchIndex committed = new SearchIndex(FSDirectory.open(copyIndex(directory)));
+		assertTrue("index should be ready once changes are committed", committed.isReady());
+		committed.close();
+		index.close();
+	}
+
+	private List<Long> searchSamples(List<Long> projectIds, String query, PageRequest page) {
+		Optional<Page<Long>> found = searchIndex.searchSamples(projectIds, query, null, null, null, null, null,
+				null, page);
+		assertTrue("index should be searched", found.isPresent());
+		return found.get().getContent();
+	}
+
+	private List<Long> searchProjects(List<Long> projectIds, String query) {
+		return searchIndex.searchProjects(projectIds, query, sortBy("id")).get().getContent();
+	}
+
+	private File copyIndex(File directory) throws IOException {
+		File copy = folder.newFolder();
+		for (File file : directory.listFiles()) {
+			if (!file.getName().equals(IndexWriter.WRITE_LOCK_NAME)) {
+				Files.copy(file.toPath(), copy.toPath().resolve(file.getName()));
+			}
+		}
+		return copy;
+	}
+
+	private static PageRequest sortBy(String property) {
+		return new PageRequest(0, 10, Direction.ASC, property);
+	}
+
+	private static Project project(Long id, String name, String organism) {
+		Project project = new Project(name);
+		project.setId(id);
+		project.setOrganism(organism);
+		return project;
+	}
+
+	private static Sample sample(Long id, String name, String organism) {
+		Sample sample = new Sample(name);
+		sample.setId(id);
+		sample.setOrganism(organism);
+		sample.setModifiedDate(new Date(id * 100));
+		return sample;
+	}
+
+	private static ProjectSampleJoin join(Long id, Project project, Sample sample) {
+		ProjectSampleJoin join = spy(new ProjectSampleJoin(project, sample, true));
+		doReturn(id).when(join).getId();
+		return join;
+	}
+}
@@ -106,6 +106,27 @@ public class RESTAnalysisSubmissionControllerIT {
 				.get(ANALYSIS_BASE + "/2");
 	}
 
+	@Test
+	public void testGetQueuePosition() {
+		asAdmin().expect().body("resource.name", equalTo("My Waiting Submission"))
+				.body("resource." + RESTAnalysisSubmissionController.QUEUE_POSITION_PROPERTY, equalTo(1))
+				.body("resource." + RESTAnalysisSubmissionController.QUEUE_LENGTH_PROPERTY, equalTo(1)).when()
+				.get(ANALYSIS_BASE + "/5/queue");
+	}
+
+	@Test
+	public void testGetQueuePositionNotWaiting() {
+		asAdmin().expect().body("resource." + RESTAnalysisSubmissionController.QUEUE_POSITION_PROPERTY, equalTo(0))
+				.when().get(ANALYSIS_BASE + "/2/queue");
+	}
+
+	@Test
+	public void testReadWaitingSubmission() {
+		asAdmin().expect().body("resource.analysisState", equalTo(AnalysisState.NEW.toString()))
+				.body("resource.links.rel", hasItems(RESTAnalysisSubmissionController.QUEUE_REL)).when()
+				.get(ANALYSIS_BASE + "/5");
+	}
+
 	@Test
 	public void testGetAnalysis() {
 		asAdmin()
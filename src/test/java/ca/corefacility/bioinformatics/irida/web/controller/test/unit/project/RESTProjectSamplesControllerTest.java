@@ -9,6 +9,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +30,7 @@ import ca.corefacility.bioinformatics.irida.model.sample.Sample;
 import ca.corefacility.bioinformatics.irida.service.ProjectService;
 import ca.corefacility.bioinformatics.irida.service.sample.SampleService;
 import ca.corefacility.bioinformatics.irida.web.assembler.resource.LabelledRelationshipResource;
+import ca.corefacility.bioinformatics.irida.web.assembler.resource.ResourceChanges;
 import ca.corefacility.bioinformatics.irida.web.assembler.resource.ResourceCollection;
 import ca.corefacility.bioinformatics.irida.web.assembler.resource.RootResource;
 import ca.corefacility.bioinformatics.irida.web.controller.api.RESTGenericController;
@@ -168,6 +170,49 @@ public class RESTProjectSamplesControllerTest {
 		assertTrue("Rels should be empty after removing expected links", rels.isEmpty());
 	}
 
+	@Test
+	public void testGetProjectSampleChanges() {
+		Project p = TestDataFactory.constructProject();
+		Sample s = TestDataFactory.constructSample();
+		long modifiedSince = 10000L;
+
+		when(projectService.read(p.getId())).thenReturn(p);
+		when(sampleService.getSamplesForProjectShallowChangedSince(p, new Date(modifiedSince - 1000)))
+				.thenReturn(Lists.newArrayList(s));
+		when(sampleService.getSampleIdsRemovedFromProjectSince(p, new Date(modifiedSince - 1000)))
+				.thenReturn(Lists.newArrayList(5L));
+
+		ModelMap modelMap = controller.getProjectSampleChanges(p.getId(), modifiedSince);
+
+		verify(sampleService, times(0)).getSamplesForProjectShallow(p);
+
+		Object o = modelMap.get(RESTGenericController.RESOURCE_NAME);
+		assertTrue(o instanceof ResourceChanges);
+		@SuppressWarnings("unchecked")
+		ResourceChanges<Sample> changes = (ResourceChanges<Sample>) o;
+		assertEquals("should list the changed sample", 1, changes.size());
+		assertEquals("should link to the removed sample", Lists.newArrayList("http://localhost/api/samples/5"),
+				changes.getRemoved());
+		assertTrue("should return a later change token", Long.parseLong(changes.getChangeToken()) > modifiedSince);
+	}
+
+	@Test
+	public void testGetProjectSampleChangesFromStart() {
+		Project p = TestDataFactory.constructProject();
+		Sample s = TestDataFactory.constructSample();
+
+		when(projectService.read(p.getId())).thenReturn(p);
+		when(sampleService.getSamplesForProjectShallow(p)).thenReturn(Lists.newArrayList(s));
+
+		ModelMap modelMap = controller.getProjectSampleChanges(p.getId(), 0L);
+
+		@SuppressWarnings("unchecked")
+		ResourceChanges<Sample> changes = (ResourceChanges<Sample>) modelMap.get(RESTGenericController.RESOURCE_NAME);
+		assertEquals("should list every sample", 1, changes.size());
+		assertTrue("nothing should be removed", changes.getRemoved().isEmpty());
+		assertNotNull("should return a change token", changes.getChangeToken());
+	}
+
 	@Test
 	public void testGetProjectSample() throws IOException {
 		Project p = TestDataFactory.constructProject();
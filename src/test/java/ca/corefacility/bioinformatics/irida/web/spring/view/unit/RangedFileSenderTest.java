@@ -0,0 +1,191 @@
+package ca.corefacility.bioinformatics.irida.web.spring.view.unit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import ca.corefacility.bioinformatics.irida.web.spring.view.RangedFileSender;
+
+import com.google.common.net.HttpHeaders;
+
+/**
+ * Unit tests for {@link RangedFileSender}
+ */
+public class RangedFileSenderTest {
+	private static final String CONTENTS = "0123456789abcdefghij";
+	private static final String CONTENT_TYPE = "application/fastq";
+
+	private Path file;
+	private RangedFileSender sender;
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("ranged-file", ".fastq");
+		Files.write(file, CONTENTS.getBytes(StandardCharsets.US_ASCII));
+		sender = new RangedFileSender(file, CONTENT_TYPE);
+		request = new MockHttpServletRequest("GET", "/file");
+		response = new MockHttpServletResponse();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testSendWholeFile() throws IOException {
+		sender.send(request, response);
+
+		assertEquals("should send the whole file", HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals("should send the file contents", CONTENTS, response.getContentAsString());
+		assertTrue("should send a strong entity tag", response.getHeader(HttpHeaders.ETAG).startsWith("\""));
+		assertEquals("should advertise range support", "bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+		assertEquals("should send the content length", String.valueOf(CONTENTS.length()),
+				response.getHeader(HttpHeaders.CONTENT_LENGTH));
+	}
+
+	@Test
+	public void testSendRange() throws IOException {
+		request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+
+		sender.send(request, response);
+
+		assertEquals("should send partial content", HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertEquals("should send the requested range", "56789", response.getContentAsString());
+		assertEquals("should describe the range", "bytes 5-9/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+	}
+
+	@Test
+	public void testSendOpenAndSuffixRanges() throws IOException {
+		request.addHeader(HttpHeaders.RANGE, "bytes=15-");
+		sender.send(request, response);
+		assertEquals("should send to the end of the file", "fghij", response.getContentAsString());
+
+		request = new MockHttpServletRequest("GET", "/file");
+		response = new MockHttpServletResponse();
+		request.addHeader(HttpHeaders.RANGE, "bytes=-3");
+		sender.send(request, response);
+		assertEquals("should send the end of the file", "hij", response.getContentAsString());
+		assertEquals("should describe the suffix range", "bytes 17-19/20",
+				response.getHeader(HttpHeaders.CONTENT_RANGE));
+	}
+
+	@Test
+	public void testSendMultipleRanges() throws IOException {
+		request.addHeader(HttpHeaders.RANGE, "bytes=0-1,10-11");
+
+		sender.send(request, response);
+
+		assertEquals("should send partial content", HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertTrue("should send a multipart response",
+				response.getContentType().startsWith("multipart/byteranges; boundary="));
+		String body = response.getContentAsString();
+		assertTrue("should contain the first range", body.contains("Content-Range: bytes 0-1/20\r\n\r\n01\r\n"));
+		assertTrue("should contain the second range", body.contains("Content-Range: bytes 10-11/20\r\n\r\nab\r\n"));
+		assertEquals("content length should match the body", String.valueOf(response.getContentAsByteArray().length),
+				response.getHeader(HttpHeaders.CONTENT_LENGTH));
+	}
+
+	@Test
+	public void testUnsatisfiableRange() throws IOException {
+		request.addHeader(HttpHeaders.RANGE, "bytes=50-60");
+
+		sender.send(request, response);
+
+		assertEquals("range should not be satisfiable", HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE,
+				response.getStatus());
+		assertEquals("should describe the file length", "bytes */20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+	}
+
+	@Test
+	public void testStaleIfRangeSendsWholeFile() throws IOException {
+		request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+		request.addHeader(HttpHeaders.IF_RANGE, "\"something-else\"");
+
+		sender.send(request, response);
+
+		assertEquals("should send the whole file", HttpServletResponse.SC_OK, response.getStatus());
+		assertArrayEquals("should send the file contents", CONTENTS.getBytes(StandardCharsets.US_ASCII),
+				response.getContentAsByteArray());
+	}
+
+	@Test
+	public void testCurrentIfRangeSendsRange() throws IOException {
+		request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+		request.addHeader(HttpHeaders.IF_RANGE, entityTag());
+
+		sender.send(request, response);
+
+		assertEquals("should send partial content", HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertEquals("should send the requested range", "56789", response.getContentAsString());
+	}
+
+	@Test
+	public void testEntityTagChangesWithFile() throws IOException {
+		String original = entityTag();
+
+		Files.write(file, (CONTENTS + "klmno").getBytes(StandardCharsets.US_ASCII));
+		assertNotEquals("entity tag should change when the file changes", original,
+				entityTag(new RangedFileSender(file, CONTENT_TYPE)));
+
+		Path copy = Files.createTempFile("ranged-file", ".fastq");
+		try {
+			Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+			assertNotEquals("a different file should have a different entity tag", entityTag(),
+					entityTag(new RangedFileSender(copy, CONTENT_TYPE)));
+		} finally {
+			Files.delete(copy);
+		}
+	}
+
+	@Test
+	public void testIfNoneMatch() throws IOException {
+		request.addHeader(HttpHeaders.IF_NONE_MATCH, entityTag());
+
+		sender.send(request, response);
+
+		assertEquals("should not send the file again", HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		assertEquals("should not send a body", 0, response.getContentAsByteArray().length);
+	}
+
+	@Test
+	public void testContainerSendfile() throws IOException {
+		request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+		request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+
+		sender.send(request, response);
+
+		assertEquals("should hand the file to the container", file.toAbsolutePath().toString(),
+				request.getAttribute("org.apache.tomcat.sendfile.filename"));
+		assertEquals("should start at the range", 5L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+		assertEquals("should end after the range", 10L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+		assertEquals("should not write the body itself", 0, response.getContentAsByteArray().length);
+	}
+
+	private String entityTag() throws IOException {
+		return entityTag(sender);
+	}
+
+	private String entityTag(RangedFileSender sender) throws IOException {
+		MockHttpServletResponse headResponse = new MockHttpServletResponse();
+		sender.send(new MockHttpServletRequest("HEAD", "/file"), headResponse);
+		return headResponse.getHeader(HttpHeaders.ETAG);
+	}
+}